@@ -17,6 +17,8 @@
 package io.opencensus.trace;
 
 import io.opencensus.internal.Utils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 final class BigendianEncoding {
@@ -88,6 +90,33 @@ final class BigendianEncoding {
     dest[destOffset] = (byte) (value >> 56 & 0xFFL);
   }
 
+  /**
+   * Returns the {@code long} value whose big-endian representation is stored in the 8 bytes of
+   * {@code buffer} starting from the {@code index}, whatever the byte order of the buffer.
+   *
+   * @param buffer the buffer that contains the representation of the {@code long}.
+   * @param index the starting index in the buffer.
+   * @return the {@code long} value whose big-endian representation is given.
+   * @throws IndexOutOfBoundsException if {@code buffer} has fewer than 8 bytes after the index.
+   */
+  static long longFromByteBuffer(ByteBuffer buffer, int index) {
+    long value = buffer.getLong(index);
+    return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+  }
+
+  /**
+   * Stores the big-endian representation of {@code value} in the {@code dest} starting from the
+   * {@code index}, whatever the byte order of the buffer.
+   *
+   * @param value the value to be converted.
+   * @param dest the destination buffer.
+   * @param index the starting index in the destination buffer.
+   * @throws IndexOutOfBoundsException if {@code dest} has fewer than 8 bytes after the index.
+   */
+  static void longToByteBuffer(long value, ByteBuffer dest, int index) {
+    dest.putLong(index, dest.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+  }
+
   /**
    * Returns the {@code long} value whose base16 representation is stored in the first 16 chars of
    * {@code chars} starting from the {@code offset}.
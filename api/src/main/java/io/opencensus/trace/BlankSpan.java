@@ -48,6 +48,31 @@ public final class BlankSpan extends Span {
     Utils.checkNotNull(value, "value");
   }
 
+  /** No-op implementation of the {@link Span#putAttribute(String, String)} method. */
+  @Override
+  public void putAttribute(String key, String value) {
+    Utils.checkNotNull(key, "key");
+    Utils.checkNotNull(value, "value");
+  }
+
+  /** No-op implementation of the {@link Span#putAttribute(String, long)} method. */
+  @Override
+  public void putAttribute(String key, long value) {
+    Utils.checkNotNull(key, "key");
+  }
+
+  /** No-op implementation of the {@link Span#putAttribute(String, double)} method. */
+  @Override
+  public void putAttribute(String key, double value) {
+    Utils.checkNotNull(key, "key");
+  }
+
+  /** No-op implementation of the {@link Span#putAttribute(String, boolean)} method. */
+  @Override
+  public void putAttribute(String key, boolean value) {
+    Utils.checkNotNull(key, "key");
+  }
+
   /** No-op implementation of the {@link Span#putAttributes(Map)} method. */
   @Override
   public void putAttributes(Map<String, AttributeValue> attributes) {
@@ -101,6 +101,65 @@ public abstract class Span {
     putAttributes(Collections.singletonMap(key, value));
   }
 
+  /**
+   * Sets a string attribute to the {@code Span}. Equivalent to calling {@link
+   * #putAttribute(String, AttributeValue)} with {@link
+   * AttributeValue#stringAttributeValue(String)}, but allows implementations to avoid allocating
+   * the {@code AttributeValue} on the hot path.
+   *
+   * @param key the key for this attribute.
+   * @param value the value for this attribute.
+   * @since 0.29
+   */
+  public void putAttribute(String key, String value) {
+    Utils.checkNotNull(key, "key");
+    putAttribute(key, AttributeValue.stringAttributeValue(value));
+  }
+
+  /**
+   * Sets a long attribute to the {@code Span}. Equivalent to calling {@link
+   * #putAttribute(String, AttributeValue)} with {@link AttributeValue#longAttributeValue(long)},
+   * but allows implementations to keep the value unboxed.
+   *
+   * @param key the key for this attribute.
+   * @param value the value for this attribute.
+   * @since 0.29
+   */
+  public void putAttribute(String key, long value) {
+    Utils.checkNotNull(key, "key");
+    putAttribute(key, AttributeValue.longAttributeValue(value));
+  }
+
+  /**
+   * Sets a double attribute to the {@code Span}. Equivalent to calling {@link
+   * #putAttribute(String, AttributeValue)} with {@link
+   * AttributeValue#doubleAttributeValue(double)}, but allows implementations to keep the value
+   * unboxed.
+   *
+   * @param key the key for this attribute.
+   * @param value the value for this attribute.
+   * @since 0.29
+   */
+  public void putAttribute(String key, double value) {
+    Utils.checkNotNull(key, "key");
+    putAttribute(key, AttributeValue.doubleAttributeValue(value));
+  }
+
+  /**
+   * Sets a boolean attribute to the {@code Span}. Equivalent to calling {@link
+   * #putAttribute(String, AttributeValue)} with {@link
+   * AttributeValue#booleanAttributeValue(boolean)}, but allows implementations to keep the value
+   * unboxed.
+   *
+   * @param key the key for this attribute.
+   * @param value the value for this attribute.
+   * @since 0.29
+   */
+  public void putAttribute(String key, boolean value) {
+    Utils.checkNotNull(key, "key");
+    putAttribute(key, AttributeValue.booleanAttributeValue(value));
+  }
+
   /**
    * Sets a set of attributes to the {@code Span}. The effect of this call is equivalent to that of
    * calling {@link #putAttribute(String, AttributeValue)} once for each element in the specified
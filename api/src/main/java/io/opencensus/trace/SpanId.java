@@ -17,6 +17,7 @@
 package io.opencensus.trace;
 
 import io.opencensus.internal.Utils;
+import java.nio.ByteBuffer;
 import java.util.Random;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -87,6 +88,24 @@ public final class SpanId implements Comparable<SpanId> {
     return new SpanId(BigendianEncoding.longFromByteArray(src, srcOffset));
   }
 
+  /**
+   * Returns a {@code SpanId} whose representation is copied from the {@code src} beginning at the
+   * {@code srcIndex} index. The position and the byte order of the buffer are ignored.
+   *
+   * @param src the buffer where the representation of the {@code SpanId} is copied.
+   * @param srcIndex the index in the buffer where the representation of the {@code SpanId}
+   *     begins.
+   * @return a {@code SpanId} whose representation is copied from the buffer.
+   * @throws NullPointerException if {@code src} is null.
+   * @throws IndexOutOfBoundsException if {@code srcIndex+SpanId.SIZE} is greater than {@code
+   *     src.limit()}.
+   * @since 0.29
+   */
+  public static SpanId fromByteBuffer(ByteBuffer src, int srcIndex) {
+    Utils.checkNotNull(src, "src");
+    return new SpanId(BigendianEncoding.longFromByteBuffer(src, srcIndex));
+  }
+
   /**
    * Returns a {@code SpanId} built from a lowercase base16 representation.
    *
@@ -167,6 +186,23 @@ public final class SpanId implements Comparable<SpanId> {
     BigendianEncoding.longToByteArray(id, dest, destOffset);
   }
 
+  /**
+   * Copies the byte representation of the {@code SpanId} into the {@code dest} beginning at the
+   * {@code destIndex} index. The position and the byte order of the buffer are ignored.
+   *
+   * @param dest the destination buffer.
+   * @param destIndex the starting index in the destination buffer.
+   * @throws NullPointerException if {@code dest} is null.
+   * @throws IndexOutOfBoundsException if {@code destIndex+SpanId.SIZE} is greater than {@code
+   *     dest.limit()}.
+   * @throws java.nio.ReadOnlyBufferException if {@code dest} is read-only.
+   * @since 0.29
+   */
+  public void copyBytesTo(ByteBuffer dest, int destIndex) {
+    Utils.checkNotNull(dest, "dest");
+    BigendianEncoding.longToByteBuffer(id, dest, destIndex);
+  }
+
   /**
    * Copies the lowercase base16 representations of the {@code SpanId} into the {@code dest}
    * beginning at the {@code destOffset} offset.
@@ -18,6 +18,7 @@ package io.opencensus.trace;
 
 import io.opencensus.common.Internal;
 import io.opencensus.internal.Utils;
+import java.nio.ByteBuffer;
 import java.util.Random;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -91,6 +92,26 @@ public final class TraceId implements Comparable<TraceId> {
         BigendianEncoding.longFromByteArray(src, srcOffset + BigendianEncoding.LONG_BYTES));
   }
 
+  /**
+   * Returns a {@code TraceId} whose representation is copied from the {@code src} beginning at the
+   * {@code srcIndex} index. The position and the byte order of the buffer are ignored.
+   *
+   * @param src the buffer where the representation of the {@code TraceId} is copied.
+   * @param srcIndex the index in the buffer where the representation of the {@code TraceId}
+   *     begins.
+   * @return a {@code TraceId} whose representation is copied from the buffer.
+   * @throws NullPointerException if {@code src} is null.
+   * @throws IndexOutOfBoundsException if {@code srcIndex+TraceId.SIZE} is greater than {@code
+   *     src.limit()}.
+   * @since 0.29
+   */
+  public static TraceId fromByteBuffer(ByteBuffer src, int srcIndex) {
+    Utils.checkNotNull(src, "src");
+    return new TraceId(
+        BigendianEncoding.longFromByteBuffer(src, srcIndex),
+        BigendianEncoding.longFromByteBuffer(src, srcIndex + BigendianEncoding.LONG_BYTES));
+  }
+
   /**
    * Returns a {@code TraceId} built from a lowercase base16 representation.
    *
@@ -176,6 +197,24 @@ public final class TraceId implements Comparable<TraceId> {
     BigendianEncoding.longToByteArray(idLo, dest, destOffset + BigendianEncoding.LONG_BYTES);
   }
 
+  /**
+   * Copies the byte representation of the {@code TraceId} into the {@code dest} beginning at the
+   * {@code destIndex} index. The position and the byte order of the buffer are ignored.
+   *
+   * @param dest the destination buffer.
+   * @param destIndex the starting index in the destination buffer.
+   * @throws NullPointerException if {@code dest} is null.
+   * @throws IndexOutOfBoundsException if {@code destIndex+TraceId.SIZE} is greater than {@code
+   *     dest.limit()}.
+   * @throws java.nio.ReadOnlyBufferException if {@code dest} is read-only.
+   * @since 0.29
+   */
+  public void copyBytesTo(ByteBuffer dest, int destIndex) {
+    Utils.checkNotNull(dest, "dest");
+    BigendianEncoding.longToByteBuffer(idHi, dest, destIndex);
+    BigendianEncoding.longToByteBuffer(idLo, dest, destIndex + BigendianEncoding.LONG_BYTES);
+  }
+
   /**
    * Copies the lowercase base16 representations of the {@code TraceId} into the {@code dest}
    * beginning at the {@code destOffset} offset.
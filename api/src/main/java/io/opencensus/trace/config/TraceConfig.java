@@ -16,6 +16,9 @@
 
 package io.opencensus.trace.config;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Global configuration of the trace service. This allows users to change configs for the default
  * sampler, maximum events to be kept, etc. (see {@link TraceParams} for details).
@@ -41,6 +44,43 @@ public abstract class TraceConfig {
    */
   public abstract void updateActiveTraceParams(TraceParams traceParams);
 
+  /**
+   * Returns the {@code TraceParams} used for the spans with the given name: the {@code
+   * TraceParams} of the longest span name prefix that matches the name, or the active {@code
+   * TraceParams} if no prefix matches.
+   *
+   * @param spanName the name of the span.
+   * @return the {@code TraceParams} used for the spans with the given name.
+   * @since 0.29
+   */
+  public TraceParams getActiveTraceParams(String spanName) {
+    return getActiveTraceParams();
+  }
+
+  /**
+   * Returns the {@code TraceParams} by span name prefix.
+   *
+   * @return the {@code TraceParams} by span name prefix.
+   * @since 0.29
+   */
+  public Map<String, TraceParams> getSpanNameTraceParams() {
+    return Collections.<String, TraceParams>emptyMap();
+  }
+
+  /**
+   * Replaces the {@code TraceParams} by span name prefix. The spans whose name starts with one of
+   * the prefixes use the {@code TraceParams} of the longest matching prefix, instead of the active
+   * {@code TraceParams}, for the sampler, the limits and the recording of events.
+   *
+   * <p>For example, health checks can be sampled with a lower probability by mapping the prefix
+   * {@code "grpc.health."} to {@code TraceParams} with a lower sampling probability.
+   *
+   * @param traceParamsBySpanNamePrefix the {@code TraceParams} by span name prefix. An empty map
+   *     removes all the prefixes.
+   * @since 0.29
+   */
+  public void updateSpanNameTraceParams(Map<String, TraceParams> traceParamsBySpanNamePrefix) {}
+
   /**
    * Returns the no-op implementation of the {@code TraceConfig}.
    *
@@ -41,6 +41,7 @@ public abstract class TraceParams {
   private static final int DEFAULT_SPAN_MAX_NUM_ANNOTATIONS = 32;
   private static final int DEFAULT_SPAN_MAX_NUM_MESSAGE_EVENTS = 128;
   private static final int DEFAULT_SPAN_MAX_NUM_LINKS = 32;
+  private static final boolean DEFAULT_RECORD_EVENTS = false;
 
   /**
    * Default {@code TraceParams}.
@@ -54,6 +55,7 @@ public abstract class TraceParams {
           .setMaxNumberOfAnnotations(DEFAULT_SPAN_MAX_NUM_ANNOTATIONS)
           .setMaxNumberOfMessageEvents(DEFAULT_SPAN_MAX_NUM_MESSAGE_EVENTS)
           .setMaxNumberOfLinks(DEFAULT_SPAN_MAX_NUM_LINKS)
+          .setRecordEvents(DEFAULT_RECORD_EVENTS)
           .build();
 
   /**
@@ -110,6 +112,15 @@ public abstract class TraceParams {
    */
   public abstract int getMaxNumberOfLinks();
 
+  /**
+   * Returns whether the {@link Span}s that are not sampled record events. Used if {@link
+   * io.opencensus.trace.SpanBuilder#setRecordEvents(boolean)} is not called.
+   *
+   * @return whether the {@code Span}s that are not sampled record events.
+   * @since 0.29
+   */
+  public abstract boolean getRecordEvents();
+
   private static Builder builder() {
     return new AutoValue_TraceParams.Builder();
   }
@@ -196,6 +207,15 @@ public abstract class TraceParams {
      */
     public abstract Builder setMaxNumberOfLinks(int maxNumberOfLinks);
 
+    /**
+     * Sets whether the {@link Span}s that are not sampled record events.
+     *
+     * @param recordEvents whether the {@code Span}s that are not sampled record events.
+     * @return this.
+     * @since 0.29
+     */
+    public abstract Builder setRecordEvents(boolean recordEvents);
+
     abstract TraceParams autoBuild();
 
     /**
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.trace.export;
+
+import io.opencensus.common.ExperimentalApi;
+import io.opencensus.common.Timestamp;
+import io.opencensus.internal.Utils;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Read-only view of the data collected by an ended {@link Span}, handed to the {@link
+ * SpanExporter.Handler}s.
+ *
+ * <p>Unlike {@link SpanData}, a {@code ReadableSpan} does not have to copy the recorded events: the
+ * attributes, annotations, message events and links are passed to a visitor, so that exporters can
+ * write them directly in their own format. {@link #toSpanData()} returns the equivalent {@code
+ * SpanData}, for the exporters that need it.
+ *
+ * @since 0.29
+ */
+@ExperimentalApi
+@ThreadSafe
+public abstract class ReadableSpan {
+
+  /**
+   * Returns a {@code ReadableSpan} that reads the given {@code SpanData}.
+   *
+   * @param spanData the {@code SpanData} to read.
+   * @return a {@code ReadableSpan} that reads the given {@code SpanData}.
+   * @since 0.29
+   */
+  public static ReadableSpan fromSpanData(SpanData spanData) {
+    return new SpanDataReadableSpan(Utils.checkNotNull(spanData, "spanData"));
+  }
+
+  /**
+   * Returns the {@code SpanContext} associated with this {@code Span}.
+   *
+   * @return the {@code SpanContext} associated with this {@code Span}.
+   * @since 0.29
+   */
+  public abstract SpanContext getContext();
+
+  /**
+   * Returns the parent {@code SpanId} or {@code null} if the {@code Span} is a root {@code Span}.
+   *
+   * @return the parent {@code SpanId} or {@code null} if the {@code Span} is a root {@code Span}.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract SpanId getParentSpanId();
+
+  /**
+   * Returns {@code true} if the parent is on a different process. {@code null} if this is a root
+   * span.
+   *
+   * @return {@code true} if the parent is on a different process. {@code null} if this is a root
+   *     span.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract Boolean getHasRemoteParent();
+
+  /**
+   * Returns the name of this {@code Span}.
+   *
+   * @return the name of this {@code Span}.
+   * @since 0.29
+   */
+  public abstract String getName();
+
+  /**
+   * Returns the kind of this {@code Span}.
+   *
+   * @return the kind of this {@code Span}.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract Span.Kind getKind();
+
+  /**
+   * Returns the start {@code Timestamp} of this {@code Span}.
+   *
+   * @return the start {@code Timestamp} of this {@code Span}.
+   * @since 0.29
+   */
+  public abstract Timestamp getStartTimestamp();
+
+  /**
+   * Returns the end {@code Timestamp} or {@code null} if the {@code Span} is still active.
+   *
+   * @return the end {@code Timestamp} or {@code null} if the {@code Span} is still active.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract Timestamp getEndTimestamp();
+
+  /**
+   * Returns the {@code Status} or {@code null} if {@code Span} is still active.
+   *
+   * @return the {@code Status} or {@code null} if {@code Span} is still active.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract Status getStatus();
+
+  /**
+   * Returns the number of child spans that were generated while the {@code Span} was running.
+   *
+   * @return the number of child spans that were generated while the {@code Span} was running.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract Integer getChildSpanCount();
+
+  /**
+   * Passes the attributes of this {@code Span} to the given visitor.
+   *
+   * @param visitor the visitor called for each attribute.
+   * @since 0.29
+   */
+  public abstract void forEachAttribute(AttributeVisitor visitor);
+
+  /**
+   * Returns the number of dropped attributes.
+   *
+   * @return the number of dropped attributes.
+   * @since 0.29
+   */
+  public abstract int getDroppedAttributesCount();
+
+  /**
+   * Passes the annotations of this {@code Span} to the given visitor, in recording order.
+   *
+   * @param visitor the visitor called for each annotation.
+   * @since 0.29
+   */
+  public abstract void forEachAnnotation(TimedEventVisitor<Annotation> visitor);
+
+  /**
+   * Returns the number of dropped annotations.
+   *
+   * @return the number of dropped annotations.
+   * @since 0.29
+   */
+  public abstract int getDroppedAnnotationsCount();
+
+  /**
+   * Passes the message events of this {@code Span} to the given visitor, in recording order.
+   *
+   * @param visitor the visitor called for each message event.
+   * @since 0.29
+   */
+  public abstract void forEachMessageEvent(TimedEventVisitor<MessageEvent> visitor);
+
+  /**
+   * Returns the number of dropped message events.
+   *
+   * @return the number of dropped message events.
+   * @since 0.29
+   */
+  public abstract int getDroppedMessageEventsCount();
+
+  /**
+   * Passes the links of this {@code Span} to the given visitor, in recording order.
+   *
+   * @param visitor the visitor called for each link.
+   * @since 0.29
+   */
+  public abstract void forEachLink(LinkVisitor visitor);
+
+  /**
+   * Returns the number of dropped links.
+   *
+   * @return the number of dropped links.
+   * @since 0.29
+   */
+  public abstract int getDroppedLinksCount();
+
+  /**
+   * Returns the immutable {@code SpanData} of this {@code Span}.
+   *
+   * <p>Implementations create the {@code SpanData} at most once, so all the callers share the same
+   * instance.
+   *
+   * @return the immutable {@code SpanData} of this {@code Span}.
+   * @since 0.29
+   */
+  public abstract SpanData toSpanData();
+
+  /**
+   * Visitor of the attributes of a {@link ReadableSpan}.
+   *
+   * @since 0.29
+   */
+  public interface AttributeVisitor {
+
+    /**
+     * Called for each attribute.
+     *
+     * @param key the key of the attribute.
+     * @param value the value of the attribute.
+     * @since 0.29
+     */
+    void visitAttribute(String key, AttributeValue value);
+  }
+
+  /**
+   * Visitor of the timed events of a {@link ReadableSpan}.
+   *
+   * @param <T> the type of the events.
+   * @since 0.29
+   */
+  public interface TimedEventVisitor<T> {
+
+    /**
+     * Called for each event.
+     *
+     * @param timestamp the time at which the event was recorded.
+     * @param event the event.
+     * @since 0.29
+     */
+    void visitEvent(Timestamp timestamp, T event);
+  }
+
+  /**
+   * Visitor of the links of a {@link ReadableSpan}.
+   *
+   * @since 0.29
+   */
+  public interface LinkVisitor {
+
+    /**
+     * Called for each link.
+     *
+     * @param link the link.
+     * @since 0.29
+     */
+    void visitLink(Link link);
+  }
+
+  private static final class SpanDataReadableSpan extends ReadableSpan {
+    private final SpanData spanData;
+
+    private SpanDataReadableSpan(SpanData spanData) {
+      this.spanData = spanData;
+    }
+
+    @Override
+    public SpanContext getContext() {
+      return spanData.getContext();
+    }
+
+    @Nullable
+    @Override
+    public SpanId getParentSpanId() {
+      return spanData.getParentSpanId();
+    }
+
+    @Nullable
+    @Override
+    public Boolean getHasRemoteParent() {
+      return spanData.getHasRemoteParent();
+    }
+
+    @Override
+    public String getName() {
+      return spanData.getName();
+    }
+
+    @Nullable
+    @Override
+    public Span.Kind getKind() {
+      return spanData.getKind();
+    }
+
+    @Override
+    public Timestamp getStartTimestamp() {
+      return spanData.getStartTimestamp();
+    }
+
+    @Nullable
+    @Override
+    public Timestamp getEndTimestamp() {
+      return spanData.getEndTimestamp();
+    }
+
+    @Nullable
+    @Override
+    public Status getStatus() {
+      return spanData.getStatus();
+    }
+
+    @Nullable
+    @Override
+    public Integer getChildSpanCount() {
+      return spanData.getChildSpanCount();
+    }
+
+    @Override
+    public void forEachAttribute(AttributeVisitor visitor) {
+      Utils.checkNotNull(visitor, "visitor");
+      for (Map.Entry<String, AttributeValue> attribute :
+          spanData.getAttributes().getAttributeMap().entrySet()) {
+        visitor.visitAttribute(attribute.getKey(), attribute.getValue());
+      }
+    }
+
+    @Override
+    public int getDroppedAttributesCount() {
+      return spanData.getAttributes().getDroppedAttributesCount();
+    }
+
+    @Override
+    public void forEachAnnotation(TimedEventVisitor<Annotation> visitor) {
+      visitTimedEvents(spanData.getAnnotations(), visitor);
+    }
+
+    @Override
+    public int getDroppedAnnotationsCount() {
+      return spanData.getAnnotations().getDroppedEventsCount();
+    }
+
+    @Override
+    public void forEachMessageEvent(TimedEventVisitor<MessageEvent> visitor) {
+      visitTimedEvents(spanData.getMessageEvents(), visitor);
+    }
+
+    @Override
+    public int getDroppedMessageEventsCount() {
+      return spanData.getMessageEvents().getDroppedEventsCount();
+    }
+
+    @Override
+    public void forEachLink(LinkVisitor visitor) {
+      Utils.checkNotNull(visitor, "visitor");
+      for (Link link : spanData.getLinks().getLinks()) {
+        visitor.visitLink(link);
+      }
+    }
+
+    @Override
+    public int getDroppedLinksCount() {
+      return spanData.getLinks().getDroppedLinksCount();
+    }
+
+    @Override
+    public SpanData toSpanData() {
+      return spanData;
+    }
+
+    private static <T> void visitTimedEvents(
+        SpanData.TimedEvents<T> timedEvents, TimedEventVisitor<T> visitor) {
+      Utils.checkNotNull(visitor, "visitor");
+      for (TimedEvent<T> timedEvent : timedEvents.getEvents()) {
+        visitor.visitEvent(timedEvent.getTimestamp(), timedEvent.getEvent());
+      }
+    }
+  }
+}
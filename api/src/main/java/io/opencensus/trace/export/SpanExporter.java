@@ -16,9 +16,13 @@
 
 package io.opencensus.trace.export;
 
+import io.opencensus.common.ExperimentalApi;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.TraceOptions;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -83,6 +87,29 @@ public abstract class SpanExporter {
      * @since 0.5
      */
     public abstract void export(Collection<SpanData> spanDataList);
+
+    /**
+     * Exports a list of sampled (see {@link TraceOptions#isSampled()}) {@link Span}s using the
+     * read-only representation {@link ReadableSpan}.
+     *
+     * <p>Handlers that convert the spans to their own format can override this method to read the
+     * spans without creating the intermediate {@code SpanData}. The default implementation calls
+     * {@link #export(Collection)} with the {@code SpanData} of the spans.
+     *
+     * <p>The spans can be read after this method returns. Implementation SHOULD not block the
+     * calling thread.
+     *
+     * @param spans a list of {@code ReadableSpan} objects to be exported.
+     * @since 0.29
+     */
+    @ExperimentalApi
+    public void exportSpans(Collection<ReadableSpan> spans) {
+      List<SpanData> spanDataList = new ArrayList<SpanData>(spans.size());
+      for (ReadableSpan span : spans) {
+        spanDataList.add(span.toSpanData());
+      }
+      export(Collections.unmodifiableList(spanDataList));
+    }
   }
 
   private static final class NoopSpanExporter extends SpanExporter {
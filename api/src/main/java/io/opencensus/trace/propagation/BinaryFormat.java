@@ -18,6 +18,7 @@ package io.opencensus.trace.propagation;
 
 import io.opencensus.internal.Utils;
 import io.opencensus.trace.SpanContext;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -129,6 +130,57 @@ public abstract class BinaryFormat {
     }
   }
 
+  /**
+   * Serializes a {@link SpanContext} into the {@code dest} buffer beginning at the {@code
+   * destIndex} index, using the binary format. The position of the buffer is not changed, so the
+   * value can be written directly into a buffer owned by the transport.
+   *
+   * <p>The default implementation copies the result of {@link #toByteArray(SpanContext)}.
+   *
+   * @param spanContext the {@code SpanContext} to serialize.
+   * @param dest the destination buffer.
+   * @param destIndex the starting index in the destination buffer.
+   * @return the number of bytes written.
+   * @throws NullPointerException if the {@code spanContext} or the {@code dest} is {@code null}.
+   * @throws IndexOutOfBoundsException if the serialized value does not fit in the {@code dest}.
+   * @since 0.29
+   */
+  public int toByteBuffer(SpanContext spanContext, ByteBuffer dest, int destIndex) {
+    Utils.checkNotNull(dest, "dest");
+    byte[] bytes = toByteArray(spanContext);
+    for (int i = 0; i < bytes.length; i++) {
+      dest.put(destIndex + i, bytes[i]);
+    }
+    return bytes.length;
+  }
+
+  /**
+   * Parses the {@link SpanContext} from the {@code length} bytes of the {@code src} buffer
+   * beginning at the {@code srcIndex} index, using the binary format. The position of the buffer
+   * is not changed.
+   *
+   * <p>The default implementation copies the bytes and calls {@link #fromByteArray(byte[])}.
+   *
+   * @param src a buffer that contains the binary encoded {@code SpanContext}.
+   * @param srcIndex the index in the buffer where the binary value begins.
+   * @param length the length of the binary value.
+   * @return the parsed {@code SpanContext}.
+   * @throws NullPointerException if the {@code src} is {@code null}.
+   * @throws IndexOutOfBoundsException if {@code srcIndex+length} is greater than {@code
+   *     src.limit()}.
+   * @throws SpanContextParseException if the version is not supported or the input is invalid
+   * @since 0.29
+   */
+  public SpanContext fromByteBuffer(ByteBuffer src, int srcIndex, int length)
+      throws SpanContextParseException {
+    Utils.checkNotNull(src, "src");
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = src.get(srcIndex + i);
+    }
+    return fromByteArray(bytes);
+  }
+
   /**
    * Returns the no-op implementation of the {@code BinaryFormat}.
    *
@@ -151,6 +203,19 @@ public abstract class BinaryFormat {
       return SpanContext.INVALID;
     }
 
+    @Override
+    public int toByteBuffer(SpanContext spanContext, ByteBuffer dest, int destIndex) {
+      Utils.checkNotNull(spanContext, "spanContext");
+      Utils.checkNotNull(dest, "dest");
+      return 0;
+    }
+
+    @Override
+    public SpanContext fromByteBuffer(ByteBuffer src, int srcIndex, int length) {
+      Utils.checkNotNull(src, "src");
+      return SpanContext.INVALID;
+    }
+
     private NoopBinaryFormat() {}
   }
 }
@@ -49,6 +49,22 @@ public abstract class PropagationComponent {
   @ExperimentalApi
   public abstract TextFormat getB3Format();
 
+  /**
+   * Returns the B3 {@link TextFormat} that injects the single {@code b3} header instead of the
+   * multiple {@code X-B3-*} headers. Like the {@link #getB3Format()}, it extracts both encodings.
+   * See <a href="https://github.com/openzipkin/b3-propagation">b3-propagation</a> for more
+   * information.
+   *
+   * <p>The default implementation returns {@link #getB3Format()}.
+   *
+   * @return the B3 single header {@code TextFormat} implementation.
+   * @since 0.29
+   */
+  @ExperimentalApi
+  public TextFormat getB3SingleHeaderFormat() {
+    return getB3Format();
+  }
+
   /**
    * Returns the TraceContext {@link TextFormat} with the provided implementations. See <a
    * href="https://github.com/w3c/distributed-tracing">w3c/distributed-tracing</a> for more
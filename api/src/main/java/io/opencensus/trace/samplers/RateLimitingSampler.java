@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.trace.samplers;
+
+import io.opencensus.common.Clock;
+import io.opencensus.common.Timestamp;
+import io.opencensus.internal.Utils;
+import io.opencensus.trace.Sampler;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Samples at most a given number of local root spans per second.
+ *
+ * <p>Each budget is a token bucket that holds up to one second of tokens and is refilled
+ * continuously. The bucket is stored as the time at which it is empty, which is updated with a
+ * single {@code compareAndSet}, so the sampling decision never blocks.
+ *
+ * <p>Spans with a sampled parent, or a sampled parent link, are always sampled and do not consume
+ * the budget. Spans with a local parent that is not sampled are never sampled, so traces are not
+ * broken. All the other spans (root spans and spans with a remote parent) consume the budget of
+ * their name, or the default budget.
+ */
+@ThreadSafe
+final class RateLimitingSampler extends Sampler {
+  private static final Clock SYSTEM_CLOCK =
+      new Clock() {
+        @Override
+        public Timestamp now() {
+          return Timestamp.fromMillis(System.currentTimeMillis());
+        }
+
+        @Override
+        public long nowNanos() {
+          return System.nanoTime();
+        }
+      };
+
+  private final double spansPerSecond;
+  private final TokenBucket defaultBucket;
+  private final Map<String, TokenBucket> bucketsBySpanName;
+  private final Map<String, Double> spansPerSecondBySpanName;
+
+  private RateLimitingSampler(
+      double spansPerSecond, Map<String, Double> spansPerSecondBySpanName, Clock clock) {
+    this.spansPerSecond = spansPerSecond;
+    this.defaultBucket = new TokenBucket(spansPerSecond, clock);
+    Map<String, TokenBucket> bucketsBySpanName = new HashMap<String, TokenBucket>();
+    for (Map.Entry<String, Double> entry : spansPerSecondBySpanName.entrySet()) {
+      bucketsBySpanName.put(entry.getKey(), new TokenBucket(entry.getValue(), clock));
+    }
+    this.bucketsBySpanName = bucketsBySpanName;
+    this.spansPerSecondBySpanName = spansPerSecondBySpanName;
+  }
+
+  /**
+   * Returns a new {@link RateLimitingSampler}.
+   *
+   * @param spansPerSecond the default budget of sampled spans per second.
+   * @param spansPerSecondBySpanName the budgets of sampled spans per second of some span names.
+   * @return a new {@link RateLimitingSampler}.
+   * @throws IllegalArgumentException if a budget is negative.
+   */
+  static RateLimitingSampler create(
+      double spansPerSecond, Map<String, Double> spansPerSecondBySpanName) {
+    return create(spansPerSecond, spansPerSecondBySpanName, SYSTEM_CLOCK);
+  }
+
+  // Visible for testing.
+  static RateLimitingSampler create(
+      double spansPerSecond, Map<String, Double> spansPerSecondBySpanName, Clock clock) {
+    Utils.checkArgument(spansPerSecond >= 0.0, "spansPerSecond must be non-negative.");
+    Utils.checkNotNull(spansPerSecondBySpanName, "spansPerSecondBySpanName");
+    Map<String, Double> copy = new HashMap<String, Double>();
+    for (Map.Entry<String, Double> entry : spansPerSecondBySpanName.entrySet()) {
+      Double budget = Utils.checkNotNull(entry.getValue(), "spansPerSecond");
+      Utils.checkArgument(budget >= 0.0, "spansPerSecond must be non-negative.");
+      copy.put(Utils.checkNotNull(entry.getKey(), "spanName"), budget);
+    }
+    return new RateLimitingSampler(
+        spansPerSecond, Collections.unmodifiableMap(copy), Utils.checkNotNull(clock, "clock"));
+  }
+
+  @Override
+  public boolean shouldSample(
+      @Nullable SpanContext parentContext,
+      @Nullable Boolean hasRemoteParent,
+      TraceId traceId,
+      SpanId spanId,
+      String name,
+      @Nullable List<Span> parentLinks) {
+    // If the parent is sampled keep the sampling decision.
+    if (parentContext != null && parentContext.getTraceOptions().isSampled()) {
+      return true;
+    }
+    if (parentLinks != null) {
+      // If any parent link is sampled keep the sampling decision.
+      for (Span parentLink : parentLinks) {
+        if (parentLink.getContext().getTraceOptions().isSampled()) {
+          return true;
+        }
+      }
+    }
+    // A local parent that is not sampled was already rate limited.
+    if (parentContext != null && !Boolean.TRUE.equals(hasRemoteParent)) {
+      return false;
+    }
+    TokenBucket bucket = bucketsBySpanName.isEmpty() ? null : bucketsBySpanName.get(name);
+    return (bucket != null ? bucket : defaultBucket).tryAcquire();
+  }
+
+  @Override
+  public String getDescription() {
+    if (spansPerSecondBySpanName.isEmpty()) {
+      return String.format("RateLimitingSampler{%.6f}", spansPerSecond);
+    }
+    return String.format(
+        "RateLimitingSampler{%.6f, %s}", spansPerSecond, spansPerSecondBySpanName);
+  }
+
+  @Override
+  public String toString() {
+    return getDescription();
+  }
+
+  private static final class TokenBucket {
+    private final Clock clock;
+    // The time needed to refill one token, or 0 if no token is ever refilled.
+    private final long nanosPerToken;
+    // The time needed to refill the bucket when it is empty.
+    private final long capacityNanos;
+    // The time at which the bucket is empty.
+    private final AtomicLong emptyAtNanos;
+
+    private TokenBucket(double spansPerSecond, Clock clock) {
+      this.clock = clock;
+      if (spansPerSecond > 0) {
+        this.nanosPerToken = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / spansPerSecond));
+        // Allow bursts of up to one second of budget, and at least one span.
+        this.capacityNanos = Math.max(nanosPerToken, TimeUnit.SECONDS.toNanos(1));
+      } else {
+        this.nanosPerToken = 0;
+        this.capacityNanos = 0;
+      }
+      // The bucket starts full.
+      this.emptyAtNanos = new AtomicLong(clock.nowNanos() - capacityNanos);
+    }
+
+    private boolean tryAcquire() {
+      if (nanosPerToken == 0) {
+        return false;
+      }
+      while (true) {
+        long nowNanos = clock.nowNanos();
+        long emptyAt = emptyAtNanos.get();
+        // A full bucket does not hold more than capacityNanos of tokens.
+        long newEmptyAt = Math.max(emptyAt, nowNanos - capacityNanos) + nanosPerToken;
+        if (newEmptyAt - nowNanos > 0) {
+          return false;
+        }
+        if (emptyAtNanos.compareAndSet(emptyAt, newEmptyAt)) {
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -18,6 +18,8 @@ package io.opencensus.trace.samplers;
 
 import io.opencensus.trace.Sampler;
 import io.opencensus.trace.Span;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Static class to access a set of pre-defined {@link Sampler Samplers}.
@@ -62,4 +64,43 @@ public final class Samplers {
   public static Sampler probabilitySampler(double probability) {
     return ProbabilitySampler.create(probability);
   }
+
+  /**
+   * Returns a {@link Sampler} that samples at most the given number of local root {@link Span
+   * Spans} per second. Spans with a sampled parent are always sampled, spans with a local parent
+   * that is not sampled are never sampled.
+   *
+   * <p>Unlike the {@link #probabilitySampler(double) probability sampler}, the number of sampled
+   * spans does not grow with the traffic. Short bursts of up to one second of budget are allowed.
+   *
+   * @param spansPerSecond the maximum number of sampled root spans per second.
+   * @return a {@code Sampler} that samples at most {@code spansPerSecond} root spans per second.
+   * @throws IllegalArgumentException if {@code spansPerSecond} is negative.
+   * @since 0.29
+   */
+  public static Sampler rateLimitingSampler(double spansPerSecond) {
+    return RateLimitingSampler.create(spansPerSecond, Collections.<String, Double>emptyMap());
+  }
+
+  /**
+   * Returns a {@link Sampler} that samples at most the given number of local root {@link Span
+   * Spans} per second, with separate budgets for some span names.
+   *
+   * <p>Spans whose name is a key of {@code spansPerSecondBySpanName} only consume the budget of
+   * that name, all the other spans share the default budget.
+   *
+   * @param spansPerSecond the maximum number of sampled root spans per second, for the span names
+   *     without a budget.
+   * @param spansPerSecondBySpanName the maximum number of sampled root spans per second, by span
+   *     name.
+   * @return a {@code Sampler} that samples a bounded number of root spans per second.
+   * @throws IllegalArgumentException if a budget is negative.
+   * @throws NullPointerException if {@code spansPerSecondBySpanName}, or one of its keys or values,
+   *     is {@code null}.
+   * @since 0.29
+   */
+  public static Sampler rateLimitingSampler(
+      double spansPerSecond, Map<String, Double> spansPerSecondBySpanName) {
+    return RateLimitingSampler.create(spansPerSecond, spansPerSecondBySpanName);
+  }
 }
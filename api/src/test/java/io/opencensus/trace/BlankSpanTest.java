@@ -46,6 +46,10 @@ public class BlankSpanTest {
     // Tests only that all the methods are not crashing/throwing errors.
     BlankSpan.INSTANCE.putAttribute(
         "MyStringAttributeKey2", AttributeValue.stringAttributeValue("MyStringAttributeValue2"));
+    BlankSpan.INSTANCE.putAttribute("MyStringAttributeKey3", "MyStringAttributeValue3");
+    BlankSpan.INSTANCE.putAttribute("MyLongAttributeKey2", 123L);
+    BlankSpan.INSTANCE.putAttribute("MyDoubleAttributeKey", 1.5);
+    BlankSpan.INSTANCE.putAttribute("MyBooleanAttributeKey2", true);
     BlankSpan.INSTANCE.addAttributes(attributes);
     BlankSpan.INSTANCE.addAttributes(multipleAttributes);
     BlankSpan.INSTANCE.addAnnotation("MyAnnotation");
@@ -19,6 +19,8 @@ package io.opencensus.trace;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.testing.EqualsTester;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,6 +48,23 @@ public class TraceIdTest {
     assertThat(second.isValid()).isTrue();
   }
 
+  @Test
+  public void byteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16 + 2);
+    second.copyBytesTo(buffer, 2);
+    assertThat(buffer.position()).isEqualTo(0);
+    assertThat(buffer.get(2)).isEqualTo((byte) 0xFF);
+    assertThat(TraceId.fromByteBuffer(buffer, 2)).isEqualTo(second);
+  }
+
+  @Test
+  public void byteBuffer_LittleEndian() {
+    ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    second.copyBytesTo(buffer, 0);
+    assertThat(buffer.array()).isEqualTo(secondBytes);
+    assertThat(TraceId.fromByteBuffer(buffer, 0)).isEqualTo(second);
+  }
+
   @Test
   public void getBytes() {
     assertThat(first.getBytes()).isEqualTo(firstBytes);
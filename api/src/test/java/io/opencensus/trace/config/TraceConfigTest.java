@@ -19,6 +19,7 @@ package io.opencensus.trace.config;
 import static com.google.common.truth.Truth.assertThat;
 
 import io.opencensus.trace.samplers.Samplers;
+import java.util.Collections;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -48,4 +49,13 @@ public class TraceConfigTest {
     traceConfig.updateActiveTraceParams(traceParams);
     assertThat(traceConfig.getActiveTraceParams()).isEqualTo(TraceParams.DEFAULT);
   }
+
+  @Test
+  public void updateSpanNameTraceParams_NoOpImplementation() {
+    TraceParams traceParams =
+        TraceParams.DEFAULT.toBuilder().setSampler(Samplers.alwaysSample()).build();
+    traceConfig.updateSpanNameTraceParams(Collections.singletonMap("MySpanName", traceParams));
+    assertThat(traceConfig.getSpanNameTraceParams()).isEmpty();
+    assertThat(traceConfig.getActiveTraceParams("MySpanName")).isEqualTo(TraceParams.DEFAULT);
+  }
 }
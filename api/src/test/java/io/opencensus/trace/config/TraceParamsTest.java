@@ -34,6 +34,7 @@ public class TraceParamsTest {
     assertThat(TraceParams.DEFAULT.getMaxNumberOfNetworkEvents()).isEqualTo(128);
     assertThat(TraceParams.DEFAULT.getMaxNumberOfMessageEvents()).isEqualTo(128);
     assertThat(TraceParams.DEFAULT.getMaxNumberOfLinks()).isEqualTo(32);
+    assertThat(TraceParams.DEFAULT.getRecordEvents()).isFalse();
   }
 
   @Test(expected = NullPointerException.class)
@@ -76,6 +77,7 @@ public class TraceParamsTest {
             .setMaxNumberOfAnnotations(9)
             .setMaxNumberOfMessageEvents(10)
             .setMaxNumberOfLinks(11)
+            .setRecordEvents(true)
             .build();
     assertThat(traceParams.getSampler()).isEqualTo(Samplers.alwaysSample());
     assertThat(traceParams.getMaxNumberOfAttributes()).isEqualTo(8);
@@ -84,6 +86,7 @@ public class TraceParamsTest {
     assertThat(traceParams.getMaxNumberOfNetworkEvents()).isEqualTo(10);
     assertThat(traceParams.getMaxNumberOfMessageEvents()).isEqualTo(10);
     assertThat(traceParams.getMaxNumberOfLinks()).isEqualTo(11);
+    assertThat(traceParams.getRecordEvents()).isTrue();
   }
 
   @Test
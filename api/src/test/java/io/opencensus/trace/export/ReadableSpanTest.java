@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Timestamp;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.Link.Type;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.Span.Kind;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.export.SpanData.Attributes;
+import io.opencensus.trace.export.SpanData.Links;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import io.opencensus.trace.export.SpanData.TimedEvents;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ReadableSpan}. */
+@RunWith(JUnit4.class)
+public class ReadableSpanTest {
+  private static final Timestamp startTimestamp = Timestamp.create(123, 456);
+  private static final Timestamp eventTimestamp = Timestamp.create(123, 457);
+  private static final Timestamp endTimestamp = Timestamp.create(123, 460);
+  private static final Annotation annotation = Annotation.fromDescription("MyAnnotationText");
+  private static final MessageEvent messageEvent =
+      MessageEvent.builder(MessageEvent.Type.SENT, 1).build();
+  private final Random random = new Random(1234);
+  private final SpanContext spanContext =
+      SpanContext.create(
+          TraceId.generateRandomId(random), SpanId.generateRandomId(random), TraceOptions.DEFAULT);
+  private final SpanId parentSpanId = SpanId.generateRandomId(random);
+  private final Link link = Link.fromSpanContext(spanContext, Type.CHILD_LINKED_SPAN);
+  private final SpanData spanData =
+      SpanData.create(
+          spanContext,
+          parentSpanId,
+          true,
+          "MySpanName",
+          Kind.SERVER,
+          startTimestamp,
+          Attributes.create(
+              Collections.singletonMap("MyAttributeKey", AttributeValue.longAttributeValue(10)),
+              1),
+          TimedEvents.create(
+              Collections.singletonList(TimedEvent.create(eventTimestamp, annotation)), 2),
+          TimedEvents.create(
+              Collections.singletonList(TimedEvent.create(eventTimestamp, messageEvent)), 3),
+          Links.create(Collections.singletonList(link), 4),
+          13,
+          Status.DEADLINE_EXCEEDED,
+          endTimestamp);
+
+  @Test
+  public void fromSpanData() {
+    ReadableSpan readableSpan = ReadableSpan.fromSpanData(spanData);
+    assertThat(readableSpan.getContext()).isEqualTo(spanContext);
+    assertThat(readableSpan.getParentSpanId()).isEqualTo(parentSpanId);
+    assertThat(readableSpan.getHasRemoteParent()).isTrue();
+    assertThat(readableSpan.getName()).isEqualTo("MySpanName");
+    assertThat(readableSpan.getKind()).isEqualTo(Kind.SERVER);
+    assertThat(readableSpan.getStartTimestamp()).isEqualTo(startTimestamp);
+    assertThat(readableSpan.getEndTimestamp()).isEqualTo(endTimestamp);
+    assertThat(readableSpan.getStatus()).isEqualTo(Status.DEADLINE_EXCEEDED);
+    assertThat(readableSpan.getChildSpanCount()).isEqualTo(13);
+    assertThat(readableSpan.getDroppedAttributesCount()).isEqualTo(1);
+    assertThat(readableSpan.getDroppedAnnotationsCount()).isEqualTo(2);
+    assertThat(readableSpan.getDroppedMessageEventsCount()).isEqualTo(3);
+    assertThat(readableSpan.getDroppedLinksCount()).isEqualTo(4);
+    assertThat(readableSpan.toSpanData()).isSameInstanceAs(spanData);
+  }
+
+  @Test
+  public void fromSpanData_VisitEvents() {
+    ReadableSpan readableSpan = ReadableSpan.fromSpanData(spanData);
+    final Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+    readableSpan.forEachAttribute(
+        new ReadableSpan.AttributeVisitor() {
+          @Override
+          public void visitAttribute(String key, AttributeValue value) {
+            attributes.put(key, value);
+          }
+        });
+    assertThat(attributes).isEqualTo(spanData.getAttributes().getAttributeMap());
+    final List<Object> events = new ArrayList<Object>();
+    readableSpan.forEachAnnotation(
+        new ReadableSpan.TimedEventVisitor<Annotation>() {
+          @Override
+          public void visitEvent(Timestamp timestamp, Annotation event) {
+            events.add(timestamp);
+            events.add(event);
+          }
+        });
+    readableSpan.forEachMessageEvent(
+        new ReadableSpan.TimedEventVisitor<MessageEvent>() {
+          @Override
+          public void visitEvent(Timestamp timestamp, MessageEvent event) {
+            events.add(timestamp);
+            events.add(event);
+          }
+        });
+    readableSpan.forEachLink(
+        new ReadableSpan.LinkVisitor() {
+          @Override
+          public void visitLink(Link link) {
+            events.add(link);
+          }
+        });
+    assertThat(events)
+        .containsExactly(eventTimestamp, annotation, eventTimestamp, messageEvent, link)
+        .inOrder();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void fromSpanData_NullSpanData() {
+    ReadableSpan.fromSpanData(null);
+  }
+
+  @Test
+  public void handlerExportsSpanDataByDefault() {
+    final List<SpanData> exported = new ArrayList<SpanData>();
+    SpanExporter.Handler handler =
+        new SpanExporter.Handler() {
+          @Override
+          public void export(Collection<SpanData> spanDataList) {
+            exported.addAll(spanDataList);
+          }
+        };
+    handler.exportSpans(Collections.singletonList(ReadableSpan.fromSpanData(spanData)));
+    assertThat(exported).containsExactly(spanData);
+  }
+}
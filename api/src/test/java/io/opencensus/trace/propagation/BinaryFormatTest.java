@@ -19,6 +19,7 @@ package io.opencensus.trace.propagation;
 import static com.google.common.truth.Truth.assertThat;
 
 import io.opencensus.trace.SpanContext;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -68,4 +69,16 @@ public class BinaryFormatTest {
   public void fromByteArray_NotNullInput() throws SpanContextParseException {
     assertThat(binaryFormat.fromByteArray(new byte[0])).isEqualTo(SpanContext.INVALID);
   }
+
+  @Test
+  public void toByteBuffer_NotNullSpanContext() {
+    assertThat(binaryFormat.toByteBuffer(SpanContext.INVALID, ByteBuffer.allocate(0), 0))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void fromByteBuffer_NotNullInput() throws SpanContextParseException {
+    assertThat(binaryFormat.fromByteBuffer(ByteBuffer.allocate(0), 0, 0))
+        .isEqualTo(SpanContext.INVALID);
+  }
 }
@@ -39,6 +39,12 @@ public class PropagationComponentTest {
     assertThat(propagationComponent.getB3Format()).isSameInstanceAs(TextFormat.getNoopTextFormat());
   }
 
+  @Test
+  public void implementationOfB3SingleHeaderFormat() {
+    assertThat(propagationComponent.getB3SingleHeaderFormat())
+        .isSameInstanceAs(TextFormat.getNoopTextFormat());
+  }
+
   @Test
   public void implementationOfTraceContextFormat() {
     assertThat(propagationComponent.getTraceContextFormat())
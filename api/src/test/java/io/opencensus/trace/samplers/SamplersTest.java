@@ -18,6 +18,8 @@ package io.opencensus.trace.samplers;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import io.opencensus.common.Clock;
+import io.opencensus.common.Timestamp;
 import io.opencensus.trace.NoopSpan;
 import io.opencensus.trace.Sampler;
 import io.opencensus.trace.Span;
@@ -30,6 +32,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -278,4 +281,130 @@ public class SamplersTest {
   public void probabilitySampler_ToString() {
     assertThat(Samplers.probabilitySampler(0.5).toString()).contains("0.5");
   }
+
+  private static final class FakeClock extends Clock {
+    private long nowNanos = 1234567890L;
+
+    @Override
+    public Timestamp now() {
+      return Timestamp.fromMillis(TimeUnit.NANOSECONDS.toMillis(nowNanos));
+    }
+
+    @Override
+    public long nowNanos() {
+      return nowNanos;
+    }
+
+    private void advanceMillis(long millis) {
+      nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+  }
+
+  private static boolean sampleRootSpan(Sampler sampler, String name) {
+    return sampler.shouldSample(
+        null, null, TraceId.INVALID, SpanId.INVALID, name, Collections.<Span>emptyList());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rateLimitingSampler_NegativeRate() {
+    Samplers.rateLimitingSampler(-1);
+  }
+
+  @Test
+  public void rateLimitingSampler_LimitsRootSpans() {
+    FakeClock clock = new FakeClock();
+    Sampler sampler =
+        RateLimitingSampler.create(10, Collections.<String, Double>emptyMap(), clock);
+    // The bucket starts with one second of budget.
+    for (int i = 0; i < 10; i++) {
+      assertThat(sampleRootSpan(sampler, SPAN_NAME)).isTrue();
+    }
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isFalse();
+    // One token is refilled every 100ms.
+    clock.advanceMillis(99);
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isFalse();
+    clock.advanceMillis(1);
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isTrue();
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isFalse();
+    // The bucket does not hold more than one second of budget.
+    clock.advanceMillis(10000);
+    int sampled = 0;
+    for (int i = 0; i < NUM_SAMPLE_TRIES; i++) {
+      if (sampleRootSpan(sampler, SPAN_NAME)) {
+        sampled++;
+      }
+    }
+    assertThat(sampled).isEqualTo(10);
+  }
+
+  @Test
+  public void rateLimitingSampler_ZeroRate() {
+    Sampler sampler = Samplers.rateLimitingSampler(0);
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isFalse();
+  }
+
+  @Test
+  public void rateLimitingSampler_KeepsParentDecision() {
+    FakeClock clock = new FakeClock();
+    Sampler sampler = RateLimitingSampler.create(0, Collections.<String, Double>emptyMap(), clock);
+    assertThat(
+            sampler.shouldSample(
+                sampledSpanContext,
+                false,
+                traceId,
+                spanId,
+                SPAN_NAME,
+                Collections.<Span>emptyList()))
+        .isTrue();
+    assertThat(
+            sampler.shouldSample(
+                notSampledSpanContext,
+                false,
+                traceId,
+                spanId,
+                SPAN_NAME,
+                Collections.<Span>singletonList(sampledSpan)))
+        .isTrue();
+    Sampler unlimitedSampler =
+        RateLimitingSampler.create(
+            NUM_SAMPLE_TRIES, Collections.<String, Double>emptyMap(), clock);
+    // A local parent that is not sampled is not sampled.
+    assertThat(
+            unlimitedSampler.shouldSample(
+                notSampledSpanContext,
+                false,
+                traceId,
+                spanId,
+                SPAN_NAME,
+                Collections.<Span>emptyList()))
+        .isFalse();
+    // A remote parent that is not sampled consumes the budget.
+    assertThat(
+            unlimitedSampler.shouldSample(
+                notSampledSpanContext,
+                true,
+                traceId,
+                spanId,
+                SPAN_NAME,
+                Collections.<Span>emptyList()))
+        .isTrue();
+  }
+
+  @Test
+  public void rateLimitingSampler_PerSpanNameBudgets() {
+    FakeClock clock = new FakeClock();
+    Sampler sampler =
+        RateLimitingSampler.create(
+            1, Collections.<String, Double>singletonMap("HealthCheck", 0.0), clock);
+    assertThat(sampleRootSpan(sampler, "HealthCheck")).isFalse();
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isTrue();
+    assertThat(sampleRootSpan(sampler, SPAN_NAME)).isFalse();
+  }
+
+  @Test
+  public void rateLimitingSampler_getDescription() {
+    assertThat(Samplers.rateLimitingSampler(10).getDescription())
+        .isEqualTo(String.format("RateLimitingSampler{%.6f}", 10.0));
+    assertThat(Samplers.rateLimitingSampler(10).toString()).contains("10");
+  }
 }
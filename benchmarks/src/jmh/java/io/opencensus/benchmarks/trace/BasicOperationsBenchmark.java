@@ -19,6 +19,7 @@ package io.opencensus.benchmarks.trace;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.Link;
 import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.Sampler;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.SpanContext;
 import io.opencensus.trace.SpanId;
@@ -33,6 +34,7 @@ import io.opencensus.trace.propagation.TextFormat;
 import io.opencensus.trace.propagation.TextFormat.Getter;
 import io.opencensus.trace.propagation.TextFormat.Setter;
 import io.opencensus.trace.samplers.Samplers;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -42,6 +44,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 
 /** Benchmarks for basic trace operations. */
 @State(org.openjdk.jmh.annotations.Scope.Benchmark)
@@ -60,6 +63,7 @@ public class BasicOperationsBenchmark {
     private Span spanToScope;
     private Span spanToSet;
     private Span spanToEnd;
+    private Sampler rateLimitingSampler;
 
     private Tracer tracer;
     private PropagationComponent propagation;
@@ -78,6 +82,8 @@ public class BasicOperationsBenchmark {
     public void setup() {
       tracer = BenchmarksUtil.getTracer(implementation);
       propagation = BenchmarksUtil.getPropagationComponent(implementation);
+      // With a budget that is never exhausted every decision takes a token from the bucket.
+      rateLimitingSampler = Samplers.rateLimitingSampler(sampled ? 1e9 : 0);
       span =
           tracer
               .spanBuilderWithExplicitParent("TopLevelSpan", null)
@@ -143,6 +149,31 @@ public class BasicOperationsBenchmark {
     return span;
   }
 
+  /** Create a root span sampled by a rate limiting sampler. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Span createRootSpanRateLimited(Data data) {
+    Span span =
+        data.tracer
+            .spanBuilderWithExplicitParent("RootSpan", null)
+            .setRecordEvents(data.recorded)
+            .setSampler(data.rateLimitingSampler)
+            .startSpan();
+    span.end();
+    return span;
+  }
+
+  /** Make a rate limited sampling decision from multiple threads sharing the token bucket. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public boolean rateLimitingSamplerMultiThreaded(Data data) {
+    return data.rateLimitingSampler.shouldSample(
+        null, null, TraceId.INVALID, SpanId.INVALID, "RootSpan", Collections.<Span>emptyList());
+  }
+
   /** Create a child span. */
   @Benchmark
   @BenchmarkMode(Mode.AverageTime)
@@ -16,6 +16,10 @@
 
 package io.opencensus.benchmarks.trace;
 
+import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.implcore.internal.SimpleEventQueue;
+import io.opencensus.implcore.trace.TraceComponentImplBase;
+import io.opencensus.implcore.trace.internal.RandomHandler.SecureRandomHandler;
 import io.opencensus.impllite.trace.TraceComponentImplLite;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.Tracing;
@@ -24,6 +28,13 @@ import io.opencensus.trace.propagation.PropagationComponent;
 /** Util class for Benchmarks. */
 final class BenchmarksUtil {
   private static final TraceComponentImplLite traceComponentImplLite = new TraceComponentImplLite();
+  // Same as impl-lite, but recycles the buffers of the exported spans.
+  private static final TraceComponentImplBase traceComponentImplLiteRecycling =
+      new TraceComponentImplBase(
+          MillisClock.getInstance(),
+          new SecureRandomHandler(),
+          new SimpleEventQueue(),
+          /* recycleSpanBuffers= */ true);
 
   static Tracer getTracer(String implementation) {
     if (implementation.equals("impl")) {
@@ -34,6 +45,8 @@ final class BenchmarksUtil {
       return Tracing.getTracer();
     } else if (implementation.equals("impl-lite")) {
       return traceComponentImplLite.getTracer();
+    } else if (implementation.equals("impl-lite-recycling")) {
+      return traceComponentImplLiteRecycling.getTracer();
     } else {
       throw new RuntimeException("Invalid tracer implementation requested.");
     }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.benchmarks.trace;
+
+import io.opencensus.impl.trace.internal.ThreadLocalRandomHandler;
+import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.implcore.internal.SimpleEventQueue;
+import io.opencensus.implcore.trace.TraceComponentImplBase;
+import io.opencensus.implcore.trace.internal.RandomHandler;
+import io.opencensus.implcore.trace.internal.RandomHandler.SecureRandomHandler;
+import io.opencensus.implcore.trace.internal.RandomHandler.SplitMixRandomHandler;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.Tracer;
+import io.opencensus.trace.samplers.Samplers;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Benchmarks for the {@link RandomHandler} implementations used to generate trace and span ids. */
+@State(Scope.Benchmark)
+public class RandomHandlerBenchmark {
+  private static final String SPAN_NAME = "MySpanName";
+
+  @State(Scope.Benchmark)
+  public static class Data {
+    private RandomHandler randomHandler;
+    private Tracer tracer;
+
+    @Param({"SecureRandom", "ThreadLocalRandom", "SplitMix"})
+    String randomHandlerType;
+
+    @Setup
+    public void setup() {
+      randomHandler = getRandomHandler(randomHandlerType);
+      tracer =
+          new TraceComponentImplBase(
+                  MillisClock.getInstance(), randomHandler, new SimpleEventQueue())
+              .getTracer();
+    }
+  }
+
+  /** This benchmark attempts to measure performance of generating a {@code TraceId}. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public TraceId generateTraceId(Data data) {
+    return TraceId.generateRandomId(data.randomHandler.current());
+  }
+
+  /** This benchmark attempts to measure performance of generating a {@code SpanId}. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SpanId generateSpanId(Data data) {
+    return SpanId.generateRandomId(data.randomHandler.current());
+  }
+
+  /**
+   * This benchmark attempts to measure performance of start/end for a non-sampled root {@code
+   * Span}, which is dominated by the generation of the ids.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Span startEndNonSampledRootSpan(Data data) {
+    Span span =
+        data.tracer
+            .spanBuilderWithExplicitParent(SPAN_NAME, null)
+            .setSampler(Samplers.neverSample())
+            .startSpan();
+    span.end();
+    return span;
+  }
+
+  /**
+   * This benchmark attempts to measure performance of start/end for a non-sampled root {@code
+   * Span} when multiple threads start spans.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public Span startEndNonSampledRootSpanMultiThreaded(Data data) {
+    return startEndNonSampledRootSpan(data);
+  }
+
+  private static RandomHandler getRandomHandler(String randomHandlerType) {
+    if (randomHandlerType.equals("SecureRandom")) {
+      return new SecureRandomHandler();
+    } else if (randomHandlerType.equals("ThreadLocalRandom")) {
+      return new ThreadLocalRandomHandler();
+    } else if (randomHandlerType.equals("SplitMix")) {
+      return new SplitMixRandomHandler();
+    } else {
+      throw new RuntimeException("Invalid random handler requested.");
+    }
+  }
+}
@@ -35,6 +35,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
 
 /** Benchmarks for {@link Span} to record trace events. */
 @State(Scope.Benchmark)
@@ -89,6 +90,30 @@ public class RecordTraceEventsBenchmark {
     return data.span;
   }
 
+  /**
+   * This benchmark attempts to measure performance of adding a string attribute to the span without
+   * creating an {@code AttributeValue}.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Span putStringAttribute(Data data) {
+    data.span.putAttribute(ATTRIBUTE_KEY, ATTRIBUTE_VALUE);
+    return data.span;
+  }
+
+  /**
+   * This benchmark attempts to measure performance of adding a long attribute to the span without
+   * creating an {@code AttributeValue}.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Span putLongAttribute(Data data) {
+    data.span.putAttribute(ATTRIBUTE_KEY, 200L);
+    return data.span;
+  }
+
   /** This benchmark attempts to measure performance of adding an annotation to the span. */
   @Benchmark
   @BenchmarkMode(Mode.SampleTime)
@@ -119,4 +144,52 @@ public class RecordTraceEventsBenchmark {
         Link.fromSpanContext(data.linkedSpan.getContext(), Link.Type.PARENT_LINKED_SPAN));
     return data.span;
   }
+
+  /**
+   * This benchmark attempts to measure performance of adding an attribute to a span shared by
+   * multiple threads.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public Span putAttributeMultiThreaded(Data data) {
+    return putAttribute(data);
+  }
+
+  /**
+   * This benchmark attempts to measure performance of adding an annotation to a span shared by
+   * multiple threads.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public Span addAnnotationMultiThreaded(Data data) {
+    return addAnnotation(data);
+  }
+
+  /**
+   * This benchmark attempts to measure performance of adding a network event to a span shared by
+   * multiple threads.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public Span addMessageEventMultiThreaded(Data data) {
+    return addMessageEvent(data);
+  }
+
+  /**
+   * This benchmark attempts to measure performance of adding a link to a span shared by multiple
+   * threads.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(4)
+  public Span addLinkMultiThreaded(Data data) {
+    return addLink(data);
+  }
 }
@@ -33,17 +33,29 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
-/** Benchmarks for {@link io.opencensus.trace.SpanBuilder} and {@link Span}. */
+/**
+ * Benchmarks for {@link io.opencensus.trace.SpanBuilder} and {@link Span}.
+ *
+ * <p>The {@code impl-lite-recycling} implementation reuses the buffers of the exported spans. Run
+ * with the GC profiler to compare the allocation rates:
+ *
+ * <pre>
+ * ./gradlew -PjmhIncludeSingleClass=StartEndSpanBenchmark -PjmhProfilers=gc \
+ *     :opencensus-benchmarks:jmh
+ * </pre>
+ */
 @State(Scope.Benchmark)
 public class StartEndSpanBenchmark {
   private static final String SPAN_NAME = "MySpanName";
+  private static final String ATTRIBUTE_KEY = "MyAttributeKey";
+  private static final String ANNOTATION_DESCRIPTION = "MyAnnotation";
 
   @State(Scope.Benchmark)
   public static class Data {
     private Tracer tracer;
     private Span rootSpan = BlankSpan.INSTANCE;
 
-    @Param({"impl", "impl-lite"})
+    @Param({"impl", "impl-lite", "impl-lite-recycling"})
     String implementation;
 
     @Setup
@@ -111,6 +123,21 @@ public class StartEndSpanBenchmark {
     return span;
   }
 
+  /**
+   * This benchmark attempts to measure performance of start/end for a sampled root {@code Span}
+   * that records an attribute and an annotation.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Span startEndSampledRootSpanWithEvents(Data data) {
+    Span span = data.tracer.spanBuilder(SPAN_NAME).setSampler(Samplers.alwaysSample()).startSpan();
+    span.putAttribute(ATTRIBUTE_KEY, 200L);
+    span.addAnnotation(ANNOTATION_DESCRIPTION);
+    span.end();
+    return span;
+  }
+
   /**
    * This benchmark attempts to measure performance of start/end for a non-sampled child {@code
    * Span}.
@@ -22,7 +22,6 @@ import com.google.common.annotations.VisibleForTesting;
 import io.opencensus.contrib.http.util.HttpTraceAttributeConstants;
 import io.opencensus.contrib.http.util.HttpTraceUtil;
 import io.opencensus.tags.TagContext;
-import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.MessageEvent;
 import io.opencensus.trace.MessageEvent.Type;
 import io.opencensus.trace.Span;
@@ -62,7 +61,7 @@ abstract class AbstractHttpHandler<Q, P> {
 
   private static void putAttributeIfNotEmptyOrNull(Span span, String key, @Nullable String value) {
     if (value != null && !value.isEmpty()) {
-      span.putAttribute(key, AttributeValue.stringAttributeValue(value));
+      span.putAttribute(key, value);
     }
   }
 
@@ -103,9 +102,7 @@ abstract class AbstractHttpHandler<Q, P> {
 
   void spanEnd(Span span, int httpStatus, @Nullable Throwable error) {
     if (span.getOptions().contains(Options.RECORD_EVENTS)) {
-      span.putAttribute(
-          HttpTraceAttributeConstants.HTTP_STATUS_CODE,
-          AttributeValue.longAttributeValue(httpStatus));
+      span.putAttribute(HttpTraceAttributeConstants.HTTP_STATUS_CODE, (long) httpStatus);
       span.setStatus(HttpTraceUtil.parseResponseStatus(httpStatus, error));
     }
     span.end();
@@ -26,7 +26,6 @@ import io.opencensus.contrib.http.util.HttpTraceAttributeConstants;
 import io.opencensus.contrib.http.util.testing.FakeSpan;
 import io.opencensus.tags.TagContext;
 import io.opencensus.tags.Tags;
-import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.EndSpanOptions;
 import io.opencensus.trace.MessageEvent;
 import io.opencensus.trace.MessageEvent.Type;
@@ -73,7 +72,6 @@ public class AbstractHttpHandlerTest {
   @Mock private HttpExtractor<Object, Object> extractor;
   private AbstractHttpHandler<Object, Object> handler;
   @Captor private ArgumentCaptor<MessageEvent> captor;
-  @Captor private ArgumentCaptor<AttributeValue> attributeCaptor;
   @Captor private ArgumentCaptor<Status> statusCaptor;
   @Captor private ArgumentCaptor<EndSpanOptions> optionsCaptor;
 
@@ -161,9 +159,7 @@ public class AbstractHttpHandlerTest {
   public void handleEndWithRecordEvents() {
     when(extractor.getStatusCode(any(Object.class))).thenReturn(0);
     handler.spanEnd(fakeSpan, 0, error);
-    verify(fakeSpan)
-        .putAttribute(eq(HttpTraceAttributeConstants.HTTP_STATUS_CODE), attributeCaptor.capture());
-    assertThat(attributeCaptor.getValue()).isEqualTo(AttributeValue.longAttributeValue(0));
+    verify(fakeSpan).putAttribute(eq(HttpTraceAttributeConstants.HTTP_STATUS_CODE), eq(0L));
   }
 
   @Test
@@ -173,8 +169,7 @@ public class AbstractHttpHandlerTest {
   }
 
   private void verifyAttributes(String key) {
-    verify(span).putAttribute(eq(key), attributeCaptor.capture());
-    assertThat(attributeCaptor.getValue().toString()).contains(attributeMap.get(key));
+    verify(span).putAttribute(eq(key), eq(attributeMap.get(key)));
   }
 
   @Test
@@ -22,8 +22,9 @@ import static com.google.common.base.Preconditions.checkState;
 
 import io.netty.handler.ssl.SslContext;
 import io.opencensus.common.Duration;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import io.opencensus.metrics.Metrics;
-import io.opencensus.metrics.export.MetricProducerManager;
+import java.io.IOException;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
@@ -59,6 +60,8 @@ public final class OcAgentMetricsExporter {
    * to the OpenCensus library.
    *
    * @param configuration the {@code OcAgentMetricsExporterConfiguration}.
+   * @throws IllegalStateException if the exporter is already created, or its write-ahead log cannot
+   *     be opened.
    * @since 0.20
    */
   public static void createAndRegister(OcAgentMetricsExporterConfiguration configuration) {
@@ -69,7 +72,8 @@ public final class OcAgentMetricsExporter {
         configuration.getSslContext(),
         configuration.getServiceName(),
         configuration.getExportInterval(),
-        configuration.getRetryInterval());
+        configuration.getRetryInterval(),
+        configuration.getWriteAheadLogOptions());
   }
 
   private static void createInternal(
@@ -78,41 +82,33 @@ public final class OcAgentMetricsExporter {
       @Nullable SslContext sslContext,
       String serviceName,
       Duration exportInterval,
-      Duration retryInterval) {
+      Duration retryInterval,
+      @Nullable WriteAheadMetricExporter.Options writeAheadLogOptions) {
     checkArgument(
         useInsecure == (sslContext == null), "Either use insecure or provide a valid SslContext.");
     synchronized (monitor) {
       checkState(exporter == null, "OcAgent Metrics exporter is already created.");
-      exporter =
-          new OcAgentMetricsExporter(
-              endPoint,
-              useInsecure,
-              sslContext,
-              serviceName,
-              exportInterval,
-              retryInterval,
-              Metrics.getExportComponent().getMetricProducerManager());
+      OcAgentMetricsExporterWorker worker;
+      try {
+        worker =
+            new OcAgentMetricsExporterWorker(
+                endPoint,
+                useInsecure,
+                sslContext,
+                exportInterval,
+                retryInterval,
+                serviceName,
+                Metrics.getExportComponent().getMetricProducerManager(),
+                writeAheadLogOptions);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot open the write-ahead log.", e);
+      }
+      exporter = new OcAgentMetricsExporter(worker);
       exporter.workerThread.start();
     }
   }
 
-  private OcAgentMetricsExporter(
-      String endPoint,
-      Boolean useInsecure,
-      @Nullable SslContext sslContext,
-      String serviceName,
-      Duration exportInterval,
-      Duration retryInterval,
-      MetricProducerManager metricProducerManager) {
-    OcAgentMetricsExporterWorker worker =
-        new OcAgentMetricsExporterWorker(
-            endPoint,
-            useInsecure,
-            sslContext,
-            exportInterval,
-            retryInterval,
-            serviceName,
-            metricProducerManager);
+  private OcAgentMetricsExporter(OcAgentMetricsExporterWorker worker) {
     workerThread = new Thread(worker);
     workerThread.setDaemon(true);
     workerThread.setName("OcAgentMetricsExporterWorker");
@@ -21,6 +21,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.netty.handler.ssl.SslContext;
 import io.opencensus.common.Duration;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
@@ -102,6 +103,16 @@ public abstract class OcAgentMetricsExporterConfiguration {
    */
   public abstract Duration getExportInterval();
 
+  /**
+   * Returns the options of the write-ahead log that keeps the metrics that could not be sent to
+   * Agent, to send them once the connection is back. {@code null} if these metrics are dropped.
+   *
+   * @return the options of the write-ahead log, or {@code null}.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract WriteAheadMetricExporter.Options getWriteAheadLogOptions();
+
   /**
    * Returns a new {@link Builder}.
    *
@@ -182,6 +193,17 @@ public abstract class OcAgentMetricsExporterConfiguration {
      */
     public abstract Builder setExportInterval(Duration exportInterval);
 
+    /**
+     * Sets the options of the write-ahead log that keeps the metrics that could not be sent to
+     * Agent. The metrics are sent, in order, once the connection is back, also after a restart.
+     *
+     * @param writeAheadLogOptions the options of the write-ahead log.
+     * @return this.
+     * @since 0.29
+     */
+    public abstract Builder setWriteAheadLogOptions(
+        WriteAheadMetricExporter.Options writeAheadLogOptions);
+
     // TODO(songya): add an option that controls whether to always keep the RPC connection alive.
 
     abstract Duration getRetryInterval();
@@ -23,13 +23,17 @@ import io.grpc.netty.NegotiationType;
 import io.grpc.netty.NettyChannelBuilder;
 import io.netty.handler.ssl.SslContext;
 import io.opencensus.common.Duration;
+import io.opencensus.exporter.metrics.util.MetricExporter;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import io.opencensus.metrics.export.Metric;
 import io.opencensus.metrics.export.MetricProducer;
 import io.opencensus.metrics.export.MetricProducerManager;
 import io.opencensus.proto.agent.metrics.v1.ExportMetricsServiceRequest;
 import io.opencensus.proto.agent.metrics.v1.MetricsServiceGrpc;
 import io.opencensus.proto.resource.v1.Resource;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,6 +45,10 @@ import javax.annotation.concurrent.NotThreadSafe;
  *
  * <p>{@code OcAgentMetricsExporterWorker} will be started in a daemon {@code Thread}.
  *
+ * <p>With a write-ahead log, the metrics that cannot be sent because the export stream is
+ * disconnected are kept in the log, and sent after the stream is connected again. The metrics are
+ * still read every export interval while the worker waits to reconnect.
+ *
  * <p>The state of this class should only be accessed from the thread which {@link
  * OcAgentMetricsExporterWorker} resides in.
  */
@@ -57,6 +65,8 @@ final class OcAgentMetricsExporterWorker implements Runnable {
   private final long retryIntervalMillis;
   private final String serviceName;
   private final MetricProducerManager metricProducerManager;
+  private final MetricExporter metricExporter;
+  private final boolean hasWriteAheadLog;
   private OcAgentMetricsServiceExportRpcHandler exportRpcHandler;
   // private final Set<MetricDescriptor> registeredDescriptors = new HashSet<>();
 
@@ -67,7 +77,9 @@ final class OcAgentMetricsExporterWorker implements Runnable {
       Duration exportInterval,
       Duration retryInterval,
       String serviceName,
-      MetricProducerManager metricProducerManager) {
+      MetricProducerManager metricProducerManager,
+      @Nullable WriteAheadMetricExporter.Options writeAheadLogOptions)
+      throws IOException {
     this.endPoint = endPoint;
     this.useInsecure = useInsecure;
     this.sslContext = sslContext;
@@ -75,6 +87,12 @@ final class OcAgentMetricsExporterWorker implements Runnable {
     this.retryIntervalMillis = retryInterval.toMillis();
     this.serviceName = serviceName;
     this.metricProducerManager = metricProducerManager;
+    MetricExporter rpcExporter = new RpcMetricExporter();
+    this.hasWriteAheadLog = writeAheadLogOptions != null;
+    this.metricExporter =
+        writeAheadLogOptions == null
+            ? rpcExporter
+            : WriteAheadMetricExporter.create(rpcExporter, writeAheadLogOptions);
   }
 
   @Override
@@ -90,7 +108,22 @@ final class OcAgentMetricsExporterWorker implements Runnable {
             new TerminateStatusRunnable(exportRpcHandler.getTerminateStatus(), "Export");
         new Thread(runnable).start();
       }
-      sleep(retryIntervalMillis);
+      sleepBeforeReconnect();
+    }
+  }
+
+  // Waits for the retry interval. With a write-ahead log the metrics are still read every export
+  // interval meanwhile, so that the log keeps them until the stream is connected again.
+  private void sleepBeforeReconnect() {
+    long remainingMillis = retryIntervalMillis;
+    while (remainingMillis > 0) {
+      long millis =
+          hasWriteAheadLog ? Math.min(remainingMillis, exportIntervalMillis) : remainingMillis;
+      sleep(millis);
+      remainingMillis -= millis;
+      if (remainingMillis > 0) {
+        export();
+      }
     }
   }
 
@@ -116,10 +149,10 @@ final class OcAgentMetricsExporterWorker implements Runnable {
     exportRpcHandler.onExport(builder.build());
   }
 
-  // Polls MetricProducerManager from Metrics library for all registered MetricDescriptors,
-  // converts them to proto, then exports them to OC-Agent.
+  // Polls MetricProducerManager from Metrics library for all registered MetricDescriptors, then
+  // exports them to OC-Agent, through the write-ahead log if there is one.
   private void export() {
-    if (exportRpcHandler == null || exportRpcHandler.isCompleted()) {
+    if (!hasWriteAheadLog && (exportRpcHandler == null || exportRpcHandler.isCompleted())) {
       return;
     }
 
@@ -127,23 +160,43 @@ final class OcAgentMetricsExporterWorker implements Runnable {
     for (MetricProducer metricProducer : metricProducerManager.getAllMetricProducer()) {
       metricsList.addAll(metricProducer.getMetrics());
     }
-
-    List<io.opencensus.proto.metrics.v1.Metric> metricProtos = Lists.newArrayList();
-    for (Metric metric : metricsList) {
-      // TODO(songya): determine if we should make the optimization on not sending already-existed
-      // MetricDescriptors.
-      // boolean registered = true;
-      // if (!registeredDescriptors.contains(metric.getMetricDescriptor())) {
-      //   registered = false;
-      //   registeredDescriptors.add(metric.getMetricDescriptor());
-      // }
-      metricProtos.add(MetricsProtoUtils.toMetricProto(metric, null));
+    try {
+      metricExporter.export(metricsList);
+    } catch (RuntimeException e) {
+      // The disconnection itself is logged by the export stream.
+      logger.log(Level.FINE, "Cannot export metrics to OC-Agent.", e);
     }
+  }
 
-    exportRpcHandler.onExport(
-        // For now don't include Resource in the following messages, i.e don't allow Resource to
-        // mutate after the initial message.
-        ExportMetricsServiceRequest.newBuilder().addAllMetrics(metricProtos).build());
+  // Converts the metrics to proto and sends them on the export stream. Throws if the stream is
+  // disconnected, so that the write-ahead log keeps the metrics.
+  private final class RpcMetricExporter extends MetricExporter {
+    @Override
+    public void export(Collection<Metric> metrics) {
+      if (exportRpcHandler == null || exportRpcHandler.isCompleted()) {
+        throw new IllegalStateException("The export stream to OC-Agent is disconnected.");
+      }
+      List<io.opencensus.proto.metrics.v1.Metric> metricProtos = Lists.newArrayList();
+      for (Metric metric : metrics) {
+        // TODO(songya): determine if we should make the optimization on not sending
+        // already-existed MetricDescriptors.
+        // boolean registered = true;
+        // if (!registeredDescriptors.contains(metric.getMetricDescriptor())) {
+        //   registered = false;
+        //   registeredDescriptors.add(metric.getMetricDescriptor());
+        // }
+        metricProtos.add(MetricsProtoUtils.toMetricProto(metric, null));
+      }
+
+      boolean sent =
+          exportRpcHandler.onExport(
+              // For now don't include Resource in the following messages, i.e don't allow
+              // Resource to mutate after the initial message.
+              ExportMetricsServiceRequest.newBuilder().addAllMetrics(metricProtos).build());
+      if (!sent) {
+        throw new IllegalStateException("The export stream to OC-Agent is disconnected.");
+      }
+    }
   }
 
   private static void sleep(long timeInMillis) {
@@ -70,14 +70,17 @@ final class OcAgentMetricsServiceExportRpcHandler {
   }
 
   // Sends the export request to Agent if the stream is still connected, otherwise do nothing.
-  synchronized void onExport(ExportMetricsServiceRequest request) {
+  // Returns false if the request was not sent.
+  synchronized boolean onExport(ExportMetricsServiceRequest request) {
     if (isCompleted() || exportRequestObserver == null) {
-      return;
+      return false;
     }
     try {
       exportRequestObserver.onNext(request);
+      return true;
     } catch (Exception e) { // Catch client side exceptions.
       onComplete(e);
+      return false;
     }
   }
 
@@ -72,7 +72,7 @@ public class OcAgentMetricsServiceExportRpcHandlerTest {
         OcAgentMetricsServiceExportRpcHandler.create(getStub(serverName));
     ExportMetricsServiceRequest request =
         ExportMetricsServiceRequest.newBuilder().setNode(NODE).build();
-    exportRpcHandler.onExport(request);
+    assertThat(exportRpcHandler.onExport(request)).isTrue();
     assertThat(traceServiceGrpc.getExportMetricsServiceRequests()).containsExactly(request);
   }
 
@@ -85,6 +85,17 @@ public class OcAgentMetricsServiceExportRpcHandlerTest {
     assertThat(exportRpcHandler.getTerminateStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
   }
 
+  @Test
+  public void export_NotSentAfterComplete() {
+    OcAgentMetricsServiceExportRpcHandler exportRpcHandler =
+        OcAgentMetricsServiceExportRpcHandler.create(getStub(serverName));
+    exportRpcHandler.onComplete(null);
+    ExportMetricsServiceRequest request =
+        ExportMetricsServiceRequest.newBuilder().setNode(NODE).build();
+    assertThat(exportRpcHandler.onExport(request)).isFalse();
+    assertThat(traceServiceGrpc.getExportMetricsServiceRequests()).isEmpty();
+  }
+
   @Test
   public void export_Complete_Interrupted() {
     OcAgentMetricsServiceExportRpcHandler exportRpcHandler =
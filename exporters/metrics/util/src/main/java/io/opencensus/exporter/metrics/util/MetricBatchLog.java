@@ -0,0 +1,509 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A persistent FIFO log of encoded metric batches, stored in memory-mapped segment files.
+ *
+ * <p>Every record holds its length, the CRC32 of its content, the time it was appended and the
+ * batch. The length is written last, so a record that was not completely written is ignored after
+ * a crash. When the segments reach {@code maxBytes} the oldest segment is evicted, with the batches
+ * it holds, to make room for the new ones.
+ *
+ * <p>The position of the oldest batch is persisted in a separate offsets file every time a batch is
+ * removed. A directory can only be used by one log at a time, which is enforced with a file lock.
+ */
+@ThreadSafe
+final class MetricBatchLog {
+  private static final Logger logger = Logger.getLogger(MetricBatchLog.class.getName());
+
+  private static final String OFFSETS_FILE_NAME = "offsets";
+  private static final String SEGMENT_FILE_PREFIX = "segment-";
+  // The length, the CRC32 and the append time of the record.
+  private static final int RECORD_HEADER_SIZE = 16;
+  // The read segment, the read position and the CRC32 of both.
+  private static final int OFFSETS_SIZE = 16;
+  private static final int MIN_SEGMENT_SIZE = 4096;
+
+  private final File directory;
+  private final int segmentSize;
+  private final long maxSegments;
+  private final RandomAccessFile offsetsFile;
+  private final FileLock lock;
+  private final MappedByteBuffer offsets;
+  private final CRC32 crc32 = new CRC32();
+
+  // The position of the buffer is the write position.
+  @GuardedBy("this")
+  private MappedByteBuffer writeBuffer;
+
+  @GuardedBy("this")
+  private long writeSegment;
+
+  // The oldest segment, the segments before it are deleted. Null if it is not mapped yet.
+  @GuardedBy("this")
+  @Nullable
+  private MappedByteBuffer readBuffer;
+
+  @GuardedBy("this")
+  private long readSegment;
+
+  @GuardedBy("this")
+  private int readPosition;
+
+  @GuardedBy("this")
+  private long pendingBatches;
+
+  @GuardedBy("this")
+  private long droppedBatches;
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  /**
+   * Opens the log stored in the given directory, or creates it.
+   *
+   * @param directory the directory of the segment files.
+   * @param segmentSize the size of each segment file, in bytes.
+   * @param maxBytes the maximum size of the segment files, in bytes. At least two segments.
+   * @return the opened {@code MetricBatchLog}.
+   * @throws IOException if the directory cannot be created, is used by another log, or the segment
+   *     files cannot be mapped.
+   */
+  static MetricBatchLog open(File directory, int segmentSize, long maxBytes) throws IOException {
+    checkNotNull(directory, "directory");
+    checkArgument(segmentSize >= MIN_SEGMENT_SIZE, "segmentSize is too small.");
+    checkArgument(maxBytes >= 2L * segmentSize, "maxBytes must hold at least two segments.");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the directory " + directory);
+    }
+    RandomAccessFile offsetsFile =
+        new RandomAccessFile(new File(directory, OFFSETS_FILE_NAME), "rw");
+    try {
+      FileLock lock;
+      try {
+        lock = offsetsFile.getChannel().tryLock();
+      } catch (OverlappingFileLockException e) {
+        lock = null;
+      }
+      if (lock == null) {
+        throw new IOException("The directory " + directory + " is used by another log.");
+      }
+      MappedByteBuffer offsets =
+          offsetsFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, OFFSETS_SIZE);
+      return new MetricBatchLog(directory, segmentSize, maxBytes, offsetsFile, lock, offsets);
+    } catch (IOException e) {
+      offsetsFile.close();
+      throw e;
+    } catch (RuntimeException e) {
+      offsetsFile.close();
+      throw e;
+    }
+  }
+
+  private MetricBatchLog(
+      File directory,
+      int segmentSize,
+      long maxBytes,
+      RandomAccessFile offsetsFile,
+      FileLock lock,
+      MappedByteBuffer offsets)
+      throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxBytes / segmentSize;
+    this.offsetsFile = offsetsFile;
+    this.lock = lock;
+    this.offsets = offsets;
+    synchronized (this) {
+      recover();
+    }
+  }
+
+  @GuardedBy("this")
+  private void recover() throws IOException {
+    List<Long> segments = listSegments();
+    long committedSegment = offsets.getLong(0);
+    int committedPosition = offsets.getInt(8);
+    if (segments.isEmpty()) {
+      readSegment = 0;
+      readPosition = 0;
+    } else if (offsets.getInt(12) == offsetsChecksum(committedSegment, committedPosition)
+        && segments.contains(committedSegment)) {
+      readSegment = committedSegment;
+      readPosition = committedPosition;
+    } else {
+      // Missing or torn offsets, keep all the batches.
+      readSegment = segments.get(0);
+      readPosition = 0;
+    }
+    for (Long segment : segments) {
+      if (segment < readSegment) {
+        deleteSegment(segment);
+      }
+    }
+    writeSegment = segments.isEmpty() ? readSegment : segments.get(segments.size() - 1);
+    writeBuffer = mapSegment(writeSegment);
+    writeBuffer.position(findEndOfRecords(writeBuffer));
+    if (readSegment == writeSegment) {
+      readPosition = Math.min(readPosition, writeBuffer.position());
+    }
+    for (long segment = readSegment; segment <= writeSegment; segment++) {
+      ByteBuffer buffer = segment == writeSegment ? writeBuffer : mapSegment(segment);
+      pendingBatches +=
+          countRecords(
+              buffer,
+              segment == readSegment ? readPosition : 0,
+              segment == writeSegment ? writeBuffer.position() : segmentSize);
+    }
+  }
+
+  /**
+   * Appends a batch to the log, evicting the oldest segment if the log is full.
+   *
+   * @param batch the encoded batch.
+   * @param timeMillis the time the batch was read, in milliseconds since the epoch.
+   * @return {@code false} if the batch could not be appended, because the log is closed, the batch
+   *     does not fit in a segment, or a segment file could not be created.
+   */
+  synchronized boolean append(byte[] batch, long timeMillis) {
+    int recordSize = RECORD_HEADER_SIZE + batch.length;
+    if (closed || recordSize > segmentSize) {
+      return false;
+    }
+    if (writeBuffer.remaining() < recordSize) {
+      if (writeSegment - readSegment + 1 >= maxSegments) {
+        evictOldestSegment();
+      }
+      try {
+        rotate();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot create a new segment in " + directory, e);
+        return false;
+      }
+    }
+    int position = writeBuffer.position();
+    crc32.reset();
+    ByteBuffer time = ByteBuffer.allocate(8);
+    time.putLong(0, timeMillis);
+    crc32.update(time.array(), 0, 8);
+    crc32.update(batch, 0, batch.length);
+    writeBuffer.putLong(position + 8, timeMillis);
+    writeBuffer.position(position + RECORD_HEADER_SIZE);
+    writeBuffer.put(batch);
+    if (writeBuffer.remaining() >= 4) {
+      // Marks the end of the records, in case the segment holds older data after a crash.
+      writeBuffer.putInt(writeBuffer.position(), 0);
+    }
+    writeBuffer.putInt(position + 4, (int) crc32.getValue());
+    // Publishes the record.
+    writeBuffer.putInt(position, batch.length);
+    pendingBatches++;
+    return true;
+  }
+
+  /**
+   * Returns the oldest batch of the log, or {@code null} if the log is empty. The corrupted batches
+   * are skipped and counted as dropped.
+   *
+   * @return the oldest batch of the log, or {@code null} if the log is empty.
+   */
+  @Nullable
+  synchronized ByteBuffer peek() {
+    while (!closed && pendingBatches > 0) {
+      ByteBuffer buffer = getReadBuffer();
+      int limit = readSegment == writeSegment ? writeBuffer.position() : segmentSize;
+      int length = getRecordLength(buffer, readPosition, limit);
+      if (length <= 0) {
+        nextReadSegment();
+        continue;
+      }
+      ByteBuffer record = checkNotNull(buffer).duplicate();
+      record.limit(readPosition + RECORD_HEADER_SIZE + length);
+      record.position(readPosition + 8);
+      crc32.reset();
+      for (int i = record.position(); i < record.limit(); i++) {
+        crc32.update(record.get(i));
+      }
+      if ((int) crc32.getValue() != buffer.getInt(readPosition + 4)) {
+        logger.log(Level.WARNING, "Dropping a corrupted batch in segment " + readSegment);
+        remove();
+        droppedBatches++;
+        continue;
+      }
+      record.position(readPosition + RECORD_HEADER_SIZE);
+      return record.slice();
+    }
+    return null;
+  }
+
+  /** Removes the oldest batch of the log, and persists the new position of the oldest batch. */
+  synchronized void remove() {
+    if (closed || pendingBatches == 0) {
+      return;
+    }
+    ByteBuffer buffer = getReadBuffer();
+    int limit = readSegment == writeSegment ? writeBuffer.position() : segmentSize;
+    int length = getRecordLength(buffer, readPosition, limit);
+    if (length <= 0) {
+      nextReadSegment();
+      remove();
+      return;
+    }
+    readPosition += RECORD_HEADER_SIZE + length;
+    pendingBatches--;
+    if (readSegment != writeSegment && getRecordLength(buffer, readPosition, limit) <= 0) {
+      nextReadSegment();
+    }
+    commit();
+  }
+
+  /**
+   * Returns the number of batches in the log.
+   *
+   * @return the number of batches in the log.
+   */
+  synchronized long getPendingBatches() {
+    return pendingBatches;
+  }
+
+  /**
+   * Returns the approximate size of the batches in the log, in bytes.
+   *
+   * @return the approximate size of the batches in the log, in bytes.
+   */
+  synchronized long getPendingBytes() {
+    if (pendingBatches == 0) {
+      return 0;
+    }
+    return (writeSegment - readSegment) * segmentSize + writeBuffer.position() - readPosition;
+  }
+
+  /**
+   * Returns the time the oldest batch was appended, or {@code -1} if the log is empty.
+   *
+   * @return the time the oldest batch was appended, or {@code -1} if the log is empty.
+   */
+  synchronized long getOldestBatchTimeMillis() {
+    if (closed || pendingBatches == 0) {
+      return -1;
+    }
+    ByteBuffer buffer = getReadBuffer();
+    int limit = readSegment == writeSegment ? writeBuffer.position() : segmentSize;
+    if (getRecordLength(buffer, readPosition, limit) <= 0) {
+      return -1;
+    }
+    return checkNotNull(buffer).getLong(readPosition + 8);
+  }
+
+  /**
+   * Returns the number of batches evicted, or dropped because they were corrupted.
+   *
+   * @return the number of batches evicted, or dropped because they were corrupted.
+   */
+  synchronized long getDroppedBatches() {
+    return droppedBatches;
+  }
+
+  /** Flushes the segment files and releases the directory. */
+  synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    writeBuffer.force();
+    offsets.force();
+    try {
+      lock.release();
+      offsetsFile.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot close the offsets file in " + directory, e);
+    }
+  }
+
+  @GuardedBy("this")
+  private void evictOldestSegment() {
+    ByteBuffer buffer = getReadBuffer();
+    long evicted = buffer == null ? 0 : countRecords(buffer, readPosition, segmentSize);
+    logger.log(
+        Level.WARNING, "Evicting " + evicted + " unexported metric batches from " + directory);
+    pendingBatches -= evicted;
+    droppedBatches += evicted;
+    nextReadSegment();
+    commit();
+  }
+
+  @GuardedBy("this")
+  private void commit() {
+    offsets.putLong(0, readSegment);
+    offsets.putInt(8, readPosition);
+    offsets.putInt(12, offsetsChecksum(readSegment, readPosition));
+  }
+
+  @GuardedBy("this")
+  private void rotate() throws IOException {
+    MappedByteBuffer newWriteBuffer = mapSegment(writeSegment + 1);
+    writeBuffer.force();
+    if (readSegment == writeSegment) {
+      readBuffer = writeBuffer;
+    }
+    writeBuffer = newWriteBuffer;
+    writeSegment++;
+  }
+
+  // Returns null if the read segment cannot be mapped.
+  @GuardedBy("this")
+  @Nullable
+  private ByteBuffer getReadBuffer() {
+    if (readSegment == writeSegment) {
+      return writeBuffer;
+    }
+    if (readBuffer == null) {
+      try {
+        readBuffer = mapSegment(readSegment);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot read segment " + readSegment + " in " + directory, e);
+      }
+    }
+    return readBuffer;
+  }
+
+  // Moves to the next segment and deletes the previous one. Never called on the last segment.
+  @GuardedBy("this")
+  private void nextReadSegment() {
+    if (readSegment == writeSegment) {
+      // Not expected, the batch counter is out of sync with the segments.
+      pendingBatches = 0;
+      return;
+    }
+    deleteSegment(readSegment);
+    readSegment++;
+    readPosition = 0;
+    readBuffer = null;
+  }
+
+  // Returns the length of the record at the given position, or 0 if there is no valid record.
+  private static int getRecordLength(@Nullable ByteBuffer segment, int position, int limit) {
+    if (segment == null || position + RECORD_HEADER_SIZE > limit) {
+      return 0;
+    }
+    int length = segment.getInt(position);
+    if (length <= 0 || position + RECORD_HEADER_SIZE + length > limit) {
+      return 0;
+    }
+    return length;
+  }
+
+  private static long countRecords(ByteBuffer segment, int from, int limit) {
+    long count = 0;
+    int position = from;
+    int length;
+    while ((length = getRecordLength(segment, position, limit)) > 0) {
+      count++;
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return count;
+  }
+
+  // Returns the position after the last complete record of the segment.
+  private int findEndOfRecords(ByteBuffer segment) {
+    int position = 0;
+    int length;
+    while ((length = getRecordLength(segment, position, segmentSize)) > 0) {
+      crc32.reset();
+      for (int i = position + 8; i < position + RECORD_HEADER_SIZE + length; i++) {
+        crc32.update(segment.get(i));
+      }
+      if ((int) crc32.getValue() != segment.getInt(position + 4)) {
+        break;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  private MappedByteBuffer mapSegment(long segment) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(getSegmentFile(segment), "rw");
+    try {
+      // The mapping stays valid after the file is closed.
+      return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    } finally {
+      file.close();
+    }
+  }
+
+  private void deleteSegment(long segment) {
+    File file = getSegmentFile(segment);
+    if (file.exists() && !file.delete()) {
+      logger.log(Level.WARNING, "Cannot delete " + file);
+    }
+  }
+
+  private File getSegmentFile(long segment) {
+    return new File(directory, String.format(Locale.ROOT, "%s%019d", SEGMENT_FILE_PREFIX, segment));
+  }
+
+  // Returns the ids of the segment files, in increasing order.
+  private List<Long> listSegments() throws IOException {
+    String[] names = directory.list();
+    if (names == null) {
+      throw new IOException("Cannot list the directory " + directory);
+    }
+    List<Long> segments = new ArrayList<Long>();
+    for (String name : names) {
+      if (name.startsWith(SEGMENT_FILE_PREFIX)) {
+        try {
+          segments.add(Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length())));
+        } catch (NumberFormatException e) {
+          // Not a segment file.
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private int offsetsChecksum(long segment, int position) {
+    ByteBuffer buffer = ByteBuffer.allocate(12);
+    buffer.putLong(segment).putInt(position);
+    crc32.reset();
+    crc32.update(buffer.array(), 0, buffer.capacity());
+    return (int) crc32.getValue();
+  }
+}
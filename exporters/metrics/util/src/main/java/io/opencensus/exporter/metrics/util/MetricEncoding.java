@@ -0,0 +1,393 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import io.opencensus.common.Function;
+import io.opencensus.common.Functions;
+import io.opencensus.common.Timestamp;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.data.AttachmentValue;
+import io.opencensus.metrics.data.AttachmentValue.AttachmentValueString;
+import io.opencensus.metrics.data.Exemplar;
+import io.opencensus.metrics.export.Distribution;
+import io.opencensus.metrics.export.Distribution.Bucket;
+import io.opencensus.metrics.export.Distribution.BucketOptions;
+import io.opencensus.metrics.export.Distribution.BucketOptions.ExplicitOptions;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricDescriptor;
+import io.opencensus.metrics.export.Point;
+import io.opencensus.metrics.export.Summary;
+import io.opencensus.metrics.export.Summary.Snapshot;
+import io.opencensus.metrics.export.Summary.Snapshot.ValueAtPercentile;
+import io.opencensus.metrics.export.TimeSeries;
+import io.opencensus.metrics.export.Value;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Binary encoding of batches of {@link Metric}s, used to store the batches that were not exported
+ * yet.
+ *
+ * <p>The encoding starts with a version byte, followed by the metrics. Strings are stored as their
+ * UTF-8 length and bytes, nullable fields are preceded by a presence byte. The attachments of the
+ * exemplars are restored as {@link AttachmentValueString}s.
+ */
+final class MetricEncoding {
+  private static final byte VERSION = 0;
+
+  private static final byte VALUE_DOUBLE = 0;
+  private static final byte VALUE_LONG = 1;
+  private static final byte VALUE_DISTRIBUTION = 2;
+  private static final byte VALUE_SUMMARY = 3;
+
+  private static final MetricDescriptor.Type[] TYPES = MetricDescriptor.Type.values();
+
+  private MetricEncoding() {}
+
+  /**
+   * Encodes the given batch of metrics.
+   *
+   * @param metrics the metrics to encode.
+   * @return the encoded metrics.
+   * @throws IllegalArgumentException if a metric holds a value of an unknown type.
+   */
+  static byte[] encode(Collection<Metric> metrics) {
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeByte(VERSION);
+    out.writeInt(metrics.size());
+    for (Metric metric : metrics) {
+      writeMetric(out, metric);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes a batch of metrics encoded with {@link #encode(Collection)}.
+   *
+   * @param src the encoded metrics.
+   * @return the decoded metrics.
+   * @throws IllegalArgumentException if the metrics are malformed or were encoded with an unknown
+   *     version.
+   * @throws java.nio.BufferUnderflowException if the metrics are truncated.
+   */
+  static List<Metric> decode(ByteBuffer src) {
+    byte version = src.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported metric encoding version " + version);
+    }
+    int size = readSize(src);
+    List<Metric> metrics = new ArrayList<Metric>(size);
+    for (int i = 0; i < size; i++) {
+      metrics.add(readMetric(src));
+    }
+    return metrics;
+  }
+
+  private static void writeMetric(ByteArrayDataOutput out, Metric metric) {
+    MetricDescriptor descriptor = metric.getMetricDescriptor();
+    writeString(out, descriptor.getName());
+    writeString(out, descriptor.getDescription());
+    writeString(out, descriptor.getUnit());
+    out.writeByte(descriptor.getType().ordinal());
+    out.writeInt(descriptor.getLabelKeys().size());
+    for (LabelKey labelKey : descriptor.getLabelKeys()) {
+      writeString(out, labelKey.getKey());
+      writeString(out, labelKey.getDescription());
+    }
+    out.writeInt(metric.getTimeSeriesList().size());
+    for (TimeSeries timeSeries : metric.getTimeSeriesList()) {
+      out.writeInt(timeSeries.getLabelValues().size());
+      for (LabelValue labelValue : timeSeries.getLabelValues()) {
+        writeNullableString(out, labelValue.getValue());
+      }
+      out.writeInt(timeSeries.getPoints().size());
+      for (Point point : timeSeries.getPoints()) {
+        writeValue(out, point.getValue());
+        writeTimestamp(out, point.getTimestamp());
+      }
+      Timestamp startTimestamp = timeSeries.getStartTimestamp();
+      out.writeBoolean(startTimestamp != null);
+      if (startTimestamp != null) {
+        writeTimestamp(out, startTimestamp);
+      }
+    }
+  }
+
+  private static Metric readMetric(ByteBuffer src) {
+    String name = readString(src);
+    String description = readString(src);
+    String unit = readString(src);
+    int type = src.get();
+    if (type < 0 || type >= TYPES.length) {
+      throw new IllegalArgumentException("Unknown metric type " + type);
+    }
+    int labelKeysSize = readSize(src);
+    List<LabelKey> labelKeys = new ArrayList<LabelKey>(labelKeysSize);
+    for (int i = 0; i < labelKeysSize; i++) {
+      labelKeys.add(LabelKey.create(readString(src), readString(src)));
+    }
+    int timeSeriesSize = readSize(src);
+    List<TimeSeries> timeSeriesList = new ArrayList<TimeSeries>(timeSeriesSize);
+    for (int i = 0; i < timeSeriesSize; i++) {
+      int labelValuesSize = readSize(src);
+      List<LabelValue> labelValues = new ArrayList<LabelValue>(labelValuesSize);
+      for (int j = 0; j < labelValuesSize; j++) {
+        labelValues.add(LabelValue.create(readNullableString(src)));
+      }
+      int pointsSize = readSize(src);
+      List<Point> points = new ArrayList<Point>(pointsSize);
+      for (int j = 0; j < pointsSize; j++) {
+        Value value = readValue(src);
+        points.add(Point.create(value, readTimestamp(src)));
+      }
+      Timestamp startTimestamp = src.get() != 0 ? readTimestamp(src) : null;
+      timeSeriesList.add(TimeSeries.create(labelValues, points, startTimestamp));
+    }
+    return Metric.create(
+        MetricDescriptor.create(name, description, unit, TYPES[type], labelKeys), timeSeriesList);
+  }
+
+  private static void writeValue(final ByteArrayDataOutput out, Value value) {
+    value.match(
+        new Function<Double, Void>() {
+          @Override
+          public Void apply(Double doubleValue) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(doubleValue);
+            return null;
+          }
+        },
+        new Function<Long, Void>() {
+          @Override
+          public Void apply(Long longValue) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(longValue);
+            return null;
+          }
+        },
+        new Function<Distribution, Void>() {
+          @Override
+          public Void apply(Distribution distribution) {
+            out.writeByte(VALUE_DISTRIBUTION);
+            writeDistribution(out, distribution);
+            return null;
+          }
+        },
+        new Function<Summary, Void>() {
+          @Override
+          public Void apply(Summary summary) {
+            out.writeByte(VALUE_SUMMARY);
+            writeSummary(out, summary);
+            return null;
+          }
+        },
+        Functions.<Void>throwIllegalArgumentException());
+  }
+
+  private static Value readValue(ByteBuffer src) {
+    byte tag = src.get();
+    switch (tag) {
+      case VALUE_DOUBLE:
+        return Value.doubleValue(src.getDouble());
+      case VALUE_LONG:
+        return Value.longValue(src.getLong());
+      case VALUE_DISTRIBUTION:
+        return Value.distributionValue(readDistribution(src));
+      case VALUE_SUMMARY:
+        return Value.summaryValue(readSummary(src));
+      default:
+        throw new IllegalArgumentException("Unknown value type " + tag);
+    }
+  }
+
+  private static void writeDistribution(ByteArrayDataOutput out, Distribution distribution) {
+    out.writeLong(distribution.getCount());
+    out.writeDouble(distribution.getSum());
+    out.writeDouble(distribution.getSumOfSquaredDeviations());
+    List<Double> bucketBoundaries =
+        distribution
+            .getBucketOptions()
+            .match(
+                new Function<ExplicitOptions, List<Double>>() {
+                  @Override
+                  public List<Double> apply(ExplicitOptions explicitOptions) {
+                    return explicitOptions.getBucketBoundaries();
+                  }
+                },
+                Functions.<List<Double>>throwIllegalArgumentException());
+    out.writeInt(bucketBoundaries.size());
+    for (Double bucketBoundary : bucketBoundaries) {
+      out.writeDouble(bucketBoundary);
+    }
+    out.writeInt(distribution.getBuckets().size());
+    for (Bucket bucket : distribution.getBuckets()) {
+      out.writeLong(bucket.getCount());
+      Exemplar exemplar = bucket.getExemplar();
+      out.writeBoolean(exemplar != null);
+      if (exemplar != null) {
+        out.writeDouble(exemplar.getValue());
+        writeTimestamp(out, exemplar.getTimestamp());
+        out.writeInt(exemplar.getAttachments().size());
+        for (Map.Entry<String, AttachmentValue> attachment :
+            exemplar.getAttachments().entrySet()) {
+          writeString(out, attachment.getKey());
+          writeString(out, attachment.getValue().getValue());
+        }
+      }
+    }
+  }
+
+  private static Distribution readDistribution(ByteBuffer src) {
+    long count = src.getLong();
+    double sum = src.getDouble();
+    double sumOfSquaredDeviations = src.getDouble();
+    int bucketBoundariesSize = readSize(src);
+    List<Double> bucketBoundaries = new ArrayList<Double>(bucketBoundariesSize);
+    for (int i = 0; i < bucketBoundariesSize; i++) {
+      bucketBoundaries.add(src.getDouble());
+    }
+    int bucketsSize = readSize(src);
+    List<Bucket> buckets = new ArrayList<Bucket>(bucketsSize);
+    for (int i = 0; i < bucketsSize; i++) {
+      long bucketCount = src.getLong();
+      if (src.get() == 0) {
+        buckets.add(Bucket.create(bucketCount));
+        continue;
+      }
+      double value = src.getDouble();
+      Timestamp timestamp = readTimestamp(src);
+      int attachmentsSize = readSize(src);
+      Map<String, AttachmentValue> attachments = new HashMap<String, AttachmentValue>();
+      for (int j = 0; j < attachmentsSize; j++) {
+        attachments.put(readString(src), AttachmentValueString.create(readString(src)));
+      }
+      buckets.add(Bucket.create(bucketCount, Exemplar.create(value, timestamp, attachments)));
+    }
+    return Distribution.create(
+        count,
+        sum,
+        sumOfSquaredDeviations,
+        BucketOptions.explicitOptions(bucketBoundaries),
+        buckets);
+  }
+
+  private static void writeSummary(ByteArrayDataOutput out, Summary summary) {
+    writeNullableLong(out, summary.getCount());
+    writeNullableDouble(out, summary.getSum());
+    Snapshot snapshot = summary.getSnapshot();
+    writeNullableLong(out, snapshot.getCount());
+    writeNullableDouble(out, snapshot.getSum());
+    out.writeInt(snapshot.getValueAtPercentiles().size());
+    for (ValueAtPercentile valueAtPercentile : snapshot.getValueAtPercentiles()) {
+      out.writeDouble(valueAtPercentile.getPercentile());
+      out.writeDouble(valueAtPercentile.getValue());
+    }
+  }
+
+  private static Summary readSummary(ByteBuffer src) {
+    Long count = readNullableLong(src);
+    Double sum = readNullableDouble(src);
+    Long snapshotCount = readNullableLong(src);
+    Double snapshotSum = readNullableDouble(src);
+    int valueAtPercentilesSize = readSize(src);
+    List<ValueAtPercentile> valueAtPercentiles =
+        new ArrayList<ValueAtPercentile>(valueAtPercentilesSize);
+    for (int i = 0; i < valueAtPercentilesSize; i++) {
+      valueAtPercentiles.add(ValueAtPercentile.create(src.getDouble(), src.getDouble()));
+    }
+    return Summary.create(
+        count, sum, Snapshot.create(snapshotCount, snapshotSum, valueAtPercentiles));
+  }
+
+  private static void writeTimestamp(ByteArrayDataOutput out, Timestamp timestamp) {
+    out.writeLong(timestamp.getSeconds());
+    out.writeInt(timestamp.getNanos());
+  }
+
+  private static Timestamp readTimestamp(ByteBuffer src) {
+    return Timestamp.create(src.getLong(), src.getInt());
+  }
+
+  private static void writeNullableLong(ByteArrayDataOutput out, @Nullable Long value) {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  @Nullable
+  private static Long readNullableLong(ByteBuffer src) {
+    return src.get() != 0 ? src.getLong() : null;
+  }
+
+  private static void writeNullableDouble(ByteArrayDataOutput out, @Nullable Double value) {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeDouble(value);
+    }
+  }
+
+  @Nullable
+  private static Double readNullableDouble(ByteBuffer src) {
+    return src.get() != 0 ? src.getDouble() : null;
+  }
+
+  private static void writeString(ByteArrayDataOutput out, String value) {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer src) {
+    int length = readSize(src);
+    if (length > src.remaining()) {
+      throw new IllegalArgumentException("Invalid string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    src.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static void writeNullableString(ByteArrayDataOutput out, @Nullable String value) {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      writeString(out, value);
+    }
+  }
+
+  @Nullable
+  private static String readNullableString(ByteBuffer src) {
+    return src.get() != 0 ? readString(src) : null;
+  }
+
+  private static int readSize(ByteBuffer src) {
+    int size = src.getInt();
+    if (size < 0) {
+      throw new IllegalArgumentException("Invalid size " + size);
+    }
+    return size;
+  }
+}
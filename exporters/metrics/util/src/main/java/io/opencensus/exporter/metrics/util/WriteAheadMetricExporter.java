@@ -0,0 +1,359 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.Metrics;
+import io.opencensus.metrics.export.Metric;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link MetricExporter} that writes every batch of metrics to a local, bounded, memory-mapped
+ * log before handing it to another {@code MetricExporter}, and keeps the batches that failed to be
+ * exported to retry them, in order, on the next exports.
+ *
+ * <p>A batch is exported when the wrapped {@code MetricExporter} returns normally, and is retried
+ * when it throws a {@link RuntimeException}, which is then rethrown to the caller. Exporters that
+ * only log their errors are never retried. The Stackdriver and OC-Agent exporters throw on the
+ * errors that can go away, such as an unavailable backend, and can be configured with a write-ahead
+ * log.
+ *
+ * <p>The batches left in the log when the process stops are exported by the next {@code
+ * WriteAheadMetricExporter} opened on the same directory. When the log is full the oldest batches
+ * are evicted.
+ *
+ * <p>The size and age of the backlog are reported as metrics, labelled with the directory of the
+ * log.
+ *
+ * @since 0.29
+ */
+@ThreadSafe
+public final class WriteAheadMetricExporter extends MetricExporter {
+  private static final Logger logger = Logger.getLogger(WriteAheadMetricExporter.class.getName());
+
+  @VisibleForTesting static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  @VisibleForTesting static final int DEFAULT_MAX_BATCHES_PER_EXPORT = 16;
+  // The size of the segment files of the log.
+  @VisibleForTesting static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private static final List<LabelKey> LABEL_KEYS =
+      Collections.singletonList(LabelKey.create("directory", "The directory of the log."));
+  private static final DerivedLongGauge backlogBatches =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_metrics_export_backlog_batches",
+              MetricOptions.builder()
+                  .setDescription("Current number of metric batches waiting to be exported.")
+                  .setUnit("1")
+                  .setLabelKeys(LABEL_KEYS)
+                  .build());
+  private static final DerivedLongGauge backlogBytes =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_metrics_export_backlog_bytes",
+              MetricOptions.builder()
+                  .setDescription("Current size of the metric batches waiting to be exported.")
+                  .setUnit("By")
+                  .setLabelKeys(LABEL_KEYS)
+                  .build());
+  private static final DerivedLongGauge backlogAge =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_metrics_export_backlog_age",
+              MetricOptions.builder()
+                  .setDescription("Age of the oldest metric batch waiting to be exported.")
+                  .setUnit("ms")
+                  .setLabelKeys(LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative droppedBatches =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_metrics_export_backlog_dropped",
+              MetricOptions.builder()
+                  .setDescription("Number of metric batches evicted from a full backlog.")
+                  .setUnit("1")
+                  .setLabelKeys(LABEL_KEYS)
+                  .build());
+
+  private final MetricExporter metricExporter;
+  private final int maxBatchesPerExport;
+  private final MetricBatchLog log;
+  private final List<LabelValue> labelValues;
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  private WriteAheadMetricExporter(
+      MetricExporter metricExporter,
+      int maxBatchesPerExport,
+      MetricBatchLog log,
+      List<LabelValue> labelValues) {
+    this.metricExporter = metricExporter;
+    this.maxBatchesPerExport = maxBatchesPerExport;
+    this.log = log;
+    this.labelValues = labelValues;
+  }
+
+  /**
+   * Options for {@link WriteAheadMetricExporter}.
+   *
+   * @since 0.29
+   */
+  @AutoValue
+  @Immutable
+  public abstract static class Options {
+
+    Options() {}
+
+    /**
+     * Returns the directory of the log.
+     *
+     * @return the directory of the log.
+     * @since 0.29
+     */
+    public abstract File getDirectory();
+
+    /**
+     * Returns the maximum size of the log, in bytes.
+     *
+     * @return the maximum size of the log, in bytes.
+     * @since 0.29
+     */
+    public abstract long getMaxBytes();
+
+    /**
+     * Returns the maximum number of batches handed to the wrapped exporter by one export.
+     *
+     * @return the maximum number of batches handed to the wrapped exporter by one export.
+     * @since 0.29
+     */
+    public abstract int getMaxBatchesPerExport();
+
+    /**
+     * Returns a new {@link Builder}.
+     *
+     * @return a {@code Builder}.
+     * @since 0.29
+     */
+    public static Builder builder() {
+      return new AutoValue_WriteAheadMetricExporter_Options.Builder()
+          .setMaxBytes(DEFAULT_MAX_BYTES)
+          .setMaxBatchesPerExport(DEFAULT_MAX_BATCHES_PER_EXPORT);
+    }
+
+    /**
+     * Builder for {@link Options}.
+     *
+     * @since 0.29
+     */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      /**
+       * Sets the directory of the log. The directory is created if it does not exist.
+       *
+       * @param directory the directory of the log.
+       * @return this.
+       * @since 0.29
+       */
+      public abstract Builder setDirectory(File directory);
+
+      /**
+       * Sets the maximum size of the log, in bytes. Must be at least 8 MiB.
+       *
+       * @param maxBytes the maximum size of the log, in bytes.
+       * @return this.
+       * @since 0.29
+       */
+      public abstract Builder setMaxBytes(long maxBytes);
+
+      /**
+       * Sets the maximum number of batches handed to the wrapped exporter by one export, which
+       * limits how fast a backlog is retried after an outage.
+       *
+       * @param maxBatchesPerExport the maximum number of batches exported at once.
+       * @return this.
+       * @since 0.29
+       */
+      public abstract Builder setMaxBatchesPerExport(int maxBatchesPerExport);
+
+      /**
+       * Builds a new {@link Options} with current settings.
+       *
+       * @return a {@code Options}.
+       * @since 0.29
+       */
+      public abstract Options build();
+    }
+  }
+
+  /**
+   * Creates a new {@link WriteAheadMetricExporter}, and opens its log.
+   *
+   * @param metricExporter the {@link MetricExporter} the batches are handed to.
+   * @param options the {@link Options} for the new {@link WriteAheadMetricExporter}.
+   * @return a new {@link WriteAheadMetricExporter}.
+   * @throws IOException if the log cannot be opened, for example because the directory is used by
+   *     another {@code WriteAheadMetricExporter}.
+   * @since 0.29
+   */
+  public static WriteAheadMetricExporter create(MetricExporter metricExporter, Options options)
+      throws IOException {
+    checkNotNull(metricExporter, "metricExporter");
+    checkNotNull(options, "options");
+    File directory = checkNotNull(options.getDirectory(), "directory");
+    checkArgument(options.getMaxBytes() >= 2L * SEGMENT_SIZE, "maxBytes must be at least 8 MiB.");
+    checkArgument(options.getMaxBatchesPerExport() > 0, "maxBatchesPerExport must be positive.");
+    MetricBatchLog log = MetricBatchLog.open(directory, SEGMENT_SIZE, options.getMaxBytes());
+    WriteAheadMetricExporter exporter =
+        new WriteAheadMetricExporter(
+            metricExporter,
+            options.getMaxBatchesPerExport(),
+            log,
+            Collections.singletonList(LabelValue.create(directory.getPath())));
+    backlogBatches.createTimeSeries(
+        exporter.labelValues, log, new ReportBacklog(ReportBacklog.BATCHES));
+    backlogBytes.createTimeSeries(
+        exporter.labelValues, log, new ReportBacklog(ReportBacklog.BYTES));
+    backlogAge.createTimeSeries(
+        exporter.labelValues, log, new ReportBacklog(ReportBacklog.AGE));
+    droppedBatches.createTimeSeries(
+        exporter.labelValues, log, new ReportBacklog(ReportBacklog.DROPPED));
+    return exporter;
+  }
+
+  /**
+   * Writes the metrics to the log, then exports the oldest batches of the log, up to {@link
+   * Options#getMaxBatchesPerExport()}, stopping at the first batch that fails.
+   *
+   * @param metrics the list of {@link Metric} to be exported.
+   * @throws RuntimeException the exception thrown by the wrapped exporter for the batch that
+   *     failed.
+   */
+  @Override
+  public synchronized void export(Collection<Metric> metrics) {
+    if (closed) {
+      metricExporter.export(metrics);
+      return;
+    }
+    boolean backlog = log.getPendingBatches() > 0;
+    if (!log.append(MetricEncoding.encode(metrics), System.currentTimeMillis())) {
+      // The batch is too large for the log, export it without retry.
+      metricExporter.export(metrics);
+      return;
+    }
+    if (!backlog) {
+      // Saves the decoding when there is nothing to retry.
+      metricExporter.export(metrics);
+      log.remove();
+      return;
+    }
+    for (int i = 0; i < maxBatchesPerExport; i++) {
+      ByteBuffer batch = log.peek();
+      if (batch == null) {
+        return;
+      }
+      List<Metric> batchMetrics;
+      try {
+        batchMetrics = MetricEncoding.decode(batch);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Dropping a metric batch that cannot be decoded.", e);
+        log.remove();
+        continue;
+      }
+      metricExporter.export(batchMetrics);
+      log.remove();
+    }
+  }
+
+  /**
+   * Releases the log. The batches that were not exported are kept for the next {@code
+   * WriteAheadMetricExporter} opened on the same directory, and the next batches are exported
+   * without retry.
+   *
+   * @since 0.29
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    log.close();
+    backlogBatches.removeTimeSeries(labelValues);
+    backlogBytes.removeTimeSeries(labelValues);
+    backlogAge.removeTimeSeries(labelValues);
+    droppedBatches.removeTimeSeries(labelValues);
+  }
+
+  @VisibleForTesting
+  long getPendingBatches() {
+    return log.getPendingBatches();
+  }
+
+  private static class ReportBacklog implements ToLongFunction<MetricBatchLog> {
+    private static final int BATCHES = 0;
+    private static final int BYTES = 1;
+    private static final int AGE = 2;
+    private static final int DROPPED = 3;
+
+    private final int count;
+
+    private ReportBacklog(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public long applyAsLong(@Nullable MetricBatchLog log) {
+      if (log == null) {
+        return 0;
+      }
+      switch (count) {
+        case BATCHES:
+          return log.getPendingBatches();
+        case BYTES:
+          return log.getPendingBytes();
+        case AGE:
+          long oldestBatchTimeMillis = log.getOldestBatchTimeMillis();
+          return oldestBatchTimeMillis < 0
+              ? 0
+              : Math.max(0, System.currentTimeMillis() - oldestBatchTimeMillis);
+        default:
+          return log.getDroppedBatches();
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MetricBatchLog}. */
+@RunWith(JUnit4.class)
+public class MetricBatchLogTest {
+  private static final int SEGMENT_SIZE = 4096;
+  private static final long MAX_BYTES = 3 * SEGMENT_SIZE;
+  // Four batches fit in a segment.
+  private static final int BATCH_SIZE = 1000;
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private File directory;
+  private MetricBatchLog log;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = temporaryFolder.getRoot();
+    log = MetricBatchLog.open(directory, SEGMENT_SIZE, MAX_BYTES);
+  }
+
+  @After
+  public void tearDown() {
+    log.close();
+  }
+
+  private static byte[] createBatch(int id) {
+    byte[] batch = new byte[BATCH_SIZE];
+    Arrays.fill(batch, (byte) id);
+    return batch;
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] array = new byte[buffer.remaining()];
+    buffer.duplicate().get(array);
+    return array;
+  }
+
+  private void appendBatches(int from, int to) {
+    for (int i = from; i < to; i++) {
+      assertThat(log.append(createBatch(i), 1000 + i)).isTrue();
+    }
+  }
+
+  private void assertNextBatches(int from, int to) {
+    for (int i = from; i < to; i++) {
+      ByteBuffer batch = log.peek();
+      assertThat(batch).isNotNull();
+      assertThat(toArray(batch)).isEqualTo(createBatch(i));
+      log.remove();
+    }
+  }
+
+  @Test
+  public void appendPeekAndRemove() {
+    assertThat(log.peek()).isNull();
+    assertThat(log.getOldestBatchTimeMillis()).isEqualTo(-1);
+    appendBatches(0, 6);
+    assertThat(log.getPendingBatches()).isEqualTo(6);
+    assertThat(log.getOldestBatchTimeMillis()).isEqualTo(1000);
+    assertNextBatches(0, 2);
+    assertThat(log.getPendingBatches()).isEqualTo(4);
+    assertThat(log.getOldestBatchTimeMillis()).isEqualTo(1002);
+    assertNextBatches(2, 6);
+    assertThat(log.peek()).isNull();
+    assertThat(log.getPendingBatches()).isEqualTo(0);
+    assertThat(log.getPendingBytes()).isEqualTo(0);
+    assertThat(log.getDroppedBatches()).isEqualTo(0);
+    // Only the segment being written and the offsets file are kept.
+    assertThat(directory.list()).hasLength(2);
+  }
+
+  @Test
+  public void append_TooLarge() {
+    assertThat(log.append(new byte[SEGMENT_SIZE], 1000)).isFalse();
+    assertThat(log.getPendingBatches()).isEqualTo(0);
+  }
+
+  @Test
+  public void append_EvictsOldestSegmentWhenFull() {
+    appendBatches(0, 20);
+    // The two oldest segments are evicted.
+    assertThat(log.getDroppedBatches()).isEqualTo(8);
+    assertThat(log.getPendingBatches()).isEqualTo(12);
+    assertThat(log.getOldestBatchTimeMillis()).isEqualTo(1008);
+    assertNextBatches(8, 20);
+  }
+
+  @Test
+  public void reopen_ResumesFromOldestBatch() throws IOException {
+    appendBatches(0, 10);
+    assertNextBatches(0, 3);
+    log.close();
+    log = MetricBatchLog.open(directory, SEGMENT_SIZE, MAX_BYTES);
+    assertThat(log.getPendingBatches()).isEqualTo(7);
+    assertNextBatches(3, 10);
+    appendBatches(10, 12);
+    assertNextBatches(10, 12);
+  }
+
+  @Test
+  public void peek_SkipsCorruptedBatch() throws IOException {
+    appendBatches(0, 6);
+    log.close();
+    // Flips a byte in the payload of the second record of the first, full, segment.
+    RandomAccessFile segment =
+        new RandomAccessFile(new File(directory, "segment-0000000000000000000"), "rw");
+    try {
+      segment.seek(BATCH_SIZE + 16 + 16 + 10);
+      int value = segment.read();
+      segment.seek(BATCH_SIZE + 16 + 16 + 10);
+      segment.write(value ^ 0xff);
+    } finally {
+      segment.close();
+    }
+    log = MetricBatchLog.open(directory, SEGMENT_SIZE, MAX_BYTES);
+    assertNextBatches(0, 1);
+    assertNextBatches(2, 6);
+    assertThat(log.peek()).isNull();
+    assertThat(log.getDroppedBatches()).isEqualTo(1);
+  }
+
+  @Test
+  public void reopen_DropsTornLastBatch() throws IOException {
+    appendBatches(0, 3);
+    log.close();
+    // Flips a byte in the payload of the last record, as if the process stopped while writing it.
+    RandomAccessFile segment =
+        new RandomAccessFile(new File(directory, "segment-0000000000000000000"), "rw");
+    try {
+      segment.seek(2 * (BATCH_SIZE + 16) + 16 + 10);
+      int value = segment.read();
+      segment.seek(2 * (BATCH_SIZE + 16) + 16 + 10);
+      segment.write(value ^ 0xff);
+    } finally {
+      segment.close();
+    }
+    log = MetricBatchLog.open(directory, SEGMENT_SIZE, MAX_BYTES);
+    assertThat(log.getPendingBatches()).isEqualTo(2);
+    // New batches replace the torn record.
+    appendBatches(3, 4);
+    assertNextBatches(0, 2);
+    assertNextBatches(3, 4);
+  }
+
+  @Test(expected = IOException.class)
+  public void open_DirectoryInUse() throws IOException {
+    MetricBatchLog.open(directory, SEGMENT_SIZE, MAX_BYTES);
+  }
+
+  @Test
+  public void append_Closed() {
+    log.close();
+    assertThat(log.append(createBatch(0), 1000)).isFalse();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Timestamp;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.data.AttachmentValue;
+import io.opencensus.metrics.data.AttachmentValue.AttachmentValueString;
+import io.opencensus.metrics.data.Exemplar;
+import io.opencensus.metrics.export.Distribution;
+import io.opencensus.metrics.export.Distribution.Bucket;
+import io.opencensus.metrics.export.Distribution.BucketOptions;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricDescriptor;
+import io.opencensus.metrics.export.Point;
+import io.opencensus.metrics.export.Summary;
+import io.opencensus.metrics.export.Summary.Snapshot;
+import io.opencensus.metrics.export.Summary.Snapshot.ValueAtPercentile;
+import io.opencensus.metrics.export.TimeSeries;
+import io.opencensus.metrics.export.Value;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MetricEncoding}. */
+@RunWith(JUnit4.class)
+public class MetricEncodingTest {
+  private static final Timestamp TIMESTAMP = Timestamp.fromMillis(3000);
+  private static final Timestamp START_TIMESTAMP = Timestamp.fromMillis(1000);
+  private static final List<LabelKey> LABEL_KEYS =
+      Arrays.asList(
+          LabelKey.create("test_key", "test_description"),
+          LabelKey.create("test_key_2", "test_description_2"));
+  private static final List<LabelValue> LABEL_VALUES =
+      Arrays.asList(LabelValue.create("test_value"), LabelValue.create(null));
+
+  private static Metric createMetric(MetricDescriptor.Type type, Value value) {
+    return Metric.createWithOneTimeSeries(
+        MetricDescriptor.create("test_metric", "test_description", "1", type, LABEL_KEYS),
+        TimeSeries.createWithOnePoint(
+            LABEL_VALUES, Point.create(value, TIMESTAMP), START_TIMESTAMP));
+  }
+
+  @Test
+  public void encodeAndDecode() {
+    Distribution distribution =
+        Distribution.create(
+            3,
+            6,
+            2,
+            BucketOptions.explicitOptions(Arrays.asList(1.0, 5.0)),
+            Arrays.asList(
+                Bucket.create(1),
+                Bucket.create(
+                    2,
+                    Exemplar.create(
+                        2.5,
+                        TIMESTAMP,
+                        Collections.<String, AttachmentValue>singletonMap(
+                            "key", AttachmentValueString.create("value")))),
+                Bucket.create(0)));
+    Summary summary =
+        Summary.create(
+            10L,
+            null,
+            Snapshot.create(null, 3.0, Collections.singletonList(ValueAtPercentile.create(50, 1))));
+    List<Metric> metrics =
+        Arrays.asList(
+            createMetric(MetricDescriptor.Type.CUMULATIVE_INT64, Value.longValue(-3)),
+            createMetric(MetricDescriptor.Type.CUMULATIVE_DOUBLE, Value.doubleValue(1.25)),
+            createMetric(
+                MetricDescriptor.Type.CUMULATIVE_DISTRIBUTION,
+                Value.distributionValue(distribution)),
+            createMetric(MetricDescriptor.Type.SUMMARY, Value.summaryValue(summary)),
+            Metric.create(
+                MetricDescriptor.create(
+                    "test_gauge",
+                    "test_description",
+                    "1",
+                    MetricDescriptor.Type.GAUGE_INT64,
+                    Collections.<LabelKey>emptyList()),
+                Collections.singletonList(
+                    TimeSeries.create(Collections.<LabelValue>emptyList()))));
+    byte[] encoded = MetricEncoding.encode(metrics);
+    assertThat(MetricEncoding.decode(ByteBuffer.wrap(encoded))).isEqualTo(metrics);
+  }
+
+  @Test
+  public void encodeAndDecode_EmptyBatch() {
+    byte[] encoded = MetricEncoding.encode(Collections.<Metric>emptyList());
+    assertThat(MetricEncoding.decode(ByteBuffer.wrap(encoded))).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_UnknownVersion() {
+    MetricEncoding.decode(ByteBuffer.wrap(new byte[] {42}));
+  }
+}
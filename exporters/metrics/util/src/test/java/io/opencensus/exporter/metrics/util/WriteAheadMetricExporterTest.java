@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.metrics.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Timestamp;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter.Options;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.export.Metric;
+import io.opencensus.metrics.export.MetricDescriptor;
+import io.opencensus.metrics.export.Point;
+import io.opencensus.metrics.export.TimeSeries;
+import io.opencensus.metrics.export.Value;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link WriteAheadMetricExporter}. */
+@RunWith(JUnit4.class)
+public class WriteAheadMetricExporterTest {
+  private static final MetricDescriptor METRIC_DESCRIPTOR =
+      MetricDescriptor.create(
+          "test_metric",
+          "test_description",
+          "1",
+          MetricDescriptor.Type.CUMULATIVE_INT64,
+          Collections.singletonList(LabelKey.create("test_key", "test_description")));
+  private static final List<LabelValue> LABEL_VALUES =
+      Collections.singletonList(LabelValue.create("test_value"));
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  private final FailingMetricExporter metricExporter = new FailingMetricExporter();
+  private Options options;
+  private WriteAheadMetricExporter writeAheadMetricExporter;
+
+  // Records the exported batches, or throws while it is failing.
+  private static final class FailingMetricExporter extends MetricExporter {
+    private final List<List<Metric>> exportedMetrics = new ArrayList<List<Metric>>();
+    private boolean failing;
+
+    @Override
+    public void export(Collection<Metric> metrics) {
+      if (failing) {
+        throw new IllegalStateException("Backend unavailable.");
+      }
+      exportedMetrics.add(new ArrayList<Metric>(metrics));
+    }
+  }
+
+  private static List<Metric> createBatch(long value) {
+    return Collections.singletonList(
+        Metric.createWithOneTimeSeries(
+            METRIC_DESCRIPTOR,
+            TimeSeries.createWithOnePoint(
+                LABEL_VALUES,
+                Point.create(Value.longValue(value), Timestamp.fromMillis(3000 + value)),
+                Timestamp.fromMillis(1000))));
+  }
+
+  // Exports the batch and ignores the failure of the wrapped exporter.
+  private void exportIgnoringFailure(List<Metric> batch) {
+    try {
+      writeAheadMetricExporter.export(batch);
+    } catch (IllegalStateException e) {
+      // Expected while failing.
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    options =
+        Options.builder()
+            .setDirectory(temporaryFolder.getRoot())
+            .setMaxBatchesPerExport(2)
+            .build();
+    writeAheadMetricExporter = WriteAheadMetricExporter.create(metricExporter, options);
+  }
+
+  @After
+  public void tearDown() {
+    writeAheadMetricExporter.close();
+  }
+
+  @Test
+  public void defaultOptions() {
+    Options options = Options.builder().setDirectory(temporaryFolder.getRoot()).build();
+    assertThat(options.getMaxBytes()).isEqualTo(WriteAheadMetricExporter.DEFAULT_MAX_BYTES);
+    assertThat(options.getMaxBatchesPerExport())
+        .isEqualTo(WriteAheadMetricExporter.DEFAULT_MAX_BATCHES_PER_EXPORT);
+  }
+
+  @Test
+  public void create_MaxBytesTooSmall() throws IOException {
+    thrown.expect(IllegalArgumentException.class);
+    WriteAheadMetricExporter.create(
+        metricExporter,
+        Options.builder().setDirectory(temporaryFolder.newFolder()).setMaxBytes(1024).build());
+  }
+
+  @Test
+  public void create_DirectoryInUse() throws IOException {
+    thrown.expect(IOException.class);
+    WriteAheadMetricExporter.create(metricExporter, options);
+  }
+
+  @Test
+  public void export() {
+    writeAheadMetricExporter.export(createBatch(1));
+    assertThat(metricExporter.exportedMetrics).containsExactly(createBatch(1));
+    assertThat(writeAheadMetricExporter.getPendingBatches()).isEqualTo(0);
+  }
+
+  @Test
+  public void export_RethrowsFailure() {
+    metricExporter.failing = true;
+    thrown.expect(IllegalStateException.class);
+    writeAheadMetricExporter.export(createBatch(1));
+  }
+
+  @Test
+  public void export_RetriesFailedBatchesInOrder() {
+    metricExporter.failing = true;
+    for (int i = 1; i <= 3; i++) {
+      exportIgnoringFailure(createBatch(i));
+    }
+    assertThat(writeAheadMetricExporter.getPendingBatches()).isEqualTo(3);
+
+    metricExporter.failing = false;
+    // At most two batches are exported at once.
+    writeAheadMetricExporter.export(createBatch(4));
+    assertThat(metricExporter.exportedMetrics)
+        .containsExactly(createBatch(1), createBatch(2))
+        .inOrder();
+    writeAheadMetricExporter.export(createBatch(5));
+    writeAheadMetricExporter.export(createBatch(6));
+    assertThat(metricExporter.exportedMetrics)
+        .containsExactly(
+            createBatch(1),
+            createBatch(2),
+            createBatch(3),
+            createBatch(4),
+            createBatch(5),
+            createBatch(6))
+        .inOrder();
+    assertThat(writeAheadMetricExporter.getPendingBatches()).isEqualTo(0);
+  }
+
+  @Test
+  public void export_RetriesBatchesAfterRestart() throws IOException {
+    metricExporter.failing = true;
+    exportIgnoringFailure(createBatch(1));
+    exportIgnoringFailure(createBatch(2));
+    writeAheadMetricExporter.close();
+
+    writeAheadMetricExporter = WriteAheadMetricExporter.create(metricExporter, options);
+    assertThat(writeAheadMetricExporter.getPendingBatches()).isEqualTo(2);
+    metricExporter.failing = false;
+    writeAheadMetricExporter.export(createBatch(3));
+    writeAheadMetricExporter.export(createBatch(4));
+    assertThat(metricExporter.exportedMetrics)
+        .containsExactly(createBatch(1), createBatch(2), createBatch(3), createBatch(4))
+        .inOrder();
+  }
+
+  @Test
+  public void export_AfterClose() {
+    writeAheadMetricExporter.close();
+    metricExporter.failing = true;
+    exportIgnoringFailure(createBatch(1));
+    metricExporter.failing = false;
+    writeAheadMetricExporter.export(createBatch(2));
+    assertThat(metricExporter.exportedMetrics).containsExactly(createBatch(2));
+  }
+}
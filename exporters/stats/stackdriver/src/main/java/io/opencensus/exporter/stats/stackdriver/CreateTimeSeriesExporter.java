@@ -40,6 +40,12 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Exports the metrics as Stackdriver TimeSeries. The first request that fails with a transient
+ * error is rethrown, so that a {@link io.opencensus.exporter.metrics.util.WriteAheadMetricExporter}
+ * in front of this exporter retries the metrics later. The other errors are only logged: they
+ * would fail again on retry.
+ */
 final class CreateTimeSeriesExporter extends MetricExporter {
   private static final Tracer tracer = Tracing.getTracer();
   private static final Logger logger = Logger.getLogger(CreateTimeSeriesExporter.class.getName());
@@ -92,6 +98,11 @@ final class CreateTimeSeriesExporter extends MetricExporter {
                 .withDescription(
                     "ApiException thrown when exporting TimeSeries: "
                         + StackdriverExportUtils.exceptionMessage(e)));
+        if (isTransient(e)) {
+          // Stops at the first outage. The TimeSeries already written are rejected as
+          // duplicates on retry, which is not transient.
+          throw e;
+        }
       } catch (Throwable e) {
         logger.log(Level.WARNING, "Exception thrown when exporting TimeSeries.", e);
         span.setStatus(
@@ -101,4 +112,18 @@ final class CreateTimeSeriesExporter extends MetricExporter {
       }
     }
   }
+
+  // Returns true if the same request can succeed later.
+  private static boolean isTransient(ApiException e) {
+    switch (e.getStatusCode().getCode()) {
+      case UNAVAILABLE:
+      case DEADLINE_EXCEEDED:
+      case RESOURCE_EXHAUSTED:
+      case ABORTED:
+      case INTERNAL:
+        return true;
+      default:
+        return false;
+    }
+  }
 }
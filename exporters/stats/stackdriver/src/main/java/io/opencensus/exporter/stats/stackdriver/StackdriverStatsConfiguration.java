@@ -27,6 +27,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import io.opencensus.common.Duration;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import io.opencensus.metrics.LabelKey;
 import io.opencensus.metrics.LabelValue;
 import java.util.Collections;
@@ -131,6 +132,16 @@ public abstract class StackdriverStatsConfiguration {
   @Nullable
   public abstract MetricServiceStub getMetricServiceStub();
 
+  /**
+   * Returns the options of the write-ahead log that keeps the metrics that could not be exported
+   * because of a transient error, to retry them later. {@code null} if these metrics are dropped.
+   *
+   * @return the options of the write-ahead log, or {@code null}.
+   * @since 0.29
+   */
+  @Nullable
+  public abstract WriteAheadMetricExporter.Options getWriteAheadLogOptions();
+
   /**
    * Returns a new {@link Builder}.
    *
@@ -258,6 +269,18 @@ public abstract class StackdriverStatsConfiguration {
      */
     public abstract Builder setMetricServiceStub(MetricServiceStub stub);
 
+    /**
+     * Sets the options of the write-ahead log that keeps the metrics that could not be exported
+     * because of a transient error, for example during an outage of Stackdriver Monitoring. The
+     * metrics are retried, in order, on the next exports and after a restart.
+     *
+     * @param writeAheadLogOptions the options of the write-ahead log.
+     * @return this
+     * @since 0.29
+     */
+    public abstract Builder setWriteAheadLogOptions(
+        WriteAheadMetricExporter.Options writeAheadLogOptions);
+
     abstract String getProjectId();
 
     abstract Map<LabelKey, LabelValue> getConstantLabels();
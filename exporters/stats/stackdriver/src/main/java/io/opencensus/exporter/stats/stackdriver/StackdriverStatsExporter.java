@@ -39,7 +39,9 @@ import com.google.common.annotations.VisibleForTesting;
 import io.opencensus.common.Duration;
 import io.opencensus.common.OpenCensusLibraryInformation;
 import io.opencensus.exporter.metrics.util.IntervalMetricReader;
+import io.opencensus.exporter.metrics.util.MetricExporter;
 import io.opencensus.exporter.metrics.util.MetricReader;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import io.opencensus.metrics.LabelKey;
 import io.opencensus.metrics.LabelValue;
 import io.opencensus.metrics.Metrics;
@@ -87,6 +89,7 @@ public final class StackdriverStatsExporter {
       FixedHeaderProvider.create(USER_AGENT_KEY, USER_AGENT);
 
   private final IntervalMetricReader intervalMetricReader;
+  @Nullable private final WriteAheadMetricExporter writeAheadExporter;
 
   private StackdriverStatsExporter(
       String projectId,
@@ -95,7 +98,19 @@ public final class StackdriverStatsExporter {
       MonitoredResource monitoredResource,
       @Nullable String metricNamePrefix,
       @Nullable String displayNamePrefix,
-      Map<LabelKey, LabelValue> constantLabels) {
+      Map<LabelKey, LabelValue> constantLabels,
+      @Nullable WriteAheadMetricExporter.Options writeAheadLogOptions)
+      throws IOException {
+    MetricExporter timeSeriesExporter =
+        new CreateTimeSeriesExporter(
+            projectId, metricServiceClient, monitoredResource, metricNamePrefix, constantLabels);
+    if (writeAheadLogOptions == null) {
+      writeAheadExporter = null;
+    } else {
+      writeAheadExporter =
+          WriteAheadMetricExporter.create(timeSeriesExporter, writeAheadLogOptions);
+      timeSeriesExporter = writeAheadExporter;
+    }
     IntervalMetricReader.Options.Builder intervalMetricReaderOptionsBuilder =
         IntervalMetricReader.Options.builder();
     intervalMetricReaderOptionsBuilder.setExportInterval(exportInterval);
@@ -107,12 +122,7 @@ public final class StackdriverStatsExporter {
                 metricNamePrefix,
                 displayNamePrefix,
                 constantLabels,
-                new CreateTimeSeriesExporter(
-                    projectId,
-                    metricServiceClient,
-                    monitoredResource,
-                    metricNamePrefix,
-                    constantLabels)),
+                timeSeriesExporter),
             MetricReader.create(
                 MetricReader.Options.builder()
                     .setMetricProducerManager(
@@ -150,6 +160,7 @@ public final class StackdriverStatsExporter {
         null,
         DEFAULT_CONSTANT_LABELS,
         DEFAULT_DEADLINE,
+        null,
         null);
   }
 
@@ -189,6 +200,7 @@ public final class StackdriverStatsExporter {
         null,
         DEFAULT_CONSTANT_LABELS,
         DEFAULT_DEADLINE,
+        null,
         null);
   }
 
@@ -215,7 +227,11 @@ public final class StackdriverStatsExporter {
    * <p>If {@code metricNamePrefix} of the configuration is not set, the exporter will use the
    * default prefix "OpenCensus".
    *
+   * <p>If {@code writeAheadLogOptions} of the configuration is set, the metrics that fail to be
+   * exported because of a transient error are kept in a write-ahead log and retried later.
+   *
    * @param configuration the {@code StackdriverStatsConfiguration}.
+   * @throws IOException if the write-ahead log cannot be opened.
    * @throws IllegalStateException if a Stackdriver exporter is already created.
    * @since 0.11.0
    */
@@ -231,7 +247,8 @@ public final class StackdriverStatsExporter {
         configuration.getDisplayNamePrefix(),
         configuration.getConstantLabels(),
         configuration.getDeadline(),
-        configuration.getMetricServiceStub());
+        configuration.getMetricServiceStub(),
+        configuration.getWriteAheadLogOptions());
   }
 
   /**
@@ -299,6 +316,7 @@ public final class StackdriverStatsExporter {
         null,
         DEFAULT_CONSTANT_LABELS,
         DEFAULT_DEADLINE,
+        null,
         null);
   }
 
@@ -337,6 +355,7 @@ public final class StackdriverStatsExporter {
         null,
         DEFAULT_CONSTANT_LABELS,
         DEFAULT_DEADLINE,
+        null,
         null);
   }
 
@@ -375,6 +394,7 @@ public final class StackdriverStatsExporter {
         null,
         DEFAULT_CONSTANT_LABELS,
         DEFAULT_DEADLINE,
+        null,
         null);
   }
 
@@ -388,7 +408,8 @@ public final class StackdriverStatsExporter {
       @Nullable String displayNamePrefix,
       Map<LabelKey, LabelValue> constantLabels,
       Duration deadline,
-      @Nullable MetricServiceStub stub)
+      @Nullable MetricServiceStub stub,
+      @Nullable WriteAheadMetricExporter.Options writeAheadLogOptions)
       throws IOException {
     synchronized (monitor) {
       checkState(instance == null, "Stackdriver stats exporter is already created.");
@@ -404,7 +425,8 @@ public final class StackdriverStatsExporter {
               monitoredResource,
               metricNamePrefix,
               displayNamePrefix,
-              constantLabels);
+              constantLabels,
+              writeAheadLogOptions);
     }
   }
 
@@ -443,6 +465,9 @@ public final class StackdriverStatsExporter {
     synchronized (monitor) {
       if (instance != null) {
         instance.intervalMetricReader.stop();
+        if (instance.writeAheadExporter != null) {
+          instance.writeAheadExporter.close();
+        }
       }
       instance = null;
     }
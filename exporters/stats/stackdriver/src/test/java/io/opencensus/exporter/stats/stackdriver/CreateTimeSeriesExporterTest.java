@@ -17,34 +17,46 @@
 package io.opencensus.exporter.stats.stackdriver;
 
 import static io.opencensus.exporter.stats.stackdriver.StackdriverExportUtils.DEFAULT_CONSTANT_LABELS;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.api.MetricDescriptor;
 import com.google.api.MonitoredResource;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.ApiExceptionFactory;
 import com.google.api.gax.rpc.UnaryCallable;
 import com.google.cloud.monitoring.v3.stub.MetricServiceStub;
 import com.google.monitoring.v3.CreateMetricDescriptorRequest;
 import com.google.monitoring.v3.CreateTimeSeriesRequest;
 import com.google.monitoring.v3.TimeSeries;
 import com.google.protobuf.Empty;
+import io.grpc.Status;
 import io.opencensus.common.Timestamp;
+import io.opencensus.exporter.metrics.util.WriteAheadMetricExporter;
 import io.opencensus.metrics.LabelKey;
 import io.opencensus.metrics.LabelValue;
 import io.opencensus.metrics.export.Metric;
 import io.opencensus.metrics.export.MetricDescriptor.Type;
 import io.opencensus.metrics.export.Point;
 import io.opencensus.metrics.export.Value;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -74,9 +86,19 @@ public class CreateTimeSeriesExporterTest {
   private static final Metric METRIC =
       Metric.createWithOneTimeSeries(METRIC_DESCRIPTOR, CUMULATIVE_TIME_SERIES);
 
+  private static final Metric LATER_METRIC =
+      Metric.createWithOneTimeSeries(
+          METRIC_DESCRIPTOR,
+          io.opencensus.metrics.export.TimeSeries.createWithOnePoint(
+              LABEL_VALUE,
+              Point.create(VALUE_LONG, Timestamp.fromMillis(4000)),
+              Timestamp.fromMillis(1000)));
+
   private static final MonitoredResource DEFAULT_RESOURCE =
       MonitoredResource.newBuilder().setType("global").build();
 
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Mock private MetricServiceStub mockStub;
 
   @Mock
@@ -156,4 +178,76 @@ public class CreateTimeSeriesExporterTest {
     exporter.export(Collections.<Metric>emptyList());
     verify(mockStub, times(0)).createTimeSeriesCallable();
   }
+
+  @Test
+  public void transientErrorIsRetriedByWriteAheadLog() throws IOException {
+    WriteAheadMetricExporter exporter =
+        WriteAheadMetricExporter.create(
+            new CreateTimeSeriesExporter(
+                PROJECT_ID,
+                new FakeMetricServiceClient(mockStub),
+                DEFAULT_RESOURCE,
+                null,
+                DEFAULT_CONSTANT_LABELS),
+            WriteAheadMetricExporter.Options.builder()
+                .setDirectory(temporaryFolder.getRoot())
+                .build());
+    try {
+      doThrow(
+              ApiExceptionFactory.createException(
+                  new RuntimeException("Backend unavailable."),
+                  GrpcStatusCode.of(Status.Code.UNAVAILABLE),
+                  true))
+          .doReturn(null)
+          .when(mockCreateTimeSeriesCallable)
+          .call(any(CreateTimeSeriesRequest.class));
+      try {
+        exporter.export(Collections.singletonList(METRIC));
+        fail("Expected an ApiException.");
+      } catch (ApiException expected) {
+        // Expected.
+      }
+      exporter.export(Collections.singletonList(LATER_METRIC));
+    } finally {
+      exporter.close();
+    }
+
+    // The metrics of the outage are exported again, before the next ones.
+    InOrder inOrder = inOrder(mockCreateTimeSeriesCallable);
+    inOrder.verify(mockCreateTimeSeriesCallable, times(2)).call(eq(createRequest(METRIC)));
+    inOrder.verify(mockCreateTimeSeriesCallable).call(eq(createRequest(LATER_METRIC)));
+  }
+
+  @Test
+  public void permanentErrorIsNotRetried() {
+    CreateTimeSeriesExporter exporter =
+        new CreateTimeSeriesExporter(
+            PROJECT_ID,
+            new FakeMetricServiceClient(mockStub),
+            DEFAULT_RESOURCE,
+            null,
+            DEFAULT_CONSTANT_LABELS);
+    doThrow(
+            ApiExceptionFactory.createException(
+                new RuntimeException("Points written out of order."),
+                GrpcStatusCode.of(Status.Code.INVALID_ARGUMENT),
+                false))
+        .when(mockCreateTimeSeriesCallable)
+        .call(any(CreateTimeSeriesRequest.class));
+    // Only logged, the same request would fail again.
+    exporter.export(Collections.singletonList(METRIC));
+  }
+
+  private static CreateTimeSeriesRequest createRequest(Metric metric) {
+    return CreateTimeSeriesRequest.newBuilder()
+        .setName("projects/" + PROJECT_ID)
+        .addAllTimeSeries(
+            StackdriverExportUtils.createTimeSeriesList(
+                metric,
+                DEFAULT_RESOURCE,
+                StackdriverExportUtils.CUSTOM_OPENCENSUS_DOMAIN,
+                PROJECT_ID,
+                DEFAULT_CONSTANT_LABELS))
+        .build();
+  }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.trace.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SimpleTimeLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.TimeLimiter;
+import io.opencensus.common.Duration;
+import io.opencensus.common.ToLongFunction;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.Metrics;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs exports with a deadline on a bounded pool of daemon threads shared by all the {@link
+ * TimeLimitedHandler}s.
+ *
+ * <p>An export that exceeds its deadline is interrupted. An export that ignores the interruption
+ * keeps its thread busy, but the number of threads and queued exports is bounded, so a stuck
+ * backend results in rejected exports instead of leaked threads.
+ */
+final class TimeLimitedExecutor {
+  private static final int MAX_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+  private static final int MAX_QUEUED_EXPORTS = 128;
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final DerivedLongGauge inFlightExports =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_exporter_exports_in_flight",
+              MetricOptions.builder()
+                  .setDescription("Current number of running time-limited exports.")
+                  .setUnit("1")
+                  .build());
+  private static final DerivedLongCumulative timedOutExports =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_exporter_exports_timed_out",
+              MetricOptions.builder()
+                  .setDescription("Number of time-limited exports that exceeded their deadline.")
+                  .setUnit("1")
+                  .build());
+  private static final DerivedLongCumulative rejectedExports =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_exporter_exports_rejected",
+              MetricOptions.builder()
+                  .setDescription(
+                      "Number of time-limited exports rejected because all the threads were busy.")
+                  .setUnit("1")
+                  .build());
+
+  private static final TimeLimitedExecutor INSTANCE = createInstance();
+
+  private final ThreadPoolExecutor executor;
+  private final TimeLimiter timeLimiter;
+  private final AtomicLong inFlight = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  static TimeLimitedExecutor getInstance() {
+    return INSTANCE;
+  }
+
+  private static TimeLimitedExecutor createInstance() {
+    TimeLimitedExecutor instance = new TimeLimitedExecutor(MAX_THREADS, MAX_QUEUED_EXPORTS);
+    inFlightExports.createTimeSeries(
+        Collections.<LabelValue>emptyList(),
+        instance,
+        new ToLongFunction<TimeLimitedExecutor>() {
+          @Override
+          public long applyAsLong(TimeLimitedExecutor executor) {
+            return executor.getInFlightExports();
+          }
+        });
+    timedOutExports.createTimeSeries(
+        Collections.<LabelValue>emptyList(),
+        instance,
+        new ToLongFunction<TimeLimitedExecutor>() {
+          @Override
+          public long applyAsLong(TimeLimitedExecutor executor) {
+            return executor.getTimedOutExports();
+          }
+        });
+    rejectedExports.createTimeSeries(
+        Collections.<LabelValue>emptyList(),
+        instance,
+        new ToLongFunction<TimeLimitedExecutor>() {
+          @Override
+          public long applyAsLong(TimeLimitedExecutor executor) {
+            return executor.getRejectedExports();
+          }
+        });
+    return instance;
+  }
+
+  // Only the shared instance reports metrics.
+  @VisibleForTesting
+  TimeLimitedExecutor(int maxThreads, int maxQueuedExports) {
+    executor =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(maxQueuedExports),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("OpenCensus.TimeLimitedExporter-%d")
+                .build());
+    // Threads are only kept while exports are running.
+    executor.allowCoreThreadTimeOut(true);
+    timeLimiter = SimpleTimeLimiter.create(executor);
+  }
+
+  /**
+   * Runs the given {@code Callable} on the shared threads and waits for its completion, up to the
+   * given deadline.
+   *
+   * @param callable the export to run.
+   * @param deadline the maximum time to wait for the export.
+   * @throws TimeoutException if the export did not complete within the deadline.
+   * @throws RejectedExecutionException if all the threads are busy and the queue is full.
+   * @throws Exception if the export threw an exception or the calling thread was interrupted.
+   */
+  <T> T callWithTimeout(final Callable<T> callable, Duration deadline) throws Exception {
+    try {
+      return timeLimiter.callWithTimeout(
+          new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+              inFlight.incrementAndGet();
+              try {
+                return callable.call();
+              } finally {
+                inFlight.decrementAndGet();
+              }
+            }
+          },
+          deadline.toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      timedOut.incrementAndGet();
+      throw e;
+    } catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      throw e;
+    }
+  }
+
+  long getInFlightExports() {
+    return inFlight.get();
+  }
+
+  long getTimedOutExports() {
+    return timedOut.get();
+  }
+
+  long getRejectedExports() {
+    return rejected.get();
+  }
+
+  @VisibleForTesting
+  int getQueuedExports() {
+    return executor.getQueue().size();
+  }
+}
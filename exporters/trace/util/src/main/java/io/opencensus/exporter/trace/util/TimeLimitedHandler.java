@@ -16,8 +16,6 @@
 
 package io.opencensus.exporter.trace.util;
 
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
 import com.google.errorprone.annotations.MustBeClosed;
 import io.opencensus.common.Duration;
 import io.opencensus.common.Scope;
@@ -33,8 +31,6 @@ import io.opencensus.trace.export.SpanExporter.Handler;
 import io.opencensus.trace.samplers.Samplers;
 import java.util.Collection;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,6 +44,10 @@ import java.util.logging.Logger;
  * timeout option in the client APIs (for example Stackdriver Trace V2 API allows you to set
  * timeout), use that instead.
  *
+ * <p>The exports of all the {@code TimeLimitedHandler}s run on a bounded pool of shared daemon
+ * threads. If the pool is saturated, for example because a backend does not respond, the export
+ * fails and the spans are dropped.
+ *
  * <p>To export data this MUST be register to to the ExportComponent using {@link
  * SpanExporter#registerHandler(String, Handler)}.
  *
@@ -82,17 +82,16 @@ public abstract class TimeLimitedHandler extends SpanExporter.Handler {
   public void export(final Collection<SpanData> spanDataList) {
     final Scope exportScope = newExportScope();
     try {
-      TimeLimiter timeLimiter = SimpleTimeLimiter.create(Executors.newSingleThreadExecutor());
-      timeLimiter.callWithTimeout(
-          new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-              timeLimitedExport(spanDataList);
-              return null;
-            }
-          },
-          deadline.toMillis(),
-          TimeUnit.MILLISECONDS);
+      TimeLimitedExecutor.getInstance()
+          .callWithTimeout(
+              new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                  timeLimitedExport(spanDataList);
+                  return null;
+                }
+              },
+              deadline);
     } catch (TimeoutException e) {
       handleException(e, "Timeout when exporting traces: " + e);
     } catch (InterruptedException e) {
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.exporter.trace.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.opencensus.common.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TimeLimitedExecutor}. */
+@RunWith(JUnit4.class)
+public class TimeLimitedExecutorTest {
+  private static final Duration LONG_DEADLINE = Duration.create(10, 0);
+  private static final Duration SHORT_DEADLINE = Duration.fromMillis(50);
+
+  private static final Callable<String> QUICK_EXPORT =
+      new Callable<String>() {
+        @Override
+        public String call() {
+          return "exported";
+        }
+      };
+
+  // Blocks until released, ignoring interruptions like a stuck backend client.
+  private static final class StuckExport implements Callable<String> {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public String call() {
+      started.countDown();
+      Uninterruptibles.awaitUninterruptibly(released);
+      return "exported";
+    }
+  }
+
+  // Runs the export on a new thread, which waits for the result up to LONG_DEADLINE.
+  private static Thread callInBackground(
+      final TimeLimitedExecutor executor,
+      final Callable<String> export,
+      final AtomicReference<Object> result) {
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  result.set(executor.callWithTimeout(export, LONG_DEADLINE));
+                } catch (Exception e) {
+                  result.set(e);
+                }
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void callWithTimeout_CompletesInTime() throws Exception {
+    TimeLimitedExecutor executor = new TimeLimitedExecutor(2, 1);
+    assertThat(executor.callWithTimeout(QUICK_EXPORT, LONG_DEADLINE)).isEqualTo("exported");
+    assertThat(executor.getInFlightExports()).isEqualTo(0);
+    assertThat(executor.getTimedOutExports()).isEqualTo(0);
+    assertThat(executor.getRejectedExports()).isEqualTo(0);
+  }
+
+  @Test
+  public void callWithTimeout_InterruptsExportThatTimesOut() throws Exception {
+    TimeLimitedExecutor executor = new TimeLimitedExecutor(1, 1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    Callable<String> slowExport =
+        new Callable<String>() {
+          @Override
+          public String call() throws InterruptedException {
+            started.countDown();
+            try {
+              Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+              throw e;
+            }
+            return "exported";
+          }
+        };
+    try {
+      executor.callWithTimeout(slowExport, SHORT_DEADLINE);
+      fail("Expected a TimeoutException.");
+    } catch (TimeoutException expected) {
+      // Expected.
+    }
+    assertThat(executor.getTimedOutExports()).isEqualTo(1);
+    // Either the export was interrupted, or it was cancelled before it started.
+    if (started.getCount() == 0) {
+      assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+    // The only thread is free again.
+    assertThat(executor.callWithTimeout(QUICK_EXPORT, LONG_DEADLINE)).isEqualTo("exported");
+    assertThat(executor.getInFlightExports()).isEqualTo(0);
+    assertThat(executor.getRejectedExports()).isEqualTo(0);
+  }
+
+  @Test
+  public void callWithTimeout_RejectsWhenSaturated() throws Exception {
+    TimeLimitedExecutor executor = new TimeLimitedExecutor(1, 1);
+    StuckExport runningExport = new StuckExport();
+    AtomicReference<Object> runningResult = new AtomicReference<Object>();
+    Thread runningCaller = callInBackground(executor, runningExport, runningResult);
+    assertThat(runningExport.started.await(5, TimeUnit.SECONDS)).isTrue();
+    // The only thread is busy, so this export waits in the queue.
+    StuckExport queuedExport = new StuckExport();
+    AtomicReference<Object> queuedResult = new AtomicReference<Object>();
+    Thread queuedCaller = callInBackground(executor, queuedExport, queuedResult);
+    while (executor.getQueuedExports() == 0) {
+      Thread.sleep(1);
+    }
+    assertThat(executor.getInFlightExports()).isEqualTo(1);
+
+    try {
+      executor.callWithTimeout(QUICK_EXPORT, LONG_DEADLINE);
+      fail("Expected a RejectedExecutionException.");
+    } catch (RejectedExecutionException expected) {
+      // Expected.
+    }
+    assertThat(executor.getRejectedExports()).isEqualTo(1);
+    assertThat(executor.getTimedOutExports()).isEqualTo(0);
+
+    // Once the backend recovers the queued export runs, and none is left in flight.
+    runningExport.released.countDown();
+    queuedExport.released.countDown();
+    runningCaller.join();
+    queuedCaller.join();
+    assertThat(runningResult.get()).isEqualTo("exported");
+    assertThat(queuedResult.get()).isEqualTo("exported");
+    assertThat(executor.getInFlightExports()).isEqualTo(0);
+    assertThat(executor.callWithTimeout(QUICK_EXPORT, LONG_DEADLINE)).isEqualTo("exported");
+    assertThat(executor.getRejectedExports()).isEqualTo(1);
+  }
+}
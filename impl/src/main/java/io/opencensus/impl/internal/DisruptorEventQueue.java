@@ -16,15 +16,31 @@
 
 package io.opencensus.impl.internal;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
+import io.opencensus.common.ToLongFunction;
 import io.opencensus.implcore.internal.DaemonThreadFactory;
 import io.opencensus.implcore.internal.EventQueue;
+import io.opencensus.metrics.DerivedLongCumulative;
+import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
+import io.opencensus.metrics.LabelValue;
+import io.opencensus.metrics.MetricOptions;
+import io.opencensus.metrics.Metrics;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -91,61 +107,214 @@ public final class DisruptorEventQueue implements EventQueue {
 
   private static final Logger logger = Logger.getLogger(DisruptorEventQueue.class.getName());
 
+  private static final String BUFFER_SIZE_PROPERTY = "opencensus.eventQueue.bufferSize";
+  private static final String WAIT_STRATEGY_PROPERTY = "opencensus.eventQueue.waitStrategy";
+  private static final String NON_BLOCKING_PROPERTY = "opencensus.eventQueue.nonBlocking";
+
   // Number of events that can be enqueued at any one time. If more than this are enqueued,
-  // then subsequent attempts to enqueue new entries will block.
-  // TODO(aveitch): consider making this a parameter to the constructor, so the queue can be
-  // configured to a size appropriate to the system (smaller/less busy systems will not need as
-  // large a queue.
-  private static final int DISRUPTOR_BUFFER_SIZE = 8192;
+  // then subsequent attempts to enqueue new entries will block, or drop the entries if the queue
+  // is non-blocking.
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final String DEFAULT_WAIT_STRATEGY = "sleeping";
+
+  private static final String THREAD_PREFIX = "OpenCensus.Disruptor";
+
+  private static final List<LabelKey> SHARD_LABEL_KEYS =
+      Collections.singletonList(LabelKey.create("shard", "The index of the event queue shard."));
+  private static final DerivedLongGauge queueDepth =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_event_queue_depth",
+              MetricOptions.builder()
+                  .setDescription("Current number of events waiting in the event queue.")
+                  .setUnit("1")
+                  .setLabelKeys(SHARD_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative droppedEvents =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_event_queue_events_dropped",
+              MetricOptions.builder()
+                  .setDescription("Number of events dropped because the event queue was full.")
+                  .setUnit("1")
+                  .setLabelKeys(SHARD_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative blockedEnqueues =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_event_queue_enqueues_blocked",
+              MetricOptions.builder()
+                  .setDescription("Number of enqueues that waited for room in the event queue.")
+                  .setUnit("1")
+                  .setLabelKeys(SHARD_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative enqueueLatency =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_event_queue_enqueue_latency",
+              MetricOptions.builder()
+                  .setDescription("Total time spent waiting for room in the event queue.")
+                  .setUnit("ms")
+                  .setLabelKeys(SHARD_LABEL_KEYS)
+                  .build());
+
   // The single instance of the class.
-  private static final DisruptorEventQueue eventQueue = create();
+  private static final DisruptorEventQueue eventQueue = createInstance();
 
   // The event queue is built on this {@link Disruptor}.
   private final Disruptor<DisruptorEvent> disruptor;
+  private final RingBuffer<DisruptorEvent> ringBuffer;
+  private final boolean nonBlocking;
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong blocked = new AtomicLong();
+  private final AtomicLong blockedNanos = new AtomicLong();
 
   private volatile DisruptorEnqueuer enqueuer;
 
   // Creates a new EventQueue. Private to prevent creation of non-singleton instance.
-  private DisruptorEventQueue(Disruptor<DisruptorEvent> disruptor, DisruptorEnqueuer enqueuer) {
+  private DisruptorEventQueue(Disruptor<DisruptorEvent> disruptor, boolean nonBlocking) {
     this.disruptor = disruptor;
-    this.enqueuer = enqueuer;
+    this.ringBuffer = disruptor.getRingBuffer();
+    this.nonBlocking = nonBlocking;
+    this.enqueuer =
+        new DisruptorEnqueuer() {
+          @Override
+          public void enqueue(Entry entry) {
+            enqueueOnRingBuffer(entry);
+          }
+        };
   }
 
-  // Creates a new EventQueue. Private to prevent creation of non-singleton instance.
-  private static DisruptorEventQueue create() {
+  // Creates the singleton instance.
+  private static DisruptorEventQueue createInstance() {
+    return createShard(0);
+  }
+
+  // Creates a new EventQueue configured with the system properties, and its metrics. Shard 0 is
+  // the singleton instance.
+  static DisruptorEventQueue createShard(int shard) {
+    DisruptorEventQueue eventQueue =
+        create(shard == 0 ? THREAD_PREFIX : THREAD_PREFIX + "." + shard);
+    List<LabelValue> labelValues =
+        Collections.singletonList(LabelValue.create(Integer.toString(shard)));
+    queueDepth.createTimeSeries(
+        labelValues,
+        eventQueue,
+        new ToLongFunction<DisruptorEventQueue>() {
+          @Override
+          public long applyAsLong(DisruptorEventQueue eventQueue) {
+            return eventQueue.getQueueDepth();
+          }
+        });
+    droppedEvents.createTimeSeries(
+        labelValues,
+        eventQueue,
+        new ToLongFunction<DisruptorEventQueue>() {
+          @Override
+          public long applyAsLong(DisruptorEventQueue eventQueue) {
+            return eventQueue.dropped.get();
+          }
+        });
+    blockedEnqueues.createTimeSeries(
+        labelValues,
+        eventQueue,
+        new ToLongFunction<DisruptorEventQueue>() {
+          @Override
+          public long applyAsLong(DisruptorEventQueue eventQueue) {
+            return eventQueue.blocked.get();
+          }
+        });
+    enqueueLatency.createTimeSeries(
+        labelValues,
+        eventQueue,
+        new ToLongFunction<DisruptorEventQueue>() {
+          @Override
+          public long applyAsLong(DisruptorEventQueue eventQueue) {
+            return TimeUnit.NANOSECONDS.toMillis(eventQueue.blockedNanos.get());
+          }
+        });
+    return eventQueue;
+  }
+
+  // Creates a new EventQueue configured with the system properties, without metrics.
+  static DisruptorEventQueue create(String threadPrefix) {
+    return create(
+        Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE),
+        System.getProperty(WAIT_STRATEGY_PROPERTY, DEFAULT_WAIT_STRATEGY),
+        Boolean.getBoolean(NON_BLOCKING_PROPERTY),
+        threadPrefix);
+  }
+
+  // Creates a new EventQueue. Visible for testing.
+  static DisruptorEventQueue create(int bufferSize, String waitStrategy, boolean nonBlocking) {
+    return create(bufferSize, waitStrategy, nonBlocking, THREAD_PREFIX);
+  }
+
+  private static DisruptorEventQueue create(
+      int bufferSize, String waitStrategy, boolean nonBlocking, String threadPrefix) {
     // Create new Disruptor for processing. Note that Disruptor creates a single thread per
     // consumer (see https://github.com/LMAX-Exchange/disruptor/issues/121 for details);
     // this ensures that the event handler can take unsynchronized actions whenever possible.
     Disruptor<DisruptorEvent> disruptor =
         new Disruptor<>(
             DisruptorEventFactory.INSTANCE,
-            DISRUPTOR_BUFFER_SIZE,
-            new DaemonThreadFactory("OpenCensus.Disruptor"),
+            toBufferSize(bufferSize),
+            new DaemonThreadFactory(threadPrefix),
             ProducerType.MULTI,
-            new SleepingWaitStrategy(0, 1000 * 1000));
+            toWaitStrategy(waitStrategy));
     disruptor.handleEventsWith(new DisruptorEventHandler[] {DisruptorEventHandler.INSTANCE});
     disruptor.start();
-    final RingBuffer<DisruptorEvent> ringBuffer = disruptor.getRingBuffer();
+    return new DisruptorEventQueue(disruptor, nonBlocking);
+  }
 
-    DisruptorEnqueuer enqueuer =
-        new DisruptorEnqueuer() {
-          @Override
-          public void enqueue(Entry entry) {
-            long sequence = ringBuffer.next();
-            try {
-              DisruptorEvent event = ringBuffer.get(sequence);
-              event.setEntry(entry);
-            } finally {
-              ringBuffer.publish(sequence);
-            }
-          }
-        };
-    return new DisruptorEventQueue(disruptor, enqueuer);
+  // The Disruptor requires a power of two.
+  static int toBufferSize(int bufferSize) {
+    if (bufferSize <= 0) {
+      logger.log(
+          Level.WARNING,
+          "Invalid event queue buffer size {0}, using {1}.",
+          new Object[] {bufferSize, DEFAULT_BUFFER_SIZE});
+      return DEFAULT_BUFFER_SIZE;
+    }
+    if (bufferSize > 1 << 30) {
+      return 1 << 30;
+    }
+    int powerOfTwo = Integer.highestOneBit(bufferSize);
+    return powerOfTwo == bufferSize ? bufferSize : powerOfTwo << 1;
+  }
+
+  static WaitStrategy toWaitStrategy(String waitStrategy) {
+    if ("sleeping".equals(waitStrategy)) {
+      return new SleepingWaitStrategy(0, 1000 * 1000);
+    } else if ("blocking".equals(waitStrategy)) {
+      return new BlockingWaitStrategy();
+    } else if ("yielding".equals(waitStrategy)) {
+      return new YieldingWaitStrategy();
+    } else if ("busy_spin".equals(waitStrategy)) {
+      return new BusySpinWaitStrategy();
+    }
+    logger.log(
+        Level.WARNING,
+        "Unknown event queue wait strategy {0}, using {1}.",
+        new Object[] {waitStrategy, DEFAULT_WAIT_STRATEGY});
+    return toWaitStrategy(DEFAULT_WAIT_STRATEGY);
   }
 
   /**
    * Returns the {@link DisruptorEventQueue} instance.
    *
+   * <p>The instance is configured with the following system properties:
+   *
+   * <ul>
+   *   <li>{@code opencensus.eventQueue.bufferSize}: the number of events that can be enqueued at
+   *       any one time, rounded up to a power of two. Defaults to 8192.
+   *   <li>{@code opencensus.eventQueue.waitStrategy}: how the background thread waits for events,
+   *       one of {@code sleeping} (the default), {@code blocking}, {@code yielding} or {@code
+   *       busy_spin}.
+   *   <li>{@code opencensus.eventQueue.nonBlocking}: if {@code true}, the events enqueued while the
+   *       queue is full are dropped instead of blocking the enqueuing thread.
+   * </ul>
+   *
    * @return the singleton {@code EventQueue} instance.
    */
   public static DisruptorEventQueue getInstance() {
@@ -162,6 +331,28 @@ public final class DisruptorEventQueue implements EventQueue {
     enqueuer.enqueue(entry);
   }
 
+  private void enqueueOnRingBuffer(Entry entry) {
+    long sequence;
+    try {
+      sequence = ringBuffer.tryNext();
+    } catch (InsufficientCapacityException e) {
+      if (nonBlocking) {
+        dropped.incrementAndGet();
+        return;
+      }
+      long startNanos = System.nanoTime();
+      sequence = ringBuffer.next();
+      blocked.incrementAndGet();
+      blockedNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+    try {
+      DisruptorEvent event = ringBuffer.get(sequence);
+      event.setEntry(entry);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+  }
+
   /** Shuts down the underlying disruptor. */
   @Override
   public void shutdown() {
@@ -180,6 +371,21 @@ public final class DisruptorEventQueue implements EventQueue {
     disruptor.shutdown();
   }
 
+  // Returns the number of events waiting in the queue.
+  long getQueueDepth() {
+    return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+  }
+
+  // Returns the number of events dropped because the queue was full.
+  long getDroppedEvents() {
+    return dropped.get();
+  }
+
+  // Returns the number of enqueues that waited because the queue was full.
+  long getBlockedEnqueues() {
+    return blocked.get();
+  }
+
   // Allows this event queue to safely shutdown by not enqueuing events on the ring buffer
   private abstract static class DisruptorEnqueuer {
 
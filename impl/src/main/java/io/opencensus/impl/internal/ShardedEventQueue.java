@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.impl.internal;
+
+import io.opencensus.implcore.internal.EventQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * An {@link EventQueue} that spreads the entries over several {@link DisruptorEventQueue}s, each
+ * processed by its own background thread, so that the processing of the entries is not limited to
+ * one core.
+ *
+ * <p>A {@link EventQueue.KeyedEntry} is processed by the shard selected by its key, so the entries
+ * with the same key are processed in order. All the other entries are processed by the first
+ * shard, in order.
+ *
+ * <p>The number of shards of the singleton instance is set by the system property {@code
+ * opencensus.eventQueue.shards}, and defaults to 1. The first shard is the {@link
+ * DisruptorEventQueue} singleton.
+ */
+@ThreadSafe
+public final class ShardedEventQueue implements EventQueue, EventQueue.Sharded {
+
+  private static final Logger logger = Logger.getLogger(ShardedEventQueue.class.getName());
+
+  private static final String SHARDS_PROPERTY = "opencensus.eventQueue.shards";
+  private static final int DEFAULT_SHARDS = 1;
+  private static final int MAX_SHARDS = 64;
+
+  // The single instance of the class.
+  private static final ShardedEventQueue eventQueue = createInstance();
+
+  private final DisruptorEventQueue[] shards;
+
+  private ShardedEventQueue(DisruptorEventQueue[] shards) {
+    this.shards = shards;
+  }
+
+  private static ShardedEventQueue createInstance() {
+    DisruptorEventQueue[] shards =
+        new DisruptorEventQueue[toShards(Integer.getInteger(SHARDS_PROPERTY, DEFAULT_SHARDS))];
+    shards[0] = DisruptorEventQueue.getInstance();
+    for (int i = 1; i < shards.length; i++) {
+      shards[i] = DisruptorEventQueue.createShard(i);
+    }
+    return new ShardedEventQueue(shards);
+  }
+
+  /**
+   * Returns a new {@code ShardedEventQueue}, independent from the singleton instance.
+   *
+   * @param shards the number of shards.
+   * @return a new {@code ShardedEventQueue}.
+   */
+  public static ShardedEventQueue create(int shards) {
+    DisruptorEventQueue[] disruptorEventQueues = new DisruptorEventQueue[toShards(shards)];
+    for (int i = 0; i < disruptorEventQueues.length; i++) {
+      disruptorEventQueues[i] = DisruptorEventQueue.create("OpenCensus.ShardedEventQueue." + i);
+    }
+    return new ShardedEventQueue(disruptorEventQueues);
+  }
+
+  static int toShards(int shards) {
+    if (shards <= 0) {
+      logger.log(
+          Level.WARNING,
+          "Invalid number of event queue shards {0}, using {1}.",
+          new Object[] {shards, DEFAULT_SHARDS});
+      return DEFAULT_SHARDS;
+    }
+    return Math.min(shards, MAX_SHARDS);
+  }
+
+  /**
+   * Returns the {@link ShardedEventQueue} instance.
+   *
+   * @return the singleton {@code EventQueue} instance.
+   */
+  public static ShardedEventQueue getInstance() {
+    return eventQueue;
+  }
+
+  /**
+   * Enqueues an event on the shard of the entry.
+   *
+   * @param entry a class encapsulating the actions to be taken for event processing.
+   */
+  @Override
+  public void enqueue(Entry entry) {
+    shards[getShard(entry)].enqueue(entry);
+  }
+
+  @Override
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  // Returns the index of the shard that processes the given entry.
+  int getShard(Entry entry) {
+    if (shards.length == 1 || !(entry instanceof KeyedEntry)) {
+      return 0;
+    }
+    int key = ((KeyedEntry) entry).getKey();
+    // Spread the high bits of the key, like HashMap does.
+    key ^= key >>> 16;
+    return (key & Integer.MAX_VALUE) % shards.length;
+  }
+
+  /** Shuts down all the shards. */
+  @Override
+  public void shutdown() {
+    for (DisruptorEventQueue shard : shards) {
+      shard.shutdown();
+    }
+  }
+}
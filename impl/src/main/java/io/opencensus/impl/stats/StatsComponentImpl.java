@@ -16,7 +16,7 @@
 
 package io.opencensus.impl.stats;
 
-import io.opencensus.impl.internal.DisruptorEventQueue;
+import io.opencensus.impl.internal.ShardedEventQueue;
 import io.opencensus.implcore.common.MillisClock;
 import io.opencensus.implcore.stats.StatsComponentImplBase;
 import io.opencensus.stats.StatsComponent;
@@ -26,6 +26,6 @@ public final class StatsComponentImpl extends StatsComponentImplBase {
 
   /** Public constructor to be used with reflection loading. */
   public StatsComponentImpl() {
-    super(DisruptorEventQueue.getInstance(), MillisClock.getInstance());
+    super(ShardedEventQueue.getInstance(), MillisClock.getInstance());
   }
 }
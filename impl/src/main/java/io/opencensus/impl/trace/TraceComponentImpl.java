@@ -17,18 +17,30 @@
 package io.opencensus.impl.trace;
 
 import io.opencensus.common.Clock;
-import io.opencensus.impl.internal.DisruptorEventQueue;
-import io.opencensus.impl.trace.internal.ThreadLocalRandomHandler;
+import io.opencensus.impl.internal.ShardedEventQueue;
 import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.implcore.trace.SpanProcessor;
 import io.opencensus.implcore.trace.TraceComponentImplBase;
+import io.opencensus.implcore.trace.internal.RandomHandler;
+import io.opencensus.implcore.trace.internal.RandomHandler.SplitMixRandomHandler;
 import io.opencensus.trace.TraceComponent;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.config.TraceConfig;
 import io.opencensus.trace.export.ExportComponent;
 import io.opencensus.trace.propagation.PropagationComponent;
 
-/** Java 7 and 8 implementation of the {@link TraceComponent}. */
+/**
+ * Java 7 and 8 implementation of the {@link TraceComponent}.
+ *
+ * <p>The trace and span ids are generated with a per-thread SplitMix64 generator, see {@link
+ * SplitMixRandomHandler}.
+ *
+ * <p>Setting the system property {@code opencensus.trace.recycleSpanBuffers} to {@code true}
+ * enables the recycling of the buffers used by the sampled spans to record events.
+ */
 public final class TraceComponentImpl extends TraceComponent {
+  private static final String RECYCLE_SPAN_BUFFERS_PROPERTY = "opencensus.trace.recycleSpanBuffers";
+
   private final TraceComponentImplBase traceComponentImplBase;
 
   /** Public constructor to be used with reflection loading. */
@@ -36,8 +48,14 @@ public final class TraceComponentImpl extends TraceComponent {
     traceComponentImplBase =
         new TraceComponentImplBase(
             MillisClock.getInstance(),
-            new ThreadLocalRandomHandler(),
-            DisruptorEventQueue.getInstance());
+            newRandomHandler(),
+            ShardedEventQueue.getInstance(),
+            Boolean.getBoolean(RECYCLE_SPAN_BUFFERS_PROPERTY));
+  }
+
+  // Returns the generator of the trace and span ids.
+  static RandomHandler newRandomHandler() {
+    return new SplitMixRandomHandler();
   }
 
   @Override
@@ -64,4 +82,23 @@ public final class TraceComponentImpl extends TraceComponent {
   public TraceConfig getTraceConfig() {
     return traceComponentImplBase.getTraceConfig();
   }
+
+  /**
+   * Adds a {@link SpanProcessor} at the end of the chain of processors that run when the spans that
+   * record events start and end.
+   *
+   * @param spanProcessor the processor to add.
+   */
+  public void addSpanProcessor(SpanProcessor spanProcessor) {
+    traceComponentImplBase.addSpanProcessor(spanProcessor);
+  }
+
+  /**
+   * Removes a {@link SpanProcessor} from the chain of processors.
+   *
+   * @param spanProcessor the processor to remove.
+   */
+  public void removeSpanProcessor(SpanProcessor spanProcessor) {
+    traceComponentImplBase.removeSpanProcessor(spanProcessor);
+  }
 }
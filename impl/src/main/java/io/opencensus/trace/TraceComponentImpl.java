@@ -17,7 +17,7 @@
 package io.opencensus.trace;
 
 import io.opencensus.common.Clock;
-import io.opencensus.impl.internal.DisruptorEventQueue;
+import io.opencensus.impl.internal.ShardedEventQueue;
 import io.opencensus.impl.trace.internal.ThreadLocalRandomHandler;
 import io.opencensus.implcore.common.MillisClock;
 import io.opencensus.implcore.trace.TraceComponentImplBase;
@@ -38,7 +38,7 @@ public final class TraceComponentImpl extends TraceComponent {
         new TraceComponentImplBase(
             MillisClock.getInstance(),
             new ThreadLocalRandomHandler(),
-            DisruptorEventQueue.getInstance());
+            ShardedEventQueue.getInstance());
   }
 
   @Override
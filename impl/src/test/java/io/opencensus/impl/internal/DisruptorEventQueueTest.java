@@ -18,7 +18,10 @@ package io.opencensus.impl.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
 import io.opencensus.implcore.internal.EventQueue;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -101,4 +104,99 @@ public class DisruptorEventQueueTest {
     }
     counter.check(tenK);
   }
+
+  // EventQueueEntry that blocks the background thread until it is released.
+  private static class BlockingEvent implements EventQueue.Entry {
+    private final CountDownLatch processing = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public void process() {
+      processing.countDown();
+      try {
+        released.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Test(timeout = 10000L)
+  public void nonBlockingQueueDropsEventsWhenFull() throws InterruptedException {
+    DisruptorEventQueue eventQueue =
+        DisruptorEventQueue.create(/* bufferSize= */ 4, "blocking", /* nonBlocking= */ true);
+    try {
+      Counter counter = new Counter();
+      BlockingEvent blockingEvent = new BlockingEvent();
+      eventQueue.enqueue(blockingEvent);
+      blockingEvent.processing.await();
+      // The entry being processed holds one slot of the ring buffer.
+      for (int i = 0; i < 5; i++) {
+        eventQueue.enqueue(new IncrementEvent(counter));
+      }
+      assertThat(eventQueue.getQueueDepth()).isEqualTo(4);
+      assertThat(eventQueue.getDroppedEvents()).isEqualTo(2);
+      assertThat(eventQueue.getBlockedEnqueues()).isEqualTo(0);
+      blockingEvent.released.countDown();
+      while (eventQueue.getQueueDepth() > 0) {
+        Thread.sleep(10);
+      }
+      counter.check(3);
+    } finally {
+      eventQueue.shutdown();
+    }
+  }
+
+  @Test(timeout = 10000L)
+  public void blockingQueueCountsBlockedEnqueues() throws InterruptedException {
+    final DisruptorEventQueue eventQueue =
+        DisruptorEventQueue.create(/* bufferSize= */ 2, "sleeping", /* nonBlocking= */ false);
+    try {
+      final Counter counter = new Counter();
+      BlockingEvent blockingEvent = new BlockingEvent();
+      eventQueue.enqueue(blockingEvent);
+      blockingEvent.processing.await();
+      eventQueue.enqueue(new IncrementEvent(counter));
+      Thread enqueuer =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  eventQueue.enqueue(new IncrementEvent(counter));
+                }
+              });
+      enqueuer.start();
+      // The queue is full, so the enqueuing thread waits until the blocking entry is processed.
+      enqueuer.join(200);
+      assertThat(enqueuer.isAlive()).isTrue();
+      blockingEvent.released.countDown();
+      enqueuer.join();
+      while (eventQueue.getQueueDepth() > 0) {
+        Thread.sleep(10);
+      }
+      counter.check(2);
+      assertThat(eventQueue.getBlockedEnqueues()).isEqualTo(1);
+      assertThat(eventQueue.getDroppedEvents()).isEqualTo(0);
+    } finally {
+      eventQueue.shutdown();
+    }
+  }
+
+  @Test
+  public void toBufferSize() {
+    assertThat(DisruptorEventQueue.toBufferSize(1024)).isEqualTo(1024);
+    assertThat(DisruptorEventQueue.toBufferSize(1000)).isEqualTo(1024);
+    assertThat(DisruptorEventQueue.toBufferSize(1)).isEqualTo(1);
+    assertThat(DisruptorEventQueue.toBufferSize(0)).isEqualTo(8192);
+    assertThat(DisruptorEventQueue.toBufferSize(-1)).isEqualTo(8192);
+    assertThat(DisruptorEventQueue.toBufferSize(Integer.MAX_VALUE)).isEqualTo(1 << 30);
+  }
+
+  @Test
+  public void toWaitStrategy() {
+    assertThat(DisruptorEventQueue.toWaitStrategy("blocking"))
+        .isInstanceOf(BlockingWaitStrategy.class);
+    assertThat(DisruptorEventQueue.toWaitStrategy("unknown"))
+        .isInstanceOf(SleepingWaitStrategy.class);
+  }
 }
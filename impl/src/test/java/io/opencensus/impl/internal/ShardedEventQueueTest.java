@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.impl.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.implcore.internal.EventQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ShardedEventQueue}. */
+@RunWith(JUnit4.class)
+public class ShardedEventQueueTest {
+  private static final int SHARDS = 4;
+  private final ShardedEventQueue eventQueue = ShardedEventQueue.create(SHARDS);
+
+  // EventQueueEntry that records its value and the thread that processed it.
+  private static class RecordingEvent implements EventQueue.KeyedEntry {
+    private final int key;
+    private final int value;
+    private final List<Integer> values;
+    private final List<String> threads;
+    private final CountDownLatch processed;
+
+    RecordingEvent(
+        int key, int value, List<Integer> values, List<String> threads, CountDownLatch processed) {
+      this.key = key;
+      this.value = value;
+      this.values = values;
+      this.threads = threads;
+      this.processed = processed;
+    }
+
+    @Override
+    public int getKey() {
+      return key;
+    }
+
+    @Override
+    public void process() {
+      values.add(value);
+      threads.add(Thread.currentThread().getName());
+      processed.countDown();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    eventQueue.shutdown();
+  }
+
+  @Test(timeout = 10000L)
+  public void sameKeyProcessedInOrder() throws InterruptedException {
+    final int events = 10000;
+    List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+    List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    CountDownLatch processed = new CountDownLatch(events);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < events; i++) {
+      eventQueue.enqueue(new RecordingEvent(42, i, values, threads, processed));
+      expected.add(i);
+    }
+    assertThat(processed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(values).containsExactlyElementsIn(expected).inOrder();
+    // All the events were processed by the same shard.
+    assertThat(Collections.frequency(threads, threads.get(0))).isEqualTo(events);
+  }
+
+  @Test
+  public void keysAreSpreadOverShards() {
+    boolean[] used = new boolean[SHARDS];
+    List<String> threads = new ArrayList<String>();
+    for (int key = 0; key < 64; key++) {
+      int shard =
+          eventQueue.getShard(
+              new RecordingEvent(key, 0, new ArrayList<Integer>(), threads, new CountDownLatch(1)));
+      assertThat(shard).isAtLeast(0);
+      assertThat(shard).isLessThan(SHARDS);
+      used[shard] = true;
+    }
+    for (boolean shardUsed : used) {
+      assertThat(shardUsed).isTrue();
+    }
+  }
+
+  @Test
+  public void negativeKey() {
+    int shard =
+        eventQueue.getShard(
+            new RecordingEvent(
+                Integer.MIN_VALUE,
+                0,
+                new ArrayList<Integer>(),
+                new ArrayList<String>(),
+                new CountDownLatch(1)));
+    assertThat(shard).isAtLeast(0);
+    assertThat(shard).isLessThan(SHARDS);
+  }
+
+  @Test
+  public void entriesWithoutKeyUseFirstShard() {
+    assertThat(
+            eventQueue.getShard(
+                new EventQueue.Entry() {
+                  @Override
+                  public void process() {}
+                }))
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void getShardCount() {
+    assertThat(eventQueue.getShardCount()).isEqualTo(SHARDS);
+  }
+
+  @Test
+  public void toShards() {
+    assertThat(ShardedEventQueue.toShards(4)).isEqualTo(4);
+    assertThat(ShardedEventQueue.toShards(0)).isEqualTo(1);
+    assertThat(ShardedEventQueue.toShards(-1)).isEqualTo(1);
+    assertThat(ShardedEventQueue.toShards(1000)).isEqualTo(64);
+  }
+}
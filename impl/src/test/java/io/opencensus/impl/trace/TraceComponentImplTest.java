@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.impl.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.implcore.trace.internal.RandomHandler;
+import io.opencensus.implcore.trace.internal.RandomHandler.SplitMixRandomHandler;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.Tracing;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TraceComponentImpl}. */
+@RunWith(JUnit4.class)
+public class TraceComponentImplTest {
+  @Test
+  public void usesSplitMixRandomHandler() {
+    RandomHandler randomHandler = TraceComponentImpl.newRandomHandler();
+    assertThat(randomHandler).isInstanceOf(SplitMixRandomHandler.class);
+    // One generator per thread.
+    assertThat(randomHandler.current()).isSameInstanceAs(randomHandler.current());
+  }
+
+  @Test
+  public void generatesValidIds() {
+    // Only one TraceComponentImpl can register its metrics, use the one loaded by Tracing.
+    Span span = Tracing.getTracer().spanBuilder("span").startSpan();
+    SpanContext context = span.getContext();
+    assertThat(context.getTraceId().isValid()).isTrue();
+    assertThat(context.getSpanId().isValid()).isTrue();
+    span.end();
+  }
+}
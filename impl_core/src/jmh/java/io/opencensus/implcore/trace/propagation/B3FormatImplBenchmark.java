@@ -45,6 +45,8 @@ public class B3FormatImplBenchmark {
     private TextFormatBenchmarkBase textFormatBase;
     private SpanContext spanContext;
     private Map<String, String> spanContextHeaders;
+    private TextFormatBenchmarkBase singleHeaderTextFormatBase;
+    private Map<String, String> singleHeaderSpanContextHeaders;
 
     @Setup
     public void setup() {
@@ -58,6 +60,10 @@ public class B3FormatImplBenchmark {
               Tracestate.builder().build());
       spanContextHeaders = new HashMap<String, String>();
       textFormatBase.inject(spanContext, spanContextHeaders);
+      singleHeaderTextFormatBase =
+          new TextFormatBenchmarkBase(new B3Format(/* injectSingleHeader= */ true));
+      singleHeaderSpanContextHeaders = new HashMap<String, String>();
+      singleHeaderTextFormatBase.inject(spanContext, singleHeaderSpanContextHeaders);
     }
   }
 
@@ -96,4 +102,28 @@ public class B3FormatImplBenchmark {
     data.textFormatBase.inject(data.spanContext, carrier);
     return data.textFormatBase.extract(carrier);
   }
+
+  /**
+   * This benchmark attempts to measure performance of {@link TextFormat#inject(SpanContext, Object,
+   * Setter)} with the single header encoding.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Map<String, String> injectSingleHeader(Data data) {
+    Map<String, String> carrier = new HashMap<String, String>();
+    data.singleHeaderTextFormatBase.inject(data.spanContext, carrier);
+    return carrier;
+  }
+
+  /**
+   * This benchmark attempts to measure performance of {@link TextFormat#extract(Object, Getter)}
+   * with the single header encoding.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SpanContext extractSingleHeader(Data data) throws SpanContextParseException {
+    return data.singleHeaderTextFormatBase.extract(data.singleHeaderSpanContextHeaders);
+  }
 }
@@ -23,6 +23,7 @@ import io.opencensus.trace.TraceOptions;
 import io.opencensus.trace.Tracestate;
 import io.opencensus.trace.propagation.BinaryFormat;
 import io.opencensus.trace.propagation.SpanContextParseException;
+import java.nio.ByteBuffer;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -41,6 +42,7 @@ public class BinaryFormatImplBenchmark {
     private BinaryFormat binaryFormat;
     private SpanContext spanContext;
     private byte[] spanContextBinary;
+    private ByteBuffer directBuffer;
 
     @Setup
     public void setup() {
@@ -53,6 +55,8 @@ public class BinaryFormatImplBenchmark {
               TraceOptions.builder().setIsSampled(random.nextBoolean()).build(),
               Tracestate.builder().build());
       spanContextBinary = binaryFormat.toByteArray(spanContext);
+      directBuffer = ByteBuffer.allocateDirect(spanContextBinary.length);
+      binaryFormat.toByteBuffer(spanContext, directBuffer, 0);
     }
   }
 
@@ -87,4 +91,26 @@ public class BinaryFormatImplBenchmark {
   public SpanContext toFromBinarySpanContext(Data data) throws SpanContextParseException {
     return data.binaryFormat.fromByteArray(data.binaryFormat.toByteArray(data.spanContext));
   }
+
+  /**
+   * This benchmark attempts to measure performance of {@link BinaryFormat#toByteBuffer(SpanContext,
+   * ByteBuffer, int)} with a direct buffer.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public int toDirectBufferSpanContext(Data data) {
+    return data.binaryFormat.toByteBuffer(data.spanContext, data.directBuffer, 0);
+  }
+
+  /**
+   * This benchmark attempts to measure performance of {@link
+   * BinaryFormat#fromByteBuffer(ByteBuffer, int, int)} with a direct buffer.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SpanContext fromDirectBufferSpanContext(Data data) throws SpanContextParseException {
+    return data.binaryFormat.fromByteBuffer(data.directBuffer, 0, data.directBuffer.capacity());
+  }
 }
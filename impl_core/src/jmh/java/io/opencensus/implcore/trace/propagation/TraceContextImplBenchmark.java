@@ -46,6 +46,8 @@ public class TraceContextImplBenchmark {
     private TextFormatBenchmarkBase textFormatBase;
     private SpanContext spanContext;
     private Map<String, String> spanContextHeaders;
+    private SpanContext spanContextWithTracestate;
+    private Map<String, String> spanContextWithTracestateHeaders;
 
     @Setup
     public void setup() {
@@ -60,6 +62,19 @@ public class TraceContextImplBenchmark {
               Tracestate.builder().build());
       spanContextHeaders = new HashMap<String, String>();
       textFormatBase.inject(spanContext, spanContextHeaders);
+      spanContextWithTracestate =
+          SpanContext.create(
+              spanContext.getTraceId(),
+              spanContext.getSpanId(),
+              spanContext.getTraceOptions(),
+              Tracestate.builder()
+                  .set("congo", "t61rcWkgMzE")
+                  .set("rojo", "00f067aa0ba902b7")
+                  .set("vendor1", "value1")
+                  .set("vendor2", "value2")
+                  .build());
+      spanContextWithTracestateHeaders = new HashMap<String, String>();
+      textFormatBase.inject(spanContextWithTracestate, spanContextWithTracestateHeaders);
     }
   }
 
@@ -98,4 +113,40 @@ public class TraceContextImplBenchmark {
     data.textFormatBase.inject(data.spanContext, carrier);
     return data.textFormatBase.extract(carrier);
   }
+
+  /**
+   * This benchmark attempts to measure performance of {@link TextFormat#inject(SpanContext, Object,
+   * Setter)} with a non-empty tracestate.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Map<String, String> injectWithTracestate(Data data) {
+    Map<String, String> carrier = new HashMap<String, String>();
+    data.textFormatBase.inject(data.spanContextWithTracestate, carrier);
+    return carrier;
+  }
+
+  /**
+   * This benchmark attempts to measure performance of {@link TextFormat#extract(Object, Getter)}
+   * with a non-empty tracestate.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SpanContext extractWithTracestate(Data data) throws SpanContextParseException {
+    return data.textFormatBase.extract(data.spanContextWithTracestateHeaders);
+  }
+
+  /**
+   * This benchmark attempts to measure performance of {@link TextFormat#extract(Object, Getter)}
+   * with a tracestate that is parsed every time.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Tracestate parseTracestate(Data data) {
+    return TraceContextFormat.parseTracestate(
+        data.spanContextWithTracestateHeaders.get(TraceContextFormat.TRACESTATE));
+  }
 }
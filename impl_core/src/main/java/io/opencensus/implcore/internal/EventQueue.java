@@ -33,4 +33,31 @@ public interface EventQueue {
      */
     void process();
   }
+
+  /**
+   * An {@link Entry} with a key. An {@link EventQueue} that processes entries concurrently
+   * processes the entries with the same key in the order in which they were enqueued. Entries that
+   * are not keyed are processed in order with each other.
+   */
+  interface KeyedEntry extends Entry {
+    /**
+     * Returns the key of this entry.
+     *
+     * @return the key of this entry.
+     */
+    int getKey();
+  }
+
+  /**
+   * Implemented by an {@link EventQueue} that processes the {@link KeyedEntry}s with different keys
+   * concurrently, on several shards.
+   */
+  interface Sharded {
+    /**
+     * Returns the number of shards processing the entries concurrently.
+     *
+     * @return the number of shards processing the entries concurrently.
+     */
+    int getShardCount();
+  }
 }
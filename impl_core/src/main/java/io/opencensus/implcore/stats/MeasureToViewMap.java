@@ -68,11 +68,22 @@ final class MeasureToViewMap {
   // unregistered.
   @javax.annotation.Nullable private volatile Set<View> exportedViews;
 
+  // An immutable copy of the registered measures and their views, replaced whenever a view is
+  // registered, so that stats are recorded without holding the lock of this map. Each
+  // MutableViewData is guarded by its own lock, so several threads can record stats concurrently.
+  private volatile Map<String, MeasureViews> measureViews =
+      Collections.<String, MeasureViews>emptyMap();
+
   /** Returns a {@link ViewData} corresponding to the given {@link View.Name}. */
   @javax.annotation.Nullable
   synchronized ViewData getView(View.Name viewName, Clock clock, State state) {
     MutableViewData view = getMutableViewData(viewName);
-    return view == null ? null : view.toViewData(clock.now(), state);
+    if (view == null) {
+      return null;
+    }
+    synchronized (view) {
+      return view.toViewData(clock.now(), state);
+    }
   }
 
   Set<View> getExportedViews() {
@@ -121,6 +132,19 @@ final class MeasureToViewMap {
     }
     Timestamp now = clock.now();
     mutableMap.put(view.getMeasure().getName(), MutableViewData.create(view, now));
+    updateMeasureViews();
+  }
+
+  @GuardedBy("this")
+  private void updateMeasureViews() {
+    Map<String, MeasureViews> measureViews = new HashMap<String, MeasureViews>();
+    for (Measure measure : registeredMeasures.values()) {
+      measureViews.put(
+          measure.getName(),
+          new MeasureViews(
+              measure, new ArrayList<MutableViewData>(mutableMap.get(measure.getName()))));
+    }
+    this.measureViews = Collections.unmodifiableMap(measureViews);
   }
 
   @javax.annotation.Nullable
@@ -145,20 +169,30 @@ final class MeasureToViewMap {
   }
 
   // Records stats with a set of tags.
-  synchronized void record(TagContext tags, MeasureMapInternal stats, Timestamp timestamp) {
-    Iterator<Measurement> iterator = stats.iterator();
+  void record(TagContext tags, MeasureMapInternal stats, Timestamp timestamp) {
     Map<String, AttachmentValue> attachments = stats.getAttachments();
+    Iterator<Measurement> iterator = stats.iterator();
     while (iterator.hasNext()) {
-      Measurement measurement = iterator.next();
-      Measure measure = measurement.getMeasure();
-      if (!measure.equals(registeredMeasures.get(measure.getName()))) {
-        // unregistered measures will be ignored.
-        continue;
-      }
-      Collection<MutableViewData> viewDataCollection = mutableMap.get(measure.getName());
-      for (MutableViewData viewData : viewDataCollection) {
-        viewData.record(
-            tags, RecordUtils.getDoubleValueFromMeasurement(measurement), timestamp, attachments);
+      record(tags, iterator.next(), attachments, timestamp);
+    }
+  }
+
+  // Records a measurement with a set of tags.
+  void record(
+      TagContext tags,
+      Measurement measurement,
+      Map<String, AttachmentValue> attachments,
+      Timestamp timestamp) {
+    Measure measure = measurement.getMeasure();
+    MeasureViews views = measureViews.get(measure.getName());
+    if (views == null || !measure.equals(views.measure)) {
+      // unregistered measures will be ignored.
+      return;
+    }
+    double value = RecordUtils.getDoubleValueFromMeasurement(measurement);
+    for (MutableViewData viewData : views.mutableViewDataList) {
+      synchronized (viewData) {
+        viewData.record(tags, value, timestamp, attachments);
       }
     }
   }
@@ -167,7 +201,11 @@ final class MeasureToViewMap {
     List<Metric> metrics = new ArrayList<Metric>();
     Timestamp now = clock.now();
     for (Entry<String, MutableViewData> entry : mutableMap.entries()) {
-      Metric metric = entry.getValue().toMetric(now, state);
+      MutableViewData mutableViewData = entry.getValue();
+      Metric metric;
+      synchronized (mutableViewData) {
+        metric = mutableViewData.toMetric(now, state);
+      }
       if (metric != null) {
         metrics.add(metric);
       }
@@ -179,7 +217,9 @@ final class MeasureToViewMap {
   synchronized void clearStats() {
     for (Entry<String, Collection<MutableViewData>> entry : mutableMap.asMap().entrySet()) {
       for (MutableViewData mutableViewData : entry.getValue()) {
-        mutableViewData.clearStats();
+        synchronized (mutableViewData) {
+          mutableViewData.clearStats();
+        }
       }
     }
   }
@@ -188,8 +228,21 @@ final class MeasureToViewMap {
   synchronized void resumeStatsCollection(Timestamp now) {
     for (Entry<String, Collection<MutableViewData>> entry : mutableMap.asMap().entrySet()) {
       for (MutableViewData mutableViewData : entry.getValue()) {
-        mutableViewData.resumeStatsCollection(now);
+        synchronized (mutableViewData) {
+          mutableViewData.resumeStatsCollection(now);
+        }
       }
     }
   }
+
+  // A registered measure and its views.
+  private static final class MeasureViews {
+    private final Measure measure;
+    private final List<MutableViewData> mutableViewDataList;
+
+    private MeasureViews(Measure measure, List<MutableViewData> mutableViewDataList) {
+      this.measure = measure;
+      this.mutableViewDataList = mutableViewDataList;
+    }
+  }
 }
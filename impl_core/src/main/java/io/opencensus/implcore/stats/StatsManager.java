@@ -19,14 +19,23 @@ package io.opencensus.implcore.stats;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import io.opencensus.common.Clock;
+import io.opencensus.common.Timestamp;
 import io.opencensus.implcore.internal.CurrentState;
 import io.opencensus.implcore.internal.CurrentState.State;
 import io.opencensus.implcore.internal.EventQueue;
+import io.opencensus.metrics.data.AttachmentValue;
 import io.opencensus.metrics.export.Metric;
+import io.opencensus.stats.Measure.MeasureDouble;
+import io.opencensus.stats.Measurement;
+import io.opencensus.stats.Measurement.MeasurementDouble;
 import io.opencensus.stats.View;
 import io.opencensus.stats.ViewData;
 import io.opencensus.tags.TagContext;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -41,6 +50,10 @@ final class StatsManager {
   private final CurrentState state;
   private final MeasureToViewMap measureToViewMap = new MeasureToViewMap();
 
+  // True if the queue processes entries concurrently. The measurements of a record are then split
+  // by measure, so that the measurements of a measure are processed in order.
+  private final boolean splitByMeasure;
+
   StatsManager(EventQueue queue, Clock clock, CurrentState state) {
     checkNotNull(queue, "EventQueue");
     checkNotNull(clock, "Clock");
@@ -48,6 +61,8 @@ final class StatsManager {
     this.queue = queue;
     this.clock = clock;
     this.state = state;
+    this.splitByMeasure =
+        queue instanceof EventQueue.Sharded && ((EventQueue.Sharded) queue).getShardCount() > 1;
   }
 
   void registerView(View view) {
@@ -66,8 +81,25 @@ final class StatsManager {
   void record(TagContext tags, MeasureMapInternal measurementValues) {
     // TODO(songya): consider exposing No-op MeasureMap and use it when stats state is DISABLED, so
     // that we don't need to create actual MeasureMapImpl.
-    if (state.getInternal() == State.ENABLED) {
+    if (state.getInternal() != State.ENABLED) {
+      return;
+    }
+    if (!splitByMeasure) {
       queue.enqueue(new StatsEvent(this, tags, measurementValues));
+      return;
+    }
+    // One event per measurement, keyed by measure, so that the measurements of a measure are
+    // processed in order even if the queue processes events concurrently.
+    Map<String, AttachmentValue> attachments = measurementValues.getAttachments();
+    Iterator<Measurement> iterator = measurementValues.iterator();
+    while (iterator.hasNext()) {
+      queue.enqueue(new MeasurementEvent(this, tags, iterator.next(), attachments));
+    }
+  }
+
+  void recordBatch(TagContext tags, MeasureDouble measure, double[] values, int count) {
+    if (state.getInternal() == State.ENABLED && count > 0) {
+      queue.enqueue(new StatsBatchEvent(this, tags, measure, Arrays.copyOf(values, count)));
     }
   }
 
@@ -101,4 +133,69 @@ final class StatsManager {
       statsManager.measureToViewMap.record(tags, stats, statsManager.clock.now());
     }
   }
+
+  // An EventQueue entry that records one measurement from a call to StatsManager.record(...), when
+  // the queue processes the measures concurrently.
+  private static final class MeasurementEvent implements EventQueue.KeyedEntry {
+    private final TagContext tags;
+    private final Measurement measurement;
+    private final Map<String, AttachmentValue> attachments;
+    private final StatsManager statsManager;
+
+    MeasurementEvent(
+        StatsManager statsManager,
+        TagContext tags,
+        Measurement measurement,
+        Map<String, AttachmentValue> attachments) {
+      this.statsManager = statsManager;
+      this.tags = tags;
+      this.measurement = measurement;
+      this.attachments = attachments;
+    }
+
+    @Override
+    public int getKey() {
+      return measurement.getMeasure().getName().hashCode();
+    }
+
+    @Override
+    public void process() {
+      // Add Timestamp to value after it went through the DisruptorQueue.
+      statsManager.measureToViewMap.record(
+          tags, measurement, attachments, statsManager.clock.now());
+    }
+  }
+
+  // An EventQueue entry that records the values of a call to StatsManager.recordBatch(...). Keyed
+  // like a MeasurementEvent, so the batch is processed in order with the other values of the
+  // measure.
+  private static final class StatsBatchEvent implements EventQueue.KeyedEntry {
+    private final TagContext tags;
+    private final MeasureDouble measure;
+    private final double[] values;
+    private final StatsManager statsManager;
+
+    StatsBatchEvent(
+        StatsManager statsManager, TagContext tags, MeasureDouble measure, double[] values) {
+      this.statsManager = statsManager;
+      this.tags = tags;
+      this.measure = measure;
+      this.values = values;
+    }
+
+    @Override
+    public int getKey() {
+      return measure.getName().hashCode();
+    }
+
+    @Override
+    public void process() {
+      Timestamp now = statsManager.clock.now();
+      Map<String, AttachmentValue> attachments = Collections.<String, AttachmentValue>emptyMap();
+      for (double value : values) {
+        statsManager.measureToViewMap.record(
+            tags, MeasurementDouble.create(measure, value), attachments, now);
+      }
+    }
+  }
 }
@@ -16,9 +16,13 @@
 
 package io.opencensus.implcore.stats;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import io.opencensus.stats.Measure.MeasureDouble;
 import io.opencensus.stats.StatsRecorder;
+import io.opencensus.tags.TagContext;
+import java.util.Arrays;
 
 /** Implementation of {@link StatsRecorder}. */
 public final class StatsRecorderImpl extends StatsRecorder {
@@ -33,4 +37,40 @@ public final class StatsRecorderImpl extends StatsRecorder {
   public MeasureMapImpl newMeasureMap() {
     return MeasureMapImpl.create(statsManager);
   }
+
+  /**
+   * Records the first {@code count} values of {@code values} for {@code measure} with the same
+   * tags, with a single event of the event queue. Negative values are dropped.
+   *
+   * @param tags the tags associated with the values.
+   * @param measure the measure of the values.
+   * @param values the values to record, not retained by this method.
+   * @param count the number of values to record.
+   */
+  public void recordBatch(TagContext tags, MeasureDouble measure, double[] values, int count) {
+    checkNotNull(tags, "tags");
+    checkNotNull(measure, "measure");
+    checkNotNull(values, "values");
+    checkArgument(count >= 0 && count <= values.length, "count is out of range.");
+    for (int i = 0; i < count; i++) {
+      if (values[i] < 0) {
+        double[] nonNegative = removeNegativeValues(values, count);
+        statsManager.recordBatch(tags, measure, nonNegative, nonNegative.length);
+        return;
+      }
+    }
+    statsManager.recordBatch(tags, measure, values, count);
+  }
+
+  // Returns the non-negative values among the first count values.
+  private static double[] removeNegativeValues(double[] values, int count) {
+    double[] nonNegative = new double[count];
+    int nonNegativeCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (values[i] >= 0) {
+        nonNegative[nonNegativeCount++] = values[i];
+      }
+    }
+    return Arrays.copyOf(nonNegative, nonNegativeCount);
+  }
 }
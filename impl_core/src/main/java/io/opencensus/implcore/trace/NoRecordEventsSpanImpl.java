@@ -54,6 +54,27 @@ final class NoRecordEventsSpanImpl extends Span {
     Preconditions.checkNotNull(value, "value");
   }
 
+  @Override
+  public void putAttribute(String key, String value) {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(value, "value");
+  }
+
+  @Override
+  public void putAttribute(String key, long value) {
+    Preconditions.checkNotNull(key, "key");
+  }
+
+  @Override
+  public void putAttribute(String key, double value) {
+    Preconditions.checkNotNull(key, "key");
+  }
+
+  @Override
+  public void putAttribute(String key, boolean value) {
+    Preconditions.checkNotNull(key, "key");
+  }
+
   @Override
   public void putAttributes(Map<String, AttributeValue> attributes) {
     Preconditions.checkNotNull(attributes, "attributes");
@@ -21,10 +21,11 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.EvictingQueue;
 import io.opencensus.common.Clock;
+import io.opencensus.common.Timestamp;
 import io.opencensus.implcore.internal.TimestampConverter;
 import io.opencensus.implcore.trace.internal.ConcurrentIntrusiveList.Element;
+import io.opencensus.implcore.trace.internal.ObjectPool;
 import io.opencensus.trace.Annotation;
 import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.EndSpanOptions;
@@ -35,22 +36,44 @@ import io.opencensus.trace.SpanId;
 import io.opencensus.trace.Status;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.config.TraceParams;
+import io.opencensus.trace.export.ReadableSpan;
+import io.opencensus.trace.export.ReadableSpan.AttributeVisitor;
+import io.opencensus.trace.export.ReadableSpan.LinkVisitor;
+import io.opencensus.trace.export.ReadableSpan.TimedEventVisitor;
 import io.opencensus.trace.export.SpanData;
 import io.opencensus.trace.export.SpanData.TimedEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 // TODO(hailongwen): remove the usage of `NetworkEvent` in the future.
-/** Implementation for the {@link Span} class that records trace events. */
+/**
+ * Implementation for the {@link Span} class that records trace events.
+ *
+ * <p>Recording trace events does not take any lock: every event type is stored in its own
+ * append-only, capacity-bounded buffer and the end of the span is an atomic state transition. This
+ * allows a span to be shared between multiple threads (e.g. an event loop and a worker pool)
+ * without contention, and {@link #toSpanData()} takes a snapshot without blocking the writers.
+ *
+ * <p>Once the span is ended, {@link #toReadableSpan()} returns a view that reads the recorded
+ * events in place, so the exporters do not have to copy them to a {@link SpanData}.
+ *
+ * <p>Spans created with a {@link BufferPool} take their buffers from the pool, and give them back
+ * when the exporter calls {@link #recycleBuffers(SpanData)}. Calls made on the span after that
+ * point never touch the recycled buffers.
+ */
 @ThreadSafe
 public final class RecordEventsSpanImpl extends Span implements Element<RecordEventsSpanImpl> {
   private static final Logger logger = Logger.getLogger(Tracer.class.getName());
@@ -58,6 +81,44 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
   private static final EnumSet<Span.Options> RECORD_EVENTS_SPAN_OPTIONS =
       EnumSet.of(Span.Options.RECORD_EVENTS);
 
+  // The span accepts new events only in the RUNNING state. The thread that moves the span from
+  // RUNNING to ENDING owns the end-time fields, and publishes them by moving the span to ENDED.
+  // Spans that recycle their buffers move from ENDED to RECYCLED when the buffers are released.
+  private static final int STATE_RUNNING = 0;
+  private static final int STATE_ENDING = 1;
+  private static final int STATE_ENDED = 2;
+  private static final int STATE_RECYCLED = 3;
+
+  private static final AtomicIntegerFieldUpdater<RecordEventsSpanImpl> stateUpdater =
+      AtomicIntegerFieldUpdater.newUpdater(RecordEventsSpanImpl.class, "state");
+  private static final AtomicIntegerFieldUpdater<RecordEventsSpanImpl> numberOfChildrenUpdater =
+      AtomicIntegerFieldUpdater.newUpdater(RecordEventsSpanImpl.class, "numberOfChildren");
+  private static final AtomicIntegerFieldUpdater<RecordEventsSpanImpl> activeAccessorsUpdater =
+      AtomicIntegerFieldUpdater.newUpdater(RecordEventsSpanImpl.class, "activeAccessors");
+
+  private static final AtomicReferenceFieldUpdater<RecordEventsSpanImpl, AttributesWithCapacity>
+      attributesUpdater =
+          AtomicReferenceFieldUpdater.newUpdater(
+              RecordEventsSpanImpl.class, AttributesWithCapacity.class, "attributes");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<RecordEventsSpanImpl, TraceEvents>
+      annotationsUpdater =
+          AtomicReferenceFieldUpdater.newUpdater(
+              RecordEventsSpanImpl.class, TraceEvents.class, "annotations");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<RecordEventsSpanImpl, TraceEvents>
+      messageEventsUpdater =
+          AtomicReferenceFieldUpdater.newUpdater(
+              RecordEventsSpanImpl.class, TraceEvents.class, "messageEvents");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<RecordEventsSpanImpl, TraceEvents>
+      linksUpdater =
+          AtomicReferenceFieldUpdater.newUpdater(
+              RecordEventsSpanImpl.class, TraceEvents.class, "links");
+
   // The parent SpanId of this span. Null if this is a root span.
   @Nullable private final SpanId parentSpanId;
   // True if the parent is on a different process.
@@ -77,37 +138,33 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
   private final TimestampConverter timestampConverter;
   // The start time of the span.
   private final long startNanoTime;
-  // Set of recorded attributes. DO NOT CALL any other method that changes the ordering of events.
-  @GuardedBy("this")
-  @Nullable
-  private AttributesWithCapacity attributes;
-  // List of recorded annotations.
-  @GuardedBy("this")
-  @Nullable
-  private TraceEvents<EventWithNanoTime<Annotation>> annotations;
-  // List of recorded network events.
-  @GuardedBy("this")
-  @Nullable
-  private TraceEvents<EventWithNanoTime<io.opencensus.trace.MessageEvent>> messageEvents;
-  // List of recorded links to parent and child spans.
-  @GuardedBy("this")
-  @Nullable
-  private TraceEvents<Link> links;
-  // The number of children.
-  @GuardedBy("this")
-  private int numberOfChildren;
-  // The status of the span.
-  @GuardedBy("this")
-  @Nullable
-  private Status status;
-  // The end time of the span.
-  @GuardedBy("this")
+  // Set of recorded attributes. Lazily initialized using attributesUpdater.
+  @Nullable private volatile AttributesWithCapacity attributes;
+  // List of recorded annotations. Lazily initialized using annotationsUpdater.
+  @Nullable private volatile TraceEvents<Annotation> annotations;
+  // List of recorded network events. Lazily initialized using messageEventsUpdater.
+  @Nullable private volatile TraceEvents<io.opencensus.trace.MessageEvent> messageEvents;
+  // List of recorded links to parent and child spans. Lazily initialized using linksUpdater.
+  @Nullable private volatile TraceEvents<Link> links;
+  // The number of children. Updated using numberOfChildrenUpdater.
+  private volatile int numberOfChildren;
+  // The status set via setStatus while the span is running.
+  @Nullable private volatile Status status;
+  // One of STATE_RUNNING, STATE_ENDING, STATE_ENDED or STATE_RECYCLED. Updated using
+  // stateUpdater.
+  private volatile int state;
+  // The pool of the buffers used to record events. Null if the buffers are not recycled.
+  @Nullable private final BufferPool bufferPool;
+  // The number of threads that access the buffers. Only updated if the buffers are recycled, using
+  // activeAccessorsUpdater. The buffers are released only if there is no active accessor after
+  // moving the span to STATE_RECYCLED.
+  private volatile int activeAccessors;
+  // The data returned by toSpanData() after the buffers are recycled.
+  @Nullable private volatile SpanData recycledSpanData;
+  // The following fields are written only by the thread that ends the span, before the state is
+  // set to STATE_ENDED, and must be read only after observing STATE_ENDED.
+  @Nullable private Status endStatus;
   private long endNanoTime;
-  // True if the span is ended.
-  @GuardedBy("this")
-  private boolean hasBeenEnded;
-
-  @GuardedBy("this")
   private boolean sampleToLocalSpanStore;
 
   // Pointers for the ConcurrentIntrusiveList$Element. Guarded by the ConcurrentIntrusiveList.
@@ -141,6 +198,48 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
       StartEndHandler startEndHandler,
       @Nullable TimestampConverter timestampConverter,
       Clock clock) {
+    return startSpan(
+        context,
+        name,
+        kind,
+        parentSpanId,
+        hasRemoteParent,
+        traceParams,
+        startEndHandler,
+        timestampConverter,
+        clock,
+        /* bufferPool= */ null);
+  }
+
+  /**
+   * Creates and starts a span with the given configuration.
+   *
+   * @param context supplies the trace_id and span_id for the newly started span.
+   * @param name the displayed name for the new span.
+   * @param parentSpanId the span_id of the parent span, or null if the new span is a root span.
+   * @param hasRemoteParent {@code true} if the parentContext is remote. {@code null} if this is a
+   *     root span.
+   * @param traceParams trace parameters like sampler and probability.
+   * @param startEndHandler handler called when the span starts and ends.
+   * @param timestampConverter null if the span is a root span or the parent is not sampled. If the
+   *     parent is sampled, we should use the same converter to ensure ordering between tracing
+   *     events.
+   * @param clock the clock used to get the time.
+   * @param bufferPool the pool of the buffers used to record events, or null if the buffers must
+   *     not be recycled.
+   * @return a new and started span.
+   */
+  static RecordEventsSpanImpl startSpan(
+      SpanContext context,
+      String name,
+      @Nullable Kind kind,
+      @Nullable SpanId parentSpanId,
+      @Nullable Boolean hasRemoteParent,
+      TraceParams traceParams,
+      StartEndHandler startEndHandler,
+      @Nullable TimestampConverter timestampConverter,
+      Clock clock,
+      @Nullable BufferPool bufferPool) {
     RecordEventsSpanImpl span =
         new RecordEventsSpanImpl(
             context,
@@ -151,7 +250,8 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
             traceParams,
             startEndHandler,
             timestampConverter,
-            clock);
+            clock,
+            bufferPool);
     // Call onStart here instead of calling in the constructor to make sure the span is completely
     // initialized.
     startEndHandler.onStart(span);
@@ -173,9 +273,7 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
    * @return the status of the {@code Span}.
    */
   public Status getStatus() {
-    synchronized (this) {
-      return getStatusWithDefault();
-    }
+    return state >= STATE_ENDED ? getEndStatusWithDefault() : getStatusWithDefault();
   }
 
   /**
@@ -185,9 +283,7 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
    * @return the end nano time.
    */
   public long getEndNanoTime() {
-    synchronized (this) {
-      return hasBeenEnded ? endNanoTime : clock.nowNanos();
-    }
+    return state >= STATE_ENDED ? endNanoTime : clock.nowNanos();
   }
 
   /**
@@ -197,9 +293,7 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
    * @return the latency of the {@code Span} in nanos.
    */
   public long getLatencyNs() {
-    synchronized (this) {
-      return hasBeenEnded ? endNanoTime - startNanoTime : clock.nowNanos() - startNanoTime;
-    }
+    return getEndNanoTime() - startNanoTime;
   }
 
   /**
@@ -208,9 +302,59 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
    * @return if the name of this {@code Span} must be register to the {@code SampledSpanStore}.
    */
   public boolean getSampleToLocalSpanStore() {
-    synchronized (this) {
-      checkState(hasBeenEnded, "Running span does not have the SampleToLocalSpanStore set.");
-      return sampleToLocalSpanStore;
+    checkState(
+        state >= STATE_ENDED, "Running span does not have the SampleToLocalSpanStore set.");
+    return sampleToLocalSpanStore;
+  }
+
+  /**
+   * Passes the most recent value of every attribute of this {@code Span} to the visitor, without
+   * copying the attributes.
+   *
+   * @param visitor the visitor of the attributes.
+   */
+  public void forEachAttribute(AttributeVisitor visitor) {
+    checkNotNull(visitor, "visitor");
+    if (!beginRead()) {
+      SpanData spanData = checkNotNull(recycledSpanData, "recycledSpanData");
+      for (Map.Entry<String, AttributeValue> entry :
+          spanData.getAttributes().getAttributeMap().entrySet()) {
+        visitor.visitAttribute(entry.getKey(), entry.getValue());
+      }
+      return;
+    }
+    try {
+      AttributesWithCapacity attributes = this.attributes;
+      if (attributes != null) {
+        attributes.forEachAttribute(visitor);
+      }
+    } finally {
+      endAccess();
+    }
+  }
+
+  /**
+   * Removes the attribute with the given key, which is then counted as dropped. Unlike the other
+   * events, attributes can be removed once the {@code Span} is ended, so a {@link SpanProcessor}
+   * can trim the span before it is exported.
+   *
+   * <p>Does nothing if the span was already exported and its buffers were recycled.
+   *
+   * @param key the key of the attribute to remove.
+   */
+  public void removeAttribute(String key) {
+    checkNotNull(key, "key");
+    if (!beginRead()) {
+      logger.log(Level.FINE, "Calling removeAttribute() on a recycled Span.");
+      return;
+    }
+    try {
+      AttributesWithCapacity attributes = this.attributes;
+      if (attributes != null) {
+        attributes.removeAttribute(key);
+      }
+    } finally {
+      endAccess();
     }
   }
 
@@ -237,214 +381,561 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
   /**
    * Returns an immutable representation of all the data from this {@code Span}.
    *
+   * <p>This does not block the threads that record events on this {@code Span}. Events that are
+   * recorded concurrently with this call may or may not be part of the returned snapshot.
+   *
    * @return an immutable representation of all the data from this {@code Span}.
    * @throws IllegalStateException if the Span doesn't have RECORD_EVENTS option.
    */
   public SpanData toSpanData() {
-    synchronized (this) {
-      SpanData.Attributes attributesSpanData =
-          attributes == null
-              ? SpanData.Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0)
-              : SpanData.Attributes.create(attributes, attributes.getNumberOfDroppedAttributes());
-      SpanData.TimedEvents<Annotation> annotationsSpanData =
-          createTimedEvents(getInitializedAnnotations(), timestampConverter);
-      SpanData.TimedEvents<io.opencensus.trace.MessageEvent> messageEventsSpanData =
-          createTimedEvents(getInitializedNetworkEvents(), timestampConverter);
-      SpanData.Links linksSpanData =
-          links == null
-              ? SpanData.Links.create(Collections.<Link>emptyList(), 0)
-              : SpanData.Links.create(
-                  new ArrayList<Link>(links.events), links.getNumberOfDroppedEvents());
-      return SpanData.create(
-          getContext(),
-          parentSpanId,
-          hasRemoteParent,
-          name,
-          kind,
-          timestampConverter.convertNanoTime(startNanoTime),
-          attributesSpanData,
-          annotationsSpanData,
-          messageEventsSpanData,
-          linksSpanData,
-          numberOfChildren,
-          hasBeenEnded ? getStatusWithDefault() : null,
-          hasBeenEnded ? timestampConverter.convertNanoTime(endNanoTime) : null);
+    if (bufferPool == null) {
+      return createSpanData();
+    }
+    activeAccessorsUpdater.incrementAndGet(this);
+    try {
+      if (state == STATE_RECYCLED) {
+        return checkNotNull(recycledSpanData, "recycledSpanData");
+      }
+      return createSpanData();
+    } finally {
+      activeAccessorsUpdater.decrementAndGet(this);
     }
   }
 
+  /**
+   * Returns a read-only view of this ended span. The view reads the recorded events in place, and
+   * creates the {@link SpanData} only if {@link ReadableSpan#toSpanData()} is called.
+   *
+   * <p>If the span was created with a {@link BufferPool}, the buffers can be reused by new spans
+   * while the view is in use. In that case the events are copied to a {@code SpanData}, the buffers
+   * are recycled, and the returned view reads the {@code SpanData}.
+   *
+   * @return a read-only view of this ended span.
+   * @throws IllegalStateException if the span is not ended.
+   */
+  public ReadableSpan toReadableSpan() {
+    checkState(state >= STATE_ENDED, "Running span does not have a ReadableSpan.");
+    if (bufferPool != null) {
+      SpanData spanData = toSpanData();
+      recycleBuffers(spanData);
+      return ReadableSpan.fromSpanData(spanData);
+    }
+    return new EndedSpan();
+  }
+
+  /**
+   * Releases the buffers used to record the events of this ended span to the {@link BufferPool}
+   * the span was created with, to be reused by new spans. Subsequent calls to {@link
+   * #toSpanData()} return {@code spanData}.
+   *
+   * <p>Does nothing if the span was created without a {@code BufferPool} or is not ended. The
+   * buffers are left to the garbage collector if another thread is using them.
+   *
+   * @param spanData the data of this span, as returned by {@link #toSpanData()} after the span
+   *     ended.
+   */
+  public void recycleBuffers(SpanData spanData) {
+    BufferPool bufferPool = this.bufferPool;
+    if (bufferPool == null || state != STATE_ENDED) {
+      return;
+    }
+    recycledSpanData = checkNotNull(spanData, "spanData");
+    // Accessors register themselves before reading the state, so either they observe
+    // STATE_RECYCLED or they are visible here.
+    if (!stateUpdater.compareAndSet(this, STATE_ENDED, STATE_RECYCLED) || activeAccessors != 0) {
+      return;
+    }
+    AttributesWithCapacity attributes = this.attributes;
+    TraceEvents<Annotation> annotations = this.annotations;
+    TraceEvents<io.opencensus.trace.MessageEvent> messageEvents = this.messageEvents;
+    TraceEvents<Link> links = this.links;
+    this.attributes = null;
+    this.annotations = null;
+    this.messageEvents = null;
+    this.links = null;
+    if (attributes != null) {
+      attributes.reset();
+      bufferPool.attributes.release(attributes);
+    }
+    if (annotations != null) {
+      annotations.reset();
+      bufferPool.annotations.release(annotations);
+    }
+    if (messageEvents != null) {
+      messageEvents.reset();
+      bufferPool.messageEvents.release(messageEvents);
+    }
+    if (links != null) {
+      links.reset();
+      bufferPool.links.release(links);
+    }
+  }
+
+  private SpanData createSpanData() {
+    // Read the state first, the end-time fields are visible only after observing STATE_ENDED.
+    boolean hasBeenEnded = state >= STATE_ENDED;
+    AttributesWithCapacity attributes = this.attributes;
+    TraceEvents<Link> links = this.links;
+    SpanData.Attributes attributesSpanData =
+        attributes == null
+            ? SpanData.Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0)
+            : attributes.toSpanDataAttributes();
+    SpanData.TimedEvents<Annotation> annotationsSpanData =
+        createTimedEvents(annotations, timestampConverter);
+    SpanData.TimedEvents<io.opencensus.trace.MessageEvent> messageEventsSpanData =
+        createTimedEvents(messageEvents, timestampConverter);
+    SpanData.Links linksSpanData;
+    if (links == null) {
+      linksSpanData = SpanData.Links.create(Collections.<Link>emptyList(), 0);
+    } else {
+      List<Link> linksList = new ArrayList<Link>();
+      int numberOfDroppedLinks = links.copyEventsTo(linksList);
+      linksSpanData = SpanData.Links.create(linksList, numberOfDroppedLinks);
+    }
+    return SpanData.create(
+        getContext(),
+        parentSpanId,
+        hasRemoteParent,
+        name,
+        kind,
+        timestampConverter.convertNanoTime(startNanoTime),
+        attributesSpanData,
+        annotationsSpanData,
+        messageEventsSpanData,
+        linksSpanData,
+        numberOfChildren,
+        hasBeenEnded ? getEndStatusWithDefault() : null,
+        hasBeenEnded ? timestampConverter.convertNanoTime(endNanoTime) : null);
+  }
+
   @Override
   public void putAttribute(String key, AttributeValue value) {
     Preconditions.checkNotNull(key, "key");
     Preconditions.checkNotNull(value, "value");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling putAttributes() on an ended Span.");
-        return;
-      }
-      getInitializedAttributes().putAttribute(key, value);
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttributes() on an ended Span.");
+      return;
     }
+    getInitializedAttributes().putAttribute(key, value, 0);
+    endAccess();
+  }
+
+  @Override
+  public void putAttribute(String key, String value) {
+    Preconditions.checkNotNull(key, "key");
+    Preconditions.checkNotNull(value, "value");
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttribute() on an ended Span.");
+      return;
+    }
+    getInitializedAttributes().putAttribute(key, value, 0);
+    endAccess();
+  }
+
+  @Override
+  public void putAttribute(String key, long value) {
+    Preconditions.checkNotNull(key, "key");
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttribute() on an ended Span.");
+      return;
+    }
+    getInitializedAttributes().putAttribute(key, AttributesWithCapacity.LONG_VALUE, value);
+    endAccess();
+  }
+
+  @Override
+  public void putAttribute(String key, double value) {
+    Preconditions.checkNotNull(key, "key");
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttribute() on an ended Span.");
+      return;
+    }
+    getInitializedAttributes()
+        .putAttribute(key, AttributesWithCapacity.DOUBLE_VALUE, Double.doubleToRawLongBits(value));
+    endAccess();
+  }
+
+  @Override
+  public void putAttribute(String key, boolean value) {
+    Preconditions.checkNotNull(key, "key");
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttribute() on an ended Span.");
+      return;
+    }
+    getInitializedAttributes()
+        .putAttribute(key, AttributesWithCapacity.BOOLEAN_VALUE, value ? 1 : 0);
+    endAccess();
   }
 
   @Override
   public void putAttributes(Map<String, AttributeValue> attributes) {
     Preconditions.checkNotNull(attributes, "attributes");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling putAttributes() on an ended Span.");
-        return;
-      }
-      getInitializedAttributes().putAttributes(attributes);
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling putAttributes() on an ended Span.");
+      return;
     }
+    getInitializedAttributes().putAttributes(attributes);
+    endAccess();
   }
 
   @Override
   public void addAnnotation(String description, Map<String, AttributeValue> attributes) {
     Preconditions.checkNotNull(description, "description");
     Preconditions.checkNotNull(attributes, "attribute");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling addAnnotation() on an ended Span.");
-        return;
-      }
-      getInitializedAnnotations()
-          .addEvent(
-              new EventWithNanoTime<Annotation>(
-                  clock.nowNanos(),
-                  Annotation.fromDescriptionAndAttributes(description, attributes)));
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling addAnnotation() on an ended Span.");
+      return;
     }
+    getInitializedAnnotations()
+        .addEvent(
+            clock.nowNanos(), Annotation.fromDescriptionAndAttributes(description, attributes));
+    endAccess();
   }
 
   @Override
   public void addAnnotation(Annotation annotation) {
     Preconditions.checkNotNull(annotation, "annotation");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling addAnnotation() on an ended Span.");
-        return;
-      }
-      getInitializedAnnotations()
-          .addEvent(new EventWithNanoTime<Annotation>(clock.nowNanos(), annotation));
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling addAnnotation() on an ended Span.");
+      return;
     }
+    getInitializedAnnotations().addEvent(clock.nowNanos(), annotation);
+    endAccess();
   }
 
   @Override
   public void addMessageEvent(io.opencensus.trace.MessageEvent messageEvent) {
     Preconditions.checkNotNull(messageEvent, "messageEvent");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling addNetworkEvent() on an ended Span.");
-        return;
-      }
-      getInitializedNetworkEvents()
-          .addEvent(
-              new EventWithNanoTime<io.opencensus.trace.MessageEvent>(
-                  clock.nowNanos(), checkNotNull(messageEvent, "networkEvent")));
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling addNetworkEvent() on an ended Span.");
+      return;
     }
+    getInitializedNetworkEvents()
+        .addEvent(clock.nowNanos(), checkNotNull(messageEvent, "networkEvent"));
+    endAccess();
   }
 
   @Override
   public void addLink(Link link) {
     Preconditions.checkNotNull(link, "link");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling addLink() on an ended Span.");
-        return;
-      }
-      getInitializedLinks().addEvent(link);
+    if (!beginAccess()) {
+      logger.log(Level.FINE, "Calling addLink() on an ended Span.");
+      return;
     }
+    // Links do not have a timestamp.
+    getInitializedLinks().addEvent(0, link);
+    endAccess();
   }
 
   @Override
   public void setStatus(Status status) {
     Preconditions.checkNotNull(status, "status");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling setStatus() on an ended Span.");
-        return;
-      }
-      this.status = status;
+    if (state != STATE_RUNNING) {
+      logger.log(Level.FINE, "Calling setStatus() on an ended Span.");
+      return;
     }
+    this.status = status;
   }
 
   @Override
   public void end(EndSpanOptions options) {
     Preconditions.checkNotNull(options, "options");
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling end() on an ended Span.");
-        return;
-      }
-      if (options.getStatus() != null) {
-        status = options.getStatus();
-      }
-      sampleToLocalSpanStore = options.getSampleToLocalSpanStore();
-      endNanoTime = clock.nowNanos();
-      hasBeenEnded = true;
+    if (!stateUpdater.compareAndSet(this, STATE_RUNNING, STATE_ENDING)) {
+      logger.log(Level.FINE, "Calling end() on an ended Span.");
+      return;
     }
+    // A concurrent setStatus() that did not finish before this point is ordered after end().
+    endStatus = options.getStatus() != null ? options.getStatus() : status;
+    sampleToLocalSpanStore = options.getSampleToLocalSpanStore();
+    endNanoTime = clock.nowNanos();
+    // Publishes all the end-time fields.
+    state = STATE_ENDED;
     startEndHandler.onEnd(this);
   }
 
   void addChild() {
-    synchronized (this) {
-      if (hasBeenEnded) {
-        logger.log(Level.FINE, "Calling end() on an ended Span.");
-        return;
-      }
-      numberOfChildren++;
+    if (state != STATE_RUNNING) {
+      logger.log(Level.FINE, "Calling end() on an ended Span.");
+      return;
+    }
+    numberOfChildrenUpdater.incrementAndGet(this);
+  }
+
+  // Registers an access to the buffers if they are recycled. Returns true if the span is running,
+  // in which case endAccess() must be called once done with the buffers.
+  private boolean beginAccess() {
+    if (bufferPool == null) {
+      return state == STATE_RUNNING;
+    }
+    activeAccessorsUpdater.incrementAndGet(this);
+    if (state == STATE_RUNNING) {
+      return true;
+    }
+    activeAccessorsUpdater.decrementAndGet(this);
+    return false;
+  }
+
+  // Registers a read of the buffers if they are recycled. Returns false if the buffers were already
+  // recycled, otherwise endAccess() must be called once done with the buffers.
+  private boolean beginRead() {
+    if (bufferPool == null) {
+      return true;
+    }
+    activeAccessorsUpdater.incrementAndGet(this);
+    if (state != STATE_RECYCLED) {
+      return true;
+    }
+    activeAccessorsUpdater.decrementAndGet(this);
+    return false;
+  }
+
+  private void endAccess() {
+    if (bufferPool != null) {
+      activeAccessorsUpdater.decrementAndGet(this);
     }
   }
 
-  @GuardedBy("this")
   private AttributesWithCapacity getInitializedAttributes() {
+    AttributesWithCapacity attributes = this.attributes;
     if (attributes == null) {
-      attributes = new AttributesWithCapacity(traceParams.getMaxNumberOfAttributes());
+      int capacity = traceParams.getMaxNumberOfAttributes();
+      attributes = bufferPool == null ? null : bufferPool.acquireAttributes(capacity);
+      if (attributes == null) {
+        attributes = new AttributesWithCapacity(capacity);
+      }
+      if (!attributesUpdater.compareAndSet(this, null, attributes)) {
+        // Another thread won the race, use its instance.
+        attributes = checkNotNull(this.attributes, "attributes");
+      }
     }
     return attributes;
   }
 
-  @GuardedBy("this")
-  private TraceEvents<EventWithNanoTime<Annotation>> getInitializedAnnotations() {
+  private TraceEvents<Annotation> getInitializedAnnotations() {
+    TraceEvents<Annotation> annotations = this.annotations;
     if (annotations == null) {
+      int capacity = traceParams.getMaxNumberOfAnnotations();
       annotations =
-          new TraceEvents<EventWithNanoTime<Annotation>>(traceParams.getMaxNumberOfAnnotations());
+          bufferPool == null
+              ? null
+              : BufferPool.<Annotation>acquireEvents(bufferPool.annotations, capacity);
+      if (annotations == null) {
+        annotations = new TraceEvents<Annotation>(capacity, /* timed= */ true);
+      }
+      if (!annotationsUpdater.compareAndSet(this, null, annotations)) {
+        annotations = checkNotNull(this.annotations, "annotations");
+      }
     }
     return annotations;
   }
 
-  @GuardedBy("this")
-  private TraceEvents<EventWithNanoTime<io.opencensus.trace.MessageEvent>>
-      getInitializedNetworkEvents() {
+  private TraceEvents<io.opencensus.trace.MessageEvent> getInitializedNetworkEvents() {
+    TraceEvents<io.opencensus.trace.MessageEvent> messageEvents = this.messageEvents;
     if (messageEvents == null) {
+      int capacity = traceParams.getMaxNumberOfMessageEvents();
       messageEvents =
-          new TraceEvents<EventWithNanoTime<io.opencensus.trace.MessageEvent>>(
-              traceParams.getMaxNumberOfMessageEvents());
+          bufferPool == null
+              ? null
+              : BufferPool.<io.opencensus.trace.MessageEvent>acquireEvents(
+                  bufferPool.messageEvents, capacity);
+      if (messageEvents == null) {
+        messageEvents =
+            new TraceEvents<io.opencensus.trace.MessageEvent>(capacity, /* timed= */ true);
+      }
+      if (!messageEventsUpdater.compareAndSet(this, null, messageEvents)) {
+        messageEvents = checkNotNull(this.messageEvents, "messageEvents");
+      }
     }
     return messageEvents;
   }
 
-  @GuardedBy("this")
   private TraceEvents<Link> getInitializedLinks() {
+    TraceEvents<Link> links = this.links;
     if (links == null) {
-      links = new TraceEvents<Link>(traceParams.getMaxNumberOfLinks());
+      int capacity = traceParams.getMaxNumberOfLinks();
+      links =
+          bufferPool == null ? null : BufferPool.<Link>acquireEvents(bufferPool.links, capacity);
+      if (links == null) {
+        links = new TraceEvents<Link>(capacity, /* timed= */ false);
+      }
+      if (!linksUpdater.compareAndSet(this, null, links)) {
+        links = checkNotNull(this.links, "links");
+      }
     }
     return links;
   }
 
-  @GuardedBy("this")
   private Status getStatusWithDefault() {
+    Status status = this.status;
     return status == null ? Status.OK : status;
   }
 
+  private Status getEndStatusWithDefault() {
+    return endStatus == null ? Status.OK : endStatus;
+  }
+
+  // Read-only view of the span once it is ended. The span is not recycled, so the buffers are never
+  // cleared. Events recorded concurrently with end() may or may not be visible.
+  private final class EndedSpan extends ReadableSpan {
+    @Nullable private volatile SpanData spanData;
+
+    @Override
+    public SpanContext getContext() {
+      return RecordEventsSpanImpl.this.getContext();
+    }
+
+    @Nullable
+    @Override
+    public SpanId getParentSpanId() {
+      return parentSpanId;
+    }
+
+    @Nullable
+    @Override
+    public Boolean getHasRemoteParent() {
+      return hasRemoteParent;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Nullable
+    @Override
+    public Kind getKind() {
+      return kind;
+    }
+
+    @Override
+    public Timestamp getStartTimestamp() {
+      return timestampConverter.convertNanoTime(startNanoTime);
+    }
+
+    @Override
+    public Timestamp getEndTimestamp() {
+      return timestampConverter.convertNanoTime(endNanoTime);
+    }
+
+    @Override
+    public Status getStatus() {
+      return getEndStatusWithDefault();
+    }
+
+    @Override
+    public Integer getChildSpanCount() {
+      return numberOfChildren;
+    }
+
+    @Override
+    public void forEachAttribute(AttributeVisitor visitor) {
+      checkNotNull(visitor, "visitor");
+      AttributesWithCapacity attributes = RecordEventsSpanImpl.this.attributes;
+      if (attributes != null) {
+        attributes.forEachAttribute(visitor);
+      }
+    }
+
+    @Override
+    public int getDroppedAttributesCount() {
+      AttributesWithCapacity attributes = RecordEventsSpanImpl.this.attributes;
+      return attributes == null ? 0 : attributes.getDroppedAttributes();
+    }
+
+    @Override
+    public void forEachAnnotation(TimedEventVisitor<Annotation> visitor) {
+      checkNotNull(visitor, "visitor");
+      TraceEvents<Annotation> annotations = RecordEventsSpanImpl.this.annotations;
+      if (annotations != null) {
+        annotations.forEachEvent(new TimedEventSink<Annotation>(visitor, timestampConverter));
+      }
+    }
+
+    @Override
+    public int getDroppedAnnotationsCount() {
+      return getDroppedEvents(annotations);
+    }
+
+    @Override
+    public void forEachMessageEvent(
+        TimedEventVisitor<io.opencensus.trace.MessageEvent> visitor) {
+      checkNotNull(visitor, "visitor");
+      TraceEvents<io.opencensus.trace.MessageEvent> messageEvents =
+          RecordEventsSpanImpl.this.messageEvents;
+      if (messageEvents != null) {
+        messageEvents.forEachEvent(
+            new TimedEventSink<io.opencensus.trace.MessageEvent>(visitor, timestampConverter));
+      }
+    }
+
+    @Override
+    public int getDroppedMessageEventsCount() {
+      return getDroppedEvents(messageEvents);
+    }
+
+    @Override
+    public void forEachLink(final LinkVisitor visitor) {
+      checkNotNull(visitor, "visitor");
+      TraceEvents<Link> links = RecordEventsSpanImpl.this.links;
+      if (links != null) {
+        links.forEachEvent(
+            new EventSink<Link>() {
+              @Override
+              public void accept(long nanoTime, Link link) {
+                visitor.visitLink(link);
+              }
+            });
+      }
+    }
+
+    @Override
+    public int getDroppedLinksCount() {
+      return getDroppedEvents(links);
+    }
+
+    @Override
+    public SpanData toSpanData() {
+      SpanData spanData = this.spanData;
+      if (spanData == null) {
+        // Concurrent callers may create equal instances, only one of them is kept.
+        spanData = createSpanData();
+        this.spanData = spanData;
+      }
+      return spanData;
+    }
+  }
+
+  private static int getDroppedEvents(@Nullable TraceEvents<?> events) {
+    return events == null ? 0 : events.getDroppedEvents();
+  }
+
+  // Receives the events of a TraceEvents.
+  private interface EventSink<T> {
+    void accept(long nanoTime, T event);
+  }
+
+  // Converts the nano time of the events for a TimedEventVisitor.
+  private static final class TimedEventSink<T> implements EventSink<T> {
+    private final TimedEventVisitor<T> visitor;
+    private final TimestampConverter timestampConverter;
+
+    private TimedEventSink(TimedEventVisitor<T> visitor, TimestampConverter timestampConverter) {
+      this.visitor = visitor;
+      this.timestampConverter = timestampConverter;
+    }
+
+    @Override
+    public void accept(long nanoTime, T event) {
+      visitor.visitEvent(timestampConverter.convertNanoTime(nanoTime), event);
+    }
+  }
+
   private static <T> SpanData.TimedEvents<T> createTimedEvents(
-      TraceEvents<EventWithNanoTime<T>> events, TimestampConverter timestampConverter) {
+      @Nullable TraceEvents<T> events, TimestampConverter timestampConverter) {
     if (events == null) {
       return SpanData.TimedEvents.create(Collections.<TimedEvent<T>>emptyList(), 0);
     }
-    List<TimedEvent<T>> eventsList = new ArrayList<TimedEvent<T>>(events.events.size());
-    for (EventWithNanoTime<T> networkEvent : events.events) {
-      eventsList.add(networkEvent.toSpanDataTimedEvent(timestampConverter));
-    }
-    return SpanData.TimedEvents.create(eventsList, events.getNumberOfDroppedEvents());
+    return events.toSpanDataTimedEvents(timestampConverter);
   }
 
   @Override
@@ -485,79 +976,415 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
     void onEnd(RecordEventsSpanImpl span);
   }
 
-  // A map implementation with a fixed capacity that drops events when the map gets full. Eviction
-  // is based on the access order.
-  private static final class AttributesWithCapacity extends LinkedHashMap<String, AttributeValue> {
-    private final int capacity;
-    private int totalRecordedAttributes = 0;
-    // Here because -Werror complains about this: [serial] serializable class AttributesWithCapacity
-    // has no definition of serialVersionUID. This class shouldn't be serialized.
-    private static final long serialVersionUID = 42L;
+  /**
+   * A pool of the buffers used by {@link RecordEventsSpanImpl} to record events. Spans created with
+   * a {@code BufferPool} take their buffers from the pool and release them when {@link
+   * #recycleBuffers(SpanData)} is called, which reduces the allocation rate when most of the spans
+   * are sampled.
+   */
+  @ThreadSafe
+  public static final class BufferPool {
+    private final ObjectPool<AttributesWithCapacity> attributes;
+    private final ObjectPool<TraceEvents<?>> annotations;
+    private final ObjectPool<TraceEvents<?>> messageEvents;
+    private final ObjectPool<TraceEvents<?>> links;
+
+    /**
+     * Creates a new {@code BufferPool}.
+     *
+     * @param capacity the maximum number of pooled buffers of each type.
+     * @return a new {@code BufferPool}.
+     */
+    public static BufferPool create(int capacity) {
+      return new BufferPool(capacity);
+    }
+
+    private BufferPool(int capacity) {
+      attributes = new ObjectPool<AttributesWithCapacity>(capacity);
+      annotations = new ObjectPool<TraceEvents<?>>(capacity);
+      messageEvents = new ObjectPool<TraceEvents<?>>(capacity);
+      links = new ObjectPool<TraceEvents<?>>(capacity);
+    }
+
+    // Returns null if there is no pooled buffer with the given capacity. Buffers with a different
+    // capacity were created before the active TraceParams changed, they are left to the GC.
+    @Nullable
+    private AttributesWithCapacity acquireAttributes(int capacity) {
+      AttributesWithCapacity pooled = attributes.acquire();
+      return pooled != null && pooled.capacity() == capacity ? pooled : null;
+    }
+
+    // The events are cleared before the buffers are released, so the cast is safe.
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> TraceEvents<T> acquireEvents(ObjectPool<TraceEvents<?>> pool, int capacity) {
+      TraceEvents<?> pooled = pool.acquire();
+      return pooled != null && pooled.capacity() == capacity ? (TraceEvents<T>) pooled : null;
+    }
+  }
+
+  // A lock-free map with a fixed capacity that drops attributes when the map gets full. Eviction
+  // is based on the access order (least recently put attribute is evicted first).
+  //
+  // Attributes are stored in preallocated parallel arrays. Every slot has a version, which is the
+  // recording order of the last put into the slot, 0 if the slot was never used, or negative while
+  // a writer owns the slot. Writers take ownership of a slot with a compareAndSet on its version,
+  // so they never block readers, which re-check the version to discard torn reads. In the rare
+  // case where two threads insert the same new key concurrently the key can end up in two slots;
+  // readers keep the most recent value.
+  //
+  // Values recorded through the primitive overloads of putAttribute are kept unboxed: the values
+  // array holds a marker for the type and the bits are stored in the primitives array. String
+  // values are stored as is. The AttributeValue instances are only created in toSpanData.
+  private static final class AttributesWithCapacity {
+    private static final Object LONG_VALUE = new Object();
+    private static final Object DOUBLE_VALUE = new Object();
+    private static final Object BOOLEAN_VALUE = new Object();
+
+    private final AtomicReferenceArray</*@Nullable*/ String> keys;
+    // Either an AttributeValue, a String or one of the primitive type markers.
+    private final AtomicReferenceArray</*@Nullable*/ Object> values;
+    private final AtomicLongArray primitives;
+    private final AtomicLongArray versions;
+    // Total number of recorded attributes. Also used as a logical clock for the access order.
+    private final AtomicLong totalRecordedAttributes = new AtomicLong();
 
     private AttributesWithCapacity(int capacity) {
-      // Capacity of the map is capacity + 1 to avoid resizing because removeEldestEntry is invoked
-      // by put and putAll after inserting a new entry into the map. The loadFactor is set to 1
-      // to avoid resizing because. The accessOrder is set to true.
-      super(capacity + 1, 1, /*accessOrder=*/ true);
-      this.capacity = capacity;
+      keys = new AtomicReferenceArray</*@Nullable*/ String>(capacity);
+      values = new AtomicReferenceArray</*@Nullable*/ Object>(capacity);
+      primitives = new AtomicLongArray(capacity);
+      versions = new AtomicLongArray(capacity);
     }
 
-    // Users must call this method instead of put to keep count of the total number of entries
-    // inserted.
-    private void putAttribute(String key, AttributeValue value) {
-      totalRecordedAttributes += 1;
-      put(key, value);
+    private void putAttribute(String key, Object value, long primitive) {
+      long order = totalRecordedAttributes.incrementAndGet();
+      while (!tryPutAttribute(key, value, primitive, order)) {
+        // Lost a race with another writer, retry with the new state.
+      }
     }
 
-    // Users must call this method instead of putAll to keep count of the total number of entries
-    // inserted.
     private void putAttributes(Map<String, AttributeValue> attributes) {
-      totalRecordedAttributes += attributes.size();
-      putAll(attributes);
+      for (Map.Entry<String, AttributeValue> entry : attributes.entrySet()) {
+        putAttribute(entry.getKey(), entry.getValue(), 0);
+      }
     }
 
-    private int getNumberOfDroppedAttributes() {
-      return totalRecordedAttributes - size();
+    private int capacity() {
+      return versions.length();
     }
 
-    // It is called after each put or putAll call in order to determine if the eldest inserted
-    // entry should be removed or not.
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, AttributeValue> eldest) {
-      return size() > this.capacity;
+    // Clears all the attributes. Must not be called concurrently with any other method.
+    private void reset() {
+      for (int i = 0; i < versions.length() && versions.get(i) != 0; i++) {
+        keys.set(i, null);
+        values.set(i, null);
+        primitives.set(i, 0);
+        versions.set(i, 0);
+      }
+      totalRecordedAttributes.set(0);
+    }
+
+    private boolean tryPutAttribute(String key, Object value, long primitive, long order) {
+      int eldestIndex = -1;
+      long eldestVersion = Long.MAX_VALUE;
+      int capacity = versions.length();
+      for (int i = 0; i < capacity; i++) {
+        long version = versions.get(i);
+        if (version == 0) {
+          // Slots are claimed in order and never cleared, so there is no entry after this one.
+          return writeSlot(i, 0, key, value, primitive, order);
+        }
+        if (version < 0) {
+          // Owned by another writer.
+          continue;
+        }
+        if (key.equals(keys.get(i)) && versions.get(i) == version) {
+          // A more recent put for the same key already won.
+          return version > order || writeSlot(i, version, key, value, primitive, order);
+        }
+        if (version < eldestVersion) {
+          eldestVersion = version;
+          eldestIndex = i;
+        }
+      }
+      // The map is full, evict the least recently put entry.
+      return eldestIndex >= 0
+          && writeSlot(eldestIndex, eldestVersion, key, value, primitive, order);
+    }
+
+    private boolean writeSlot(
+        int index, long expectedVersion, String key, Object value, long primitive, long order) {
+      if (!versions.compareAndSet(index, expectedVersion, -order)) {
+        return false;
+      }
+      keys.lazySet(index, key);
+      values.lazySet(index, value);
+      primitives.lazySet(index, primitive);
+      // Publishes the slot.
+      versions.lazySet(index, order);
+      return true;
+    }
+
+    private static AttributeValue toAttributeValue(Object value, long primitive) {
+      if (value instanceof AttributeValue) {
+        return (AttributeValue) value;
+      } else if (value instanceof String) {
+        return AttributeValue.stringAttributeValue((String) value);
+      } else if (value == LONG_VALUE) {
+        return AttributeValue.longAttributeValue(primitive);
+      } else if (value == DOUBLE_VALUE) {
+        return AttributeValue.doubleAttributeValue(Double.longBitsToDouble(primitive));
+      } else {
+        return AttributeValue.booleanAttributeValue(primitive != 0);
+      }
+    }
+
+    // Passes the most recent value of every attribute to the visitor, if not null, and returns the
+    // number of visited attributes.
+    private int forEachAttribute(@Nullable AttributeVisitor visitor) {
+      int capacity = versions.length();
+      int visited = 0;
+      for (int i = 0; i < capacity; i++) {
+        long version = versions.get(i);
+        if (version == 0) {
+          break;
+        }
+        String key = keys.get(i);
+        Object value = values.get(i);
+        long primitive = primitives.get(i);
+        // Skip the slots that are being written, and the older values of duplicated keys.
+        if (version > 0
+            && versions.get(i) == version
+            && key != null
+            && value != null
+            && !hasMoreRecentValue(i, key, version)) {
+          visited++;
+          if (visitor != null) {
+            visitor.visitAttribute(key, toAttributeValue(value, primitive));
+          }
+        }
+      }
+      return visited;
+    }
+
+    // Removes all the values of the key. The slots keep the key without a value, so the readers
+    // skip them and the removed values are counted as dropped.
+    private void removeAttribute(String key) {
+      int capacity = versions.length();
+      for (int i = 0; i < capacity; i++) {
+        long version = versions.get(i);
+        if (version == 0) {
+          break;
+        }
+        if (version > 0
+            && key.equals(keys.get(i))
+            && versions.compareAndSet(i, version, -version)) {
+          values.lazySet(i, null);
+          // Publishes the slot.
+          versions.lazySet(i, version);
+        }
+      }
+    }
+
+    private int getDroppedAttributes() {
+      long totalRecorded = totalRecordedAttributes.get();
+      return (int) Math.max(0, totalRecorded - forEachAttribute(null));
+    }
+
+    // Returns true if another slot holds a more recent value for the key of the given slot.
+    private boolean hasMoreRecentValue(int index, String key, long version) {
+      int hashCode = key.hashCode();
+      for (int i = 0; i < versions.length(); i++) {
+        long otherVersion = versions.get(i);
+        if (otherVersion == 0) {
+          break;
+        }
+        String otherKey = keys.get(i);
+        if (i != index
+            && otherVersion > version
+            && otherKey != null
+            && otherKey.hashCode() == hashCode
+            && otherKey.equals(key)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private SpanData.Attributes toSpanDataAttributes() {
+      long totalRecorded = totalRecordedAttributes.get();
+      int capacity = versions.length();
+      String[] snapshotKeys = new String[capacity];
+      AttributeValue[] snapshotValues = new AttributeValue[capacity];
+      long[] snapshotVersions = new long[capacity];
+      int size = 0;
+      for (int i = 0; i < capacity; i++) {
+        long version = versions.get(i);
+        if (version == 0) {
+          break;
+        }
+        String key = keys.get(i);
+        Object value = values.get(i);
+        long primitive = primitives.get(i);
+        // Skip the slots that are being written.
+        if (version > 0 && versions.get(i) == version && key != null && value != null) {
+          snapshotKeys[size] = key;
+          snapshotValues[size] = toAttributeValue(value, primitive);
+          snapshotVersions[size] = version;
+          size++;
+        }
+      }
+      Map<String, AttributeValue> attributeMap = new HashMap<String, AttributeValue>(size * 2);
+      for (int i = 0; i < size; i++) {
+        if (attributeMap.put(snapshotKeys[i], snapshotValues[i]) != null) {
+          // Duplicated key, keep the most recent value.
+          for (int j = 0; j < i; j++) {
+            if (snapshotVersions[j] > snapshotVersions[i]
+                && snapshotKeys[j].equals(snapshotKeys[i])) {
+              attributeMap.put(snapshotKeys[j], snapshotValues[j]);
+            }
+          }
+        }
+      }
+      // Attributes recorded after reading the counter may be part of the snapshot.
+      return SpanData.Attributes.create(
+          attributeMap, (int) Math.max(0, totalRecorded - attributeMap.size()));
     }
   }
 
+  // A lock-free, append-only ring buffer with a fixed capacity that drops the oldest events when
+  // it gets full.
+  //
+  // Events and their nano times are stored in preallocated parallel arrays. Every slot has a
+  // sequence, which is the recording index of the event in the slot plus one, 0 if the slot was
+  // never used, or negative while a writer owns the slot. A writer waits for the older writer of
+  // its slot to publish, so the slots always end up holding the most recent events. Readers
+  // re-check the sequence to skip the slots that are being written or were overwritten while
+  // taking a snapshot.
   private static final class TraceEvents<T> {
-    private int totalRecordedEvents = 0;
-    private final EvictingQueue<T> events;
+    private final AtomicLong totalRecordedEvents = new AtomicLong();
+    private final AtomicReferenceArray</*@Nullable*/ T> events;
+    // Null if the events do not have a timestamp.
+    @Nullable private final AtomicLongArray nanoTimes;
+    private final AtomicLongArray sequences;
 
-    private int getNumberOfDroppedEvents() {
-      return totalRecordedEvents - events.size();
+    TraceEvents(int maxNumEvents, boolean timed) {
+      events = new AtomicReferenceArray</*@Nullable*/ T>(maxNumEvents);
+      nanoTimes = timed ? new AtomicLongArray(maxNumEvents) : null;
+      sequences = new AtomicLongArray(maxNumEvents);
     }
 
-    TraceEvents(int maxNumEvents) {
-      events = EvictingQueue.create(maxNumEvents);
+    int capacity() {
+      return sequences.length();
     }
 
-    void addEvent(T event) {
-      totalRecordedEvents++;
-      events.add(event);
+    // Clears all the events. Must not be called concurrently with any other method.
+    void reset() {
+      long used = Math.min(totalRecordedEvents.get(), sequences.length());
+      for (int i = 0; i < used; i++) {
+        events.set(i, null);
+        sequences.set(i, 0);
+      }
+      totalRecordedEvents.set(0);
     }
-  }
 
-  // Timed event that uses nanoTime to represent the Timestamp.
-  private static final class EventWithNanoTime<T> {
-    private final long nanoTime;
-    private final T event;
+    void addEvent(long nanoTime, T event) {
+      long index = totalRecordedEvents.getAndIncrement();
+      int capacity = sequences.length();
+      if (capacity == 0) {
+        return;
+      }
+      int slot = (int) (index % capacity);
+      long sequence = index + 1;
+      while (true) {
+        long current = sequences.get(slot);
+        if (current >= sequence || -current >= sequence) {
+          // A newer event already replaced this one, or is replacing it, so this event is
+          // evicted and accounted as dropped.
+          return;
+        }
+        if (current < 0) {
+          // An older writer still owns the slot. Its event must be evicted instead of this one,
+          // so wait until it is published and then replace it.
+          Thread.yield();
+        } else if (sequences.compareAndSet(slot, current, -sequence)) {
+          break;
+        }
+      }
+      if (nanoTimes != null) {
+        nanoTimes.lazySet(slot, nanoTime);
+      }
+      events.lazySet(slot, event);
+      // Publishes the slot.
+      sequences.lazySet(slot, sequence);
+    }
 
-    private EventWithNanoTime(long nanoTime, T event) {
-      this.nanoTime = nanoTime;
-      this.event = event;
+    SpanData.TimedEvents<T> toSpanDataTimedEvents(TimestampConverter timestampConverter) {
+      long totalRecorded = totalRecordedEvents.get();
+      int capacity = sequences.length();
+      long firstIndex = Math.max(0, totalRecorded - capacity);
+      List<TimedEvent<T>> eventsList =
+          new ArrayList<TimedEvent<T>>((int) (totalRecorded - firstIndex));
+      for (long index = firstIndex; index < totalRecorded; index++) {
+        int slot = (int) (index % capacity);
+        if (sequences.get(slot) != index + 1) {
+          continue;
+        }
+        long nanoTime = nanoTimes != null ? nanoTimes.get(slot) : 0;
+        T event = events.get(slot);
+        if (sequences.get(slot) == index + 1 && event != null) {
+          eventsList.add(
+              TimedEvent.create(timestampConverter.convertNanoTime(nanoTime), event));
+        }
+      }
+      return SpanData.TimedEvents.create(eventsList, (int) (totalRecorded - eventsList.size()));
+    }
+
+    // Passes the retained events, in recording order, to the sink, if not null, and returns their
+    // number.
+    int forEachEvent(@Nullable EventSink<T> sink) {
+      long totalRecorded = totalRecordedEvents.get();
+      int capacity = sequences.length();
+      int retained = 0;
+      for (long index = Math.max(0, totalRecorded - capacity); index < totalRecorded; index++) {
+        int slot = (int) (index % capacity);
+        if (sequences.get(slot) != index + 1) {
+          continue;
+        }
+        long nanoTime = nanoTimes != null ? nanoTimes.get(slot) : 0;
+        T event = events.get(slot);
+        if (sequences.get(slot) == index + 1 && event != null) {
+          retained++;
+          if (sink != null) {
+            sink.accept(nanoTime, event);
+          }
+        }
+      }
+      return retained;
     }
 
-    private TimedEvent<T> toSpanDataTimedEvent(TimestampConverter timestampConverter) {
-      return TimedEvent.create(timestampConverter.convertNanoTime(nanoTime), event);
+    int getDroppedEvents() {
+      long totalRecorded = totalRecordedEvents.get();
+      return (int) (totalRecorded - forEachEvent(null));
+    }
+
+    // Copies the retained events, in recording order, into the given list and returns the number
+    // of dropped events.
+    int copyEventsTo(List<T> output) {
+      long totalRecorded = totalRecordedEvents.get();
+      int capacity = sequences.length();
+      int initialSize = output.size();
+      for (long index = Math.max(0, totalRecorded - capacity); index < totalRecorded; index++) {
+        int slot = (int) (index % capacity);
+        if (sequences.get(slot) != index + 1) {
+          continue;
+        }
+        T event = events.get(slot);
+        if (sequences.get(slot) == index + 1 && event != null) {
+          output.add(event);
+        }
+      }
+      return (int) (totalRecorded - (output.size() - initialSize));
     }
   }
 
@@ -570,7 +1397,8 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
       TraceParams traceParams,
       StartEndHandler startEndHandler,
       @Nullable TimestampConverter timestampConverter,
-      Clock clock) {
+      Clock clock,
+      @Nullable BufferPool bufferPool) {
     super(context, RECORD_EVENTS_SPAN_OPTIONS);
     this.parentSpanId = parentSpanId;
     this.hasRemoteParent = hasRemoteParent;
@@ -579,7 +1407,8 @@ public final class RecordEventsSpanImpl extends Span implements Element<RecordEv
     this.traceParams = traceParams;
     this.startEndHandler = startEndHandler;
     this.clock = clock;
-    this.hasBeenEnded = false;
+    this.bufferPool = bufferPool;
+    this.state = STATE_RUNNING;
     this.sampleToLocalSpanStore = false;
     this.numberOfChildren = 0;
     this.timestampConverter =
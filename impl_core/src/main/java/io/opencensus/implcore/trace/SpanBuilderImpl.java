@@ -66,7 +66,7 @@ final class SpanBuilderImpl extends SpanBuilder {
       @Nullable Boolean recordEvents,
       @Nullable Kind kind,
       @Nullable Span parentSpan) {
-    TraceParams activeTraceParams = options.traceConfig.getActiveTraceParams();
+    TraceParams activeTraceParams = options.traceConfig.getActiveTraceParams(name);
     Random random = options.randomHandler.current();
     TraceId traceId;
     SpanId spanId = SpanId.generateRandomId(random);
@@ -97,7 +97,8 @@ final class SpanBuilderImpl extends SpanBuilder {
             ? SAMPLED_TRACE_OPTIONS
             : NOT_SAMPLED_TRACE_OPTIONS;
 
-    if (traceOptions.isSampled() || Boolean.TRUE.equals(recordEvents)) {
+    if (traceOptions.isSampled()
+        || (recordEvents != null ? recordEvents : activeTraceParams.getRecordEvents())) {
       // Pass the timestamp converter from the parent to ensure that the recorded events are in
       // the right order. Implementation uses System.nanoTime() which is monotonically increasing.
       TimestampConverter timestampConverter = null;
@@ -116,7 +117,8 @@ final class SpanBuilderImpl extends SpanBuilder {
               activeTraceParams,
               options.startEndHandler,
               timestampConverter,
-              options.clock);
+              options.clock,
+              options.bufferPool);
       linkSpans(span, parentLinks);
       return span;
     } else {
@@ -219,16 +221,27 @@ final class SpanBuilderImpl extends SpanBuilder {
     private final RecordEventsSpanImpl.StartEndHandler startEndHandler;
     private final Clock clock;
     private final TraceConfig traceConfig;
+    @Nullable private final RecordEventsSpanImpl.BufferPool bufferPool;
 
     Options(
         RandomHandler randomHandler,
         RecordEventsSpanImpl.StartEndHandler startEndHandler,
         Clock clock,
         TraceConfig traceConfig) {
+      this(randomHandler, startEndHandler, clock, traceConfig, /* bufferPool= */ null);
+    }
+
+    Options(
+        RandomHandler randomHandler,
+        RecordEventsSpanImpl.StartEndHandler startEndHandler,
+        Clock clock,
+        TraceConfig traceConfig,
+        @Nullable RecordEventsSpanImpl.BufferPool bufferPool) {
       this.randomHandler = checkNotNull(randomHandler, "randomHandler");
       this.startEndHandler = checkNotNull(startEndHandler, "startEndHandler");
       this.clock = checkNotNull(clock, "clock");
       this.traceConfig = checkNotNull(traceConfig, "traceConfig");
+      this.bufferPool = bufferPool;
     }
   }
 
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace;
+
+/**
+ * A stage that processes the spans that record events when they start and end, before the ended
+ * spans are converted to {@link io.opencensus.trace.export.SpanData} or take room in the queue of
+ * the exporter. Processors can drop spans, for example health checks, sample them, or remove
+ * attributes with {@link RecordEventsSpanImpl#removeAttribute(String)}.
+ *
+ * <p>The processors are called in the order they were added, on the thread that starts or ends the
+ * span. The implementation must be thread-safe and avoid high overhead work, because the code is
+ * executed on the critical path. Processors must not call {@link
+ * RecordEventsSpanImpl#toReadableSpan()} or {@link
+ * RecordEventsSpanImpl#recycleBuffers(io.opencensus.trace.export.SpanData)}.
+ */
+public interface SpanProcessor {
+
+  /**
+   * Called when a span that records events starts. The span is running, so events can be recorded
+   * on it.
+   *
+   * @param span the span that started.
+   */
+  void onStart(RecordEventsSpanImpl span);
+
+  /**
+   * Called when a span that records events ends. The span is ended, so only its attributes can be
+   * removed.
+   *
+   * @param span the span that ended.
+   * @return {@code false} to drop the span, which is then neither exported nor considered by the
+   *     sampled span store, and is not passed to the next processors.
+   */
+  boolean onEnd(RecordEventsSpanImpl span);
+}
@@ -16,6 +16,8 @@
 
 package io.opencensus.implcore.trace;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import io.opencensus.implcore.internal.EventQueue;
 import io.opencensus.implcore.trace.RecordEventsSpanImpl.StartEndHandler;
 import io.opencensus.implcore.trace.export.InProcessRunningSpanStore;
@@ -23,19 +25,36 @@ import io.opencensus.implcore.trace.export.SampledSpanStoreImpl;
 import io.opencensus.implcore.trace.export.SpanExporterImpl;
 import io.opencensus.trace.Span.Options;
 import io.opencensus.trace.export.SpanData;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Uses the provided {@link EventQueue} to defer processing/exporting of the {@link SpanData} to
  * avoid impacting the critical path.
+ *
+ * <p>When neither the running spans store nor the sampled spans store is enabled, nothing is
+ * enqueued when a span starts, and the sampled spans are handed to the {@link SpanExporterImpl}
+ * directly when they end, whose buffer already moves them off the critical path. The spans that
+ * are not sampled are also handed to the {@code SpanExporterImpl} when it derives metrics from the
+ * ended spans.
+ *
+ * <p>The {@link SpanProcessor}s run before anything is enqueued, on the thread that starts or ends
+ * the span. The spans dropped by a processor are only removed from the running spans store.
  */
 @ThreadSafe
 public final class StartEndHandlerImpl implements StartEndHandler {
+  private static final Logger logger = Logger.getLogger(StartEndHandlerImpl.class.getName());
+  private static final SpanProcessor[] NO_SPAN_PROCESSORS = new SpanProcessor[0];
+
   private final SpanExporterImpl spanExporter;
   private final InProcessRunningSpanStore inProcessRunningSpanStore;
   private final SampledSpanStoreImpl sampledSpanStore;
   private final EventQueue eventQueue;
+  // Copied on write, so the critical path reads the processors without locking or allocating.
+  private volatile SpanProcessor[] spanProcessors = NO_SPAN_PROCESSORS;
 
   /**
    * Constructs a new {@code StartEndHandlerImpl}.
@@ -56,8 +75,47 @@ public final class StartEndHandlerImpl implements StartEndHandler {
     this.eventQueue = eventQueue;
   }
 
+  /**
+   * Adds a {@link SpanProcessor} at the end of the chain of processors.
+   *
+   * @param spanProcessor the processor to add.
+   */
+  public synchronized void addSpanProcessor(SpanProcessor spanProcessor) {
+    checkNotNull(spanProcessor, "spanProcessor");
+    SpanProcessor[] spanProcessors =
+        Arrays.copyOf(this.spanProcessors, this.spanProcessors.length + 1);
+    spanProcessors[spanProcessors.length - 1] = spanProcessor;
+    this.spanProcessors = spanProcessors;
+  }
+
+  /**
+   * Removes a {@link SpanProcessor} from the chain of processors. Does nothing if the processor was
+   * not added.
+   *
+   * @param spanProcessor the processor to remove.
+   */
+  public synchronized void removeSpanProcessor(SpanProcessor spanProcessor) {
+    SpanProcessor[] spanProcessors = this.spanProcessors;
+    for (int i = 0; i < spanProcessors.length; i++) {
+      if (spanProcessors[i] == spanProcessor) {
+        SpanProcessor[] remaining = new SpanProcessor[spanProcessors.length - 1];
+        System.arraycopy(spanProcessors, 0, remaining, 0, i);
+        System.arraycopy(spanProcessors, i + 1, remaining, i, remaining.length - i);
+        this.spanProcessors = remaining;
+        return;
+      }
+    }
+  }
+
   @Override
   public void onStart(RecordEventsSpanImpl span) {
+    for (SpanProcessor spanProcessor : spanProcessors) {
+      try {
+        spanProcessor.onStart(span);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Exception thrown by the span processor.", e);
+      }
+    }
     if (span.getOptions().contains(Options.RECORD_EVENTS)
         && inProcessRunningSpanStore.getEnabled()) {
       eventQueue.enqueue(new SpanStartEvent(span, inProcessRunningSpanStore));
@@ -66,16 +124,42 @@ public final class StartEndHandlerImpl implements StartEndHandler {
 
   @Override
   public void onEnd(RecordEventsSpanImpl span) {
-    if ((span.getOptions().contains(Options.RECORD_EVENTS)
-            && (inProcessRunningSpanStore.getEnabled() || sampledSpanStore.getEnabled()))
-        || span.getContext().getTraceOptions().isSampled()) {
+    boolean kept = processEnd(span);
+    if (span.getOptions().contains(Options.RECORD_EVENTS)
+        && (inProcessRunningSpanStore.getEnabled() || sampledSpanStore.getEnabled())) {
       eventQueue.enqueue(
-          new SpanEndEvent(span, spanExporter, inProcessRunningSpanStore, sampledSpanStore));
+          new SpanEndEvent(
+              span, kept, spanExporter, inProcessRunningSpanStore, kept ? sampledSpanStore : null));
+    } else if (kept && shouldExport(span, spanExporter)) {
+      // No store needs the span, skip the event queue.
+      spanExporter.addSpan(span);
+    }
+  }
+
+  // Runs the processors on the ended span. Returns false if a processor dropped the span. A
+  // processor that throws does not drop the span.
+  private boolean processEnd(RecordEventsSpanImpl span) {
+    for (SpanProcessor spanProcessor : spanProcessors) {
+      try {
+        if (!spanProcessor.onEnd(span)) {
+          return false;
+        }
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Exception thrown by the span processor.", e);
+      }
     }
+    return true;
   }
 
-  // An EventQueue entry that records the start of the span event.
-  private static final class SpanStartEvent implements EventQueue.Entry {
+  // Returns true if the ended span is added to the exporter, which also takes the spans that are
+  // not sampled when it derives metrics from them, in a queue of their own.
+  private static boolean shouldExport(RecordEventsSpanImpl span, SpanExporterImpl spanExporter) {
+    return span.getContext().getTraceOptions().isSampled() || spanExporter.acceptsUnsampledSpans();
+  }
+
+  // An EventQueue entry that records the start of the span event. Keyed by trace, so the events of
+  // a span are processed in order.
+  private static final class SpanStartEvent implements EventQueue.KeyedEntry {
     private final RecordEventsSpanImpl span;
     private final InProcessRunningSpanStore inProcessRunningSpanStore;
 
@@ -84,33 +168,47 @@ public final class StartEndHandlerImpl implements StartEndHandler {
       this.inProcessRunningSpanStore = inProcessRunningSpanStore;
     }
 
+    @Override
+    public int getKey() {
+      return span.getContext().getTraceId().hashCode();
+    }
+
     @Override
     public void process() {
       inProcessRunningSpanStore.onStart(span);
     }
   }
 
-  // An EventQueue entry that records the end of the span event.
-  private static final class SpanEndEvent implements EventQueue.Entry {
+  // An EventQueue entry that records the end of the span event. The spans dropped by a processor
+  // are not exported, and have no sampled span store.
+  private static final class SpanEndEvent implements EventQueue.KeyedEntry {
     private final RecordEventsSpanImpl span;
+    private final boolean kept;
     private final InProcessRunningSpanStore inProcessRunningSpanStore;
     private final SpanExporterImpl spanExporter;
     @Nullable private final SampledSpanStoreImpl sampledSpanStore;
 
     SpanEndEvent(
         RecordEventsSpanImpl span,
+        boolean kept,
         SpanExporterImpl spanExporter,
         InProcessRunningSpanStore inProcessRunningSpanStore,
         @Nullable SampledSpanStoreImpl sampledSpanStore) {
       this.span = span;
+      this.kept = kept;
       this.inProcessRunningSpanStore = inProcessRunningSpanStore;
       this.spanExporter = spanExporter;
       this.sampledSpanStore = sampledSpanStore;
     }
 
+    @Override
+    public int getKey() {
+      return span.getContext().getTraceId().hashCode();
+    }
+
     @Override
     public void process() {
-      if (span.getContext().getTraceOptions().isSampled()) {
+      if (kept && shouldExport(span, spanExporter)) {
         spanExporter.addSpan(span);
       }
       inProcessRunningSpanStore.onEnd(span);
@@ -19,7 +19,6 @@ package io.opencensus.implcore.trace;
 import io.opencensus.common.Clock;
 import io.opencensus.implcore.internal.EventQueue;
 import io.opencensus.implcore.internal.SimpleEventQueue;
-import io.opencensus.implcore.trace.RecordEventsSpanImpl.StartEndHandler;
 import io.opencensus.implcore.trace.config.TraceConfigImpl;
 import io.opencensus.implcore.trace.export.ExportComponentImpl;
 import io.opencensus.implcore.trace.internal.RandomHandler;
@@ -38,10 +37,14 @@ import io.opencensus.trace.propagation.PropagationComponent;
  * <p>This can be changed back to inheritance when version 0.5.* is no longer supported.
  */
 public final class TraceComponentImplBase {
+  // The maximum number of pooled buffers of each type when the span buffers are recycled.
+  private static final int SPAN_BUFFER_POOL_SIZE = 1024;
+
   private final ExportComponentImpl exportComponent;
   private final PropagationComponent propagationComponent = new PropagationComponentImpl();
   private final Clock clock;
   private final TraceConfig traceConfig = new TraceConfigImpl();
+  private final StartEndHandlerImpl startEndHandler;
   private final Tracer tracer;
 
   /**
@@ -52,6 +55,21 @@ public final class TraceComponentImplBase {
    * @param eventQueue the queue implementation.
    */
   public TraceComponentImplBase(Clock clock, RandomHandler randomHandler, EventQueue eventQueue) {
+    this(clock, randomHandler, eventQueue, /* recycleSpanBuffers= */ false);
+  }
+
+  /**
+   * Creates a new {@code TraceComponentImplBase}.
+   *
+   * @param clock the clock to use throughout tracing.
+   * @param randomHandler the random number generator for generating trace and span IDs.
+   * @param eventQueue the queue implementation.
+   * @param recycleSpanBuffers {@code true} if the buffers used by the sampled spans to record
+   *     events must be reused once the spans are exported. Reduces the allocation rate when most
+   *     of the spans are sampled.
+   */
+  public TraceComponentImplBase(
+      Clock clock, RandomHandler randomHandler, EventQueue eventQueue, boolean recycleSpanBuffers) {
     this.clock = clock;
     // TODO(bdrutu): Add a config/argument for supportInProcessStores.
     if (eventQueue instanceof SimpleEventQueue) {
@@ -59,13 +77,15 @@ public final class TraceComponentImplBase {
     } else {
       exportComponent = ExportComponentImpl.createWithInProcessStores(eventQueue);
     }
-    StartEndHandler startEndHandler =
+    startEndHandler =
         new StartEndHandlerImpl(
             exportComponent.getSpanExporter(),
             exportComponent.getRunningSpanStore(),
             exportComponent.getSampledSpanStore(),
             eventQueue);
-    tracer = new TracerImpl(randomHandler, startEndHandler, clock, traceConfig);
+    RecordEventsSpanImpl.BufferPool bufferPool =
+        recycleSpanBuffers ? RecordEventsSpanImpl.BufferPool.create(SPAN_BUFFER_POOL_SIZE) : null;
+    tracer = new TracerImpl(randomHandler, startEndHandler, clock, traceConfig, bufferPool);
   }
 
   public Tracer getTracer() {
@@ -87,4 +107,23 @@ public final class TraceComponentImplBase {
   public TraceConfig getTraceConfig() {
     return traceConfig;
   }
+
+  /**
+   * Adds a {@link SpanProcessor} at the end of the chain of processors that run when the spans that
+   * record events start and end.
+   *
+   * @param spanProcessor the processor to add.
+   */
+  public void addSpanProcessor(SpanProcessor spanProcessor) {
+    startEndHandler.addSpanProcessor(spanProcessor);
+  }
+
+  /**
+   * Removes a {@link SpanProcessor} from the chain of processors.
+   *
+   * @param spanProcessor the processor to remove.
+   */
+  public void removeSpanProcessor(SpanProcessor spanProcessor) {
+    startEndHandler.removeSpanProcessor(spanProcessor);
+  }
 }
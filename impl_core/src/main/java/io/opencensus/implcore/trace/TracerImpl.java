@@ -34,8 +34,17 @@ public final class TracerImpl extends Tracer {
       RecordEventsSpanImpl.StartEndHandler startEndHandler,
       Clock clock,
       TraceConfig traceConfig) {
+    this(randomHandler, startEndHandler, clock, traceConfig, /* bufferPool= */ null);
+  }
+
+  TracerImpl(
+      RandomHandler randomHandler,
+      RecordEventsSpanImpl.StartEndHandler startEndHandler,
+      Clock clock,
+      TraceConfig traceConfig,
+      @Nullable RecordEventsSpanImpl.BufferPool bufferPool) {
     spanBuilderOptions =
-        new SpanBuilderImpl.Options(randomHandler, startEndHandler, clock, traceConfig);
+        new SpanBuilderImpl.Options(randomHandler, startEndHandler, clock, traceConfig, bufferPool);
   }
 
   @Override
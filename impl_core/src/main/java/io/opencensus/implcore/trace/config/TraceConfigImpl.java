@@ -16,28 +16,123 @@
 
 package io.opencensus.implcore.trace.config;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import io.opencensus.trace.config.TraceConfig;
 import io.opencensus.trace.config.TraceParams;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Global configuration of the trace service. This allows users to change configs for the default
  * sampler, maximum events to be kept, etc.
  */
 public final class TraceConfigImpl extends TraceConfig {
+  // Bounds the number of span names whose TraceParams are cached.
+  private static final int MAX_CACHED_SPAN_NAMES = 1024;
+
+  private final Object lock = new Object();
+
   // Reads and writes are atomic for reference variables. Use volatile to ensure that these
-  // operations are visible on other CPUs as well.
-  private volatile TraceParams activeTraceParams = TraceParams.DEFAULT;
+  // operations are visible on other CPUs as well. Updates are made while holding the lock.
+  private volatile Config config =
+      new Config(TraceParams.DEFAULT, Collections.<String, TraceParams>emptyMap());
 
   /** Constructs a new {@code TraceConfigImpl}. */
   public TraceConfigImpl() {}
 
   @Override
   public TraceParams getActiveTraceParams() {
-    return activeTraceParams;
+    return config.activeTraceParams;
   }
 
   @Override
   public void updateActiveTraceParams(TraceParams traceParams) {
-    activeTraceParams = traceParams;
+    synchronized (lock) {
+      config = new Config(traceParams, config.traceParamsBySpanNamePrefix);
+    }
+  }
+
+  @Override
+  public TraceParams getActiveTraceParams(String spanName) {
+    return config.getTraceParams(spanName);
+  }
+
+  @Override
+  public Map<String, TraceParams> getSpanNameTraceParams() {
+    return config.traceParamsBySpanNamePrefix;
+  }
+
+  @Override
+  public void updateSpanNameTraceParams(Map<String, TraceParams> traceParamsBySpanNamePrefix) {
+    checkNotNull(traceParamsBySpanNamePrefix, "traceParamsBySpanNamePrefix");
+    Map<String, TraceParams> copy = new LinkedHashMap<String, TraceParams>();
+    for (Map.Entry<String, TraceParams> entry : traceParamsBySpanNamePrefix.entrySet()) {
+      copy.put(
+          checkNotNull(entry.getKey(), "spanNamePrefix"),
+          checkNotNull(entry.getValue(), "traceParams"));
+    }
+    synchronized (lock) {
+      config = new Config(config.activeTraceParams, Collections.unmodifiableMap(copy));
+    }
+  }
+
+  // An immutable snapshot of the configuration. The TraceParams of each span name are resolved
+  // once, then looked up in a cache, so starting a span does not scan the prefixes.
+  private static final class Config {
+    private final TraceParams activeTraceParams;
+    private final Map<String, TraceParams> traceParamsBySpanNamePrefix;
+    // The prefixes, longest first, so the first match is the longest one.
+    private final List<Map.Entry<String, TraceParams>> spanNamePrefixes;
+    private final ConcurrentHashMap<String, TraceParams> traceParamsBySpanName =
+        new ConcurrentHashMap<String, TraceParams>();
+
+    private Config(
+        TraceParams activeTraceParams, Map<String, TraceParams> traceParamsBySpanNamePrefix) {
+      this.activeTraceParams = checkNotNull(activeTraceParams, "traceParams");
+      this.traceParamsBySpanNamePrefix = traceParamsBySpanNamePrefix;
+      List<Map.Entry<String, TraceParams>> spanNamePrefixes =
+          new ArrayList<Map.Entry<String, TraceParams>>(traceParamsBySpanNamePrefix.entrySet());
+      Collections.sort(
+          spanNamePrefixes,
+          new Comparator<Map.Entry<String, TraceParams>>() {
+            @Override
+            public int compare(
+                Map.Entry<String, TraceParams> entry1, Map.Entry<String, TraceParams> entry2) {
+              return entry2.getKey().length() - entry1.getKey().length();
+            }
+          });
+      this.spanNamePrefixes = spanNamePrefixes;
+    }
+
+    private TraceParams getTraceParams(String spanName) {
+      if (spanNamePrefixes.isEmpty()) {
+        return activeTraceParams;
+      }
+      TraceParams traceParams = traceParamsBySpanName.get(spanName);
+      if (traceParams != null) {
+        return traceParams;
+      }
+      traceParams = resolveTraceParams(spanName);
+      // Span names are expected to have a low cardinality, but do not grow without bound.
+      if (traceParamsBySpanName.size() < MAX_CACHED_SPAN_NAMES) {
+        traceParamsBySpanName.put(spanName, traceParams);
+      }
+      return traceParams;
+    }
+
+    private TraceParams resolveTraceParams(String spanName) {
+      for (Map.Entry<String, TraceParams> entry : spanNamePrefixes) {
+        if (spanName.startsWith(entry.getKey())) {
+          return entry.getValue();
+        }
+      }
+      return activeTraceParams;
+    }
   }
 }
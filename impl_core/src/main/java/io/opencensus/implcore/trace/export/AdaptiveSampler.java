@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.opencensus.common.Clock;
+import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.trace.Sampler;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A {@link Sampler} that lowers its sampling probability when the span export pipeline saturates,
+ * and raises it again once the pipeline recovers.
+ *
+ * <p>Once per second, the sampler reads the health of the {@link SpanExporterImpl}: the spans
+ * dropped by the exporter and by the handler queues since the last adjustment, and the occupancy
+ * of these queues. The occupancy of a handler queue grows with the export latency of the handler.
+ * If spans were dropped, or a queue is more than 75% full, the probability is halved, down to the
+ * minimum probability. If all the queues are less than 25% full, the probability is increased by a
+ * tenth of the maximum probability, up to the maximum probability.
+ *
+ * <p>Like the probability sampler, the decision is based on the trace id, so the spans of a trace
+ * started while the probability is stable are all sampled or all not sampled, and overload is
+ * turned into whole-trace decisions instead of random drops after sampling. Spans with a sampled
+ * parent are always sampled, spans with a local parent that is not sampled are never sampled.
+ */
+@ThreadSafe
+public final class AdaptiveSampler extends Sampler {
+  private static final long ADJUSTMENT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final double HIGH_UTILIZATION = 0.75;
+  private static final double LOW_UTILIZATION = 0.25;
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double INCREASE_STEP = 0.1;
+
+  private final SpanExporterImpl spanExporter;
+  private final double minProbability;
+  private final double maxProbability;
+  private final Clock clock;
+  // The time of the next adjustment. The thread that advances it makes the adjustment.
+  private final AtomicLong nextAdjustmentNanos;
+  // Written by the thread that makes the adjustment, which can be a different thread at every
+  // interval, so the next one must see the previous value.
+  private volatile long lastDroppedSpans;
+  private volatile double probability;
+  private volatile long idUpperBound;
+
+  private AdaptiveSampler(
+      SpanExporterImpl spanExporter, double minProbability, double maxProbability, Clock clock) {
+    this.spanExporter = spanExporter;
+    this.minProbability = minProbability;
+    this.maxProbability = maxProbability;
+    this.clock = clock;
+    this.nextAdjustmentNanos = new AtomicLong(clock.nowNanos() + ADJUSTMENT_INTERVAL_NANOS);
+    this.lastDroppedSpans = spanExporter.getTotalDroppedSpans();
+    setProbability(maxProbability);
+  }
+
+  /**
+   * Returns a new {@code AdaptiveSampler}.
+   *
+   * @param spanExporter the exporter whose health drives the sampling probability.
+   * @param minProbability the probability used while the exporter is saturated.
+   * @param maxProbability the probability used while the exporter is healthy.
+   * @return a new {@code AdaptiveSampler}.
+   * @throws IllegalArgumentException if the probabilities are not within [0.0, 1.0], or if {@code
+   *     minProbability} is greater than {@code maxProbability}.
+   */
+  public static AdaptiveSampler create(
+      SpanExporterImpl spanExporter, double minProbability, double maxProbability) {
+    return create(spanExporter, minProbability, maxProbability, MillisClock.getInstance());
+  }
+
+  @VisibleForTesting
+  static AdaptiveSampler create(
+      SpanExporterImpl spanExporter, double minProbability, double maxProbability, Clock clock) {
+    checkNotNull(spanExporter, "spanExporter");
+    checkNotNull(clock, "clock");
+    checkArgument(
+        minProbability >= 0.0 && maxProbability <= 1.0 && minProbability <= maxProbability,
+        "Probabilities must satisfy 0.0 <= minProbability <= maxProbability <= 1.0.");
+    return new AdaptiveSampler(spanExporter, minProbability, maxProbability, clock);
+  }
+
+  /**
+   * Returns the current sampling probability.
+   *
+   * @return the current sampling probability.
+   */
+  public double getProbability() {
+    return probability;
+  }
+
+  @Override
+  public boolean shouldSample(
+      /*@Nullable*/ SpanContext parentContext,
+      /*@Nullable*/ Boolean hasRemoteParent,
+      TraceId traceId,
+      SpanId spanId,
+      String name,
+      /*@Nullable*/ List<Span> parentLinks) {
+    // If the parent is sampled keep the sampling decision.
+    if (parentContext != null && parentContext.getTraceOptions().isSampled()) {
+      return true;
+    }
+    if (parentLinks != null) {
+      // If any parent link is sampled keep the sampling decision.
+      for (Span parentLink : parentLinks) {
+        if (parentLink.getContext().getTraceOptions().isSampled()) {
+          return true;
+        }
+      }
+    }
+    // Keep the decision for the whole local trace.
+    if (parentContext != null && !Boolean.TRUE.equals(hasRemoteParent)) {
+      return false;
+    }
+    maybeAdjust();
+    return Math.abs(traceId.getLowerLong()) < idUpperBound;
+  }
+
+  @Override
+  public String getDescription() {
+    return String.format(
+        "AdaptiveSampler{%.6f, min=%.6f, max=%.6f}", probability, minProbability, maxProbability);
+  }
+
+  @Override
+  public String toString() {
+    return getDescription();
+  }
+
+  private void maybeAdjust() {
+    long nowNanos = clock.nowNanos();
+    long nextAdjustment = nextAdjustmentNanos.get();
+    if (nowNanos - nextAdjustment < 0
+        || !nextAdjustmentNanos.compareAndSet(
+            nextAdjustment, nowNanos + ADJUSTMENT_INTERVAL_NANOS)) {
+      return;
+    }
+    long droppedSpans = spanExporter.getTotalDroppedSpans();
+    double utilization = spanExporter.getQueueUtilization();
+    // Unregistering a handler removes its drops from the total.
+    boolean dropped = droppedSpans > lastDroppedSpans;
+    lastDroppedSpans = droppedSpans;
+    if (dropped || utilization > HIGH_UTILIZATION) {
+      setProbability(Math.max(minProbability, probability * DECREASE_FACTOR));
+    } else if (utilization < LOW_UTILIZATION) {
+      setProbability(Math.min(maxProbability, probability + maxProbability * INCREASE_STEP));
+    }
+  }
+
+  // See ProbabilitySampler for the conversion of the probability to an upper bound of the id.
+  private void setProbability(double probability) {
+    long idUpperBound;
+    if (probability == 0.0) {
+      idUpperBound = Long.MIN_VALUE;
+    } else if (probability == 1.0) {
+      idUpperBound = Long.MAX_VALUE;
+    } else {
+      idUpperBound = (long) (probability * Long.MAX_VALUE);
+    }
+    this.idUpperBound = idUpperBound;
+    this.probability = probability;
+  }
+}
@@ -19,7 +19,6 @@ package io.opencensus.implcore.trace.export;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import io.opencensus.implcore.trace.RecordEventsSpanImpl;
-import io.opencensus.implcore.trace.internal.ConcurrentIntrusiveList;
 import io.opencensus.trace.export.RunningSpanStore;
 import io.opencensus.trace.export.SpanData;
 import java.util.ArrayList;
@@ -28,14 +27,25 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
-/** In-process implementation of the {@link RunningSpanStore}. */
+/**
+ * In-process implementation of the {@link RunningSpanStore}.
+ *
+ * <p>The running spans are kept in a concurrent set, so starting and ending spans do not contend
+ * on a single lock, and summaries and queries iterate over the spans without blocking them.
+ */
 @ThreadSafe
 public final class InProcessRunningSpanStore extends RunningSpanStore {
   private static final Summary EMPTY_SUMMARY =
       RunningSpanStore.Summary.create(Collections.<String, PerSpanNameSummary>emptyMap());
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int MAX_CONCURRENCY_LEVEL = 64;
 
   @Nullable private volatile InProcessRunningSpanStoreImpl impl = null;
 
@@ -110,25 +120,55 @@ public final class InProcessRunningSpanStore extends RunningSpanStore {
   }
 
   private static final class InProcessRunningSpanStoreImpl {
-    private final ConcurrentIntrusiveList<RecordEventsSpanImpl> runningSpans;
+    // Keyed by identity, RecordEventsSpanImpl does not override equals.
+    private final Set<RecordEventsSpanImpl> runningSpans;
+    private final int maxNumberOfElements;
+    // The number of spans in runningSpans.
+    private final AtomicInteger size = new AtomicInteger();
 
     private InProcessRunningSpanStoreImpl(int maxNumberOfElements) {
-      runningSpans = new ConcurrentIntrusiveList<>(maxNumberOfElements);
+      this.runningSpans =
+          Collections.newSetFromMap(
+              new ConcurrentHashMap<RecordEventsSpanImpl, Boolean>(
+                  INITIAL_CAPACITY, LOAD_FACTOR, concurrencyLevel()));
+      this.maxNumberOfElements = maxNumberOfElements;
+    }
+
+    private static int concurrencyLevel() {
+      return Math.min(MAX_CONCURRENCY_LEVEL, 2 * Runtime.getRuntime().availableProcessors());
     }
 
     private void onStart(RecordEventsSpanImpl span) {
-      runningSpans.addElement(span);
+      if (!tryIncrementSize()) {
+        return;
+      }
+      if (!runningSpans.add(span)) {
+        size.decrementAndGet();
+      }
     }
 
     private void onEnd(RecordEventsSpanImpl span) {
       // TODO: Count and display when try to remove span that was not present.
-      runningSpans.removeElement(span);
+      if (runningSpans.remove(span)) {
+        size.decrementAndGet();
+      }
+    }
+
+    // Returns false if the store is full.
+    private boolean tryIncrementSize() {
+      int current;
+      do {
+        current = size.get();
+        if (current >= maxNumberOfElements) {
+          return false;
+        }
+      } while (!size.compareAndSet(current, current + 1));
+      return true;
     }
 
     private Summary getSummary() {
-      Collection<RecordEventsSpanImpl> allRunningSpans = runningSpans.getAll();
       Map<String, Integer> numSpansPerName = new HashMap<String, Integer>();
-      for (RecordEventsSpanImpl span : allRunningSpans) {
+      for (RecordEventsSpanImpl span : runningSpans) {
         Integer prevValue = numSpansPerName.get(span.getName());
         numSpansPerName.put(span.getName(), prevValue != null ? prevValue + 1 : 1);
       }
@@ -141,13 +181,12 @@ public final class InProcessRunningSpanStore extends RunningSpanStore {
     }
 
     private Collection<SpanData> getRunningSpans(Filter filter) {
-      Collection<RecordEventsSpanImpl> allRunningSpans = runningSpans.getAll();
       int maxSpansToReturn =
-          filter.getMaxSpansToReturn() == 0 ? allRunningSpans.size() : filter.getMaxSpansToReturn();
-      List<SpanData> ret = new ArrayList<SpanData>(maxSpansToReturn);
-      for (RecordEventsSpanImpl span : allRunningSpans) {
+          filter.getMaxSpansToReturn() == 0 ? Integer.MAX_VALUE : filter.getMaxSpansToReturn();
+      List<SpanData> ret = new ArrayList<SpanData>();
+      for (RecordEventsSpanImpl span : runningSpans) {
         if (ret.size() == maxSpansToReturn) {
-          break;
+          return ret;
         }
         if (span.getName().equals(filter.getSpanName())) {
           ret.add(span.toSpanData());
@@ -158,6 +197,7 @@ public final class InProcessRunningSpanStore extends RunningSpanStore {
 
     private void clear() {
       runningSpans.clear();
+      size.set(0);
     }
   }
 }
@@ -16,7 +16,6 @@
 
 package io.opencensus.implcore.trace.export;
 
-import com.google.common.collect.EvictingQueue;
 import io.opencensus.implcore.internal.EventQueue;
 import io.opencensus.implcore.trace.RecordEventsSpanImpl;
 import io.opencensus.trace.Status;
@@ -32,12 +31,22 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
-/** In-process implementation of the {@link SampledSpanStore}. */
+/**
+ * In-process implementation of the {@link SampledSpanStore}.
+ *
+ * <p>The samples are kept in a concurrent map by span name, and each bucket keeps its samples in
+ * lock-free reservoirs, so sampling the ended spans and reading the samples take no global lock.
+ * Spans with a name that is not registered for collection are only sampled while fewer than
+ * 1000 span names are sampled.
+ */
 @ThreadSafe
 public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
   private static final int NUM_SAMPLES_PER_LATENCY_BUCKET = 10;
@@ -49,57 +58,41 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
   private static final int MAX_PER_SPAN_NAME_SAMPLES =
       NUM_SAMPLES_PER_LATENCY_BUCKET * NUM_LATENCY_BUCKETS
           + NUM_SAMPLES_PER_ERROR_BUCKET * NUM_ERROR_BUCKETS;
+  // The maximum number of span names sampled without being registered for collection.
+  private static final int MAX_NUMBER_OF_SPAN_NAMES = 1000;
 
   // Used to stream the register/unregister events to the implementation to avoid lock contention
   // between the main threads and the worker thread.
   private final EventQueue eventQueue;
 
-  @GuardedBy("samples")
-  private final Map<String, PerSpanNameSamples> samples;
+  private final ConcurrentMap<String, PerSpanNameSamples> samples;
 
   private static final class Bucket {
 
-    private final EvictingQueue<RecordEventsSpanImpl> sampledSpansQueue;
-    private final EvictingQueue<RecordEventsSpanImpl> notSampledSpansQueue;
-    private long lastSampledNanoTime;
-    private long lastNotSampledNanoTime;
+    private final Reservoir sampledSpans;
+    private final Reservoir notSampledSpans;
 
     private Bucket(int numSamples) {
-      sampledSpansQueue = EvictingQueue.create(numSamples);
-      notSampledSpansQueue = EvictingQueue.create(numSamples);
+      sampledSpans = new Reservoir(numSamples);
+      notSampledSpans = new Reservoir(numSamples);
     }
 
     private void considerForSampling(RecordEventsSpanImpl span) {
-      long spanEndNanoTime = span.getEndNanoTime();
       if (span.getContext().getTraceOptions().isSampled()) {
-        // Need to compare by doing the subtraction all the time because in case of an overflow,
-        // this may never sample again (at least for the next ~200 years). No real chance to
-        // overflow two times because that means the process runs for ~200 years.
-        if (spanEndNanoTime - lastSampledNanoTime > TIME_BETWEEN_SAMPLES) {
-          sampledSpansQueue.add(span);
-          lastSampledNanoTime = spanEndNanoTime;
-        }
+        sampledSpans.considerForSampling(span);
       } else {
-        // Need to compare by doing the subtraction all the time because in case of an overflow,
-        // this may never sample again (at least for the next ~200 years). No real chance to
-        // overflow two times because that means the process runs for ~200 years.
-        if (spanEndNanoTime - lastNotSampledNanoTime > TIME_BETWEEN_SAMPLES) {
-          notSampledSpansQueue.add(span);
-          lastNotSampledNanoTime = spanEndNanoTime;
-        }
+        notSampledSpans.considerForSampling(span);
       }
     }
 
     private void getSamples(int maxSpansToReturn, List<RecordEventsSpanImpl> output) {
-      getSamples(maxSpansToReturn, output, sampledSpansQueue);
-      getSamples(maxSpansToReturn, output, notSampledSpansQueue);
+      getSamples(maxSpansToReturn, output, sampledSpans);
+      getSamples(maxSpansToReturn, output, notSampledSpans);
     }
 
     private static void getSamples(
-        int maxSpansToReturn,
-        List<RecordEventsSpanImpl> output,
-        EvictingQueue<RecordEventsSpanImpl> queue) {
-      for (RecordEventsSpanImpl span : queue) {
+        int maxSpansToReturn, List<RecordEventsSpanImpl> output, Reservoir reservoir) {
+      for (RecordEventsSpanImpl span : reservoir.getAll()) {
         if (output.size() >= maxSpansToReturn) {
           break;
         }
@@ -113,9 +106,9 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
         int maxSpansToReturn,
         List<RecordEventsSpanImpl> output) {
       getSamplesFilteredByLatency(
-          latencyLowerNs, latencyUpperNs, maxSpansToReturn, output, sampledSpansQueue);
+          latencyLowerNs, latencyUpperNs, maxSpansToReturn, output, sampledSpans);
       getSamplesFilteredByLatency(
-          latencyLowerNs, latencyUpperNs, maxSpansToReturn, output, notSampledSpansQueue);
+          latencyLowerNs, latencyUpperNs, maxSpansToReturn, output, notSampledSpans);
     }
 
     private static void getSamplesFilteredByLatency(
@@ -123,8 +116,8 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
         long latencyUpperNs,
         int maxSpansToReturn,
         List<RecordEventsSpanImpl> output,
-        EvictingQueue<RecordEventsSpanImpl> queue) {
-      for (RecordEventsSpanImpl span : queue) {
+        Reservoir reservoir) {
+      for (RecordEventsSpanImpl span : reservoir.getAll()) {
         if (output.size() >= maxSpansToReturn) {
           break;
         }
@@ -136,7 +129,53 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
     }
 
     private int getNumSamples() {
-      return sampledSpansQueue.size() + notSampledSpansQueue.size();
+      return sampledSpans.getNumSamples() + notSampledSpans.getNumSamples();
+    }
+  }
+
+  /**
+   * Keeps the most recent spans, at most one every {@link #TIME_BETWEEN_SAMPLES}. The time gate is
+   * updated with a {@code compareAndSet}, so at most one thread stores a span in each interval, and
+   * readers never block the threads that end spans.
+   */
+  private static final class Reservoir {
+    private final AtomicReferenceArray<RecordEventsSpanImpl> spans;
+    // The number of spans stored so far, the next span is stored at numStored % spans.length().
+    private final AtomicLong numStored = new AtomicLong();
+    private final AtomicLong lastSampledNanoTime = new AtomicLong();
+
+    private Reservoir(int numSamples) {
+      spans = new AtomicReferenceArray<RecordEventsSpanImpl>(numSamples);
+    }
+
+    private void considerForSampling(RecordEventsSpanImpl span) {
+      long spanEndNanoTime = span.getEndNanoTime();
+      long lastNanoTime = lastSampledNanoTime.get();
+      // Need to compare by doing the subtraction all the time because in case of an overflow,
+      // this may never sample again (at least for the next ~200 years). No real chance to
+      // overflow two times because that means the process runs for ~200 years.
+      if (spanEndNanoTime - lastNanoTime > TIME_BETWEEN_SAMPLES
+          && lastSampledNanoTime.compareAndSet(lastNanoTime, spanEndNanoTime)) {
+        spans.set((int) (numStored.getAndIncrement() % spans.length()), span);
+      }
+    }
+
+    private int getNumSamples() {
+      return (int) Math.min(numStored.get(), spans.length());
+    }
+
+    // Returns a snapshot of the stored spans, from the oldest to the most recent.
+    private List<RecordEventsSpanImpl> getAll() {
+      int length = spans.length();
+      long next = numStored.get();
+      List<RecordEventsSpanImpl> all = new ArrayList<RecordEventsSpanImpl>(length);
+      for (int i = 0; i < length; i++) {
+        RecordEventsSpanImpl span = spans.get((int) ((next + i) % length));
+        if (span != null) {
+          all.add(span);
+        }
+      }
+      return all;
     }
   }
 
@@ -245,37 +284,39 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
 
   /** Constructs a new {@code InProcessSampledSpanStoreImpl}. */
   InProcessSampledSpanStoreImpl(EventQueue eventQueue) {
-    samples = new HashMap<String, PerSpanNameSamples>();
+    samples = new ConcurrentHashMap<String, PerSpanNameSamples>();
     this.eventQueue = eventQueue;
   }
 
   @Override
   public Summary getSummary() {
     Map<String, PerSpanNameSummary> ret = new HashMap<String, PerSpanNameSummary>();
-    synchronized (samples) {
-      for (Map.Entry<String, PerSpanNameSamples> it : samples.entrySet()) {
-        ret.put(
-            it.getKey(),
-            PerSpanNameSummary.create(
-                it.getValue().getNumbersOfLatencySampledSpans(),
-                it.getValue().getNumbersOfErrorSampledSpans()));
-      }
+    for (Map.Entry<String, PerSpanNameSamples> it : samples.entrySet()) {
+      ret.put(
+          it.getKey(),
+          PerSpanNameSummary.create(
+              it.getValue().getNumbersOfLatencySampledSpans(),
+              it.getValue().getNumbersOfErrorSampledSpans()));
     }
     return Summary.create(ret);
   }
 
   @Override
   public void considerForSampling(RecordEventsSpanImpl span) {
-    synchronized (samples) {
-      String spanName = span.getName();
-      if (span.getSampleToLocalSpanStore() && !samples.containsKey(spanName)) {
-        samples.put(spanName, new PerSpanNameSamples());
+    String spanName = span.getName();
+    PerSpanNameSamples perSpanNameSamples = samples.get(spanName);
+    if (perSpanNameSamples == null) {
+      // Bound the memory used by spans with many different names.
+      if (!span.getSampleToLocalSpanStore() || samples.size() >= MAX_NUMBER_OF_SPAN_NAMES) {
+        return;
       }
-      PerSpanNameSamples perSpanNameSamples = samples.get(spanName);
-      if (perSpanNameSamples != null) {
-        perSpanNameSamples.considerForSampling(span);
+      PerSpanNameSamples newSamples = new PerSpanNameSamples();
+      perSpanNameSamples = samples.putIfAbsent(spanName, newSamples);
+      if (perSpanNameSamples == null) {
+        perSpanNameSamples = newSamples;
       }
     }
+    perSpanNameSamples.considerForSampling(span);
   }
 
   @Override
@@ -295,11 +336,9 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
   }
 
   private void internaltRegisterSpanNamesForCollection(Collection<String> spanNames) {
-    synchronized (samples) {
-      for (String spanName : spanNames) {
-        if (!samples.containsKey(spanName)) {
-          samples.put(spanName, new PerSpanNameSamples());
-        }
+    for (String spanName : spanNames) {
+      if (!samples.containsKey(spanName)) {
+        samples.putIfAbsent(spanName, new PerSpanNameSamples());
       }
     }
   }
@@ -327,9 +366,7 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
   }
 
   private void internalUnregisterSpanNamesForCollection(Collection<String> spanNames) {
-    synchronized (samples) {
-      samples.keySet().removeAll(spanNames);
-    }
+    samples.keySet().removeAll(spanNames);
   }
 
   private static final class UnregisterSpanNameEvent implements EventQueue.Entry {
@@ -350,9 +387,7 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
 
   @Override
   public Set<String> getRegisteredSpanNamesForCollection() {
-    synchronized (samples) {
-      return Collections.unmodifiableSet(new HashSet<String>(samples.keySet()));
-    }
+    return Collections.unmodifiableSet(new HashSet<String>(samples.keySet()));
   }
 
   @Override
@@ -362,13 +397,9 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
             ? MAX_PER_SPAN_NAME_SAMPLES
             : filter.getMaxSpansToReturn();
     List<RecordEventsSpanImpl> spans = Collections.emptyList();
-    // Try to not keep the lock to much, do the RecordEventsSpanImpl -> SpanData conversion outside
-    // the lock.
-    synchronized (samples) {
-      PerSpanNameSamples perSpanNameSamples = samples.get(filter.getSpanName());
-      if (perSpanNameSamples != null) {
-        spans = perSpanNameSamples.getErrorSamples(filter.getCanonicalCode(), numSpansToReturn);
-      }
+    PerSpanNameSamples perSpanNameSamples = samples.get(filter.getSpanName());
+    if (perSpanNameSamples != null) {
+      spans = perSpanNameSamples.getErrorSamples(filter.getCanonicalCode(), numSpansToReturn);
     }
     List<SpanData> ret = new ArrayList<SpanData>(spans.size());
     for (RecordEventsSpanImpl span : spans) {
@@ -384,15 +415,11 @@ public final class InProcessSampledSpanStoreImpl extends SampledSpanStoreImpl {
             ? MAX_PER_SPAN_NAME_SAMPLES
             : filter.getMaxSpansToReturn();
     List<RecordEventsSpanImpl> spans = Collections.emptyList();
-    // Try to not keep the lock to much, do the RecordEventsSpanImpl -> SpanData conversion outside
-    // the lock.
-    synchronized (samples) {
-      PerSpanNameSamples perSpanNameSamples = samples.get(filter.getSpanName());
-      if (perSpanNameSamples != null) {
-        spans =
-            perSpanNameSamples.getLatencySamples(
-                filter.getLatencyLowerNs(), filter.getLatencyUpperNs(), numSpansToReturn);
-      }
+    PerSpanNameSamples perSpanNameSamples = samples.get(filter.getSpanName());
+    if (perSpanNameSamples != null) {
+      spans =
+          perSpanNameSamples.getLatencySamples(
+              filter.getLatencyLowerNs(), filter.getLatencyUpperNs(), numSpansToReturn);
     }
     List<SpanData> ret = new ArrayList<SpanData>(spans.size());
     for (RecordEventsSpanImpl span : spans) {
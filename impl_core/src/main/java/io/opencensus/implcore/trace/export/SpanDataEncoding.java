@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import com.google.common.base.Charsets;
+import io.opencensus.common.Function;
+import io.opencensus.common.Functions;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.internal.VarInt;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.Span.Kind;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * Compact binary encoding of the {@link SpanData}, used to spill the spans to disk.
+ *
+ * <p>Ids are written as raw bytes, timestamps as fixed-size seconds and variable-length nanos, and
+ * all the other numbers and lengths as varints. Optional fields are prefixed by a presence byte,
+ * and strings are written as their UTF-8 bytes prefixed by their length. The first byte is the
+ * version of the encoding.
+ *
+ * <p>An instance reuses its buffer, so the result of {@link #encode(SpanData)} is only valid until
+ * the next call.
+ */
+@NotThreadSafe
+final class SpanDataEncoding {
+  private static final byte VERSION = 0;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final byte ABSENT = 0;
+  private static final byte PRESENT = 1;
+
+  private static final byte STRING_VALUE = 0;
+  private static final byte BOOLEAN_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte DOUBLE_VALUE = 3;
+
+  private static final Kind[] KINDS = Kind.values();
+  private static final MessageEvent.Type[] MESSAGE_EVENT_TYPES = MessageEvent.Type.values();
+  private static final Link.Type[] LINK_TYPES = Link.Type.values();
+
+  private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+  // Functions that write the typed attribute values, see AttributeValue#match.
+  private final Function<String, /*@Nullable*/ Void> writeStringValue =
+      new Function<String, /*@Nullable*/ Void>() {
+        @Override
+        public Void apply(String stringValue) {
+          writeByte(STRING_VALUE);
+          writeString(stringValue);
+          return null;
+        }
+      };
+  private final Function<Boolean, /*@Nullable*/ Void> writeBooleanValue =
+      new Function<Boolean, /*@Nullable*/ Void>() {
+        @Override
+        public Void apply(Boolean booleanValue) {
+          writeByte(BOOLEAN_VALUE);
+          writeByte(booleanValue ? 1 : 0);
+          return null;
+        }
+      };
+  private final Function<Long, /*@Nullable*/ Void> writeLongValue =
+      new Function<Long, /*@Nullable*/ Void>() {
+        @Override
+        public Void apply(Long longValue) {
+          writeByte(LONG_VALUE);
+          writeVarLong(longValue);
+          return null;
+        }
+      };
+  private final Function<Double, /*@Nullable*/ Void> writeDoubleValue =
+      new Function<Double, /*@Nullable*/ Void>() {
+        @Override
+        public Void apply(Double doubleValue) {
+          writeByte(DOUBLE_VALUE);
+          ensureRemaining(8);
+          buffer.putLong(Double.doubleToRawLongBits(doubleValue));
+          return null;
+        }
+      };
+
+  /**
+   * Encodes the given {@code SpanData}.
+   *
+   * @param spanData the {@code SpanData} to encode.
+   * @return a buffer that holds the encoded span between its position and its limit.
+   */
+  ByteBuffer encode(SpanData spanData) {
+    buffer.clear();
+    writeByte(VERSION);
+    SpanContext context = spanData.getContext();
+    writeTraceId(context.getTraceId());
+    writeSpanId(context.getSpanId());
+    writeByte(context.getTraceOptions().getByte());
+    List<Tracestate.Entry> entries = context.getTracestate().getEntries();
+    writeVarInt(entries.size());
+    for (Tracestate.Entry entry : entries) {
+      writeString(entry.getKey());
+      writeString(entry.getValue());
+    }
+    SpanId parentSpanId = spanData.getParentSpanId();
+    if (parentSpanId == null) {
+      writeByte(ABSENT);
+    } else {
+      writeByte(PRESENT);
+      writeSpanId(parentSpanId);
+    }
+    Boolean hasRemoteParent = spanData.getHasRemoteParent();
+    writeByte(hasRemoteParent == null ? 0 : hasRemoteParent ? 2 : 1);
+    writeString(spanData.getName());
+    Kind kind = spanData.getKind();
+    writeByte(kind == null ? 0 : kind.ordinal() + 1);
+    writeTimestamp(spanData.getStartTimestamp());
+    writeAttributes(spanData.getAttributes().getAttributeMap());
+    writeVarInt(spanData.getAttributes().getDroppedAttributesCount());
+    List<TimedEvent<Annotation>> annotations = spanData.getAnnotations().getEvents();
+    writeVarInt(annotations.size());
+    for (TimedEvent<Annotation> annotation : annotations) {
+      writeTimestamp(annotation.getTimestamp());
+      writeString(annotation.getEvent().getDescription());
+      writeAttributes(annotation.getEvent().getAttributes());
+    }
+    writeVarInt(spanData.getAnnotations().getDroppedEventsCount());
+    List<TimedEvent<MessageEvent>> messageEvents = spanData.getMessageEvents().getEvents();
+    writeVarInt(messageEvents.size());
+    for (TimedEvent<MessageEvent> messageEvent : messageEvents) {
+      writeTimestamp(messageEvent.getTimestamp());
+      MessageEvent event = messageEvent.getEvent();
+      writeByte(event.getType().ordinal());
+      writeVarLong(event.getMessageId());
+      writeVarLong(event.getUncompressedMessageSize());
+      writeVarLong(event.getCompressedMessageSize());
+    }
+    writeVarInt(spanData.getMessageEvents().getDroppedEventsCount());
+    List<Link> links = spanData.getLinks().getLinks();
+    writeVarInt(links.size());
+    for (Link link : links) {
+      writeTraceId(link.getTraceId());
+      writeSpanId(link.getSpanId());
+      writeByte(link.getType().ordinal());
+      writeAttributes(link.getAttributes());
+    }
+    writeVarInt(spanData.getLinks().getDroppedLinksCount());
+    Integer childSpanCount = spanData.getChildSpanCount();
+    // Shifted by one, so that 0 means absent.
+    writeVarInt(childSpanCount == null ? 0 : childSpanCount + 1);
+    Status status = spanData.getStatus();
+    if (status == null) {
+      writeByte(ABSENT);
+    } else {
+      writeByte(PRESENT);
+      writeVarInt(status.getCanonicalCode().value());
+      writeNullableString(status.getDescription());
+    }
+    Timestamp endTimestamp = spanData.getEndTimestamp();
+    if (endTimestamp == null) {
+      writeByte(ABSENT);
+    } else {
+      writeByte(PRESENT);
+      writeTimestamp(endTimestamp);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Decodes a {@code SpanData} encoded by {@link #encode(SpanData)}. The position of the buffer is
+   * advanced to the end of the encoded span.
+   *
+   * @param src the buffer to read.
+   * @return the decoded {@code SpanData}.
+   * @throws IllegalArgumentException if the span is malformed or was encoded with an unknown
+   *     version.
+   * @throws java.nio.BufferUnderflowException if the span is truncated.
+   */
+  static SpanData decode(ByteBuffer src) {
+    byte version = src.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported span encoding version " + version);
+    }
+    TraceId traceId = readTraceId(src);
+    SpanId spanId = readSpanId(src);
+    TraceOptions traceOptions = TraceOptions.fromByte(src.get());
+    int numberOfEntries = VarInt.getVarInt(src);
+    String[] entries = new String[2 * numberOfEntries];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = readString(src);
+    }
+    // Tracestate.Builder#set adds the entries to the front.
+    Tracestate.Builder tracestate = Tracestate.builder();
+    for (int i = entries.length - 2; i >= 0; i -= 2) {
+      tracestate.set(entries[i], entries[i + 1]);
+    }
+    SpanContext context = SpanContext.create(traceId, spanId, traceOptions, tracestate.build());
+    SpanId parentSpanId = src.get() == ABSENT ? null : readSpanId(src);
+    byte hasRemoteParentByte = src.get();
+    Boolean hasRemoteParent = hasRemoteParentByte == 0 ? null : hasRemoteParentByte == 2;
+    String name = readString(src);
+    byte kindByte = src.get();
+    Kind kind = kindByte == 0 ? null : KINDS[kindByte - 1];
+    Timestamp startTimestamp = readTimestamp(src);
+    SpanData.Attributes attributes =
+        SpanData.Attributes.create(readAttributes(src), VarInt.getVarInt(src));
+    int numberOfAnnotations = VarInt.getVarInt(src);
+    List<TimedEvent<Annotation>> annotations =
+        new ArrayList<TimedEvent<Annotation>>(numberOfAnnotations);
+    for (int i = 0; i < numberOfAnnotations; i++) {
+      Timestamp timestamp = readTimestamp(src);
+      String description = readString(src);
+      annotations.add(
+          TimedEvent.create(
+              timestamp,
+              Annotation.fromDescriptionAndAttributes(description, readAttributes(src))));
+    }
+    int droppedAnnotations = VarInt.getVarInt(src);
+    int numberOfMessageEvents = VarInt.getVarInt(src);
+    List<TimedEvent<MessageEvent>> messageEvents =
+        new ArrayList<TimedEvent<MessageEvent>>(numberOfMessageEvents);
+    for (int i = 0; i < numberOfMessageEvents; i++) {
+      Timestamp timestamp = readTimestamp(src);
+      MessageEvent.Type type = MESSAGE_EVENT_TYPES[src.get()];
+      long messageId = VarInt.getVarLong(src);
+      MessageEvent event =
+          MessageEvent.builder(type, messageId)
+              .setUncompressedMessageSize(VarInt.getVarLong(src))
+              .setCompressedMessageSize(VarInt.getVarLong(src))
+              .build();
+      messageEvents.add(TimedEvent.create(timestamp, event));
+    }
+    int droppedMessageEvents = VarInt.getVarInt(src);
+    int numberOfLinks = VarInt.getVarInt(src);
+    List<Link> links = new ArrayList<Link>(numberOfLinks);
+    for (int i = 0; i < numberOfLinks; i++) {
+      TraceId linkTraceId = readTraceId(src);
+      SpanId linkSpanId = readSpanId(src);
+      Link.Type type = LINK_TYPES[src.get()];
+      links.add(
+          Link.fromSpanContext(
+              SpanContext.create(linkTraceId, linkSpanId, TraceOptions.DEFAULT),
+              type,
+              readAttributes(src)));
+    }
+    int droppedLinks = VarInt.getVarInt(src);
+    int childSpanCountPlusOne = VarInt.getVarInt(src);
+    Status status = null;
+    if (src.get() != ABSENT) {
+      status = toStatus(VarInt.getVarInt(src)).withDescription(readNullableString(src));
+    }
+    Timestamp endTimestamp = src.get() == ABSENT ? null : readTimestamp(src);
+    return SpanData.create(
+        context,
+        parentSpanId,
+        hasRemoteParent,
+        name,
+        kind,
+        startTimestamp,
+        attributes,
+        SpanData.TimedEvents.create(annotations, droppedAnnotations),
+        SpanData.TimedEvents.create(messageEvents, droppedMessageEvents),
+        SpanData.Links.create(links, droppedLinks),
+        childSpanCountPlusOne == 0 ? null : childSpanCountPlusOne - 1,
+        status,
+        endTimestamp);
+  }
+
+  private void writeAttributes(Map<String, AttributeValue> attributes) {
+    writeVarInt(attributes.size());
+    for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+      writeString(attribute.getKey());
+      attribute
+          .getValue()
+          .match(
+              writeStringValue,
+              writeBooleanValue,
+              writeLongValue,
+              writeDoubleValue,
+              Functions.</*@Nullable*/ Void>throwAssertionError());
+    }
+  }
+
+  private static Map<String, AttributeValue> readAttributes(ByteBuffer src) {
+    int size = VarInt.getVarInt(src);
+    if (size == 0) {
+      return Collections.<String, AttributeValue>emptyMap();
+    }
+    Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>(size * 2);
+    for (int i = 0; i < size; i++) {
+      String key = readString(src);
+      byte type = src.get();
+      AttributeValue value;
+      switch (type) {
+        case STRING_VALUE:
+          value = AttributeValue.stringAttributeValue(readString(src));
+          break;
+        case BOOLEAN_VALUE:
+          value = AttributeValue.booleanAttributeValue(src.get() != 0);
+          break;
+        case LONG_VALUE:
+          value = AttributeValue.longAttributeValue(VarInt.getVarLong(src));
+          break;
+        case DOUBLE_VALUE:
+          value = AttributeValue.doubleAttributeValue(Double.longBitsToDouble(src.getLong()));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown attribute type " + type);
+      }
+      attributes.put(key, value);
+    }
+    return attributes;
+  }
+
+  private static Status toStatus(int code) {
+    for (Status.CanonicalCode canonicalCode : Status.CanonicalCode.values()) {
+      if (canonicalCode.value() == code) {
+        return canonicalCode.toStatus();
+      }
+    }
+    throw new IllegalArgumentException("Unknown status code " + code);
+  }
+
+  private void writeTraceId(TraceId traceId) {
+    ensureRemaining(TraceId.SIZE);
+    traceId.copyBytesTo(buffer, buffer.position());
+    buffer.position(buffer.position() + TraceId.SIZE);
+  }
+
+  private static TraceId readTraceId(ByteBuffer src) {
+    TraceId traceId = TraceId.fromByteBuffer(src, src.position());
+    src.position(src.position() + TraceId.SIZE);
+    return traceId;
+  }
+
+  private void writeSpanId(SpanId spanId) {
+    ensureRemaining(SpanId.SIZE);
+    spanId.copyBytesTo(buffer, buffer.position());
+    buffer.position(buffer.position() + SpanId.SIZE);
+  }
+
+  private static SpanId readSpanId(ByteBuffer src) {
+    SpanId spanId = SpanId.fromByteBuffer(src, src.position());
+    src.position(src.position() + SpanId.SIZE);
+    return spanId;
+  }
+
+  private void writeTimestamp(Timestamp timestamp) {
+    ensureRemaining(8);
+    buffer.putLong(timestamp.getSeconds());
+    writeVarInt(timestamp.getNanos());
+  }
+
+  private static Timestamp readTimestamp(ByteBuffer src) {
+    long seconds = src.getLong();
+    return Timestamp.create(seconds, VarInt.getVarInt(src));
+  }
+
+  private void writeString(String value) {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    writeVarInt(bytes.length);
+    ensureRemaining(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String readString(ByteBuffer src) {
+    int length = VarInt.getVarInt(src);
+    if (length < 0 || length > src.remaining()) {
+      throw new IllegalArgumentException("Invalid string length " + length);
+    }
+    String value;
+    if (src.hasArray()) {
+      value = new String(src.array(), src.arrayOffset() + src.position(), length, Charsets.UTF_8);
+      src.position(src.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      src.get(bytes);
+      value = new String(bytes, Charsets.UTF_8);
+    }
+    return value;
+  }
+
+  private void writeNullableString(/*@Nullable*/ String value) {
+    if (value == null) {
+      writeByte(ABSENT);
+    } else {
+      writeByte(PRESENT);
+      writeString(value);
+    }
+  }
+
+  /*@Nullable*/
+  private static String readNullableString(ByteBuffer src) {
+    return src.get() == ABSENT ? null : readString(src);
+  }
+
+  private void writeByte(int value) {
+    ensureRemaining(1);
+    buffer.put((byte) value);
+  }
+
+  private void writeVarInt(int value) {
+    ensureRemaining(VarInt.MAX_VARINT_SIZE);
+    VarInt.putVarInt(value, buffer);
+  }
+
+  private void writeVarLong(long value) {
+    ensureRemaining(VarInt.MAX_VARLONG_SIZE);
+    VarInt.putVarLong(value, buffer);
+  }
+
+  private void ensureRemaining(int size) {
+    if (buffer.remaining() < size) {
+      ByteBuffer newBuffer =
+          ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + size));
+      buffer.flip();
+      newBuffer.put(buffer);
+      buffer = newBuffer;
+    }
+  }
+}
@@ -16,28 +16,40 @@
 
 package io.opencensus.implcore.trace.export;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.annotations.VisibleForTesting;
 import io.opencensus.common.Duration;
 import io.opencensus.common.ToLongFunction;
 import io.opencensus.implcore.internal.CheckerFrameworkUtils;
 import io.opencensus.implcore.internal.DaemonThreadFactory;
 import io.opencensus.implcore.trace.RecordEventsSpanImpl;
+import io.opencensus.implcore.trace.internal.ConcurrentRingBuffer;
 import io.opencensus.metrics.DerivedLongCumulative;
 import io.opencensus.metrics.DerivedLongGauge;
+import io.opencensus.metrics.LabelKey;
 import io.opencensus.metrics.LabelValue;
 import io.opencensus.metrics.MetricOptions;
 import io.opencensus.metrics.Metrics;
 import io.opencensus.trace.export.ExportComponent;
+import io.opencensus.trace.export.ReadableSpan;
 import io.opencensus.trace.export.SpanData;
 import io.opencensus.trace.export.SpanExporter;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.concurrent.GuardedBy;
 
 /*>>>
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -62,6 +74,18 @@ public final class SpanExporterImpl extends SpanExporter {
                   .setDescription("Number of spans pushed by the exporter thread to the exporter.")
                   .setUnit("1")
                   .build());
+  private static final DerivedLongCumulative droppedSpansByPolicy =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_spans_dropped_by_policy",
+              MetricOptions.builder()
+                  .setDescription(
+                      "Number of spans dropped by the exporter thread, by overflow policy.")
+                  .setUnit("1")
+                  .setLabelKeys(
+                      Collections.singletonList(
+                          LabelKey.create("policy", "The overflow policy of the exporter.")))
+                  .build());
   private static final DerivedLongGauge referencedSpans =
       Metrics.getMetricRegistry()
           .addDerivedLongGauge(
@@ -70,10 +94,128 @@ public final class SpanExporterImpl extends SpanExporter {
                   .setDescription("Current number of spans referenced by the exporter thread.")
                   .setUnit("1")
                   .build());
+  private static final DerivedLongCumulative droppedMetricsOnlySpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_metrics_only_spans_dropped",
+              MetricOptions.builder()
+                  .setDescription(
+                      "Number of spans that are not sampled dropped before their metrics were"
+                          + " derived.")
+                  .setUnit("1")
+                  .build());
+  private static final List<LabelKey> HANDLER_LABEL_KEYS =
+      Collections.singletonList(LabelKey.create("handler", "The name of the export handler."));
+  private static final DerivedLongCumulative handlerDroppedSpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_spans_dropped",
+              MetricOptions.builder()
+                  .setDescription("Number of spans dropped because the handler queue was full.")
+                  .setUnit("1")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative handlerPushedSpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_spans_pushed",
+              MetricOptions.builder()
+                  .setDescription("Number of spans pushed to the handler.")
+                  .setUnit("1")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative handlerExportLatency =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_export_latency",
+              MetricOptions.builder()
+                  .setDescription("Total time spent by the handler to export batches of spans.")
+                  .setUnit("ms")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative handlerSpilledSpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_spans_spilled",
+              MetricOptions.builder()
+                  .setDescription("Number of spans spilled because the handler queue was full.")
+                  .setUnit("1")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative handlerReplayedSpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_spans_replayed",
+              MetricOptions.builder()
+                  .setDescription("Number of spilled spans replayed to the handler.")
+                  .setUnit("1")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+  private static final DerivedLongCumulative handlerSpillDiscardedSpans =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_handler_spans_spill_discarded",
+              MetricOptions.builder()
+                  .setDescription(
+                      "Number of spans that could not be spilled to disk or replayed from disk.")
+                  .setUnit("1")
+                  .setLabelKeys(HANDLER_LABEL_KEYS)
+                  .build());
+
+  private static final DerivedLongGauge tailSamplerPendingTraces =
+      Metrics.getMetricRegistry()
+          .addDerivedLongGauge(
+              "oc_worker_tail_sampler_traces_pending",
+              MetricOptions.builder()
+                  .setDescription("Current number of traces buffered by the tail sampler.")
+                  .setUnit("1")
+                  .build());
+  private static final DerivedLongCumulative tailSamplerDecidedTraces =
+      Metrics.getMetricRegistry()
+          .addDerivedLongCumulative(
+              "oc_worker_tail_sampler_traces",
+              MetricOptions.builder()
+                  .setDescription("Number of traces decided by the tail sampler, by outcome.")
+                  .setUnit("1")
+                  .setLabelKeys(
+                      Collections.singletonList(
+                          LabelKey.create(
+                              "outcome", "One of sampled, dropped or evicted (decided early).")))
+                  .build());
+
+  // The time a producer parks between two attempts with OverflowPolicy.BLOCK.
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  // The size of the spill files of the handlers.
+  @VisibleForTesting static final int SPILL_SEGMENT_SIZE = 4 * 1024 * 1024;
+  // The first and the maximum delay before replaying again spilled spans the handler failed to
+  // export. The delay doubles after every consecutive failure.
+  private static final long MIN_REPLAY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long MAX_REPLAY_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
 
   private final Worker worker;
   private final Thread workerThread;
 
+  /**
+   * The policy applied when a span ends while the exporter already references the maximum number
+   * of spans.
+   */
+  public enum OverflowPolicy {
+    /** The span that just ended is dropped. */
+    DROP_NEWEST,
+    /**
+     * The oldest span that was not picked up by the exporter thread yet is dropped to make room for
+     * the span that just ended. If all the referenced spans are being exported, the span that just
+     * ended is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * The thread that ends the span waits for the exporter thread to make room, up to a timeout
+     * after which the span is dropped. The queue of a handler never waits, since the exporter
+     * thread is shared by all the handlers: it drops the newest spans.
+     */
+    BLOCK
+  }
+
   /**
    * Constructs a {@code SpanExporterImpl} that exports the {@link SpanData} asynchronously.
    *
@@ -85,8 +227,26 @@ public final class SpanExporterImpl extends SpanExporter {
    * @param scheduleDelay the maximum delay.
    */
   static SpanExporterImpl create(int bufferSize, Duration scheduleDelay) {
+    return create(
+        bufferSize, scheduleDelay, OverflowPolicy.DROP_NEWEST, Duration.create(0, 0));
+  }
+
+  /**
+   * Constructs a {@code SpanExporterImpl} that exports the {@link SpanData} asynchronously.
+   *
+   * @param bufferSize the size of the buffered span data.
+   * @param scheduleDelay the maximum delay.
+   * @param overflowPolicy the policy applied when the exporter references {@code 4 * bufferSize}
+   *     spans.
+   * @param blockTimeout the maximum time to wait for room with {@link OverflowPolicy#BLOCK}.
+   */
+  static SpanExporterImpl create(
+      int bufferSize,
+      Duration scheduleDelay,
+      OverflowPolicy overflowPolicy,
+      Duration blockTimeout) {
     // TODO(bdrutu): Consider to add a shutdown hook to not avoid dropping data.
-    Worker worker = new Worker(bufferSize, scheduleDelay);
+    Worker worker = new Worker(bufferSize, scheduleDelay, overflowPolicy, blockTimeout);
     return new SpanExporterImpl(worker);
   }
 
@@ -109,6 +269,70 @@ public final class SpanExporterImpl extends SpanExporter {
     worker.unregisterHandler(name);
   }
 
+  /**
+   * Spills the spans that do not fit in the queue of a handler to memory-mapped files, instead of
+   * applying the overflow policy, and replays them to the handler once its queue is empty. The
+   * overflow policy still applies when the spill files of the handler reach {@code
+   * maxBytesPerHandler}.
+   *
+   * <p>Every handler spills to its own subdirectory of {@code directory}, named after the handler,
+   * so the spans that were not replayed before a restart are replayed to the handler registered
+   * with the same name. A span may be replayed more than once after a crash. The spilled spans are
+   * removed only once the handler exported them: if it throws, they are replayed again after a
+   * delay that doubles with every consecutive failure, up to one minute.
+   *
+   * <p>Applies to the registered handlers and to the handlers registered later. A handler whose
+   * spill files cannot be opened keeps exporting without spilling.
+   *
+   * @param directory the directory of the spill files.
+   * @param maxBytesPerHandler the maximum size of the spill files of each handler, at least 8 MiB.
+   * @param replaySpansPerSecond the maximum number of spilled spans replayed to each handler per
+   *     second.
+   */
+  public void enableSpill(File directory, long maxBytesPerHandler, int replaySpansPerSecond) {
+    checkNotNull(directory, "directory");
+    checkArgument(
+        maxBytesPerHandler >= 2L * SPILL_SEGMENT_SIZE, "maxBytesPerHandler is too small.");
+    checkArgument(replaySpansPerSecond > 0, "replaySpansPerSecond must be positive.");
+    worker.enableSpill(new SpillOptions(directory, maxBytesPerHandler, replaySpansPerSecond));
+  }
+
+  /**
+   * Sets the tail-based sampling stage applied to the ended spans before they are exported, or
+   * removes it if {@code null}. The traces buffered by the previous stage are decided immediately.
+   *
+   * <p>The buffered traces that exceed their decision wait are decided when spans are exported,
+   * and at least once every schedule delay.
+   *
+   * @param tailSampler the tail-based sampling stage, or {@code null}.
+   */
+  public void setTailSampler(/*@Nullable*/ TailSampler tailSampler) {
+    worker.setTailSampler(tailSampler);
+  }
+
+  /**
+   * Sets the stage that derives metrics from the ended spans, or removes it if {@code null}.
+   *
+   * <p>While the stage is set, the ended spans that record events but are not sampled are also
+   * added to this exporter, for the stage only. They are queued apart from the sampled spans, in
+   * a queue of {@code 4 * bufferSize} spans that drops the newest spans when it is full, so they
+   * never take the room of the sampled spans and are not counted as referenced or dropped spans.
+   *
+   * @param spanMetrics the stage that derives metrics from the ended spans, or {@code null}.
+   */
+  public void setSpanMetrics(/*@Nullable*/ SpanMetrics spanMetrics) {
+    worker.spanMetrics = spanMetrics;
+  }
+
+  /**
+   * Returns {@code true} if the ended spans that are not sampled should be added to this exporter.
+   *
+   * @return {@code true} if the ended spans that are not sampled should be added to this exporter.
+   */
+  public boolean acceptsUnsampledSpans() {
+    return worker.spanMetrics != null;
+  }
+
   void flush() {
     worker.flush();
   }
@@ -116,19 +340,44 @@ public final class SpanExporterImpl extends SpanExporter {
   void shutdown() {
     flush();
     workerThread.interrupt();
+    worker.shutdownHandlers();
   }
 
   private SpanExporterImpl(Worker worker) {
     this.workerThread =
         new DaemonThreadFactory("ExportComponent.ServiceExporterThread").newThread(worker);
+    worker.thread = this.workerThread;
     this.workerThread.start();
     this.worker = worker;
     droppedSpans.createTimeSeries(
         Collections.<LabelValue>emptyList(), this.worker, new ReportDroppedSpans());
+    droppedSpansByPolicy.createTimeSeries(
+        Collections.singletonList(
+            LabelValue.create(worker.overflowPolicy.name().toLowerCase(Locale.ROOT))),
+        this.worker,
+        new ReportDroppedSpans());
     referencedSpans.createTimeSeries(
         Collections.<LabelValue>emptyList(), this.worker, new ReportReferencedSpans());
     pushedSpans.createTimeSeries(
         Collections.<LabelValue>emptyList(), this.worker, new ReportPushedSpans());
+    droppedMetricsOnlySpans.createTimeSeries(
+        Collections.<LabelValue>emptyList(), this.worker, new ReportDroppedMetricsOnlySpans());
+    tailSamplerPendingTraces.createTimeSeries(
+        Collections.<LabelValue>emptyList(),
+        this.worker,
+        new ReportTailSamplerTraces(ReportTailSamplerTraces.PENDING));
+    tailSamplerDecidedTraces.createTimeSeries(
+        Collections.singletonList(LabelValue.create("sampled")),
+        this.worker,
+        new ReportTailSamplerTraces(ReportTailSamplerTraces.SAMPLED));
+    tailSamplerDecidedTraces.createTimeSeries(
+        Collections.singletonList(LabelValue.create("dropped")),
+        this.worker,
+        new ReportTailSamplerTraces(ReportTailSamplerTraces.DROPPED));
+    tailSamplerDecidedTraces.createTimeSeries(
+        Collections.singletonList(LabelValue.create("evicted")),
+        this.worker,
+        new ReportTailSamplerTraces(ReportTailSamplerTraces.EVICTED));
   }
 
   private static class ReportDroppedSpans implements ToLongFunction</*@Nullable*/ Worker> {
@@ -161,6 +410,51 @@ public final class SpanExporterImpl extends SpanExporter {
     }
   }
 
+  private static class ReportDroppedMetricsOnlySpans
+      implements ToLongFunction</*@Nullable*/ Worker> {
+    @Override
+    public long applyAsLong(/*@Nullable*/ Worker worker) {
+      if (worker == null) {
+        return 0;
+      }
+      return worker.droppedMetricsOnlySpans.get();
+    }
+  }
+
+  private static class ReportTailSamplerTraces implements ToLongFunction</*@Nullable*/ Worker> {
+    private static final int PENDING = 0;
+    private static final int SAMPLED = 1;
+    private static final int DROPPED = 2;
+    private static final int EVICTED = 3;
+
+    private final int count;
+
+    private ReportTailSamplerTraces(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public long applyAsLong(/*@Nullable*/ Worker worker) {
+      if (worker == null) {
+        return 0;
+      }
+      TailSampler tailSampler = worker.tailSampler.get();
+      if (tailSampler == null) {
+        return 0;
+      }
+      switch (count) {
+        case PENDING:
+          return tailSampler.getPendingTraces();
+        case SAMPLED:
+          return tailSampler.getSampledTraces();
+        case DROPPED:
+          return tailSampler.getDroppedTraces();
+        default:
+          return tailSampler.getEvictedTraces();
+      }
+    }
+  }
+
   @VisibleForTesting
   Thread getServiceExporterThread() {
     return workerThread;
@@ -181,6 +475,142 @@ public final class SpanExporterImpl extends SpanExporter {
     return worker.getPushedSpans();
   }
 
+  @VisibleForTesting
+  long getDroppedMetricsOnlySpans() {
+    return worker.droppedMetricsOnlySpans.get();
+  }
+
+  // Returns the number of spans dropped by the exporter and by the handler queues.
+  long getTotalDroppedSpans() {
+    return worker.getTotalDroppedSpans();
+  }
+
+  // Returns the highest occupancy, between 0 and 1, of the exporter queue and the handler queues.
+  double getQueueUtilization() {
+    return worker.getQueueUtilization();
+  }
+
+  @VisibleForTesting
+  long getHandlerDroppedSpans(String name) {
+    HandlerWorker handlerWorker = worker.handlerWorkers.get(name);
+    return handlerWorker == null ? 0 : handlerWorker.droppedSpans.get();
+  }
+
+  @VisibleForTesting
+  long getHandlerPushedSpans(String name) {
+    HandlerWorker handlerWorker = worker.handlerWorkers.get(name);
+    return handlerWorker == null ? 0 : handlerWorker.pushedSpans.get();
+  }
+
+  @VisibleForTesting
+  long getHandlerSpilledSpans(String name) {
+    HandlerWorker handlerWorker = worker.handlerWorkers.get(name);
+    SpanSpillQueue spillQueue = handlerWorker == null ? null : handlerWorker.spillQueue;
+    return spillQueue == null ? 0 : spillQueue.getSpilledSpans();
+  }
+
+  @VisibleForTesting
+  long getHandlerReplayedSpans(String name) {
+    HandlerWorker handlerWorker = worker.handlerWorkers.get(name);
+    SpanSpillQueue spillQueue = handlerWorker == null ? null : handlerWorker.spillQueue;
+    return spillQueue == null ? 0 : spillQueue.getReplayedSpans();
+  }
+
+  // Handler names are free-form: keeps the characters that are safe in a file name, and appends
+  // the hash of the name so that different names do not share a directory.
+  @VisibleForTesting
+  static String toSpillDirectoryName(String handlerName) {
+    StringBuilder builder = new StringBuilder(handlerName.length() + 9);
+    for (int i = 0; i < handlerName.length(); i++) {
+      char c = handlerName.charAt(i);
+      boolean safe =
+          (c >= 'a' && c <= 'z')
+              || (c >= 'A' && c <= 'Z')
+              || (c >= '0' && c <= '9')
+              || c == '-'
+              || c == '_';
+      builder.append(safe ? c : '_');
+    }
+    return builder.append('-').append(Integer.toHexString(handlerName.hashCode())).toString();
+  }
+
+  // See SpanExporterImpl#enableSpill.
+  private static final class SpillOptions {
+    private final File directory;
+    private final long maxBytesPerHandler;
+    private final int replaySpansPerSecond;
+
+    private SpillOptions(File directory, long maxBytesPerHandler, int replaySpansPerSecond) {
+      this.directory = directory;
+      this.maxBytesPerHandler = maxBytesPerHandler;
+      this.replaySpansPerSecond = replaySpansPerSecond;
+    }
+  }
+
+  private static class ReportHandlerDroppedSpans
+      implements ToLongFunction</*@Nullable*/ HandlerWorker> {
+    @Override
+    public long applyAsLong(/*@Nullable*/ HandlerWorker handlerWorker) {
+      if (handlerWorker == null) {
+        return 0;
+      }
+      return handlerWorker.droppedSpans.get();
+    }
+  }
+
+  private static class ReportHandlerPushedSpans
+      implements ToLongFunction</*@Nullable*/ HandlerWorker> {
+    @Override
+    public long applyAsLong(/*@Nullable*/ HandlerWorker handlerWorker) {
+      if (handlerWorker == null) {
+        return 0;
+      }
+      return handlerWorker.pushedSpans.get();
+    }
+  }
+
+  private static class ReportHandlerSpill implements ToLongFunction</*@Nullable*/ HandlerWorker> {
+    private static final int SPILLED = 0;
+    private static final int REPLAYED = 1;
+    private static final int DISCARDED = 2;
+
+    private final int count;
+
+    private ReportHandlerSpill(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public long applyAsLong(/*@Nullable*/ HandlerWorker handlerWorker) {
+      if (handlerWorker == null) {
+        return 0;
+      }
+      SpanSpillQueue spillQueue = handlerWorker.spillQueue;
+      if (spillQueue == null) {
+        return 0;
+      }
+      switch (count) {
+        case SPILLED:
+          return spillQueue.getSpilledSpans();
+        case REPLAYED:
+          return spillQueue.getReplayedSpans();
+        default:
+          return spillQueue.getDiscardedSpans();
+      }
+    }
+  }
+
+  private static class ReportHandlerExportLatency
+      implements ToLongFunction</*@Nullable*/ HandlerWorker> {
+    @Override
+    public long applyAsLong(/*@Nullable*/ HandlerWorker handlerWorker) {
+      if (handlerWorker == null) {
+        return 0;
+      }
+      return TimeUnit.NANOSECONDS.toMillis(handlerWorker.exportLatencyNanos.get());
+    }
+  }
+
   // Worker in a thread that batches multiple span data and calls the registered services to export
   // that data.
   //
@@ -188,141 +618,376 @@ public final class SpanExporterImpl extends SpanExporter {
   // concurrency of retrievals and adjustable expected concurrency for updates. Retrievals
   // reflect the results of the most recently completed update operations held upon their onset.
   //
-  // The list of batched data is protected by an explicit monitor object which ensures full
-  // concurrency.
+  // Every registered handler has its own HandlerWorker. The worker wraps the ended spans in
+  // ReadableSpans and hands the same batch to every HandlerWorker, so a slow handler only fills its
+  // own queue and does not delay the other handlers or the release of the referenced spans. The
+  // SpanData of a span is only created if a handler or the tail sampler needs it, and then shared.
+  //
+  // The ended spans are queued in a lock-free ring buffer, so the threads that end spans never
+  // contend on a monitor. The number of referenced spans (queued or being exported) is bounded by
+  // maxReferencedSpans, which is smaller than the capacity of the ring buffer.
+  //
+  // The ended spans that are not sampled, only added for the span metrics, are queued in a second
+  // ring buffer that drops the newest spans when it is full. They are never exported, so they must
+  // not take the room of the sampled spans, nor be seen as load by the adaptive sampler.
   private static final class Worker implements Runnable {
-    private final Object monitor = new Object();
-
-    @GuardedBy("monitor")
-    private final List<RecordEventsSpanImpl> spans;
-
-    @GuardedBy("monitor")
-    private long referencedSpans = 0;
-
-    @GuardedBy("monitor")
-    private long droppedSpans = 0;
-
-    @GuardedBy("monitor")
-    private long pushedSpans = 0;
-
-    private final Map<String, Handler> serviceHandlers = new ConcurrentHashMap<>();
+    private final ConcurrentRingBuffer<RecordEventsSpanImpl> spans;
+    private final ConcurrentRingBuffer<RecordEventsSpanImpl> metricsOnlySpans;
+    private final AtomicLong droppedMetricsOnlySpans = new AtomicLong();
+    private final AtomicLong referencedSpans = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong pushedSpans = new AtomicLong();
+    private final Map<String, HandlerWorker> handlerWorkers = new ConcurrentHashMap<>();
+    // The optional tail-based sampling stage.
+    private final AtomicReference</*@Nullable*/ TailSampler> tailSampler =
+        new AtomicReference</*@Nullable*/ TailSampler>();
     private final int bufferSize;
     private final long maxReferencedSpans;
-    private final long scheduleDelayMillis;
+    private final long scheduleDelayNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    // The optional stage that derives metrics from the ended spans.
+    private volatile /*@Nullable*/ SpanMetrics spanMetrics;
+    // Null until SpanExporterImpl#enableSpill is called.
+    private volatile /*@Nullable*/ SpillOptions spillOptions;
+    // The thread that runs this worker, unparked by the producers when a batch is ready. Set
+    // before the thread starts.
+    private volatile /*@Nullable*/ Thread thread;
+    // True while the worker thread waits for a batch.
+    private volatile boolean waiting;
 
     // See SpanExporterImpl#addSpan.
     private void addSpan(RecordEventsSpanImpl span) {
-      synchronized (monitor) {
-        if (referencedSpans == maxReferencedSpans) {
-          droppedSpans++;
-          return;
-        }
-        this.spans.add(span);
-        referencedSpans++;
-        if (spans.size() >= bufferSize) {
-          monitor.notifyAll();
+      if (!span.getContext().getTraceOptions().isSampled()) {
+        addMetricsOnlySpan(span);
+        return;
+      }
+      if (!tryReferenceSpan() && !makeRoom()) {
+        droppedSpans.incrementAndGet();
+        return;
+      }
+      if (!spans.offer(span)) {
+        // Not expected, the capacity of the ring buffer is at least maxReferencedSpans.
+        referencedSpans.decrementAndGet();
+        droppedSpans.incrementAndGet();
+        return;
+      }
+      if (waiting && spans.size() >= bufferSize) {
+        wakeUp();
+      }
+    }
+
+    private void addMetricsOnlySpan(RecordEventsSpanImpl span) {
+      if (!metricsOnlySpans.offer(span)) {
+        droppedMetricsOnlySpans.incrementAndGet();
+        return;
+      }
+      if (waiting && metricsOnlySpans.size() >= bufferSize) {
+        wakeUp();
+      }
+    }
+
+    // Returns true if a span can be added without exceeding maxReferencedSpans.
+    private boolean tryReferenceSpan() {
+      long current;
+      do {
+        current = referencedSpans.get();
+        if (current >= maxReferencedSpans) {
+          return false;
         }
+      } while (!referencedSpans.compareAndSet(current, current + 1));
+      return true;
+    }
+
+    // Applies the overflow policy. Returns true if a span can be added.
+    private boolean makeRoom() {
+      switch (overflowPolicy) {
+        case DROP_NEWEST:
+          return false;
+        case DROP_OLDEST:
+          if (spans.poll() == null) {
+            // All the referenced spans are being exported.
+            return false;
+          }
+          // The new span takes the reference of the evicted one.
+          droppedSpans.incrementAndGet();
+          return true;
+        case BLOCK:
+          long deadline = System.nanoTime() + blockTimeoutNanos;
+          do {
+            wakeUp();
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            if (tryReferenceSpan()) {
+              return true;
+            }
+          } while (deadline - System.nanoTime() > 0);
+          return false;
+      }
+      throw new AssertionError("Unknown overflow policy " + overflowPolicy);
+    }
+
+    private void wakeUp() {
+      Thread thread = this.thread;
+      if (thread != null) {
+        LockSupport.unpark(thread);
       }
     }
 
     // See SpanExporter#registerHandler.
     private void registerHandler(String name, Handler serviceHandler) {
-      serviceHandlers.put(name, serviceHandler);
+      HandlerWorker handlerWorker =
+          new HandlerWorker(name, serviceHandler, maxReferencedSpans, overflowPolicy);
+      HandlerWorker previous = handlerWorkers.put(name, handlerWorker);
+      if (previous != null) {
+        removeHandlerMetrics(previous);
+        previous.thread.interrupt();
+        // Releases the spill files, which are reused by the new handler.
+        previous.closeSpillQueue();
+      }
+      SpillOptions spillOptions = this.spillOptions;
+      if (spillOptions != null) {
+        handlerWorker.openSpillQueue(spillOptions);
+      }
+      List<LabelValue> labelValues = handlerWorker.labelValues;
+      handlerDroppedSpans.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerDroppedSpans());
+      handlerPushedSpans.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerPushedSpans());
+      handlerExportLatency.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerExportLatency());
+      handlerSpilledSpans.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerSpill(ReportHandlerSpill.SPILLED));
+      handlerReplayedSpans.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerSpill(ReportHandlerSpill.REPLAYED));
+      handlerSpillDiscardedSpans.createTimeSeries(
+          labelValues, handlerWorker, new ReportHandlerSpill(ReportHandlerSpill.DISCARDED));
+      handlerWorker.thread.start();
     }
 
     // See SpanExporter#unregisterHandler.
     private void unregisterHandler(String name) {
-      serviceHandlers.remove(name);
+      HandlerWorker handlerWorker = handlerWorkers.remove(name);
+      if (handlerWorker != null) {
+        removeHandlerMetrics(handlerWorker);
+        handlerWorker.thread.interrupt();
+        // The spilled spans are kept for the next handler registered with the same name.
+        handlerWorker.closeSpillQueue();
+      }
+    }
+
+    // See SpanExporterImpl#enableSpill.
+    private void enableSpill(SpillOptions spillOptions) {
+      this.spillOptions = spillOptions;
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        handlerWorker.openSpillQueue(spillOptions);
+      }
     }
 
-    // Exports the list of SpanData to all the ServiceHandlers.
-    private void onBatchExport(List<SpanData> spanDataList) {
-      // From the java documentation of the ConcurrentHashMap#entrySet():
+    private static void removeHandlerMetrics(HandlerWorker handlerWorker) {
+      handlerDroppedSpans.removeTimeSeries(handlerWorker.labelValues);
+      handlerPushedSpans.removeTimeSeries(handlerWorker.labelValues);
+      handlerExportLatency.removeTimeSeries(handlerWorker.labelValues);
+      handlerSpilledSpans.removeTimeSeries(handlerWorker.labelValues);
+      handlerReplayedSpans.removeTimeSeries(handlerWorker.labelValues);
+      handlerSpillDiscardedSpans.removeTimeSeries(handlerWorker.labelValues);
+    }
+
+    private void shutdownHandlers() {
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        handlerWorker.thread.interrupt();
+        handlerWorker.closeSpillQueue();
+      }
+    }
+
+    // See SpanExporterImpl#setTailSampler.
+    private void setTailSampler(/*@Nullable*/ TailSampler tailSampler) {
+      TailSampler previous = this.tailSampler.getAndSet(tailSampler);
+      if (previous != null) {
+        exportSampled(previous.decideAll());
+      }
+    }
+
+    // Hands the spans to the tail sampler, if any, and exports the sampled spans.
+    private void exportSpans(/*@Nullable*/ TailSampler tailSampler, List<ReadableSpan> spans) {
+      if (tailSampler == null) {
+        onBatchExport(spans);
+      } else {
+        List<SpanData> spanDataList = new ArrayList<>(spans.size());
+        for (ReadableSpan span : spans) {
+          spanDataList.add(span.toSpanData());
+        }
+        exportSampled(tailSampler.add(spanDataList));
+      }
+    }
+
+    // Exports the spans released by the tail sampler, which may release up to maxTraces *
+    // maxSpansPerTrace spans at once, in batches of at most bufferSize spans like the other spans.
+    private void exportSampled(List<SpanData> spanDataList) {
+      int size = spanDataList.size();
+      for (int from = 0; from < size; from += bufferSize) {
+        int to = Math.min(size, from + bufferSize);
+        List<ReadableSpan> spans = new ArrayList<>(to - from);
+        for (SpanData spanData : spanDataList.subList(from, to)) {
+          spans.add(ReadableSpan.fromSpanData(spanData));
+        }
+        // The list is not reused, wrap it to ensure exporter does not change the list.
+        onBatchExport(Collections.unmodifiableList(spans));
+      }
+    }
+
+    // Hands the list of spans to all the HandlerWorkers.
+    private void onBatchExport(List<ReadableSpan> spans) {
+      // From the java documentation of the ConcurrentHashMap#values():
       // The view's iterator is a "weakly consistent" iterator that will never throw
       // ConcurrentModificationException, and guarantees to traverse elements as they existed
       // upon construction of the iterator, and may (but is not guaranteed to) reflect any
       // modifications subsequent to construction.
-      for (Map.Entry<String, Handler> it : serviceHandlers.entrySet()) {
-        // In case of any exception thrown by the service handlers continue to run.
-        try {
-          it.getValue().export(spanDataList);
-        } catch (Throwable e) {
-          logger.log(Level.WARNING, "Exception thrown by the service export " + it.getKey(), e);
-        }
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        handlerWorker.addBatch(spans);
       }
     }
 
-    private Worker(int bufferSize, Duration scheduleDelay) {
-      spans = new ArrayList<>(bufferSize);
+    private Worker(
+        int bufferSize,
+        Duration scheduleDelay,
+        OverflowPolicy overflowPolicy,
+        Duration blockTimeout) {
       this.bufferSize = bufferSize;
       // We notify the worker thread when bufferSize elements in the queue, so we will most likely
       // have to process more than bufferSize elements but less than 2 * bufferSize in that cycle.
       // During the processing time we want to allow the same amount of elements to be queued.
       // So we need to have 4 * bufferSize maximum elements referenced as an estimate.
       this.maxReferencedSpans = 4L * bufferSize;
-      this.scheduleDelayMillis = scheduleDelay.toMillis();
+      this.spans = new ConcurrentRingBuffer<RecordEventsSpanImpl>(4 * bufferSize);
+      this.metricsOnlySpans = new ConcurrentRingBuffer<RecordEventsSpanImpl>(4 * bufferSize);
+      this.scheduleDelayNanos = TimeUnit.MILLISECONDS.toNanos(scheduleDelay.toMillis());
+      this.overflowPolicy = overflowPolicy;
+      this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeout.toMillis());
     }
 
     @Override
     public void run() {
       while (true) {
-        // Copy all the batched spans in a separate list to release the monitor lock asap to
-        // avoid blocking the producer thread.
-        ArrayList<RecordEventsSpanImpl> spansCopy;
-        synchronized (monitor) {
-          if (spans.size() < bufferSize) {
-            do {
-              // In the case of a spurious wakeup we export only if we have at least one span in
-              // the batch. It is acceptable because batching is a best effort mechanism here.
-              try {
-                monitor.wait(scheduleDelayMillis);
-              } catch (InterruptedException ie) {
-                // Preserve the interruption status as per guidance and stop doing any work.
-                Thread.currentThread().interrupt();
-                return;
-              }
-            } while (spans.isEmpty());
-          }
-          spansCopy = new ArrayList<>(spans);
-          spans.clear();
+        if (!awaitBatch()) {
+          // Preserve the interruption status as per guidance and stop doing any work.
+          Thread.currentThread().interrupt();
+          return;
         }
-        // Execute the batch export outside the synchronized to not block all producers.
+        ArrayList<RecordEventsSpanImpl> spansCopy = new ArrayList<>(spans.size());
+        spans.drainTo(spansCopy);
         exportBatches(spansCopy);
       }
     }
 
-    private void flush() {
-      ArrayList<RecordEventsSpanImpl> spansCopy;
-      synchronized (monitor) {
-        spansCopy = new ArrayList<>(spans);
-        spans.clear();
+    // Waits until bufferSize spans are queued in either queue, or until scheduleDelay elapsed and
+    // at least one span is queued. In the case of a spurious wakeup we export only if we have at
+    // least one span in the batch. It is acceptable because batching is a best effort mechanism
+    // here. Returns false if the thread was interrupted.
+    private boolean awaitBatch() {
+      long deadline = System.nanoTime() + scheduleDelayNanos;
+      while (!isBatchReady()) {
+        long remainingNanos = deadline - System.nanoTime();
+        if (scheduleDelayNanos > 0 && remainingNanos <= 0) {
+          // Also wake up to decide the traces that exceeded their decision wait.
+          TailSampler tailSampler = this.tailSampler.get();
+          if (!spans.isEmpty()
+              || !metricsOnlySpans.isEmpty()
+              || (tailSampler != null && tailSampler.getPendingTraces() > 0)) {
+            return true;
+          }
+          deadline = System.nanoTime() + scheduleDelayNanos;
+          remainingNanos = scheduleDelayNanos;
+        }
+        // Producers read the size after adding a span, and waiting after that. Setting waiting
+        // before re-reading the size ensures that no wake up is missed.
+        waiting = true;
+        if (!isBatchReady()) {
+          if (scheduleDelayNanos > 0) {
+            LockSupport.parkNanos(this, remainingNanos);
+          } else {
+            LockSupport.park(this);
+          }
+        }
+        waiting = false;
+        if (Thread.interrupted()) {
+          return false;
+        }
       }
-      // Execute the batch export outside the synchronized to not block all producers.
+      return true;
+    }
+
+    private boolean isBatchReady() {
+      return spans.size() >= bufferSize || metricsOnlySpans.size() >= bufferSize;
+    }
+
+    private void flush() {
+      ArrayList<RecordEventsSpanImpl> spansCopy = new ArrayList<>(spans.size());
+      spans.drainTo(spansCopy);
+      // Execute the batch export on the calling thread.
       exportBatches(spansCopy);
+      TailSampler tailSampler = this.tailSampler.get();
+      if (tailSampler != null) {
+        exportSampled(tailSampler.decideAll());
+      }
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        handlerWorker.flush();
+      }
     }
 
     private long getDroppedSpans() {
-      synchronized (monitor) {
-        return droppedSpans;
-      }
+      return droppedSpans.get();
     }
 
     private long getReferencedSpans() {
-      synchronized (monitor) {
-        return referencedSpans;
-      }
+      return referencedSpans.get();
     }
 
     private long getPushedSpans() {
-      synchronized (monitor) {
-        return pushedSpans;
+      return pushedSpans.get();
+    }
+
+    private long getTotalDroppedSpans() {
+      long totalDroppedSpans = droppedSpans.get();
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        totalDroppedSpans += handlerWorker.droppedSpans.get();
+      }
+      return totalDroppedSpans;
+    }
+
+    private double getQueueUtilization() {
+      double utilization = (double) referencedSpans.get() / maxReferencedSpans;
+      for (HandlerWorker handlerWorker : handlerWorkers.values()) {
+        utilization =
+            Math.max(
+                utilization,
+                (double) handlerWorker.queuedSpans.get() / handlerWorker.maxQueuedSpans);
+      }
+      return Math.min(1.0, utilization);
+    }
+
+    // Adds the spans queued only for the span metrics to the span metrics, if any. Takes at most
+    // the spans queued when called, so the producers cannot keep this thread busy.
+    private void addMetricsOnlySpans(/*@Nullable*/ SpanMetrics spanMetrics) {
+      for (int i = metricsOnlySpans.size(); i > 0; i--) {
+        RecordEventsSpanImpl span = metricsOnlySpans.poll();
+        if (span == null) {
+          return;
+        }
+        if (spanMetrics != null) {
+          // Also recycles the buffers of the span, if any, once they are copied.
+          spanMetrics.add(span.toReadableSpan());
+        }
       }
     }
 
     private void exportBatches(ArrayList<RecordEventsSpanImpl> spansCopy) {
-      ArrayList<SpanData> spanDataList = new ArrayList<>(bufferSize);
+      TailSampler tailSampler = this.tailSampler.get();
+      SpanMetrics spanMetrics = this.spanMetrics;
+      addMetricsOnlySpans(spanMetrics);
+      ArrayList<ReadableSpan> readableSpans = new ArrayList<>(bufferSize);
       for (int i = 0; i < spansCopy.size(); i++) {
-        spanDataList.add(spansCopy.get(i).toSpanData());
+        // Also recycles the buffers of the span, if any, once they are copied.
+        ReadableSpan readableSpan = spansCopy.get(i).toReadableSpan();
 
         // Remove the reference to the RecordEventsSpanImpl to allow GC to free the memory.
         // TODO: Refactor the handling of the spans list to remove this call to castNonNull. Setting
@@ -330,31 +995,313 @@ public final class SpanExporterImpl extends SpanExporter {
         // called on a copy of 'spans', and the copy is not reused.
         spansCopy.set(i, (RecordEventsSpanImpl) CheckerFrameworkUtils.castNonNull(null));
 
-        if (spanDataList.size() == bufferSize) {
+        if (spanMetrics != null) {
+          spanMetrics.add(readableSpan);
+        }
+        readableSpans.add(readableSpan);
+
+        if (readableSpans.size() == bufferSize) {
           // One full batch, export it now. Wrap the list with unmodifiableList to ensure exporter
           // does not change the list.
-          onBatchExport(Collections.unmodifiableList(spanDataList));
+          // We removed reference for bufferSize Spans.
+          referencedSpans.addAndGet(-bufferSize);
+          pushedSpans.addAndGet(bufferSize);
+          exportSpans(tailSampler, Collections.unmodifiableList(readableSpans));
           // Cannot clear because the exporter may still have a reference to this list (e.g. async
           // scheduled work), so just create a new list.
-          spanDataList = new ArrayList<>(bufferSize);
-          // We removed reference for bufferSize Spans.
-          synchronized (monitor) {
-            referencedSpans -= bufferSize;
-            pushedSpans += bufferSize;
-          }
+          readableSpans = new ArrayList<>(bufferSize);
         }
       }
       // Last incomplete batch, send this as well.
+      if (!readableSpans.isEmpty()) {
+        // We removed reference for readableSpans.size() Spans.
+        referencedSpans.addAndGet(-readableSpans.size());
+        pushedSpans.addAndGet(readableSpans.size());
+        // Wrap the list with unmodifiableList to ensure exporter does not change the list. The
+        // handler workers may still reference the list, so it cannot be cleared.
+        exportSpans(tailSampler, Collections.unmodifiableList(readableSpans));
+      }
+      if (spanMetrics != null) {
+        spanMetrics.record();
+      }
+      if (tailSampler != null) {
+        exportSampled(tailSampler.expire());
+      }
+    }
+  }
+
+  // Worker in a thread that exports the batches handed to one registered handler. The queued
+  // batches are bounded by the number of spans they contain. When the handler does not keep up the
+  // overflow policy of the exporter is applied to this queue only, so the dropped spans are
+  // counted against this handler and the other handlers are not delayed. For the same reason the
+  // exporter thread never waits for room: with BLOCK the newest spans are dropped.
+  //
+  // If spilling is enabled the spans that do not fit in the queue are appended to the spill queue
+  // instead, on the exporter thread, and the overflow policy only applies once the spill files are
+  // full. The handler thread replays the spilled spans, at the configured rate, when the queue of
+  // batches is empty.
+  //
+  // The batches are taken from the queue and exported while holding exportLock, so a flush that
+  // drains the queue on another thread keeps the batches in order and never calls the handler
+  // concurrently with the handler thread.
+  private static final class HandlerWorker implements Runnable {
+    private final String name;
+    private final Handler handler;
+    private final List<LabelValue> labelValues;
+    private final Thread thread;
+    private final ConcurrentRingBuffer<List<ReadableSpan>> batches;
+    private final long maxQueuedSpans;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong queuedSpans = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong pushedSpans = new AtomicLong();
+    private final AtomicLong exportLatencyNanos = new AtomicLong();
+    private final Object exportLock = new Object();
+    // True while the handler thread waits for a batch.
+    private volatile boolean waiting;
+    // Null if spilling is not enabled. Kept after it is closed, for the metrics.
+    private volatile /*@Nullable*/ SpanSpillQueue spillQueue;
+    // Written before spillQueue is published.
+    private int replayBatchSize;
+    private long replayNanosPerSpan;
+    // Used by the handler thread only.
+    private long nextReplayNanos = System.nanoTime();
+    // The delay before the next replay if it fails too, 0 if the last replay succeeded. Used by the
+    // handler thread only.
+    private long replayBackoffNanos;
+
+    private HandlerWorker(
+        String name, Handler handler, long maxQueuedSpans, OverflowPolicy overflowPolicy) {
+      this.name = name;
+      this.handler = handler;
+      this.labelValues = Collections.singletonList(LabelValue.create(name));
+      this.maxQueuedSpans = maxQueuedSpans;
+      this.overflowPolicy = overflowPolicy;
+      // Every batch holds at least one span.
+      this.batches = new ConcurrentRingBuffer<List<ReadableSpan>>((int) maxQueuedSpans);
+      this.thread =
+          new DaemonThreadFactory("ExportComponent.HandlerExporterThread-" + name)
+              .newThread(this);
+    }
+
+    // Called by the exporter thread, or by the thread that flushes the exporter.
+    private void addBatch(List<ReadableSpan> spans) {
+      int size = spans.size();
+      if (!tryQueueSpans(size)) {
+        spans = spill(spans);
+        size = spans.size();
+        if (size == 0) {
+          return;
+        }
+        if (!makeRoom(size)) {
+          droppedSpans.addAndGet(size);
+          return;
+        }
+      }
+      if (!batches.offer(spans)) {
+        // Not expected, the capacity of the ring buffer is at least maxQueuedSpans.
+        queuedSpans.addAndGet(-size);
+        droppedSpans.addAndGet(size);
+        return;
+      }
+      if (waiting) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    // Appends the spans to the spill queue, if any. Returns the spans that could not be spilled.
+    private List<ReadableSpan> spill(List<ReadableSpan> spans) {
+      SpanSpillQueue spillQueue = this.spillQueue;
+      if (spillQueue == null) {
+        return spans;
+      }
+      List<ReadableSpan> notSpilled = Collections.emptyList();
+      for (ReadableSpan span : spans) {
+        if (!spillQueue.offer(span.toSpanData())) {
+          if (notSpilled.isEmpty()) {
+            notSpilled = new ArrayList<>();
+          }
+          notSpilled.add(span);
+        }
+      }
+      return notSpilled;
+    }
+
+    // Returns true if size spans can be queued without exceeding maxQueuedSpans.
+    private boolean tryQueueSpans(int size) {
+      long current;
+      do {
+        current = queuedSpans.get();
+        if (current + size > maxQueuedSpans) {
+          return false;
+        }
+      } while (!queuedSpans.compareAndSet(current, current + size));
+      return true;
+    }
+
+    // Applies the overflow policy. Returns true if size spans can be queued. Never waits, since the
+    // exporter thread is shared by all the handlers, so BLOCK drops the newest spans like
+    // DROP_NEWEST.
+    private boolean makeRoom(int size) {
+      if (size > maxQueuedSpans) {
+        // Evicting every queued batch would not make enough room.
+        return false;
+      }
+      switch (overflowPolicy) {
+        case DROP_NEWEST:
+        case BLOCK:
+          return false;
+        case DROP_OLDEST:
+          List<ReadableSpan> oldest;
+          while ((oldest = batches.poll()) != null) {
+            queuedSpans.addAndGet(-oldest.size());
+            droppedSpans.addAndGet(oldest.size());
+            if (tryQueueSpans(size)) {
+              return true;
+            }
+          }
+          // The handler thread took the remaining batches and released their spans.
+          return tryQueueSpans(size);
+      }
+      throw new AssertionError("Unknown overflow policy " + overflowPolicy);
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        if (exportNextBatch()) {
+          continue;
+        }
+        long replayDelayNanos = replaySpilledSpans();
+        if (replayDelayNanos == 0) {
+          continue;
+        }
+        // The exporter thread reads waiting after adding a batch. Setting waiting before
+        // re-reading the size ensures that no wake up is missed.
+        waiting = true;
+        if (batches.isEmpty()) {
+          if (replayDelayNanos > 0) {
+            LockSupport.parkNanos(this, replayDelayNanos);
+          } else {
+            LockSupport.park(this);
+          }
+        }
+        waiting = false;
+        if (Thread.interrupted()) {
+          // Preserve the interruption status as per guidance and stop doing any work.
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+
+    // Exports the batches queued so far on the calling thread. Returns once they were all exported,
+    // including the batch that the handler thread may be exporting.
+    private void flush() {
+      while (exportNextBatch()) {}
+    }
+
+    // Exports the oldest queued batch. Returns false if there is no queued batch.
+    private boolean exportNextBatch() {
+      synchronized (exportLock) {
+        List<ReadableSpan> spans = batches.poll();
+        if (spans == null) {
+          return false;
+        }
+        export(spans);
+        return true;
+      }
+    }
+
+    // Replays a batch of spilled spans, unless the replay rate is exceeded. Returns 0 if a batch
+    // was replayed, the time until the next batch can be replayed, or -1 if there is nothing to
+    // replay.
+    //
+    // The spans are removed from the spill queue only once the handler exported them. If the
+    // handler throws they are replayed again after a delay that grows with the failures.
+    private long replaySpilledSpans() {
+      SpanSpillQueue spillQueue = this.spillQueue;
+      if (spillQueue == null || spillQueue.isEmpty()) {
+        return -1;
+      }
+      long now = System.nanoTime();
+      if (nextReplayNanos - now > 0) {
+        return nextReplayNanos - now;
+      }
+      List<SpanData> spanDataList = spillQueue.read(replayBatchSize);
       if (!spanDataList.isEmpty()) {
-        // Wrap the list with unmodifiableList to ensure exporter does not change the list.
-        onBatchExport(Collections.unmodifiableList(spanDataList));
-        // We removed reference for spanDataList.size() Spans.
-        synchronized (monitor) {
-          referencedSpans -= spanDataList.size();
-          pushedSpans += spanDataList.size();
+        List<ReadableSpan> spans = new ArrayList<>(spanDataList.size());
+        for (SpanData spanData : spanDataList) {
+          spans.add(ReadableSpan.fromSpanData(spanData));
         }
-        spanDataList.clear();
+        boolean exported;
+        synchronized (exportLock) {
+          exported = exportToHandler(Collections.unmodifiableList(spans));
+        }
+        if (!exported) {
+          spillQueue.rollback();
+          replayBackoffNanos =
+              replayBackoffNanos == 0
+                  ? MIN_REPLAY_BACKOFF_NANOS
+                  : Math.min(2 * replayBackoffNanos, MAX_REPLAY_BACKOFF_NANOS);
+          nextReplayNanos = now + replayBackoffNanos;
+          return replayBackoffNanos;
+        }
+      }
+      spillQueue.commit();
+      replayBackoffNanos = 0;
+      nextReplayNanos = now + spanDataList.size() * replayNanosPerSpan;
+      return 0;
+    }
+
+    private synchronized void openSpillQueue(SpillOptions spillOptions) {
+      if (spillQueue != null) {
+        return;
+      }
+      int replaySpansPerSecond = spillOptions.replaySpansPerSecond;
+      replayBatchSize = (int) Math.max(1, Math.min(replaySpansPerSecond, maxQueuedSpans / 4));
+      replayNanosPerSpan = TimeUnit.SECONDS.toNanos(1) / replaySpansPerSecond;
+      File directory = new File(spillOptions.directory, toSpillDirectoryName(name));
+      try {
+        spillQueue =
+            SpanSpillQueue.open(directory, SPILL_SEGMENT_SIZE, spillOptions.maxBytesPerHandler);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot open the spill files of the handler " + name, e);
+        return;
+      }
+      // Replays the spans spilled before a restart.
+      if (waiting) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    private synchronized void closeSpillQueue() {
+      SpanSpillQueue spillQueue = this.spillQueue;
+      if (spillQueue != null) {
+        spillQueue.close();
+      }
+    }
+
+    // Called while holding exportLock.
+    private void export(List<ReadableSpan> spans) {
+      queuedSpans.addAndGet(-spans.size());
+      exportToHandler(spans);
+    }
+
+    // Called while holding exportLock. Returns false if the handler threw.
+    private boolean exportToHandler(List<ReadableSpan> spans) {
+      long startNanos = System.nanoTime();
+      boolean exported = true;
+      // In case of any exception thrown by the service handler continue to run.
+      try {
+        handler.exportSpans(spans);
+      } catch (Throwable e) {
+        logger.log(Level.WARNING, "Exception thrown by the service export " + name, e);
+        exported = false;
       }
+      exportLatencyNanos.addAndGet(System.nanoTime() - startNanos);
+      pushedSpans.addAndGet(spans.size());
+      return exported;
     }
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.opencensus.common.Duration;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.stats.StatsRecorderImpl;
+import io.opencensus.stats.Aggregation;
+import io.opencensus.stats.BucketBoundaries;
+import io.opencensus.stats.Measure.MeasureDouble;
+import io.opencensus.stats.StatsRecorder;
+import io.opencensus.stats.View;
+import io.opencensus.stats.ViewManager;
+import io.opencensus.tags.TagContext;
+import io.opencensus.tags.TagKey;
+import io.opencensus.tags.TagValue;
+import io.opencensus.tags.Tagger;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.Status.CanonicalCode;
+import io.opencensus.trace.export.ReadableSpan;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A stage of the span export pipeline that derives rate, error and duration metrics from the ended
+ * spans, so the instrumented code does not have to record them next to its spans.
+ *
+ * <p>The latency of every ended span is recorded to {@link #SPAN_LATENCY}, tagged with the name
+ * and the status code of the span. {@link #SPAN_LATENCY_VIEW} aggregates it into a distribution
+ * and {@link #SPAN_COUNT_VIEW} into a count, from which the rate and the errors are derived. The
+ * views are registered with {@link #registerViews(ViewManager)}.
+ *
+ * <p>While this stage is set, the spans that record events but are not sampled are also handed to
+ * the exporter thread, so they are counted too; they are not exported. They are queued apart from
+ * the sampled spans, so they never delay or displace them.
+ *
+ * <p>The latencies are grouped by name and status, and every group is recorded with a single
+ * event of the stats event queue per exported batch when the stats implementation is the one of
+ * this library.
+ */
+@ThreadSafe
+public final class SpanMetrics {
+  private static final Logger logger = Logger.getLogger(SpanMetrics.class.getName());
+
+  /** The tag key of the span name. */
+  public static final TagKey SPAN_NAME = TagKey.create("span_name");
+
+  /** The tag key of the canonical status code of the span, for example {@code OK}. */
+  public static final TagKey SPAN_STATUS = TagKey.create("span_status");
+
+  /** The latency of the ended spans, in milliseconds. */
+  public static final MeasureDouble SPAN_LATENCY =
+      MeasureDouble.create(
+          "opencensus.io/span/latency", "Latency of the ended spans, derived from the spans", "ms");
+
+  // The bucket boundaries of the latency distribution, the same as the gRPC latency views.
+  @VisibleForTesting
+  static final List<Double> SPAN_MILLIS_BUCKET_BOUNDARIES =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              0.0, 0.01, 0.05, 0.1, 0.3, 0.6, 0.8, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 8.0, 10.0, 13.0,
+              16.0, 20.0, 25.0, 30.0, 40.0, 50.0, 65.0, 80.0, 100.0, 130.0, 160.0, 200.0, 250.0,
+              300.0, 400.0, 500.0, 650.0, 800.0, 1000.0, 2000.0, 5000.0, 10000.0, 20000.0, 50000.0,
+              100000.0));
+
+  /** The distribution of the latency of the ended spans, by span name and status. */
+  public static final View SPAN_LATENCY_VIEW =
+      View.create(
+          View.Name.create("opencensus.io/span/latency"),
+          "Distribution of the latency of the ended spans, by span name and status",
+          SPAN_LATENCY,
+          Aggregation.Distribution.create(BucketBoundaries.create(SPAN_MILLIS_BUCKET_BOUNDARIES)),
+          Arrays.asList(SPAN_NAME, SPAN_STATUS));
+
+  /** The number of ended spans, by span name and status. */
+  public static final View SPAN_COUNT_VIEW =
+      View.create(
+          View.Name.create("opencensus.io/span/count"),
+          "Number of ended spans, by span name and status",
+          SPAN_LATENCY,
+          Aggregation.Count.create(),
+          Arrays.asList(SPAN_NAME, SPAN_STATUS));
+
+  // The groups are cleared when their number exceeds this limit, to bound the memory used by span
+  // names that are not reused.
+  private static final int MAX_GROUPS = 1000;
+  private static final int INITIAL_GROUP_CAPACITY = 16;
+  private static final CanonicalCode[] CANONICAL_CODES = CanonicalCode.values();
+
+  private final StatsRecorder statsRecorder;
+  private final Tagger tagger;
+
+  // The groups of pending latencies, by span name and then by canonical code ordinal. A group
+  // without tags is never recorded, because the span name is not a valid tag value.
+  @GuardedBy("this")
+  private final Map<String, /*@Nullable*/ Group[]> groups = new HashMap<String, Group[]>();
+
+  // The groups that have pending latencies.
+  @GuardedBy("this")
+  private final List<Group> pendingGroups = new ArrayList<Group>();
+
+  @GuardedBy("this")
+  private int numberOfGroups;
+
+  private SpanMetrics(StatsRecorder statsRecorder, Tagger tagger) {
+    this.statsRecorder = statsRecorder;
+    this.tagger = tagger;
+  }
+
+  /**
+   * Returns a new {@code SpanMetrics} that records to the given {@link StatsRecorder}.
+   *
+   * @param statsRecorder the {@code StatsRecorder} the latencies are recorded to.
+   * @param tagger the {@code Tagger} used to create the tags of the latencies.
+   * @return a new {@code SpanMetrics}.
+   */
+  public static SpanMetrics create(StatsRecorder statsRecorder, Tagger tagger) {
+    return new SpanMetrics(
+        checkNotNull(statsRecorder, "statsRecorder"), checkNotNull(tagger, "tagger"));
+  }
+
+  /**
+   * Registers {@link #SPAN_LATENCY_VIEW} and {@link #SPAN_COUNT_VIEW}.
+   *
+   * @param viewManager the {@code ViewManager} the views are registered to.
+   */
+  public static void registerViews(ViewManager viewManager) {
+    checkNotNull(viewManager, "viewManager");
+    viewManager.registerView(SPAN_LATENCY_VIEW);
+    viewManager.registerView(SPAN_COUNT_VIEW);
+  }
+
+  // Adds the latency of the ended span to its group. Called by the exporter thread for every span
+  // of a batch, before record().
+  synchronized void add(ReadableSpan span) {
+    Timestamp endTimestamp = span.getEndTimestamp();
+    if (endTimestamp == null) {
+      return;
+    }
+    Duration latency = endTimestamp.subtractTimestamp(span.getStartTimestamp());
+    if (latency.getSeconds() < 0) {
+      // The clock went backwards.
+      return;
+    }
+    Status status = span.getStatus();
+    Group group =
+        getGroup(span.getName(), status == null ? CanonicalCode.OK : status.getCanonicalCode());
+    if (group.tags == null) {
+      return;
+    }
+    if (group.count == 0) {
+      pendingGroups.add(group);
+    }
+    group.add(
+        TimeUnit.SECONDS.toMillis(latency.getSeconds())
+            + latency.getNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  // Records the latencies added since the last call, one batch per group.
+  synchronized void record() {
+    for (Group group : pendingGroups) {
+      TagContext tags = group.tags;
+      if (tags == null) {
+        continue;
+      }
+      if (statsRecorder instanceof StatsRecorderImpl) {
+        ((StatsRecorderImpl) statsRecorder)
+            .recordBatch(tags, SPAN_LATENCY, group.latencies, group.count);
+      } else {
+        for (int i = 0; i < group.count; i++) {
+          statsRecorder.newMeasureMap().put(SPAN_LATENCY, group.latencies[i]).record(tags);
+        }
+      }
+      group.count = 0;
+    }
+    pendingGroups.clear();
+    if (numberOfGroups > MAX_GROUPS) {
+      groups.clear();
+      numberOfGroups = 0;
+    }
+  }
+
+  @GuardedBy("this")
+  private Group getGroup(String name, CanonicalCode canonicalCode) {
+    /*@Nullable*/ Group[] groupsByCode = groups.get(name);
+    if (groupsByCode == null) {
+      groupsByCode = new Group[CANONICAL_CODES.length];
+      groups.put(name, groupsByCode);
+    }
+    Group group = groupsByCode[canonicalCode.ordinal()];
+    if (group == null) {
+      group = new Group(createTags(name, canonicalCode));
+      groupsByCode[canonicalCode.ordinal()] = group;
+      numberOfGroups++;
+    }
+    return group;
+  }
+
+  /*@Nullable*/
+  private TagContext createTags(String name, CanonicalCode canonicalCode) {
+    try {
+      return tagger
+          .emptyBuilder()
+          .putLocal(SPAN_NAME, TagValue.create(name))
+          .putLocal(SPAN_STATUS, TagValue.create(canonicalCode.name()))
+          .build();
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.FINE, "Not recording the latency of the span " + name, e);
+      return null;
+    }
+  }
+
+  // The pending latencies of the spans with the same name and status.
+  private static final class Group {
+    /*@Nullable*/ private final TagContext tags;
+    private double[] latencies = new double[INITIAL_GROUP_CAPACITY];
+    private int count;
+
+    private Group(/*@Nullable*/ TagContext tags) {
+      this.tags = tags;
+    }
+
+    private void add(double latency) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, 2 * count);
+      }
+      latencies[count++] = latency;
+    }
+  }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.opencensus.trace.export.SpanData;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A persistent FIFO queue of {@link SpanData}, stored in memory-mapped segment files.
+ *
+ * <p>The spans are appended to the current segment, encoded with {@link SpanDataEncoding}. Every
+ * record is prefixed by its length and its CRC32, and the length is written last, so a record that
+ * was not completely written is ignored after a crash. When the current segment is full a new one
+ * is created, up to {@code maxBytes}; after that the new spans are discarded.
+ *
+ * <p>The spans are read from the oldest segment. The read position is only persisted by {@link
+ * #commit()}, in a separate offsets file, and the segments that were completely read are deleted
+ * at that point. The spans read after the last commit are read again after a restart, or after
+ * {@link #rollback()}, so every span is delivered at least once.
+ *
+ * <p>A directory can only be used by one queue at a time, which is enforced with a file lock.
+ */
+@ThreadSafe
+final class SpanSpillQueue {
+  private static final Logger logger = Logger.getLogger(SpanSpillQueue.class.getName());
+
+  private static final String OFFSETS_FILE_NAME = "offsets";
+  private static final String SEGMENT_FILE_PREFIX = "segment-";
+  // The length and the CRC32 of the record.
+  private static final int RECORD_HEADER_SIZE = 8;
+  // The read segment, the read position and the CRC32 of both.
+  private static final int OFFSETS_SIZE = 16;
+  private static final int MIN_SEGMENT_SIZE = 4096;
+
+  private final File directory;
+  private final int segmentSize;
+  private final long maxSegments;
+  private final RandomAccessFile offsetsFile;
+  private final FileLock lock;
+  private final MappedByteBuffer offsets;
+  private final SpanDataEncoding encoding = new SpanDataEncoding();
+  private final CRC32 crc32 = new CRC32();
+
+  // The oldest segment that was not deleted.
+  @GuardedBy("this")
+  private long firstSegment;
+
+  // The position of the buffer is the write position.
+  @GuardedBy("this")
+  private MappedByteBuffer writeBuffer;
+
+  @GuardedBy("this")
+  private long writeSegment;
+
+  // Null if the read segment is not mapped yet.
+  @GuardedBy("this")
+  /*@Nullable*/ private MappedByteBuffer readBuffer;
+
+  @GuardedBy("this")
+  private long readSegment;
+
+  @GuardedBy("this")
+  private int readPosition;
+
+  // The read position persisted by the last commit, or recovered when the queue was opened.
+  @GuardedBy("this")
+  private long committedSegment;
+
+  @GuardedBy("this")
+  private int committedPosition;
+
+  // The number of spans read since the last commit.
+  @GuardedBy("this")
+  private int uncommittedSpans;
+
+  // The number of corrupted spans read since the last commit.
+  @GuardedBy("this")
+  private int uncommittedDiscardedSpans;
+
+  @GuardedBy("this")
+  private long spilledSpans;
+
+  @GuardedBy("this")
+  private long replayedSpans;
+
+  @GuardedBy("this")
+  private long discardedSpans;
+
+  @GuardedBy("this")
+  private boolean closed;
+
+  /**
+   * Opens the queue stored in the given directory, or creates it.
+   *
+   * @param directory the directory of the segment files.
+   * @param segmentSize the size of each segment file, in bytes.
+   * @param maxBytes the maximum size of the segment files, in bytes. At least two segments.
+   * @return the opened {@code SpanSpillQueue}.
+   * @throws IOException if the directory cannot be created, is used by another queue, or the
+   *     segment files cannot be mapped.
+   */
+  static SpanSpillQueue open(File directory, int segmentSize, long maxBytes) throws IOException {
+    checkNotNull(directory, "directory");
+    checkArgument(segmentSize >= MIN_SEGMENT_SIZE, "segmentSize is too small.");
+    checkArgument(maxBytes >= 2L * segmentSize, "maxBytes must hold at least two segments.");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the directory " + directory);
+    }
+    RandomAccessFile offsetsFile =
+        new RandomAccessFile(new File(directory, OFFSETS_FILE_NAME), "rw");
+    try {
+      FileLock lock;
+      try {
+        lock = offsetsFile.getChannel().tryLock();
+      } catch (OverlappingFileLockException e) {
+        lock = null;
+      }
+      if (lock == null) {
+        throw new IOException("The directory " + directory + " is used by another queue.");
+      }
+      MappedByteBuffer offsets =
+          offsetsFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, OFFSETS_SIZE);
+      return new SpanSpillQueue(directory, segmentSize, maxBytes, offsetsFile, lock, offsets);
+    } catch (IOException e) {
+      offsetsFile.close();
+      throw e;
+    } catch (RuntimeException e) {
+      offsetsFile.close();
+      throw e;
+    }
+  }
+
+  private SpanSpillQueue(
+      File directory,
+      int segmentSize,
+      long maxBytes,
+      RandomAccessFile offsetsFile,
+      FileLock lock,
+      MappedByteBuffer offsets)
+      throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxBytes / segmentSize;
+    this.offsetsFile = offsetsFile;
+    this.lock = lock;
+    this.offsets = offsets;
+    synchronized (this) {
+      recover();
+    }
+  }
+
+  @GuardedBy("this")
+  private void recover() throws IOException {
+    List<Long> segments = listSegments();
+    long committedSegment = offsets.getLong(0);
+    int committedPosition = offsets.getInt(8);
+    if (segments.isEmpty()) {
+      firstSegment = 0;
+    } else if (offsets.getInt(12) == offsetsChecksum(committedSegment, committedPosition)
+        && segments.contains(committedSegment)) {
+      firstSegment = committedSegment;
+    } else {
+      // Missing or torn offsets, read all the segments again.
+      firstSegment = segments.get(0);
+      committedPosition = 0;
+    }
+    for (Long segment : segments) {
+      if (segment < firstSegment) {
+        deleteSegment(segment);
+      }
+    }
+    writeSegment = segments.isEmpty() ? firstSegment : segments.get(segments.size() - 1);
+    writeBuffer = mapSegment(writeSegment);
+    writeBuffer.position(findEndOfRecords(writeBuffer));
+    readSegment = firstSegment;
+    readPosition = committedPosition;
+    if (readSegment == writeSegment) {
+      readPosition = Math.min(readPosition, writeBuffer.position());
+    }
+    committedSegment = readSegment;
+    committedPosition = readPosition;
+  }
+
+  /**
+   * Appends a span to the queue.
+   *
+   * @param spanData the span to append.
+   * @return {@code false} if the span was discarded, because the queue is full or closed, the span
+   *     does not fit in a segment, or a segment file could not be created.
+   */
+  synchronized boolean offer(SpanData spanData) {
+    if (closed) {
+      discardedSpans++;
+      return false;
+    }
+    ByteBuffer encoded = encoding.encode(spanData);
+    int length = encoded.remaining();
+    int recordSize = RECORD_HEADER_SIZE + length;
+    if (recordSize > segmentSize) {
+      discardedSpans++;
+      return false;
+    }
+    if (writeBuffer.remaining() < recordSize) {
+      if (writeSegment - firstSegment + 1 >= maxSegments) {
+        discardedSpans++;
+        return false;
+      }
+      try {
+        rotate();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot create a new segment in " + directory, e);
+        discardedSpans++;
+        return false;
+      }
+    }
+    int position = writeBuffer.position();
+    crc32.reset();
+    crc32.update(encoded.array(), encoded.arrayOffset() + encoded.position(), length);
+    writeBuffer.position(position + RECORD_HEADER_SIZE);
+    writeBuffer.put(encoded);
+    if (writeBuffer.remaining() >= 4) {
+      // Marks the end of the records, in case the segment holds older data after a crash.
+      writeBuffer.putInt(writeBuffer.position(), 0);
+    }
+    writeBuffer.putInt(position + 4, (int) crc32.getValue());
+    // Publishes the record.
+    writeBuffer.putInt(position, length);
+    spilledSpans++;
+    return true;
+  }
+
+  /**
+   * Reads the next spans of the queue. The spans are removed from the queue only when {@link
+   * #commit()} is called.
+   *
+   * @param maxSpans the maximum number of spans to read.
+   * @return the spans read, in the order they were appended.
+   */
+  synchronized List<SpanData> read(int maxSpans) {
+    List<SpanData> spans = new ArrayList<SpanData>();
+    while (spans.size() < maxSpans && !closed) {
+      boolean lastSegment = readSegment == writeSegment;
+      int limit = lastSegment ? writeBuffer.position() : segmentSize;
+      ByteBuffer buffer = getReadBuffer();
+      int length =
+          buffer == null || readPosition + RECORD_HEADER_SIZE > limit
+              ? 0
+              : buffer.getInt(readPosition);
+      if (length <= 0 || readPosition + RECORD_HEADER_SIZE + length > limit) {
+        if (lastSegment) {
+          break;
+        }
+        if (length != 0) {
+          logger.log(Level.WARNING, "Skipping the corrupted end of segment " + readSegment);
+        }
+        nextReadSegment();
+        continue;
+      }
+      ByteBuffer record = buffer.duplicate();
+      record.position(readPosition + RECORD_HEADER_SIZE);
+      record.limit(readPosition + RECORD_HEADER_SIZE + length);
+      readPosition += RECORD_HEADER_SIZE + length;
+      uncommittedSpans++;
+      SpanData spanData = decode(record, buffer.getInt(record.position() - 4));
+      if (spanData == null) {
+        discardedSpans++;
+        uncommittedDiscardedSpans++;
+      } else {
+        spans.add(spanData);
+      }
+    }
+    return spans;
+  }
+
+  /**
+   * Persists the read position, and deletes the segments that were completely read. The spans read
+   * until now are not read again after a restart.
+   */
+  synchronized void commit() {
+    if (closed) {
+      return;
+    }
+    offsets.putLong(0, readSegment);
+    offsets.putInt(8, readPosition);
+    offsets.putInt(12, offsetsChecksum(readSegment, readPosition));
+    committedSegment = readSegment;
+    committedPosition = readPosition;
+    replayedSpans += uncommittedSpans;
+    uncommittedSpans = 0;
+    uncommittedDiscardedSpans = 0;
+    while (firstSegment < readSegment) {
+      deleteSegment(firstSegment);
+      firstSegment++;
+    }
+  }
+
+  /**
+   * Moves the read position back to the last commit, so the spans read since then are read again.
+   */
+  synchronized void rollback() {
+    if (closed) {
+      return;
+    }
+    if (readSegment != committedSegment) {
+      readSegment = committedSegment;
+      readBuffer = null;
+    }
+    readPosition = committedPosition;
+    uncommittedSpans = 0;
+    // The corrupted spans are counted again when they are read again.
+    discardedSpans -= uncommittedDiscardedSpans;
+    uncommittedDiscardedSpans = 0;
+  }
+
+  /**
+   * Returns {@code true} if all the spans of the queue were read.
+   *
+   * @return {@code true} if all the spans of the queue were read.
+   */
+  synchronized boolean isEmpty() {
+    return closed || (readSegment == writeSegment && readPosition >= writeBuffer.position());
+  }
+
+  /**
+   * Flushes the segment files and releases the directory. The spans read since the last commit are
+   * read again when the directory is opened again.
+   */
+  synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    writeBuffer.force();
+    offsets.force();
+    try {
+      lock.release();
+      offsetsFile.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot close the offsets file in " + directory, e);
+    }
+  }
+
+  synchronized long getSpilledSpans() {
+    return spilledSpans;
+  }
+
+  synchronized long getReplayedSpans() {
+    return replayedSpans;
+  }
+
+  synchronized long getDiscardedSpans() {
+    return discardedSpans;
+  }
+
+  @GuardedBy("this")
+  private void rotate() throws IOException {
+    MappedByteBuffer newWriteBuffer = mapSegment(writeSegment + 1);
+    writeBuffer.force();
+    if (readSegment == writeSegment) {
+      readBuffer = writeBuffer;
+    }
+    writeBuffer = newWriteBuffer;
+    writeSegment++;
+  }
+
+  // Returns null if the read segment cannot be mapped.
+  @GuardedBy("this")
+  /*@Nullable*/
+  private ByteBuffer getReadBuffer() {
+    if (readSegment == writeSegment) {
+      return writeBuffer;
+    }
+    if (readBuffer == null) {
+      try {
+        readBuffer = mapSegment(readSegment);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot read segment " + readSegment + " in " + directory, e);
+      }
+    }
+    return readBuffer;
+  }
+
+  @GuardedBy("this")
+  private void nextReadSegment() {
+    readSegment++;
+    readPosition = 0;
+    readBuffer = null;
+  }
+
+  // Returns null if the record is corrupted.
+  @GuardedBy("this")
+  /*@Nullable*/
+  private SpanData decode(ByteBuffer record, int checksum) {
+    crc32.reset();
+    if (record.hasArray()) {
+      crc32.update(record.array(), record.arrayOffset() + record.position(), record.remaining());
+    } else {
+      for (int i = record.position(); i < record.limit(); i++) {
+        crc32.update(record.get(i));
+      }
+    }
+    if ((int) crc32.getValue() != checksum) {
+      logger.log(Level.WARNING, "Skipping a corrupted span in segment " + readSegment);
+      return null;
+    }
+    try {
+      return SpanDataEncoding.decode(record);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Skipping a span that cannot be decoded in " + directory, e);
+      return null;
+    }
+  }
+
+  // Returns the position after the last complete record of the segment.
+  private int findEndOfRecords(ByteBuffer segment) {
+    int position = 0;
+    while (position + RECORD_HEADER_SIZE <= segmentSize) {
+      int length = segment.getInt(position);
+      if (length <= 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+        break;
+      }
+      crc32.reset();
+      for (int i = position + RECORD_HEADER_SIZE; i < position + RECORD_HEADER_SIZE + length; i++) {
+        crc32.update(segment.get(i));
+      }
+      if ((int) crc32.getValue() != segment.getInt(position + 4)) {
+        break;
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  private MappedByteBuffer mapSegment(long segment) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(getSegmentFile(segment), "rw");
+    try {
+      // The mapping stays valid after the file is closed.
+      return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    } finally {
+      file.close();
+    }
+  }
+
+  private void deleteSegment(long segment) {
+    File file = getSegmentFile(segment);
+    if (file.exists() && !file.delete()) {
+      logger.log(Level.WARNING, "Cannot delete " + file);
+    }
+  }
+
+  private File getSegmentFile(long segment) {
+    return new File(directory, String.format(Locale.ROOT, "%s%019d", SEGMENT_FILE_PREFIX, segment));
+  }
+
+  // Returns the ids of the segment files, in increasing order.
+  private List<Long> listSegments() throws IOException {
+    String[] names = directory.list();
+    if (names == null) {
+      throw new IOException("Cannot list the directory " + directory);
+    }
+    List<Long> segments = new ArrayList<Long>();
+    for (String name : names) {
+      if (name.startsWith(SEGMENT_FILE_PREFIX)) {
+        try {
+          segments.add(Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length())));
+        } catch (NumberFormatException e) {
+          // Not a segment file.
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private int offsetsChecksum(long segment, int position) {
+    ByteBuffer buffer = ByteBuffer.allocate(12);
+    buffer.putLong(segment).putInt(position);
+    crc32.reset();
+    crc32.update(buffer.array(), 0, buffer.capacity());
+    return (int) crc32.getValue();
+  }
+}
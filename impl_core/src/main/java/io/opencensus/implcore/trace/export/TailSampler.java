@@ -0,0 +1,391 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.opencensus.common.Clock;
+import io.opencensus.common.Duration;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.export.SpanData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A tail-based sampling stage of the span export pipeline.
+ *
+ * <p>The ended sampled spans are buffered by trace id. A trace is decided when its local root span
+ * (the span without a parent, or with a remote parent) ends, or when the decision wait elapsed
+ * since its first span was buffered. The trace is exported if any of the {@link Policy policies}
+ * samples it, otherwise all its spans are dropped. Spans that end after the decision of their
+ * trace follow that decision.
+ *
+ * <p>Memory is bounded by {@code maxTraces * maxSpansPerTrace} spans. When a new trace would exceed
+ * {@code maxTraces}, the oldest buffered trace is evicted; when a trace reaches {@code
+ * maxSpansPerTrace}, the trace is evicted. Evicted traces are decided immediately with the spans
+ * buffered so far and counted by {@link #getEvictedTraces()}.
+ *
+ * <p>Head sampling still applies: only spans that are sampled by the {@link
+ * io.opencensus.trace.Sampler} are exported, and therefore seen by this stage.
+ */
+@ThreadSafe
+public final class TailSampler {
+  private final List<Policy> policies;
+  private final int maxTraces;
+  private final int maxSpansPerTrace;
+  private final long decisionWaitNanos;
+  private final Clock clock;
+
+  // The buffered traces, in the order of their first span.
+  @GuardedBy("this")
+  private final LinkedHashMap<TraceId, BufferedTrace> pendingTraces =
+      new LinkedHashMap<TraceId, BufferedTrace>();
+
+  // The most recent decisions, applied to the spans that end after their trace was decided.
+  @GuardedBy("this")
+  private final Map<TraceId, Boolean> decisions;
+
+  @GuardedBy("this")
+  private long sampledTraces;
+
+  @GuardedBy("this")
+  private long droppedTraces;
+
+  @GuardedBy("this")
+  private long evictedTraces;
+
+  /**
+   * A policy that decides whether a complete, or evicted, trace is exported.
+   *
+   * <p>Implementations are called by the exporter thread and must not block.
+   */
+  public interface Policy {
+
+    /**
+     * Returns {@code true} if the trace should be exported.
+     *
+     * @param spans the buffered spans of the trace, in the order they ended.
+     * @return {@code true} if the trace should be exported.
+     */
+    boolean shouldSample(List<SpanData> spans);
+  }
+
+  /**
+   * Returns a {@code Policy} that samples traces with at least one span that lasted at least the
+   * given threshold.
+   *
+   * @param threshold the minimum span latency.
+   * @return a {@code Policy} that samples slow traces.
+   */
+  public static Policy latencyThreshold(final Duration threshold) {
+    checkNotNull(threshold, "threshold");
+    return new Policy() {
+      @Override
+      public boolean shouldSample(List<SpanData> spans) {
+        for (SpanData span : spans) {
+          Timestamp endTimestamp = span.getEndTimestamp();
+          if (endTimestamp != null
+              && endTimestamp.subtractTimestamp(span.getStartTimestamp()).compareTo(threshold)
+                  >= 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a {@code Policy} that samples traces with at least one span that ended with a status
+   * other than {@link Status#OK}.
+   *
+   * @return a {@code Policy} that samples traces with errors.
+   */
+  public static Policy errorStatus() {
+    return new Policy() {
+      @Override
+      public boolean shouldSample(List<SpanData> spans) {
+        for (SpanData span : spans) {
+          Status status = span.getStatus();
+          if (status != null && !status.isOk()) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a {@code Policy} that samples at most the given number of traces per second.
+   *
+   * @param tracesPerSecond the maximum number of traces sampled per second.
+   * @return a {@code Policy} that samples a bounded rate of traces.
+   */
+  public static Policy rateLimiting(long tracesPerSecond) {
+    return rateLimiting(tracesPerSecond, MillisClock.getInstance());
+  }
+
+  @VisibleForTesting
+  static Policy rateLimiting(final long tracesPerSecond, final Clock clock) {
+    checkArgument(tracesPerSecond >= 0, "tracesPerSecond must be non-negative.");
+    // Only called by the thread that holds the TailSampler lock.
+    return new Policy() {
+      private long windowStartNanos = clock.nowNanos();
+      private long sampledInWindow;
+
+      @Override
+      public boolean shouldSample(List<SpanData> spans) {
+        long nowNanos = clock.nowNanos();
+        if (nowNanos - windowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+          windowStartNanos = nowNanos;
+          sampledInWindow = 0;
+        }
+        if (sampledInWindow < tracesPerSecond) {
+          sampledInWindow++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a new {@code TailSampler}.
+   *
+   * @param policies the policies, a trace is exported if any of them samples it.
+   * @param maxTraces the maximum number of buffered traces.
+   * @param maxSpansPerTrace the maximum number of buffered spans for one trace.
+   * @param decisionWait the maximum time to wait for the local root span of a trace.
+   * @return a new {@code TailSampler}.
+   */
+  public static TailSampler create(
+      List<Policy> policies, int maxTraces, int maxSpansPerTrace, Duration decisionWait) {
+    return create(
+        policies, maxTraces, maxSpansPerTrace, decisionWait, MillisClock.getInstance());
+  }
+
+  @VisibleForTesting
+  static TailSampler create(
+      List<Policy> policies,
+      int maxTraces,
+      int maxSpansPerTrace,
+      Duration decisionWait,
+      Clock clock) {
+    checkNotNull(policies, "policies");
+    checkArgument(maxTraces > 0, "maxTraces must be positive.");
+    checkArgument(maxSpansPerTrace > 0, "maxSpansPerTrace must be positive.");
+    checkNotNull(decisionWait, "decisionWait");
+    return new TailSampler(
+        new ArrayList<Policy>(policies),
+        maxTraces,
+        maxSpansPerTrace,
+        TimeUnit.MILLISECONDS.toNanos(decisionWait.toMillis()),
+        checkNotNull(clock, "clock"));
+  }
+
+  private TailSampler(
+      List<Policy> policies,
+      final int maxTraces,
+      int maxSpansPerTrace,
+      long decisionWaitNanos,
+      Clock clock) {
+    this.policies = policies;
+    this.maxTraces = maxTraces;
+    this.maxSpansPerTrace = maxSpansPerTrace;
+    this.decisionWaitNanos = decisionWaitNanos;
+    this.clock = clock;
+    this.decisions =
+        new LinkedHashMap<TraceId, Boolean>() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<TraceId, Boolean> eldest) {
+            return size() > maxTraces;
+          }
+        };
+  }
+
+  /**
+   * Buffers the given spans and returns the spans of the traces that were decided and sampled.
+   *
+   * @param spanDataList the ended spans.
+   * @return the spans to be exported.
+   */
+  synchronized List<SpanData> add(List<SpanData> spanDataList) {
+    List<SpanData> sampled = new ArrayList<SpanData>();
+    long nowNanos = clock.nowNanos();
+    for (SpanData spanData : spanDataList) {
+      TraceId traceId = spanData.getContext().getTraceId();
+      Boolean decision = decisions.get(traceId);
+      if (decision != null) {
+        if (decision) {
+          sampled.add(spanData);
+        }
+        continue;
+      }
+      BufferedTrace trace = pendingTraces.get(traceId);
+      if (trace == null) {
+        if (pendingTraces.size() >= maxTraces) {
+          evictedTraces++;
+          decide(pendingTraces.values().iterator(), sampled);
+        }
+        trace = new BufferedTrace(traceId, nowNanos);
+        pendingTraces.put(traceId, trace);
+      }
+      trace.spans.add(spanData);
+      if (spanData.getParentSpanId() == null
+          || Boolean.TRUE.equals(spanData.getHasRemoteParent())) {
+        pendingTraces.remove(traceId);
+        decide(trace, sampled);
+      } else if (trace.spans.size() >= maxSpansPerTrace) {
+        evictedTraces++;
+        pendingTraces.remove(traceId);
+        decide(trace, sampled);
+      }
+    }
+    expire(nowNanos, sampled);
+    return sampled;
+  }
+
+  /**
+   * Decides the traces that waited longer than the decision wait and returns the sampled spans.
+   *
+   * @return the spans to be exported.
+   */
+  synchronized List<SpanData> expire() {
+    if (pendingTraces.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<SpanData> sampled = new ArrayList<SpanData>();
+    expire(clock.nowNanos(), sampled);
+    return sampled;
+  }
+
+  /**
+   * Decides all the buffered traces and returns the sampled spans.
+   *
+   * @return the spans to be exported.
+   */
+  synchronized List<SpanData> decideAll() {
+    List<SpanData> sampled = new ArrayList<SpanData>();
+    Iterator<BufferedTrace> iterator = pendingTraces.values().iterator();
+    while (iterator.hasNext()) {
+      decide(iterator, sampled);
+    }
+    return sampled;
+  }
+
+  /**
+   * Returns the number of buffered traces.
+   *
+   * @return the number of buffered traces.
+   */
+  public synchronized long getPendingTraces() {
+    return pendingTraces.size();
+  }
+
+  /**
+   * Returns the number of exported traces.
+   *
+   * @return the number of exported traces.
+   */
+  public synchronized long getSampledTraces() {
+    return sampledTraces;
+  }
+
+  /**
+   * Returns the number of traces that were not sampled by any policy.
+   *
+   * @return the number of traces that were not sampled by any policy.
+   */
+  public synchronized long getDroppedTraces() {
+    return droppedTraces;
+  }
+
+  /**
+   * Returns the number of traces that were decided before completion to bound the memory.
+   *
+   * @return the number of evicted traces.
+   */
+  public synchronized long getEvictedTraces() {
+    return evictedTraces;
+  }
+
+  @GuardedBy("this")
+  private void expire(long nowNanos, List<SpanData> sampled) {
+    Iterator<BufferedTrace> iterator = pendingTraces.values().iterator();
+    // Traces are ordered by their first span, stop at the first trace that still waits.
+    while (iterator.hasNext()) {
+      BufferedTrace trace = iterator.next();
+      if (nowNanos - trace.firstSpanNanos < decisionWaitNanos) {
+        return;
+      }
+      iterator.remove();
+      decide(trace, sampled);
+    }
+  }
+
+  // Removes and decides the next trace of the iterator.
+  @GuardedBy("this")
+  private void decide(Iterator<BufferedTrace> iterator, List<SpanData> sampled) {
+    BufferedTrace trace = iterator.next();
+    iterator.remove();
+    decide(trace, sampled);
+  }
+
+  @GuardedBy("this")
+  private void decide(BufferedTrace trace, List<SpanData> sampled) {
+    boolean decision = false;
+    for (Policy policy : policies) {
+      if (policy.shouldSample(trace.spans)) {
+        decision = true;
+        break;
+      }
+    }
+    decisions.put(trace.traceId, decision);
+    if (decision) {
+      sampledTraces++;
+      sampled.addAll(trace.spans);
+    } else {
+      droppedTraces++;
+    }
+  }
+
+  private static final class BufferedTrace {
+    private final TraceId traceId;
+    private final long firstSpanNanos;
+    private final List<SpanData> spans = new ArrayList<SpanData>();
+
+    private BufferedTrace(TraceId traceId, long firstSpanNanos) {
+      this.traceId = traceId;
+      this.firstSpanNanos = firstSpanNanos;
+    }
+  }
+}
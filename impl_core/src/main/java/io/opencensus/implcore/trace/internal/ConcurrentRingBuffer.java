@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A lock-free, bounded FIFO queue backed by a preallocated array.
+ *
+ * <p>Every slot has a sequence number that tells producers and consumers whether the slot is free
+ * for the current lap (see "Bounded MPMC queue" by Dmitry Vyukov). Producers claim a position with
+ * a {@code compareAndSet} on the tail and consumers with a {@code compareAndSet} on the head, so
+ * neither operation takes a lock and producers only contend on the tail counter. The queue is
+ * optimized for many producers and a single consumer, but multiple consumers are supported.
+ *
+ * @param <T> the type of the elements.
+ */
+@ThreadSafe
+public final class ConcurrentRingBuffer<T> {
+  private final AtomicReferenceArray</*@Nullable*/ T> elements;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  // The position of the next element to be added.
+  private final AtomicLong tail = new AtomicLong();
+  // The position of the next element to be removed.
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * Constructs a new {@code ConcurrentRingBuffer}.
+   *
+   * @param minCapacity the minimum number of elements the queue can hold, must be greater than
+   *     {@code 0}. The capacity is rounded up to the next power of two.
+   */
+  public ConcurrentRingBuffer(int minCapacity) {
+    checkArgument(minCapacity > 0, "Capacity needs to be greater than 0.");
+    checkArgument(minCapacity <= 1 << 30, "Capacity is too large.");
+    int capacity = Integer.highestOneBit(minCapacity);
+    if (capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    elements = new AtomicReferenceArray</*@Nullable*/ T>(capacity);
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    mask = capacity - 1;
+  }
+
+  /**
+   * Returns the maximum number of elements the queue can hold.
+   *
+   * @return the maximum number of elements the queue can hold.
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Adds an element at the tail of the queue if there is space.
+   *
+   * @param element the element to be added.
+   * @return {@code true} if the element was added, {@code false} if the queue is full.
+   */
+  public boolean offer(T element) {
+    checkNotNull(element, "element");
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          // Publishes the element to the consumers.
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        // The slot still holds the element of the previous lap.
+        return false;
+      }
+      position = tail.get();
+    }
+  }
+
+  /**
+   * Removes the element at the head of the queue.
+   *
+   * @return the removed element, or {@code null} if the queue is empty.
+   */
+  @Nullable
+  public T poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          T element = elements.get(index);
+          elements.lazySet(index, null);
+          // Releases the slot to the producers of the next lap.
+          sequences.lazySet(index, position + mask + 1);
+          return element;
+        }
+      } else if (difference < 0) {
+        // The element of this position was not published yet.
+        return null;
+      }
+      position = head.get();
+    }
+  }
+
+  /**
+   * Removes all the available elements and adds them to the given collection.
+   *
+   * @param collection the collection to transfer the elements into.
+   * @return the number of transferred elements.
+   */
+  public int drainTo(Collection<? super T> collection) {
+    int count = 0;
+    T element;
+    while ((element = poll()) != null) {
+      collection.add(element);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns an estimate of the number of elements in the queue.
+   *
+   * @return an estimate of the number of elements in the queue.
+   */
+  public int size() {
+    // Read the head first, so the difference is never negative when the queue is quiescent.
+    long currentHead = head.get();
+    long currentTail = tail.get();
+    return (int) Math.max(0, Math.min(currentTail - currentHead, mask + 1));
+  }
+
+  /**
+   * Returns {@code true} if the queue contains no elements.
+   *
+   * @return {@code true} if the queue contains no elements.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+}
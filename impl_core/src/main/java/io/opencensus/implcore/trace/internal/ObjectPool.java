@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A lock-free pool of reusable objects with a fixed capacity.
+ *
+ * <p>Objects are stored in a preallocated array of slots, so releasing and acquiring objects does
+ * not allocate. Each thread starts looking for a pooled object at a slot derived from its id, which
+ * spreads the threads that acquire objects over different parts of the array. Both operations give
+ * up after probing a bounded number of slots: {@link #acquire()} returns {@code null} and {@link
+ * #release(Object)} drops the object, which is then reclaimed by the garbage collector.
+ *
+ * @param <T> the type of the pooled objects.
+ */
+@ThreadSafe
+public final class ObjectPool<T> {
+  private static final int MAX_PROBES = 8;
+
+  private final AtomicReferenceArray</*@Nullable*/ T> slots;
+  // The slot where the next release starts probing.
+  private final AtomicInteger releaseIndex = new AtomicInteger();
+
+  /**
+   * Constructs a new {@code ObjectPool}.
+   *
+   * @param capacity the maximum number of pooled objects, must be greater than {@code 0}.
+   */
+  public ObjectPool(int capacity) {
+    checkArgument(capacity > 0, "Capacity needs to be greater than 0.");
+    slots = new AtomicReferenceArray</*@Nullable*/ T>(capacity);
+  }
+
+  /**
+   * Removes an object from the pool.
+   *
+   * @return a pooled object, or {@code null} if no object was found.
+   */
+  @Nullable
+  public T acquire() {
+    int capacity = slots.length();
+    int start = (int) (Thread.currentThread().getId() % capacity);
+    for (int i = 0; i < MAX_PROBES && i < capacity; i++) {
+      int index = start + i < capacity ? start + i : start + i - capacity;
+      if (slots.get(index) != null) {
+        T object = slots.getAndSet(index, null);
+        if (object != null) {
+          return object;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds an object to the pool. The caller must not use the object after this call.
+   *
+   * @param object the object to be added.
+   * @return {@code true} if the object was pooled, {@code false} if the pool is full.
+   */
+  public boolean release(T object) {
+    checkNotNull(object, "object");
+    int capacity = slots.length();
+    for (int i = 0; i < MAX_PROBES && i < capacity; i++) {
+      int index = (releaseIndex.getAndIncrement() & Integer.MAX_VALUE) % capacity;
+      if (slots.get(index) == null && slots.compareAndSet(index, null, object)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
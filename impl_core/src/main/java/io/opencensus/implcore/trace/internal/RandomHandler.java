@@ -18,6 +18,8 @@ package io.opencensus.implcore.trace.internal;
 
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -47,4 +49,70 @@ public abstract class RandomHandler {
       return random;
     }
   }
+
+  /**
+   * Implementation of the {@link RandomHandler} using a per-thread SplitMix64 generator.
+   *
+   * <p>The generator is not cryptographically secure, but it is fast, does not synchronize, and
+   * all the bits of the generated longs are uniformly distributed (the {@code ProbabilitySampler}
+   * relies on the lower 64 bits of the trace ids). The returned {@code Random} must not be shared
+   * with other threads.
+   */
+  @ThreadSafe
+  public static final class SplitMixRandomHandler extends RandomHandler {
+    private static final ThreadLocal<SplitMixRandom> random =
+        new ThreadLocal<SplitMixRandom>() {
+          @Override
+          protected SplitMixRandom initialValue() {
+            return new SplitMixRandom(SplitMixRandom.newSeed());
+          }
+        };
+
+    /** Constructs a new {@link SplitMixRandomHandler}. */
+    public SplitMixRandomHandler() {}
+
+    @Override
+    public Random current() {
+      return random.get();
+    }
+  }
+
+  // A Random that generates the values with the SplitMix64 algorithm, see
+  // http://dx.doi.org/10.1145/2714064.2660195. Only the nextLong and next methods are overridden,
+  // the other methods of Random are built on them.
+  @NotThreadSafe
+  static final class SplitMixRandom extends Random {
+    private static final long serialVersionUID = 0L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    // Used to give every thread a different seed.
+    private static final AtomicLong seeder =
+        new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+    private long state;
+
+    SplitMixRandom(long seed) {
+      state = seed;
+    }
+
+    static long newSeed() {
+      return mix64(seeder.getAndAdd(2 * GOLDEN_GAMMA));
+    }
+
+    @Override
+    public long nextLong() {
+      state += GOLDEN_GAMMA;
+      return mix64(state);
+    }
+
+    @Override
+    protected int next(int bits) {
+      return (int) (nextLong() >>> (64 - bits));
+    }
+
+    private static long mix64(long z) {
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+    }
+  }
 }
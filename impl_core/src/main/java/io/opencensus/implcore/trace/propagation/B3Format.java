@@ -16,6 +16,7 @@
 
 package io.opencensus.implcore.trace.propagation;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -37,6 +38,11 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 /**
  * Implementation of the B3 propagation protocol. See <a
  * href=https://github.com/openzipkin/b3-propagation>b3-propagation</a>.
+ *
+ * <p>Both the multiple {@code X-B3-*} headers and the single {@code b3} header encodings are
+ * extracted. The single header is looked up first, so it takes precedence and a request that only
+ * carries the single header needs one lookup. The encoding that is injected is chosen when the
+ * format is created.
  */
 final class B3Format extends TextFormat {
   private static final Tracestate TRACESTATE_DEFAULT = Tracestate.builder().build();
@@ -45,10 +51,11 @@ final class B3Format extends TextFormat {
   @VisibleForTesting static final String X_B3_PARENT_SPAN_ID = "X-B3-ParentSpanId";
   @VisibleForTesting static final String X_B3_SAMPLED = "X-B3-Sampled";
   @VisibleForTesting static final String X_B3_FLAGS = "X-B3-Flags";
+  @VisibleForTesting static final String B3 = "b3";
   private static final List<String> FIELDS =
       Collections.unmodifiableList(
           Arrays.asList(
-              X_B3_TRACE_ID, X_B3_SPAN_ID, X_B3_PARENT_SPAN_ID, X_B3_SAMPLED, X_B3_FLAGS));
+              X_B3_TRACE_ID, X_B3_SPAN_ID, X_B3_PARENT_SPAN_ID, X_B3_SAMPLED, X_B3_FLAGS, B3));
 
   // Used as the upper TraceId.SIZE hex characters of the traceID. B3-propagation used to send
   // TraceId.SIZE hex characters (8-bytes traceId) in the past.
@@ -58,6 +65,46 @@ final class B3Format extends TextFormat {
   // "Debug" sampled value.
   private static final String FLAGS_VALUE = "1";
 
+  // The single header is {trace_id}-{span_id}[-{sampling_state}[-{parent_span_id}]], or only
+  // {sampling_state}.
+  private static final char B3_DELIMITER = '-';
+  private static final char B3_SAMPLED = '1';
+  private static final char B3_DEBUG = 'd';
+  private static final int TRACE_ID_HEX_SIZE = 2 * TraceId.SIZE;
+  private static final int SPAN_ID_HEX_SIZE = 2 * SpanId.SIZE;
+  private static final int B3_SPAN_ID_OFFSET = TRACE_ID_HEX_SIZE + 1;
+  private static final int B3_SAMPLING_STATE_OFFSET = B3_SPAN_ID_OFFSET + SPAN_ID_HEX_SIZE + 1;
+  private static final int B3_MAX_INJECTED_SIZE = B3_SAMPLING_STATE_OFFSET + 1;
+
+  private static final ThreadLocal<char[]> b3Buffer =
+      new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+          char[] chars = new char[B3_MAX_INJECTED_SIZE];
+          chars[B3_SPAN_ID_OFFSET - 1] = B3_DELIMITER;
+          chars[B3_SAMPLING_STATE_OFFSET - 1] = B3_DELIMITER;
+          chars[B3_SAMPLING_STATE_OFFSET] = B3_SAMPLED;
+          return chars;
+        }
+      };
+
+  private final boolean injectSingleHeader;
+
+  /** Constructs a {@code B3Format} that injects the multiple headers encoding. */
+  B3Format() {
+    this(/* injectSingleHeader= */ false);
+  }
+
+  /**
+   * Constructs a {@code B3Format}.
+   *
+   * @param injectSingleHeader {@code true} if the single {@code b3} header is injected instead of
+   *     the multiple {@code X-B3-*} headers.
+   */
+  B3Format(boolean injectSingleHeader) {
+    this.injectSingleHeader = injectSingleHeader;
+  }
+
   @Override
   public List<String> fields() {
     return FIELDS;
@@ -69,6 +116,22 @@ final class B3Format extends TextFormat {
     checkNotNull(spanContext, "spanContext");
     checkNotNull(setter, "setter");
     checkNotNull(carrier, "carrier");
+    if (injectSingleHeader) {
+      // The sampling state is only sent when sampled, like with the multiple headers.
+      char[] chars = b3Buffer.get();
+      spanContext.getTraceId().copyLowerBase16To(chars, 0);
+      spanContext.getSpanId().copyLowerBase16To(chars, B3_SPAN_ID_OFFSET);
+      setter.put(
+          carrier,
+          B3,
+          new String(
+              chars,
+              0,
+              spanContext.getTraceOptions().isSampled()
+                  ? B3_MAX_INJECTED_SIZE
+                  : B3_SAMPLING_STATE_OFFSET - 1));
+      return;
+    }
     setter.put(carrier, X_B3_TRACE_ID, spanContext.getTraceId().toLowerBase16());
     setter.put(carrier, X_B3_SPAN_ID, spanContext.getSpanId().toLowerBase16());
     if (spanContext.getTraceOptions().isSampled()) {
@@ -81,6 +144,10 @@ final class B3Format extends TextFormat {
       throws SpanContextParseException {
     checkNotNull(carrier, "carrier");
     checkNotNull(getter, "getter");
+    String b3 = getter.get(carrier, B3);
+    if (b3 != null) {
+      return extractSingleHeader(b3);
+    }
     try {
       TraceId traceId;
       String traceIdStr = getter.get(carrier, X_B3_TRACE_ID);
@@ -110,4 +177,44 @@ final class B3Format extends TextFormat {
       throw new SpanContextParseException("Invalid input.", e);
     }
   }
+
+  private static SpanContext extractSingleHeader(String b3) throws SpanContextParseException {
+    int traceIdSize = b3.indexOf(B3_DELIMITER);
+    if (traceIdSize == -1) {
+      // Only a sampling state, there is no context to propagate.
+      throw new SpanContextParseException("Missing trace id in b3 header.");
+    }
+    try {
+      TraceId traceId;
+      if (traceIdSize == TRACE_ID_HEX_SIZE) {
+        traceId = TraceId.fromLowerBase16(b3, 0);
+      } else if (traceIdSize == TraceId.SIZE) {
+        // This is an 8-byte traceID.
+        traceId = TraceId.fromLowerBase16(UPPER_TRACE_ID + b3.substring(0, traceIdSize));
+      } else {
+        throw new IllegalArgumentException("Invalid trace id size " + traceIdSize);
+      }
+      int spanIdOffset = traceIdSize + 1;
+      int spanIdEnd = spanIdOffset + SPAN_ID_HEX_SIZE;
+      checkArgument(
+          b3.length() == spanIdEnd
+              || (b3.length() > spanIdEnd && b3.charAt(spanIdEnd) == B3_DELIMITER),
+          "Invalid span id.");
+      SpanId spanId = SpanId.fromLowerBase16(b3, spanIdOffset);
+      TraceOptions traceOptions = TraceOptions.DEFAULT;
+      // The parent span id that may follow the sampling state is not used.
+      if (b3.length() > spanIdEnd + 1) {
+        char samplingState = b3.charAt(spanIdEnd + 1);
+        checkArgument(
+            b3.length() == spanIdEnd + 2 || b3.charAt(spanIdEnd + 2) == B3_DELIMITER,
+            "Invalid sampling state.");
+        if (samplingState == B3_SAMPLED || samplingState == B3_DEBUG) {
+          traceOptions = TraceOptions.builder().setIsSampled(true).build();
+        }
+      }
+      return SpanContext.create(traceId, spanId, traceOptions, TRACESTATE_DEFAULT);
+    } catch (IllegalArgumentException e) {
+      throw new SpanContextParseException("Invalid b3 header: " + b3, e);
+    }
+  }
 }
@@ -26,6 +26,7 @@ import io.opencensus.trace.TraceOptions;
 import io.opencensus.trace.Tracestate;
 import io.opencensus.trace.propagation.BinaryFormat;
 import io.opencensus.trace.propagation.SpanContextParseException;
+import java.nio.ByteBuffer;
 
 /**
  * Implementation of the {@link BinaryFormat}.
@@ -145,4 +146,61 @@ final class BinaryFormatImpl extends BinaryFormat {
     }
     return SpanContext.create(traceId, spanId, traceOptions, TRACESTATE_DEFAULT);
   }
+
+  @Override
+  public int toByteBuffer(SpanContext spanContext, ByteBuffer dest, int destIndex) {
+    checkNotNull(spanContext, "spanContext");
+    checkNotNull(dest, "dest");
+    if (destIndex < 0 || destIndex > dest.limit() - ALL_FORMAT_LENGTH) {
+      // Fail before writing anything.
+      throw new IndexOutOfBoundsException("Not enough space in the buffer.");
+    }
+    dest.put(destIndex + VERSION_ID_OFFSET, VERSION_ID);
+    dest.put(destIndex + TRACE_ID_FIELD_ID_OFFSET, TRACE_ID_FIELD_ID);
+    spanContext.getTraceId().copyBytesTo(dest, destIndex + TRACE_ID_OFFSET);
+    dest.put(destIndex + SPAN_ID_FIELD_ID_OFFSET, SPAN_ID_FIELD_ID);
+    spanContext.getSpanId().copyBytesTo(dest, destIndex + SPAN_ID_OFFSET);
+    dest.put(destIndex + TRACE_OPTION_FIELD_ID_OFFSET, TRACE_OPTION_FIELD_ID);
+    dest.put(destIndex + TRACE_OPTIONS_OFFSET, spanContext.getTraceOptions().getByte());
+    return ALL_FORMAT_LENGTH;
+  }
+
+  // Same as fromByteArray, without copying the value out of the buffer.
+  @Override
+  public SpanContext fromByteBuffer(ByteBuffer src, int srcIndex, int length)
+      throws SpanContextParseException {
+    checkNotNull(src, "src");
+    if (srcIndex < 0 || length < 0 || srcIndex > src.limit() - length) {
+      throw new IndexOutOfBoundsException("Invalid index or length.");
+    }
+    if (length == 0 || src.get(srcIndex) != VERSION_ID) {
+      throw new SpanContextParseException("Unsupported version.");
+    }
+    if (length < REQUIRED_FORMAT_LENGTH) {
+      throw new SpanContextParseException("Invalid input: truncated");
+    }
+    TraceId traceId;
+    SpanId spanId;
+    TraceOptions traceOptions = TraceOptions.DEFAULT;
+    int pos = 1;
+    if (src.get(srcIndex + pos) == TRACE_ID_FIELD_ID) {
+      traceId = TraceId.fromByteBuffer(src, srcIndex + pos + ID_SIZE);
+      pos += ID_SIZE + TraceId.SIZE;
+    } else {
+      throw new SpanContextParseException("Invalid input: expected trace ID at offset " + pos);
+    }
+    if (src.get(srcIndex + pos) == SPAN_ID_FIELD_ID) {
+      spanId = SpanId.fromByteBuffer(src, srcIndex + pos + ID_SIZE);
+      pos += ID_SIZE + SpanId.SIZE;
+    } else {
+      throw new SpanContextParseException("Invalid input: expected span ID at offset " + pos);
+    }
+    if (length > pos && src.get(srcIndex + pos) == TRACE_OPTION_FIELD_ID) {
+      if (length < ALL_FORMAT_LENGTH) {
+        throw new SpanContextParseException("Invalid input: truncated");
+      }
+      traceOptions = TraceOptions.fromByte(src.get(srcIndex + pos + ID_SIZE));
+    }
+    return SpanContext.create(traceId, spanId, traceOptions, TRACESTATE_DEFAULT);
+  }
 }
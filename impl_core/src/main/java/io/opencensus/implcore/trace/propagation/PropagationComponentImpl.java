@@ -24,6 +24,7 @@ import io.opencensus.trace.propagation.TextFormat;
 public class PropagationComponentImpl extends PropagationComponent {
   private final BinaryFormat binaryFormat = new BinaryFormatImpl();
   private final TextFormat b3Format = new B3Format();
+  private final TextFormat b3SingleHeaderFormat = new B3Format(/* injectSingleHeader= */ true);
   private final TextFormat traceContextFormat = new TraceContextFormat();
 
   @Override
@@ -36,6 +37,11 @@ public class PropagationComponentImpl extends PropagationComponent {
     return b3Format;
   }
 
+  @Override
+  public TextFormat getB3SingleHeaderFormat() {
+    return b3SingleHeaderFormat;
+  }
+
   @Override
   public TextFormat getTraceContextFormat() {
     return traceContextFormat;
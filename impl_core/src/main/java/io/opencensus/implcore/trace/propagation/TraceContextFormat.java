@@ -20,7 +20,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Splitter;
 import io.opencensus.trace.SpanContext;
 import io.opencensus.trace.SpanId;
 import io.opencensus.trace.TraceId;
@@ -31,7 +30,7 @@ import io.opencensus.trace.propagation.TextFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /*>>>
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -65,8 +64,38 @@ public class TraceContextFormat extends TextFormat {
   private static final int TRACESTATE_MAX_MEMBERS = 32;
   private static final char TRACESTATE_KEY_VALUE_DELIMITER = '=';
   private static final char TRACESTATE_ENTRY_DELIMITER = ',';
-  private static final Splitter TRACESTATE_ENTRY_DELIMITER_SPLITTER =
-      Splitter.on(Pattern.compile("[ \t]*" + TRACESTATE_ENTRY_DELIMITER + "[ \t]*"));
+  // The number of recently injected and extracted tracestates that are cached, a power of two.
+  private static final int TRACESTATE_CACHE_SIZE = 16;
+
+  private static final ThreadLocal<char[]> traceparentBuffer =
+      new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+          char[] chars = new char[TRACEPARENT_HEADER_SIZE];
+          chars[0] = VERSION.charAt(0);
+          chars[1] = VERSION.charAt(1);
+          chars[2] = TRACEPARENT_DELIMITER;
+          chars[SPAN_ID_OFFSET - 1] = TRACEPARENT_DELIMITER;
+          chars[TRACE_OPTION_OFFSET - 1] = TRACEPARENT_DELIMITER;
+          return chars;
+        }
+      };
+
+  private static final ThreadLocal<StringBuilder> tracestateBuffer =
+      new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+          return new StringBuilder(TRACESTATE_MAX_SIZE);
+        }
+      };
+
+  // Services usually forward the tracestate they received, so the same few tracestates are
+  // injected and extracted over and over. Both caches are direct mapped, a slot is replaced by the
+  // most recent tracestate that maps to it.
+  private final AtomicReferenceArray<CachedTracestate> injectedTracestates =
+      new AtomicReferenceArray<CachedTracestate>(TRACESTATE_CACHE_SIZE);
+  private final AtomicReferenceArray<CachedTracestate> extractedTracestates =
+      new AtomicReferenceArray<CachedTracestate>(TRACESTATE_CACHE_SIZE);
 
   @Override
   public List<String> fields() {
@@ -79,23 +108,29 @@ public class TraceContextFormat extends TextFormat {
     checkNotNull(spanContext, "spanContext");
     checkNotNull(setter, "setter");
     checkNotNull(carrier, "carrier");
-    char[] chars = new char[TRACEPARENT_HEADER_SIZE];
-    chars[0] = VERSION.charAt(0);
-    chars[1] = VERSION.charAt(1);
-    chars[2] = TRACEPARENT_DELIMITER;
+    // The version and the delimiters are written once per buffer.
+    char[] chars = traceparentBuffer.get();
     spanContext.getTraceId().copyLowerBase16To(chars, TRACE_ID_OFFSET);
-    chars[SPAN_ID_OFFSET - 1] = TRACEPARENT_DELIMITER;
     spanContext.getSpanId().copyLowerBase16To(chars, SPAN_ID_OFFSET);
-    chars[TRACE_OPTION_OFFSET - 1] = TRACEPARENT_DELIMITER;
     spanContext.getTraceOptions().copyLowerBase16To(chars, TRACE_OPTION_OFFSET);
     setter.put(carrier, TRACEPARENT, new String(chars));
-    List<Tracestate.Entry> entries = spanContext.getTracestate().getEntries();
-    if (entries.isEmpty()) {
+    Tracestate tracestate = spanContext.getTracestate();
+    if (tracestate.getEntries().isEmpty()) {
       // No need to add an empty "tracestate" header.
       return;
     }
-    StringBuilder stringBuilder = new StringBuilder(TRACESTATE_MAX_SIZE);
-    for (Tracestate.Entry entry : entries) {
+    setter.put(carrier, TRACESTATE, encodeTracestate(tracestate));
+  }
+
+  private String encodeTracestate(Tracestate tracestate) {
+    int slot = System.identityHashCode(tracestate) & (TRACESTATE_CACHE_SIZE - 1);
+    CachedTracestate cached = injectedTracestates.get(slot);
+    if (cached != null && cached.tracestate == tracestate) {
+      return cached.header;
+    }
+    StringBuilder stringBuilder = tracestateBuffer.get();
+    stringBuilder.setLength(0);
+    for (Tracestate.Entry entry : tracestate.getEntries()) {
       if (stringBuilder.length() != 0) {
         stringBuilder.append(TRACESTATE_ENTRY_DELIMITER);
       }
@@ -104,7 +139,9 @@ public class TraceContextFormat extends TextFormat {
           .append(TRACESTATE_KEY_VALUE_DELIMITER)
           .append(entry.getValue());
     }
-    setter.put(carrier, TRACESTATE, stringBuilder.toString());
+    String header = stringBuilder.toString();
+    injectedTracestates.set(slot, new CachedTracestate(header, tracestate));
+    return header;
   }
 
   @Override
@@ -143,22 +180,78 @@ public class TraceContextFormat extends TextFormat {
       if (tracestate == null || tracestate.isEmpty()) {
         return SpanContext.create(traceId, spanId, traceOptions, TRACESTATE_DEFAULT);
       }
-      Tracestate.Builder tracestateBuilder = Tracestate.builder();
-      List<String> listMembers = TRACESTATE_ENTRY_DELIMITER_SPLITTER.splitToList(tracestate);
-      checkArgument(
-          listMembers.size() <= TRACESTATE_MAX_MEMBERS, "Tracestate has too many elements.");
-      // Iterate in reverse order because when call builder set the elements is added in the
-      // front of the list.
-      for (int i = listMembers.size() - 1; i >= 0; i--) {
-        String listMember = listMembers.get(i);
-        int index = listMember.indexOf(TRACESTATE_KEY_VALUE_DELIMITER);
-        checkArgument(index != -1, "Invalid tracestate list-member format.");
-        tracestateBuilder.set(
-            listMember.substring(0, index), listMember.substring(index + 1, listMember.length()));
-      }
-      return SpanContext.create(traceId, spanId, traceOptions, tracestateBuilder.build());
+      return SpanContext.create(traceId, spanId, traceOptions, decodeTracestate(tracestate));
     } catch (IllegalArgumentException e) {
       throw new SpanContextParseException("Invalid tracestate: " + tracestate, e);
     }
   }
+
+  private Tracestate decodeTracestate(String header) {
+    int slot = header.hashCode() & (TRACESTATE_CACHE_SIZE - 1);
+    CachedTracestate cached = extractedTracestates.get(slot);
+    if (cached != null && cached.header.equals(header)) {
+      return cached.tracestate;
+    }
+    Tracestate tracestate = parseTracestate(header);
+    extractedTracestates.set(slot, new CachedTracestate(header, tracestate));
+    return tracestate;
+  }
+
+  // Parses the list-members in a single pass. The optional white spaces around the delimiters are
+  // skipped, like the "[ \t]*,[ \t]*" delimiter pattern.
+  @VisibleForTesting
+  static Tracestate parseTracestate(String header) {
+    // The start and end offsets of the list-members.
+    int[] offsets = new int[2 * TRACESTATE_MAX_MEMBERS];
+    int numMembers = 0;
+    int start = 0;
+    while (true) {
+      checkArgument(numMembers < TRACESTATE_MAX_MEMBERS, "Tracestate has too many elements.");
+      int delimiter = header.indexOf(TRACESTATE_ENTRY_DELIMITER, start);
+      int end = delimiter == -1 ? header.length() : delimiter;
+      if (delimiter != -1) {
+        while (end > start && isOptionalWhiteSpace(header.charAt(end - 1))) {
+          end--;
+        }
+      }
+      offsets[2 * numMembers] = start;
+      offsets[2 * numMembers + 1] = end;
+      numMembers++;
+      if (delimiter == -1) {
+        break;
+      }
+      start = delimiter + 1;
+      while (start < header.length() && isOptionalWhiteSpace(header.charAt(start))) {
+        start++;
+      }
+    }
+    Tracestate.Builder tracestateBuilder = Tracestate.builder();
+    // Iterate in reverse order because when call builder set the elements is added in the
+    // front of the list.
+    for (int i = numMembers - 1; i >= 0; i--) {
+      int memberStart = offsets[2 * i];
+      int memberEnd = offsets[2 * i + 1];
+      int index = header.indexOf(TRACESTATE_KEY_VALUE_DELIMITER, memberStart);
+      checkArgument(
+          index != -1 && index < memberEnd, "Invalid tracestate list-member format.");
+      tracestateBuilder.set(
+          header.substring(memberStart, index), header.substring(index + 1, memberEnd));
+    }
+    return tracestateBuilder.build();
+  }
+
+  private static boolean isOptionalWhiteSpace(char c) {
+    return c == ' ' || c == '\t';
+  }
+
+  // A tracestate and its header value.
+  private static final class CachedTracestate {
+    private final String header;
+    private final Tracestate tracestate;
+
+    private CachedTracestate(String header, Tracestate tracestate) {
+      this.header = header;
+      this.tracestate = tracestate;
+    }
+  }
 }
@@ -20,16 +20,25 @@ import static com.google.common.truth.Truth.assertThat;
 
 import io.opencensus.common.Timestamp;
 import io.opencensus.implcore.internal.CurrentState.State;
+import io.opencensus.implcore.stats.StatsTestUtil.SimpleTagContext;
+import io.opencensus.metrics.data.AttachmentValue;
 import io.opencensus.stats.Aggregation.Mean;
+import io.opencensus.stats.AggregationData.MeanData;
 import io.opencensus.stats.Measure;
+import io.opencensus.stats.Measurement.MeasurementDouble;
 import io.opencensus.stats.View;
 import io.opencensus.stats.View.AggregationWindow.Cumulative;
 import io.opencensus.stats.View.Name;
 import io.opencensus.stats.ViewData;
 import io.opencensus.stats.ViewData.AggregationWindowData.CumulativeData;
+import io.opencensus.tags.Tag;
 import io.opencensus.tags.TagKey;
+import io.opencensus.tags.TagValue;
 import io.opencensus.testing.common.TestClock;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -43,6 +52,10 @@ public class MeasureToViewMapTest {
 
   private static final Name VIEW_NAME = View.Name.create("my view");
 
+  private static final TagKey KEY = TagKey.create("my key");
+
+  private static final TagValue VALUE = TagValue.create("my value");
+
   private static final Cumulative CUMULATIVE = Cumulative.create();
 
   private static final View VIEW =
@@ -51,7 +64,7 @@ public class MeasureToViewMapTest {
           "view description",
           MEASURE,
           Mean.create(),
-          Arrays.asList(TagKey.create("my key")),
+          Arrays.asList(KEY),
           CUMULATIVE);
 
   @Test
@@ -66,4 +79,38 @@ public class MeasureToViewMapTest {
         .isEqualTo(CumulativeData.create(Timestamp.create(10, 20), Timestamp.create(30, 40)));
     assertThat(viewData.getAggregationMap()).isEmpty();
   }
+
+  @Test
+  public void testConcurrentRecord() throws InterruptedException {
+    final MeasureToViewMap measureToViewMap = new MeasureToViewMap();
+    final TestClock clock = TestClock.create(Timestamp.create(10, 20));
+    measureToViewMap.registerView(VIEW, clock);
+    final int recordsPerThread = 1000;
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  for (int j = 0; j < recordsPerThread; j++) {
+                    measureToViewMap.record(
+                        new SimpleTagContext(Tag.create(KEY, VALUE)),
+                        MeasurementDouble.create((Measure.MeasureDouble) MEASURE, 1.0),
+                        Collections.<String, AttachmentValue>emptyMap(),
+                        clock.now());
+                  }
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    ViewData viewData = measureToViewMap.getView(VIEW_NAME, clock, State.ENABLED);
+    MeanData meanData =
+        (MeanData) viewData.getAggregationMap().get(Collections.singletonList(VALUE));
+    assertThat(meanData.getCount()).isEqualTo(4 * recordsPerThread);
+  }
 }
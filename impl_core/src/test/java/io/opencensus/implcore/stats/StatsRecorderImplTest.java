@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableMap;
 import io.grpc.Context;
 import io.opencensus.common.Duration;
 import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.internal.EventQueue;
 import io.opencensus.implcore.internal.SimpleEventQueue;
 import io.opencensus.implcore.stats.StatsTestUtil.SimpleTagContext;
 import io.opencensus.metrics.data.AttachmentValue;
@@ -51,6 +52,7 @@ import io.opencensus.tags.TagKey;
 import io.opencensus.tags.TagValue;
 import io.opencensus.tags.unsafe.ContextUtils;
 import io.opencensus.testing.common.TestClock;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -160,6 +162,35 @@ public final class StatsRecorderImplTest {
         1e-6);
   }
 
+  @Test
+  public void recordBatch() {
+    View view =
+        View.create(
+            VIEW_NAME,
+            "description",
+            MEASURE_DOUBLE,
+            DISTRIBUTION_NO_HISTOGRAM,
+            Arrays.asList(KEY),
+            Cumulative.create());
+    viewManager.registerView(view);
+    ((StatsRecorderImpl) statsRecorder)
+        .recordBatch(
+            new SimpleTagContext(Tag.create(KEY, VALUE)),
+            MEASURE_DOUBLE,
+            new double[] {1.0, -2.0, 3.0, 5.0},
+            3);
+    ViewData viewData = viewManager.getView(VIEW_NAME);
+
+    // The negative value and the values after count are not recorded.
+    StatsTestUtil.assertAggregationMapEquals(
+        viewData.getAggregationMap(),
+        ImmutableMap.of(
+            Arrays.asList(VALUE),
+            StatsTestUtil.createAggregationData(
+                DISTRIBUTION_NO_HISTOGRAM, MEASURE_DOUBLE, 1.0, 3.0)),
+        1e-6);
+  }
+
   @Test
   public void record_WithAttachments_Distribution() {
     testClock.setTime(START_TIME);
@@ -373,4 +404,57 @@ public final class StatsRecorderImplTest {
             StatsTestUtil.createAggregationData(Sum.create(), MEASURE_DOUBLE, 4.0)),
         1e-6);
   }
+
+  @Test
+  public void record_OneEventPerRecord() {
+    RecordingEventQueue queue = new RecordingEventQueue(1);
+    StatsRecorder recorder = new StatsComponentImplBase(queue, testClock).getStatsRecorder();
+    recorder
+        .newMeasureMap()
+        .put(MEASURE_DOUBLE, 1.0)
+        .put(MEASURE_DOUBLE_NO_VIEW_1, 2.0)
+        .put(MEASURE_DOUBLE_NO_VIEW_2, 3.0)
+        .record(new SimpleTagContext(Tag.create(KEY, VALUE)));
+    assertThat(queue.entries).hasSize(1);
+    assertThat(queue.entries.get(0)).isNotInstanceOf(EventQueue.KeyedEntry.class);
+  }
+
+  @Test
+  public void record_OneEventPerMeasureWhenQueueIsSharded() {
+    RecordingEventQueue queue = new RecordingEventQueue(4);
+    StatsRecorder recorder = new StatsComponentImplBase(queue, testClock).getStatsRecorder();
+    recorder
+        .newMeasureMap()
+        .put(MEASURE_DOUBLE, 1.0)
+        .put(MEASURE_DOUBLE_NO_VIEW_1, 2.0)
+        .put(MEASURE_DOUBLE_NO_VIEW_2, 3.0)
+        .record(new SimpleTagContext(Tag.create(KEY, VALUE)));
+    assertThat(queue.entries).hasSize(3);
+    for (EventQueue.Entry entry : queue.entries) {
+      assertThat(entry).isInstanceOf(EventQueue.KeyedEntry.class);
+    }
+  }
+
+  private static final class RecordingEventQueue implements EventQueue, EventQueue.Sharded {
+    private final int shardCount;
+    private final List<EventQueue.Entry> entries = new ArrayList<EventQueue.Entry>();
+
+    private RecordingEventQueue(int shardCount) {
+      this.shardCount = shardCount;
+    }
+
+    @Override
+    public void enqueue(Entry entry) {
+      entries.add(entry);
+      entry.process();
+    }
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public int getShardCount() {
+      return shardCount;
+    }
+  }
 }
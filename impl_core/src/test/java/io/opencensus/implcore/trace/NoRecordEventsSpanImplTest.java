@@ -74,6 +74,10 @@ public class NoRecordEventsSpanImplTest {
     // Tests only that all the methods are not crashing/throwing errors.
     noRecordEventsSpan.putAttribute(
         "MyStringAttributeKey2", AttributeValue.stringAttributeValue("MyStringAttributeValue2"));
+    noRecordEventsSpan.putAttribute("MyStringAttributeKey3", "MyStringAttributeValue3");
+    noRecordEventsSpan.putAttribute("MyLongAttributeKey2", 123L);
+    noRecordEventsSpan.putAttribute("MyDoubleAttributeKey", 1.5);
+    noRecordEventsSpan.putAttribute("MyBooleanAttributeKey2", true);
     noRecordEventsSpan.addAttributes(attributes);
     noRecordEventsSpan.addAttributes(multipleAttributes);
     noRecordEventsSpan.addAnnotation("MyAnnotation");
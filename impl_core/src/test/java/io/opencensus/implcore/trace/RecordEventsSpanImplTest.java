@@ -27,6 +27,7 @@ import io.opencensus.trace.Annotation;
 import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.EndSpanOptions;
 import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
 import io.opencensus.trace.NetworkEvent;
 import io.opencensus.trace.Span.Kind;
 import io.opencensus.trace.SpanContext;
@@ -35,10 +36,15 @@ import io.opencensus.trace.Status;
 import io.opencensus.trace.TraceId;
 import io.opencensus.trace.TraceOptions;
 import io.opencensus.trace.config.TraceParams;
+import io.opencensus.trace.export.ReadableSpan;
 import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -135,6 +141,38 @@ public class RecordEventsSpanImplTest {
     assertThat(spanData.getAttributes().getAttributeMap()).isEqualTo(attributes);
   }
 
+  @Test
+  public void primitiveAttributes() {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock);
+    span.putAttribute("MyStringAttributeKey", "MyStringAttributeValue");
+    span.putAttribute("MyLongAttributeKey", 123L);
+    span.putAttribute("MyDoubleAttributeKey", 1.5);
+    span.putAttribute("MyBooleanAttributeKey", true);
+    // Overrides a primitive value with an AttributeValue and vice versa.
+    span.putAttribute("MyLongAttributeKey", AttributeValue.longAttributeValue(456L));
+    span.putAttribute("MyBooleanAttributeKey", false);
+    span.end();
+    Map<String, AttributeValue> expected = new HashMap<String, AttributeValue>();
+    expected.put(
+        "MyStringAttributeKey", AttributeValue.stringAttributeValue("MyStringAttributeValue"));
+    expected.put("MyLongAttributeKey", AttributeValue.longAttributeValue(456L));
+    expected.put("MyDoubleAttributeKey", AttributeValue.doubleAttributeValue(1.5));
+    expected.put("MyBooleanAttributeKey", AttributeValue.booleanAttributeValue(false));
+    SpanData spanData = span.toSpanData();
+    assertThat(spanData.getAttributes().getAttributeMap()).isEqualTo(expected);
+    assertThat(spanData.getAttributes().getDroppedAttributesCount()).isEqualTo(2);
+  }
+
   @Test
   public void toSpanData_ActiveSpan() {
     RecordEventsSpanImpl span =
@@ -347,6 +385,42 @@ public class RecordEventsSpanImplTest {
     }
   }
 
+  @Test
+  public void removeAttribute_EndedSpan() {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock);
+    span.putAttributes(attributes);
+    span.putAttribute("MyLongAttributeKey", 321L);
+    span.end();
+    span.removeAttribute("MyLongAttributeKey");
+    span.removeAttribute("MyUnknownAttributeKey");
+    final Map<String, AttributeValue> visitedAttributes = new HashMap<String, AttributeValue>();
+    span.forEachAttribute(
+        new ReadableSpan.AttributeVisitor() {
+          @Override
+          public void visitAttribute(String key, AttributeValue value) {
+            visitedAttributes.put(key, value);
+          }
+        });
+    expectedAttributes.clear();
+    expectedAttributes.putAll(attributes);
+    expectedAttributes.remove("MyLongAttributeKey");
+    assertThat(visitedAttributes).isEqualTo(expectedAttributes);
+    SpanData spanData = span.toSpanData();
+    assertThat(spanData.getAttributes().getAttributeMap()).isEqualTo(expectedAttributes);
+    // The removed attribute and its previous value are counted as dropped.
+    assertThat(spanData.getAttributes().getDroppedAttributesCount()).isEqualTo(2);
+  }
+
   @Test
   public void droppingAndAddingAttributes() {
     final int maxNumberOfAttributes = 8;
@@ -591,4 +665,284 @@ public class RecordEventsSpanImplTest {
             testClock);
     assertThat(span.getKind()).isEqualTo(Kind.SERVER);
   }
+
+  @Test
+  public void recycleBuffers() {
+    RecordEventsSpanImpl.BufferPool bufferPool = RecordEventsSpanImpl.BufferPool.create(4);
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock,
+            bufferPool);
+    span.putAttributes(attributes);
+    span.addAnnotation(ANNOTATION_DESCRIPTION);
+    span.addLink(Link.fromSpanContext(spanContext, Link.Type.CHILD_LINKED_SPAN));
+    span.end();
+    SpanData spanData = span.toSpanData();
+    span.recycleBuffers(spanData);
+    // Calls after the buffers are recycled must not use them.
+    span.putAttribute("MySingleStringAttributeKey", "MySingleStringAttributeValue");
+    span.addAnnotation(ANNOTATION_DESCRIPTION);
+    assertThat(span.toSpanData()).isSameInstanceAs(spanData);
+
+    RecordEventsSpanImpl newSpan =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock,
+            bufferPool);
+    newSpan.putAttribute(
+        "MySingleStringAttributeKey",
+        AttributeValue.stringAttributeValue("MySingleStringAttributeValue"));
+    newSpan.addAnnotation(ANNOTATION_DESCRIPTION);
+    newSpan.end();
+    SpanData newSpanData = newSpan.toSpanData();
+    assertThat(newSpanData.getAttributes().getAttributeMap())
+        .containsExactly(
+            "MySingleStringAttributeKey",
+            AttributeValue.stringAttributeValue("MySingleStringAttributeValue"));
+    assertThat(newSpanData.getAttributes().getDroppedAttributesCount()).isEqualTo(0);
+    assertThat(newSpanData.getAnnotations().getEvents().size()).isEqualTo(1);
+    assertThat(newSpanData.getAnnotations().getDroppedEventsCount()).isEqualTo(0);
+    assertThat(newSpanData.getLinks().getLinks()).isEmpty();
+    // The data of the first span is not affected by the reuse of its buffers.
+    assertThat(spanData.getAttributes().getAttributeMap()).isEqualTo(attributes);
+    assertThat(spanData.getLinks().getLinks().size()).isEqualTo(1);
+  }
+
+  @Test
+  public void recycleBuffers_RunningSpan() {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock,
+            RecordEventsSpanImpl.BufferPool.create(4));
+    span.putAttributes(attributes);
+    span.recycleBuffers(span.toSpanData());
+    span.putAttribute(
+        "MySingleStringAttributeKey",
+        AttributeValue.stringAttributeValue("MySingleStringAttributeValue"));
+    span.end();
+    assertThat(span.toSpanData().getAttributes().getAttributeMap())
+        .isEqualTo(expectedAttributes);
+  }
+
+  @Test
+  public void toReadableSpan() {
+    TraceParams traceParams =
+        TraceParams.DEFAULT
+            .toBuilder()
+            .setMaxNumberOfAttributes(3)
+            .setMaxNumberOfAnnotations(1)
+            .build();
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            Kind.CLIENT,
+            parentSpanId,
+            false,
+            traceParams,
+            startEndHandler,
+            timestampConverter,
+            testClock);
+    span.putAttribute("MySingleLongAttributeKey", 42L);
+    span.putAttributes(attributes);
+    testClock.advanceTime(Duration.create(0, 100));
+    span.addAnnotation(ANNOTATION_DESCRIPTION);
+    testClock.advanceTime(Duration.create(0, 100));
+    span.addAnnotation(ANNOTATION_DESCRIPTION, attributes);
+    span.addMessageEvent(MessageEvent.builder(MessageEvent.Type.SENT, 1).build());
+    span.addLink(Link.fromSpanContext(spanContext, Link.Type.PARENT_LINKED_SPAN));
+    testClock.advanceTime(Duration.create(0, 100));
+    span.end(EndSpanOptions.builder().setStatus(Status.CANCELLED).build());
+    ReadableSpan readableSpan = span.toReadableSpan();
+    SpanData spanData = span.toSpanData();
+    assertThat(readableSpan.getContext()).isEqualTo(spanContext);
+    assertThat(readableSpan.getParentSpanId()).isEqualTo(parentSpanId);
+    assertThat(readableSpan.getHasRemoteParent()).isFalse();
+    assertThat(readableSpan.getName()).isEqualTo(SPAN_NAME);
+    assertThat(readableSpan.getKind()).isEqualTo(Kind.CLIENT);
+    assertThat(readableSpan.getStartTimestamp()).isEqualTo(timestamp);
+    assertThat(readableSpan.getEndTimestamp()).isEqualTo(timestamp.addNanos(300));
+    assertThat(readableSpan.getStatus()).isEqualTo(Status.CANCELLED);
+    assertThat(readableSpan.getChildSpanCount()).isEqualTo(0);
+    assertThat(readAttributes(readableSpan)).isEqualTo(attributes);
+    assertThat(readableSpan.getDroppedAttributesCount()).isEqualTo(1);
+    assertThat(readAnnotations(readableSpan))
+        .isEqualTo(spanData.getAnnotations().getEvents());
+    assertThat(readableSpan.getDroppedAnnotationsCount()).isEqualTo(1);
+    assertThat(readMessageEvents(readableSpan))
+        .isEqualTo(spanData.getMessageEvents().getEvents());
+    assertThat(readableSpan.getDroppedMessageEventsCount()).isEqualTo(0);
+    final List<Link> links = new ArrayList<Link>();
+    readableSpan.forEachLink(
+        new ReadableSpan.LinkVisitor() {
+          @Override
+          public void visitLink(Link link) {
+            links.add(link);
+          }
+        });
+    assertThat(links).isEqualTo(spanData.getLinks().getLinks());
+    assertThat(readableSpan.getDroppedLinksCount()).isEqualTo(0);
+    assertThat(readableSpan.toSpanData()).isEqualTo(spanData);
+    // The SpanData is created once.
+    assertThat(readableSpan.toSpanData()).isSameInstanceAs(readableSpan.toSpanData());
+  }
+
+  @Test
+  public void toReadableSpan_RecycledBuffers() {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock,
+            RecordEventsSpanImpl.BufferPool.create(4));
+    span.putAttributes(attributes);
+    span.end();
+    ReadableSpan readableSpan = span.toReadableSpan();
+    // The events are copied before the buffers are recycled.
+    assertThat(span.toSpanData()).isSameInstanceAs(readableSpan.toSpanData());
+    assertThat(readAttributes(readableSpan)).isEqualTo(attributes);
+  }
+
+  @Test
+  public void toReadableSpan_RunningSpan() {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock);
+    exception.expect(IllegalStateException.class);
+    span.toReadableSpan();
+  }
+
+  @Test
+  public void concurrentRecording() throws InterruptedException {
+    final int numThreads = 4;
+    final int numEventsPerThread = 1000;
+    final RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            spanContext,
+            SPAN_NAME,
+            null,
+            parentSpanId,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            timestampConverter,
+            testClock);
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int threadId = t;
+      threads[t] =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    startLatch.await();
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                  }
+                  for (int i = 0; i < numEventsPerThread; i++) {
+                    span.putAttribute(
+                        "MyAttributeKey" + threadId + "_" + (i % 4),
+                        AttributeValue.longAttributeValue(i));
+                    span.addAnnotation(ANNOTATION_DESCRIPTION);
+                    span.addLink(Link.fromSpanContext(spanContext, Link.Type.CHILD_LINKED_SPAN));
+                    // Snapshots must not block or break the writers.
+                    span.toSpanData();
+                  }
+                }
+              });
+      threads[t].start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    span.end();
+    SpanData spanData = span.toSpanData();
+    int totalEvents = numThreads * numEventsPerThread;
+    assertThat(spanData.getAttributes().getAttributeMap().size()).isEqualTo(numThreads * 4);
+    assertThat(spanData.getAttributes().getDroppedAttributesCount())
+        .isEqualTo(totalEvents - numThreads * 4);
+    // The most recent events are retained, even if their writers raced with older writers.
+    int maxNumberOfAnnotations = TraceParams.DEFAULT.getMaxNumberOfAnnotations();
+    assertThat(spanData.getAnnotations().getEvents().size()).isEqualTo(maxNumberOfAnnotations);
+    assertThat(spanData.getAnnotations().getDroppedEventsCount())
+        .isEqualTo(totalEvents - maxNumberOfAnnotations);
+    int maxNumberOfLinks = TraceParams.DEFAULT.getMaxNumberOfLinks();
+    assertThat(spanData.getLinks().getLinks().size()).isEqualTo(maxNumberOfLinks);
+    assertThat(spanData.getLinks().getDroppedLinksCount())
+        .isEqualTo(totalEvents - maxNumberOfLinks);
+  }
+
+  private static Map<String, AttributeValue> readAttributes(ReadableSpan readableSpan) {
+    final Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+    readableSpan.forEachAttribute(
+        new ReadableSpan.AttributeVisitor() {
+          @Override
+          public void visitAttribute(String key, AttributeValue value) {
+            assertThat(attributes.put(key, value)).isNull();
+          }
+        });
+    return attributes;
+  }
+
+  private static List<TimedEvent<Annotation>> readAnnotations(ReadableSpan readableSpan) {
+    TimedEventCollector<Annotation> collector = new TimedEventCollector<Annotation>();
+    readableSpan.forEachAnnotation(collector);
+    return collector.events;
+  }
+
+  private static List<TimedEvent<MessageEvent>> readMessageEvents(ReadableSpan readableSpan) {
+    TimedEventCollector<MessageEvent> collector = new TimedEventCollector<MessageEvent>();
+    readableSpan.forEachMessageEvent(collector);
+    return collector.events;
+  }
+
+  private static final class TimedEventCollector<T> implements ReadableSpan.TimedEventVisitor<T> {
+    private final List<TimedEvent<T>> events = new ArrayList<TimedEvent<T>>();
+
+    @Override
+    public void visitEvent(Timestamp timestamp, T event) {
+      events.add(TimedEvent.create(timestamp, event));
+    }
+  }
 }
@@ -17,11 +17,14 @@
 package io.opencensus.implcore.trace;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
 import io.opencensus.implcore.trace.RecordEventsSpanImpl.StartEndHandler;
+import io.opencensus.implcore.trace.config.TraceConfigImpl;
 import io.opencensus.implcore.trace.internal.RandomHandler;
 import io.opencensus.testing.common.TestClock;
+import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.Span;
 import io.opencensus.trace.Span.Kind;
 import io.opencensus.trace.Span.Options;
@@ -60,6 +63,7 @@ public class SpanBuilderImplTest {
     spanBuilderOptions =
         new SpanBuilderImpl.Options(randomHandler, startEndHandler, testClock, traceConfig);
     when(traceConfig.getActiveTraceParams()).thenReturn(alwaysSampleTraceParams);
+    when(traceConfig.getActiveTraceParams(anyString())).thenReturn(alwaysSampleTraceParams);
   }
 
   @Test
@@ -360,6 +364,7 @@ public class SpanBuilderImplTest {
   @Test
   public void startRemoteChildSpan_WithProbabilitySamplerDefaultSampler() {
     when(traceConfig.getActiveTraceParams()).thenReturn(TraceParams.DEFAULT);
+    when(traceConfig.getActiveTraceParams(anyString())).thenReturn(TraceParams.DEFAULT);
     // This traceId will not be sampled by the ProbabilitySampler because the first 8 bytes as long
     // is not less than probability * Long.MAX_VALUE;
     TraceId traceId =
@@ -416,6 +421,55 @@ public class SpanBuilderImplTest {
     childSpan.end();
   }
 
+  @Test
+  public void startSpan_UsesSpanNameTraceParams() {
+    TraceConfigImpl traceConfigImpl = new TraceConfigImpl();
+    traceConfigImpl.updateActiveTraceParams(alwaysSampleTraceParams);
+    traceConfigImpl.updateSpanNameTraceParams(
+        Collections.singletonMap(
+            "HealthCheck/",
+            TraceParams.DEFAULT
+                .toBuilder()
+                .setSampler(Samplers.neverSample())
+                .setMaxNumberOfAttributes(1)
+                .build()));
+    SpanBuilderImpl.Options options =
+        new SpanBuilderImpl.Options(randomHandler, startEndHandler, testClock, traceConfigImpl);
+    assertThat(SpanBuilderImpl.createWithParent("HealthCheck/Check", null, options).startSpan())
+        .isInstanceOf(NoRecordEventsSpanImpl.class);
+    Span span = SpanBuilderImpl.createWithParent(SPAN_NAME, null, options).startSpan();
+    assertThat(span.getContext().getTraceOptions().isSampled()).isTrue();
+    // The limits of the span name prefix apply to the recorded spans.
+    RecordEventsSpanImpl healthCheckSpan =
+        (RecordEventsSpanImpl)
+            SpanBuilderImpl.createWithParent("HealthCheck/Check", null, options)
+                .setRecordEvents(true)
+                .startSpan();
+    healthCheckSpan.putAttribute("key1", AttributeValue.stringAttributeValue("value1"));
+    healthCheckSpan.putAttribute("key2", AttributeValue.stringAttributeValue("value2"));
+    assertThat(healthCheckSpan.toSpanData().getAttributes().getDroppedAttributesCount())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void startSpan_RecordEventsFromTraceParams() {
+    when(traceConfig.getActiveTraceParams(anyString()))
+        .thenReturn(
+            TraceParams.DEFAULT
+                .toBuilder()
+                .setSampler(Samplers.neverSample())
+                .setRecordEvents(true)
+                .build());
+    assertThat(SpanBuilderImpl.createWithParent(SPAN_NAME, null, spanBuilderOptions).startSpan())
+        .isInstanceOf(RecordEventsSpanImpl.class);
+    // The span builder setting takes precedence.
+    assertThat(
+            SpanBuilderImpl.createWithParent(SPAN_NAME, null, spanBuilderOptions)
+                .setRecordEvents(false)
+                .startSpan())
+        .isInstanceOf(NoRecordEventsSpanImpl.class);
+  }
+
   private static final class FakeRandomHandler extends RandomHandler {
     private final Random random;
 
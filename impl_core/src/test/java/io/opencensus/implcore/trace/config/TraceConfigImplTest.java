@@ -20,6 +20,9 @@ import static com.google.common.truth.Truth.assertThat;
 
 import io.opencensus.trace.config.TraceParams;
 import io.opencensus.trace.samplers.Samplers;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -50,4 +53,48 @@ public class TraceConfigImplTest {
     traceConfig.updateActiveTraceParams(TraceParams.DEFAULT);
     assertThat(traceConfig.getActiveTraceParams()).isEqualTo(TraceParams.DEFAULT);
   }
+
+  @Test
+  public void defaultSpanNameTraceParams() {
+    assertThat(traceConfig.getSpanNameTraceParams()).isEmpty();
+    assertThat(traceConfig.getActiveTraceParams("MySpanName")).isEqualTo(TraceParams.DEFAULT);
+  }
+
+  @Test
+  public void updateSpanNameTraceParams_LongestPrefixWins() {
+    TraceParams healthTraceParams =
+        TraceParams.DEFAULT.toBuilder().setSampler(Samplers.neverSample()).build();
+    TraceParams checkTraceParams =
+        TraceParams.DEFAULT.toBuilder().setSampler(Samplers.alwaysSample()).build();
+    Map<String, TraceParams> traceParamsBySpanNamePrefix = new HashMap<String, TraceParams>();
+    traceParamsBySpanNamePrefix.put("Health", healthTraceParams);
+    traceParamsBySpanNamePrefix.put("Health/Check", checkTraceParams);
+    traceConfig.updateSpanNameTraceParams(traceParamsBySpanNamePrefix);
+    assertThat(traceConfig.getSpanNameTraceParams()).isEqualTo(traceParamsBySpanNamePrefix);
+    assertThat(traceConfig.getActiveTraceParams("Health/Watch")).isEqualTo(healthTraceParams);
+    assertThat(traceConfig.getActiveTraceParams("Health/Check")).isEqualTo(checkTraceParams);
+    assertThat(traceConfig.getActiveTraceParams("Health/Check")).isEqualTo(checkTraceParams);
+    assertThat(traceConfig.getActiveTraceParams("MySpanName")).isEqualTo(TraceParams.DEFAULT);
+    traceConfig.updateSpanNameTraceParams(Collections.<String, TraceParams>emptyMap());
+    assertThat(traceConfig.getActiveTraceParams("Health/Check")).isEqualTo(TraceParams.DEFAULT);
+  }
+
+  @Test
+  public void updateActiveTraceParams_KeepsSpanNameTraceParams() {
+    TraceParams healthTraceParams =
+        TraceParams.DEFAULT.toBuilder().setSampler(Samplers.neverSample()).build();
+    TraceParams traceParams =
+        TraceParams.DEFAULT.toBuilder().setSampler(Samplers.alwaysSample()).build();
+    traceConfig.updateSpanNameTraceParams(Collections.singletonMap("Health", healthTraceParams));
+    assertThat(traceConfig.getActiveTraceParams("MySpanName")).isEqualTo(TraceParams.DEFAULT);
+    traceConfig.updateActiveTraceParams(traceParams);
+    assertThat(traceConfig.getActiveTraceParams("MySpanName")).isEqualTo(traceParams);
+    assertThat(traceConfig.getActiveTraceParams("Health/Check")).isEqualTo(healthTraceParams);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void updateSpanNameTraceParams_NullTraceParams() {
+    traceConfig.updateSpanNameTraceParams(
+        Collections.<String, TraceParams>singletonMap("MySpanName", null));
+  }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Duration;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.implcore.internal.SimpleEventQueue;
+import io.opencensus.implcore.trace.RecordEventsSpanImpl;
+import io.opencensus.implcore.trace.RecordEventsSpanImpl.StartEndHandler;
+import io.opencensus.implcore.trace.StartEndHandlerImpl;
+import io.opencensus.testing.common.TestClock;
+import io.opencensus.trace.Span;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.config.TraceParams;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AdaptiveSampler}. */
+@RunWith(JUnit4.class)
+public class AdaptiveSamplerTest {
+  private static final int BUFFER_SIZE = 4;
+  private static final int MAX_REFERENCED_SPANS = BUFFER_SIZE * 4;
+  private static final Duration ADJUSTMENT_INTERVAL = Duration.create(1, 0);
+  private final Random random = new Random(1234);
+  private final TestClock testClock = TestClock.create(Timestamp.create(1000, 0));
+  private final SpanExporterImpl spanExporter =
+      SpanExporterImpl.create(BUFFER_SIZE, Duration.create(1, 0));
+  private final StartEndHandler startEndHandler =
+      new StartEndHandlerImpl(
+          spanExporter,
+          new InProcessRunningSpanStore(),
+          SampledSpanStoreImpl.getNoopSampledSpanStoreImpl(),
+          new SimpleEventQueue());
+  private AdaptiveSampler adaptiveSampler;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    // Stops the exporter thread, so the ended spans stay referenced until the exporter is flushed.
+    Thread serviceExporterThread = spanExporter.getServiceExporterThread();
+    serviceExporterThread.interrupt();
+    serviceExporterThread.join();
+    adaptiveSampler =
+        AdaptiveSampler.create(
+            spanExporter, /* minProbability= */ 0.1, /* maxProbability= */ 1.0, testClock);
+  }
+
+  @After
+  public void tearDown() {
+    spanExporter.shutdown();
+  }
+
+  private void endSampledSpans(int count) {
+    for (int i = 0; i < count; i++) {
+      RecordEventsSpanImpl.startSpan(
+              SpanContext.create(
+                  TraceId.generateRandomId(random),
+                  SpanId.generateRandomId(random),
+                  TraceOptions.builder().setIsSampled(true).build(),
+                  Tracestate.builder().build()),
+              "MySpanName",
+              null,
+              null,
+              false,
+              TraceParams.DEFAULT,
+              startEndHandler,
+              null,
+              MillisClock.getInstance())
+          .end();
+    }
+  }
+
+  // Makes a sampling decision for a root span after the adjustment interval.
+  private void sampleAfterAdjustmentInterval() {
+    testClock.advanceTime(ADJUSTMENT_INTERVAL);
+    adaptiveSampler.shouldSample(
+        null,
+        null,
+        TraceId.generateRandomId(random),
+        SpanId.generateRandomId(random),
+        "MySpanName",
+        Collections.<Span>emptyList());
+  }
+
+  @Test
+  public void startsAtMaxProbability() {
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(1.0);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void probabilityNotAdjustedBeforeInterval() {
+    endSampledSpans(MAX_REFERENCED_SPANS);
+    testClock.advanceTime(Duration.create(0, 500 * 1000 * 1000));
+    adaptiveSampler.shouldSample(
+        null,
+        null,
+        TraceId.generateRandomId(random),
+        SpanId.generateRandomId(random),
+        "MySpanName",
+        Collections.<Span>emptyList());
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void probabilityDecreasesWhenQueueSaturates() {
+    endSampledSpans(MAX_REFERENCED_SPANS - 2);
+    assertThat(spanExporter.getQueueUtilization()).isGreaterThan(0.75);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.5);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.25);
+  }
+
+  @Test
+  public void probabilityDecreasesWhenSpansAreDropped() {
+    endSampledSpans(MAX_REFERENCED_SPANS + 1);
+    assertThat(spanExporter.getTotalDroppedSpans()).isEqualTo(1);
+    spanExporter.flush();
+    assertThat(spanExporter.getQueueUtilization()).isEqualTo(0.0);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.5);
+    // No new drops, the probability recovers.
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isWithin(1e-9).of(0.6);
+  }
+
+  @Test
+  public void probabilityBoundedByMinAndMax() {
+    endSampledSpans(MAX_REFERENCED_SPANS);
+    for (int i = 0; i < 10; i++) {
+      sampleAfterAdjustmentInterval();
+    }
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.1);
+    spanExporter.flush();
+    for (int i = 0; i < 20; i++) {
+      sampleAfterAdjustmentInterval();
+    }
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void probabilityKeptWhileQueuePartiallyFull() {
+    endSampledSpans(MAX_REFERENCED_SPANS + 1);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.5);
+    spanExporter.flush();
+    endSampledSpans(MAX_REFERENCED_SPANS / 2);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.5);
+  }
+
+  @Test
+  public void keepsDecisionOfLocalParent() {
+    endSampledSpans(MAX_REFERENCED_SPANS + 1);
+    for (int i = 0; i < 10; i++) {
+      sampleAfterAdjustmentInterval();
+    }
+    SpanContext sampledParent =
+        SpanContext.create(
+            TraceId.generateRandomId(random),
+            SpanId.generateRandomId(random),
+            TraceOptions.builder().setIsSampled(true).build(),
+            Tracestate.builder().build());
+    SpanContext notSampledParent =
+        SpanContext.create(
+            TraceId.generateRandomId(random),
+            SpanId.generateRandomId(random),
+            TraceOptions.DEFAULT,
+            Tracestate.builder().build());
+    assertThat(
+            adaptiveSampler.shouldSample(
+                sampledParent,
+                false,
+                sampledParent.getTraceId(),
+                SpanId.generateRandomId(random),
+                "MySpanName",
+                Collections.<Span>emptyList()))
+        .isTrue();
+    assertThat(
+            adaptiveSampler.shouldSample(
+                notSampledParent,
+                false,
+                TraceId.fromLowerBase16("00000000000000000000000000000000"),
+                SpanId.generateRandomId(random),
+                "MySpanName",
+                Collections.<Span>emptyList()))
+        .isFalse();
+  }
+
+  @Test
+  public void decisionBasedOnTraceId() {
+    endSampledSpans(MAX_REFERENCED_SPANS);
+    sampleAfterAdjustmentInterval();
+    assertThat(adaptiveSampler.getProbability()).isEqualTo(0.5);
+    // The first 8 bytes of the trace id are compared with 0.5 * Long.MAX_VALUE.
+    assertThat(
+            adaptiveSampler.shouldSample(
+                null,
+                null,
+                TraceId.fromLowerBase16("00000000000000000000000000000001"),
+                SpanId.generateRandomId(random),
+                "MySpanName",
+                Collections.<Span>emptyList()))
+        .isTrue();
+    assertThat(
+            adaptiveSampler.shouldSample(
+                null,
+                null,
+                TraceId.fromLowerBase16("70000000000000000000000000000000"),
+                SpanId.generateRandomId(random),
+                "MySpanName",
+                Collections.<Span>emptyList()))
+        .isFalse();
+  }
+
+  @Test
+  public void getDescription() {
+    assertThat(adaptiveSampler.getDescription())
+        .isEqualTo(String.format("AdaptiveSampler{%.6f, min=%.6f, max=%.6f}", 1.0, 0.1, 1.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void minProbabilityGreaterThanMaxProbability() {
+    AdaptiveSampler.create(spanExporter, 0.5, 0.4);
+  }
+}
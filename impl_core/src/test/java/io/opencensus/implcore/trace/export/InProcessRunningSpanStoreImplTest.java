@@ -191,4 +191,23 @@ public class InProcessRunningSpanStoreImplTest {
     span4.end();
     assertThat(activeSpansExporter.getSummary().getPerSpanNameSummary().size()).isEqualTo(0);
   }
+
+  @Test
+  public void maxNumberOfSpans() {
+    activeSpansExporter.setMaxNumberOfSpans(2);
+    RecordEventsSpanImpl span1 = createSpan(SPAN_NAME_1);
+    RecordEventsSpanImpl span2 = createSpan(SPAN_NAME_1);
+    RecordEventsSpanImpl span3 = createSpan(SPAN_NAME_1);
+    assertThat(activeSpansExporter.getRunningSpans(Filter.create(SPAN_NAME_1, 0))).hasSize(2);
+    span1.end();
+    // The span that did not fit in the store is not added back.
+    assertThat(activeSpansExporter.getRunningSpans(Filter.create(SPAN_NAME_1, 0))).hasSize(1);
+    RecordEventsSpanImpl span4 = createSpan(SPAN_NAME_1);
+    assertThat(activeSpansExporter.getRunningSpans(Filter.create(SPAN_NAME_1, 0)))
+        .containsExactly(span2.toSpanData(), span4.toSpanData());
+    span2.end();
+    span3.end();
+    span4.end();
+    assertThat(activeSpansExporter.getSummary().getPerSpanNameSummary()).isEmpty();
+  }
 }
@@ -38,8 +38,10 @@ import io.opencensus.trace.export.SampledSpanStore.LatencyBucketBoundaries;
 import io.opencensus.trace.export.SampledSpanStore.LatencyFilter;
 import io.opencensus.trace.export.SampledSpanStore.PerSpanNameSummary;
 import io.opencensus.trace.export.SpanData;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -186,6 +188,33 @@ public class InProcessSampledSpanStoreImplTest {
         .containsExactly(REGISTERED_SPAN_NAME, NOT_REGISTERED_SPAN_NAME);
   }
 
+  @Test
+  public void numberOfSpanNamesIsBounded() {
+    for (int i = 0; i < 1100; i++) {
+      createSampledSpan("MySpanName/" + i)
+          .end(EndSpanOptions.builder().setSampleToLocalSpanStore(true).build());
+    }
+    assertThat(sampleStore.getRegisteredSpanNamesForCollection()).hasSize(1000);
+  }
+
+  @Test
+  public void keepsMostRecentSamples() {
+    List<SpanData> spans = new ArrayList<SpanData>();
+    for (int i = 0; i < 11; i++) {
+      RecordEventsSpanImpl span = createSampledSpan(REGISTERED_SPAN_NAME);
+      testClock.advanceTime(Duration.create(0, 1000));
+      span.end(EndSpanOptions.builder().setStatus(Status.CANCELLED).build());
+      spans.add(span.toSpanData());
+      // Advance time to allow other spans to be sampled.
+      testClock.advanceTime(Duration.create(2, 0));
+    }
+    Collection<SpanData> samples =
+        sampleStore.getErrorSampledSpans(
+            ErrorFilter.create(REGISTERED_SPAN_NAME, CanonicalCode.CANCELLED, 0));
+    // The error buckets keep 5 samples.
+    assertThat(samples).containsExactlyElementsIn(spans.subList(6, 11)).inOrder();
+  }
+
   @Test
   public void addSpansWithRegisteredNamesInAllErrorBuckets() {
     addSpanNameToAllErrorBuckets(REGISTERED_SPAN_NAME);
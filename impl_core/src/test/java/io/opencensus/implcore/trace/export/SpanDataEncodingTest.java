@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Timestamp;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.Span.Kind;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.Attributes;
+import io.opencensus.trace.export.SpanData.Links;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import io.opencensus.trace.export.SpanData.TimedEvents;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SpanDataEncoding}. */
+@RunWith(JUnit4.class)
+public class SpanDataEncodingTest {
+  private static final Timestamp startTimestamp = Timestamp.create(123, 456);
+  private static final Timestamp eventTimestamp = Timestamp.create(123, 457);
+  private static final Timestamp endTimestamp = Timestamp.create(123, 460);
+  private final Random random = new Random(1234);
+  private final SpanContext spanContext =
+      SpanContext.create(
+          TraceId.generateRandomId(random),
+          SpanId.generateRandomId(random),
+          TraceOptions.builder().setIsSampled(true).build(),
+          Tracestate.builder().set("foo", "bar").set("bar", "baz").build());
+  private final SpanDataEncoding encoding = new SpanDataEncoding();
+
+  @Test
+  public void encodeAndDecode() {
+    Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+    attributes.put("MyStringAttributeKey", AttributeValue.stringAttributeValue("MyValue\u00e9"));
+    attributes.put("MyBooleanAttributeKey", AttributeValue.booleanAttributeValue(true));
+    attributes.put("MyLongAttributeKey", AttributeValue.longAttributeValue(-123L));
+    attributes.put("MyDoubleAttributeKey", AttributeValue.doubleAttributeValue(1.5));
+    SpanData spanData =
+        SpanData.create(
+            spanContext,
+            SpanId.generateRandomId(random),
+            true,
+            "MySpanName",
+            Kind.SERVER,
+            startTimestamp,
+            Attributes.create(attributes, 1),
+            TimedEvents.create(
+                Collections.singletonList(
+                    TimedEvent.create(
+                        eventTimestamp,
+                        Annotation.fromDescriptionAndAttributes("MyAnnotation", attributes))),
+                2),
+            TimedEvents.create(
+                Collections.singletonList(
+                    TimedEvent.create(
+                        eventTimestamp,
+                        MessageEvent.builder(MessageEvent.Type.RECEIVED, 7)
+                            .setUncompressedMessageSize(100)
+                            .setCompressedMessageSize(50)
+                            .build())),
+                3),
+            Links.create(
+                Collections.singletonList(
+                    Link.fromSpanContext(spanContext, Link.Type.PARENT_LINKED_SPAN, attributes)),
+                4),
+            5,
+            Status.DEADLINE_EXCEEDED.withDescription("MyDescription"),
+            endTimestamp);
+    assertThat(SpanDataEncoding.decode(encoding.encode(spanData))).isEqualTo(spanData);
+  }
+
+  @Test
+  public void encodeAndDecode_NullFields() {
+    SpanData spanData =
+        SpanData.create(
+            spanContext,
+            null,
+            null,
+            "MySpanName",
+            null,
+            startTimestamp,
+            Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0),
+            TimedEvents.create(Collections.<TimedEvent<Annotation>>emptyList(), 0),
+            TimedEvents.create(Collections.<TimedEvent<MessageEvent>>emptyList(), 0),
+            Links.create(Collections.<Link>emptyList(), 0),
+            null,
+            null,
+            null);
+    assertThat(SpanDataEncoding.decode(encoding.encode(spanData))).isEqualTo(spanData);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_UnknownVersion() {
+    SpanDataEncoding.decode(ByteBuffer.wrap(new byte[] {42}));
+  }
+}
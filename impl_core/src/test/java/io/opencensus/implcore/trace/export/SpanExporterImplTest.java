@@ -18,29 +18,52 @@ package io.opencensus.implcore.trace.export;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 import io.opencensus.common.Duration;
 import io.opencensus.implcore.common.MillisClock;
+import io.opencensus.implcore.internal.EventQueue;
 import io.opencensus.implcore.internal.SimpleEventQueue;
+import io.opencensus.implcore.stats.StatsComponentImplBase;
+import io.opencensus.implcore.tags.TagsComponentImplBase;
 import io.opencensus.implcore.trace.RecordEventsSpanImpl;
 import io.opencensus.implcore.trace.RecordEventsSpanImpl.StartEndHandler;
+import io.opencensus.implcore.trace.SpanProcessor;
 import io.opencensus.implcore.trace.StartEndHandlerImpl;
+import io.opencensus.stats.AggregationData.CountData;
+import io.opencensus.stats.StatsComponent;
+import io.opencensus.tags.TagValue;
 import io.opencensus.testing.export.TestHandler;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.EndSpanOptions;
 import io.opencensus.trace.SpanContext;
 import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
 import io.opencensus.trace.TraceId;
 import io.opencensus.trace.TraceOptions;
 import io.opencensus.trace.Tracestate;
 import io.opencensus.trace.config.TraceParams;
+import io.opencensus.trace.export.ReadableSpan;
 import io.opencensus.trace.export.SpanData;
 import io.opencensus.trace.export.SpanExporter.Handler;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.concurrent.GuardedBy;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.ArgumentMatchers;
@@ -69,7 +92,9 @@ public class SpanExporterImplTest {
   private final SampledSpanStoreImpl sampledSpanStore =
       SampledSpanStoreImpl.getNoopSampledSpanStoreImpl();
   private final TestHandler serviceHandler = new TestHandler();
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
   @Mock private Handler mockServiceHandler;
+  @Mock private EventQueue mockEventQueue;
 
   @Before
   public void setUp() {
@@ -93,6 +118,28 @@ public class SpanExporterImplTest {
     return span;
   }
 
+  // Creates a local root span of a new trace, ended with the given status.
+  private RecordEventsSpanImpl createSampledEndedRootSpan(
+      StartEndHandler startEndHandler, String spanName, Status status) {
+    RecordEventsSpanImpl span =
+        RecordEventsSpanImpl.startSpan(
+            SpanContext.create(
+                TraceId.generateRandomId(random),
+                SpanId.generateRandomId(random),
+                TraceOptions.builder().setIsSampled(true).build(),
+                Tracestate.builder().build()),
+            spanName,
+            null,
+            null,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            null,
+            MillisClock.getInstance());
+    span.end(EndSpanOptions.builder().setStatus(status).build());
+    return span;
+  }
+
   private RecordEventsSpanImpl createNotSampledEndedSpan(
       StartEndHandler startEndHandler, String spanName) {
     RecordEventsSpanImpl span =
@@ -125,6 +172,33 @@ public class SpanExporterImplTest {
     assertThat(exported).containsExactly(span1.toSpanData(), span2.toSpanData());
   }
 
+  @Test
+  public void exportSampledSpansWithoutEventQueue() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(spanExporter, runningSpanStore, sampledSpanStore, mockEventQueue);
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    RecordEventsSpanImpl span1 = createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    RecordEventsSpanImpl span2 = createSampledEndedSpan(startEndHandler, SPAN_NAME_2);
+    List<SpanData> exported = serviceHandler.waitForExport(2);
+    assertThat(exported).containsExactly(span1.toSpanData(), span2.toSpanData());
+    // The stores are disabled, so the spans are handed to the exporter directly.
+    verifyZeroInteractions(mockEventQueue);
+  }
+
+  @Test
+  public void enqueueSampledSpansWhenRunningSpanStoreEnabled() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(spanExporter, runningSpanStore, sampledSpanStore, mockEventQueue);
+    runningSpanStore.setMaxNumberOfSpans(10);
+
+    createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    verify(mockEventQueue, times(2)).enqueue(ArgumentMatchers.any(EventQueue.Entry.class));
+  }
+
   @Test
   public void exportMoreSpansThanTheBufferSize() {
     SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
@@ -178,18 +252,72 @@ public class SpanExporterImplTest {
     }
   }
 
+  // Counts the exports that overlap with another export.
+  private static class ConcurrencyCheckingHandler extends Handler {
+    final AtomicInteger runningExports = new AtomicInteger();
+    final AtomicInteger concurrentExports = new AtomicInteger();
+
+    @Override
+    public void export(Collection<SpanData> spanDataList) {
+      if (runningExports.incrementAndGet() > 1) {
+        concurrentExports.incrementAndGet();
+      }
+      // Give the other threads a chance to export at the same time.
+      Thread.yield();
+      runningExports.decrementAndGet();
+    }
+  }
+
+  // Throws on the first exports, then hands the spans to the delegate.
+  private static class FailingHandler extends Handler {
+    final AtomicInteger failures = new AtomicInteger();
+    private final int numFailures;
+    private final Handler delegate;
+
+    private FailingHandler(int numFailures, Handler delegate) {
+      this.numFailures = numFailures;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void export(Collection<SpanData> spanDataList) {
+      if (failures.get() < numFailures) {
+        failures.incrementAndGet();
+        throw new IllegalStateException("Export failed.");
+      }
+      delegate.export(spanDataList);
+    }
+  }
+
+  // Records the size of the exported batches.
+  private static class BatchSizeRecordingHandler extends Handler {
+    final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+
+    @Override
+    public void export(Collection<SpanData> spanDataList) {
+      batchSizes.add(spanDataList.size());
+    }
+  }
+
+  // Stops the exporter thread, so the ended spans stay referenced until the exporter is flushed.
+  private static void stopServiceExporterThread(SpanExporterImpl spanExporter)
+      throws InterruptedException {
+    Thread serviceExporterThread = spanExporter.getServiceExporterThread();
+    serviceExporterThread.interrupt();
+    serviceExporterThread.join();
+  }
+
   @Test
-  public void exportMoreSpansThanTheMaximumLimit() {
+  public void exportMoreSpansThanTheMaximumLimit() throws InterruptedException {
     final int bufferSize = 4;
     final int maxReferencedSpans = bufferSize * 4;
     SpanExporterImpl spanExporter = SpanExporterImpl.create(bufferSize, Duration.create(1, 0));
     StartEndHandler startEndHandler =
         new StartEndHandlerImpl(
             spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
-    BlockingExporter blockingExporter = new BlockingExporter();
 
     spanExporter.registerHandler("test.service", serviceHandler);
-    spanExporter.registerHandler("test.blocking", blockingExporter);
+    stopServiceExporterThread(spanExporter);
 
     List<SpanData> spansToExport = new ArrayList<>(maxReferencedSpans);
     for (int i = 0; i < maxReferencedSpans; i++) {
@@ -206,19 +334,15 @@ public class SpanExporterImplTest {
 
     assertThat(spanExporter.getReferencedSpans()).isEqualTo(maxReferencedSpans);
 
-    // Release the blocking exporter
-    blockingExporter.unblock();
+    spanExporter.flush();
 
     List<SpanData> exported = serviceHandler.waitForExport(maxReferencedSpans);
     assertThat(exported).isNotNull();
     assertThat(exported).containsExactlyElementsIn(spansToExport);
     exported.clear();
     spansToExport.clear();
-
-    // We cannot compare with maxReferencedSpans here because the worker thread may get
-    // unscheduled immediately after exporting, but before updating the pushed spans, if that is
-    // the case at most bufferSize spans will miss.
-    assertThat(spanExporter.getPushedSpans()).isAtLeast((long) maxReferencedSpans - bufferSize);
+    assertThat(spanExporter.getReferencedSpans()).isEqualTo(0);
+    assertThat(spanExporter.getPushedSpans()).isEqualTo(maxReferencedSpans);
 
     for (int i = 0; i < 7; i++) {
       spansToExport.add(createSampledEndedSpan(startEndHandler, "span_3_" + i).toSpanData());
@@ -226,11 +350,372 @@ public class SpanExporterImplTest {
       assertThat(spanExporter.getDroppedSpans()).isEqualTo(7);
     }
 
+    spanExporter.flush();
     exported = serviceHandler.waitForExport(7);
     assertThat(exported).isNotNull();
     assertThat(exported).containsExactlyElementsIn(spansToExport);
   }
 
+  @Test
+  public void exportMoreSpansThanTheMaximumLimit_DropOldest() throws InterruptedException {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    SpanExporterImpl spanExporter =
+        SpanExporterImpl.create(
+            bufferSize,
+            Duration.create(1, 0),
+            SpanExporterImpl.OverflowPolicy.DROP_OLDEST,
+            Duration.create(0, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    stopServiceExporterThread(spanExporter);
+
+    List<SpanData> spansToExport = new ArrayList<>(maxReferencedSpans);
+    for (int i = 0; i < maxReferencedSpans; i++) {
+      SpanData spanData = createSampledEndedSpan(startEndHandler, "span_1_" + i).toSpanData();
+      if (i >= 7) {
+        spansToExport.add(spanData);
+      }
+    }
+    // The oldest queued spans make room for the new spans.
+    for (int i = 0; i < 7; i++) {
+      spansToExport.add(createSampledEndedSpan(startEndHandler, "span_2_" + i).toSpanData());
+      assertThat(spanExporter.getDroppedSpans()).isEqualTo(i + 1);
+      assertThat(spanExporter.getReferencedSpans()).isEqualTo(maxReferencedSpans);
+    }
+
+    // The flush drains the queue of the handler while its thread may drain it too, the batches
+    // must still be exported in order.
+    spanExporter.flush();
+    List<SpanData> exported = serviceHandler.waitForExport(maxReferencedSpans);
+    assertThat(exported).containsExactlyElementsIn(spansToExport).inOrder();
+  }
+
+  @Test
+  public void flushDoesNotExportConcurrentlyWithHandlerThread() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    ConcurrencyCheckingHandler concurrencyCheckingHandler = new ConcurrencyCheckingHandler();
+    spanExporter.registerHandler("test.service", concurrencyCheckingHandler);
+
+    for (int i = 0; i < 100; i++) {
+      createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+      if (i % 2 == 0) {
+        spanExporter.flush();
+      }
+    }
+    spanExporter.flush();
+    assertThat(concurrencyCheckingHandler.concurrentExports.get()).isEqualTo(0);
+  }
+
+  @Test(timeout = 10000L)
+  public void exportMoreSpansThanTheMaximumLimit_BlockTimesOut() throws InterruptedException {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    SpanExporterImpl spanExporter =
+        SpanExporterImpl.create(
+            bufferSize,
+            Duration.create(1, 0),
+            SpanExporterImpl.OverflowPolicy.BLOCK,
+            Duration.create(0, 10000000));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    stopServiceExporterThread(spanExporter);
+
+    for (int i = 0; i < maxReferencedSpans; i++) {
+      createSampledEndedSpan(startEndHandler, "span_1_" + i);
+    }
+    // The exporter does not make room before the timeout.
+    createSampledEndedSpan(startEndHandler, "span_2");
+    assertThat(spanExporter.getDroppedSpans()).isEqualTo(1);
+    assertThat(spanExporter.getReferencedSpans()).isEqualTo(maxReferencedSpans);
+  }
+
+  @Test(timeout = 10000L)
+  public void slowHandlerDoesNotDelayOtherHandlers() throws InterruptedException {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(bufferSize, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    BlockingExporter blockingExporter = new BlockingExporter();
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    spanExporter.registerHandler("test.blocking", blockingExporter);
+
+    for (int round = 0; round < 2; round++) {
+      List<SpanData> spansToExport = new ArrayList<>(maxReferencedSpans);
+      for (int i = 0; i < maxReferencedSpans; i++) {
+        spansToExport.add(
+            createSampledEndedSpan(startEndHandler, "span_" + round + "_" + i).toSpanData());
+      }
+      List<SpanData> exported = serviceHandler.waitForExport(maxReferencedSpans);
+      assertThat(exported).containsExactlyElementsIn(spansToExport);
+    }
+
+    // Wait until the exporter thread handed all the batches to the handlers.
+    stopServiceExporterThread(spanExporter);
+    // The blocked handler holds at most one batch and maxReferencedSpans queued spans, the rest is
+    // dropped for this handler only.
+    assertThat(spanExporter.getDroppedSpans()).isEqualTo(0);
+    assertThat(spanExporter.getHandlerDroppedSpans("test.service")).isEqualTo(0);
+    assertThat(spanExporter.getHandlerDroppedSpans("test.blocking"))
+        .isAtLeast((long) maxReferencedSpans - bufferSize);
+    assertThat(spanExporter.getHandlerPushedSpans("test.blocking")).isEqualTo(0);
+    blockingExporter.unblock();
+  }
+
+  @Test(timeout = 10000L)
+  public void slowHandlerDoesNotBlockOtherHandlers_Block() throws InterruptedException {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    // The block timeout is longer than the test timeout, the exporter thread must not wait for the
+    // blocked handler.
+    SpanExporterImpl spanExporter =
+        SpanExporterImpl.create(
+            bufferSize,
+            Duration.create(1, 0),
+            SpanExporterImpl.OverflowPolicy.BLOCK,
+            Duration.create(60, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    BlockingExporter blockingExporter = new BlockingExporter();
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    spanExporter.registerHandler("test.blocking", blockingExporter);
+
+    for (int round = 0; round < 2; round++) {
+      List<SpanData> spansToExport = new ArrayList<>(maxReferencedSpans);
+      for (int i = 0; i < maxReferencedSpans; i++) {
+        spansToExport.add(
+            createSampledEndedSpan(startEndHandler, "span_" + round + "_" + i).toSpanData());
+      }
+      List<SpanData> exported = serviceHandler.waitForExport(maxReferencedSpans);
+      assertThat(exported).containsExactlyElementsIn(spansToExport);
+    }
+
+    stopServiceExporterThread(spanExporter);
+    // The queue of the blocked handler drops the newest spans.
+    assertThat(spanExporter.getDroppedSpans()).isEqualTo(0);
+    assertThat(spanExporter.getHandlerDroppedSpans("test.service")).isEqualTo(0);
+    assertThat(spanExporter.getHandlerDroppedSpans("test.blocking"))
+        .isAtLeast((long) maxReferencedSpans - bufferSize);
+    blockingExporter.unblock();
+  }
+
+  @Test(timeout = 10000L)
+  public void slowHandlerSpillsAndReplays() throws Exception {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(bufferSize, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    BlockingExporter blockingExporter = new BlockingExporter();
+
+    spanExporter.enableSpill(temporaryFolder.getRoot(), 8L * 1024 * 1024, 1000);
+    spanExporter.registerHandler("test.service", serviceHandler);
+    spanExporter.registerHandler("test.blocking", blockingExporter);
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < maxReferencedSpans; i++) {
+        createSampledEndedSpan(startEndHandler, "span_" + round + "_" + i);
+      }
+      serviceHandler.waitForExport(maxReferencedSpans);
+    }
+
+    // Wait until the exporter thread handed all the batches to the handlers.
+    stopServiceExporterThread(spanExporter);
+    // The spans that do not fit in the queue of the blocked handler are spilled, not dropped.
+    assertThat(spanExporter.getHandlerDroppedSpans("test.blocking")).isEqualTo(0);
+    long spilledSpans = spanExporter.getHandlerSpilledSpans("test.blocking");
+    assertThat(spilledSpans).isAtLeast((long) maxReferencedSpans - bufferSize);
+    assertThat(spanExporter.getHandlerSpilledSpans("test.service")).isEqualTo(0);
+    assertThat(temporaryFolder.getRoot().list())
+        .asList()
+        .contains(SpanExporterImpl.toSpillDirectoryName("test.blocking"));
+
+    blockingExporter.unblock();
+    while (spanExporter.getHandlerReplayedSpans("test.blocking") < spilledSpans) {
+      Thread.sleep(10);
+    }
+    assertThat(spanExporter.getHandlerPushedSpans("test.blocking"))
+        .isEqualTo(2L * maxReferencedSpans);
+  }
+
+  @Test(timeout = 10000L)
+  public void spilledSpansAreReplayedAgainAfterFailure() throws Exception {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    // Spans spilled before a restart.
+    SpanSpillQueue spillQueue =
+        SpanSpillQueue.open(
+            new File(
+                temporaryFolder.getRoot(), SpanExporterImpl.toSpillDirectoryName("test.failing")),
+            SpanExporterImpl.SPILL_SEGMENT_SIZE,
+            8L * 1024 * 1024);
+    List<SpanData> spilledSpans = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      SpanData spanData = createSampledEndedSpan(startEndHandler, "span_" + i).toSpanData();
+      assertThat(spillQueue.offer(spanData)).isTrue();
+      spilledSpans.add(spanData);
+    }
+    spillQueue.close();
+    FailingHandler failingHandler = new FailingHandler(2, serviceHandler);
+
+    spanExporter.enableSpill(temporaryFolder.getRoot(), 8L * 1024 * 1024, 1000);
+    spanExporter.registerHandler("test.failing", failingHandler);
+
+    // The spans of the failed exports are not lost.
+    assertThat(serviceHandler.waitForExport(spilledSpans.size()))
+        .containsExactlyElementsIn(spilledSpans)
+        .inOrder();
+    assertThat(failingHandler.failures.get()).isEqualTo(2);
+    while (spanExporter.getHandlerReplayedSpans("test.failing") < spilledSpans.size()) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void toSpillDirectoryName() {
+    assertThat(SpanExporterImpl.toSpillDirectoryName("test.service"))
+        .isEqualTo("test_service-" + Integer.toHexString("test.service".hashCode()));
+    assertThat(SpanExporterImpl.toSpillDirectoryName("a/b"))
+        .isNotEqualTo(SpanExporterImpl.toSpillDirectoryName("a_b"));
+  }
+
+  @Test(timeout = 10000L)
+  public void exportMoreSpansThanTheMaximumLimit_BlockWaitsForRoom()
+      throws InterruptedException {
+    final int bufferSize = 4;
+    final int numSpans = bufferSize * 4 * 10;
+    SpanExporterImpl spanExporter =
+        SpanExporterImpl.create(
+            bufferSize,
+            Duration.create(1, 0),
+            SpanExporterImpl.OverflowPolicy.BLOCK,
+            Duration.create(5, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    for (int i = 0; i < numSpans; i++) {
+      createSampledEndedSpan(startEndHandler, "span_1_" + i);
+    }
+    // The threads that end spans wait for room, the queue of the handler drops the newest spans
+    // instead of stalling the exporter thread.
+    assertThat(spanExporter.getDroppedSpans()).isEqualTo(0);
+    // Wait until the exporter thread handed its last batch to the handler.
+    stopServiceExporterThread(spanExporter);
+    spanExporter.flush();
+    assertThat(
+            spanExporter.getHandlerPushedSpans("test.service")
+                + spanExporter.getHandlerDroppedSpans("test.service"))
+        .isEqualTo(numSpans);
+  }
+
+  @Test
+  public void exportTailSampledSpans() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    spanExporter.setTailSampler(
+        TailSampler.create(
+            Collections.singletonList(TailSampler.errorStatus()),
+            /* maxTraces= */ 16,
+            /* maxSpansPerTrace= */ 16,
+            Duration.create(60, 0)));
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    RecordEventsSpanImpl span1 =
+        createSampledEndedRootSpan(startEndHandler, SPAN_NAME_1, Status.OK);
+    RecordEventsSpanImpl span2 =
+        createSampledEndedRootSpan(startEndHandler, SPAN_NAME_2, Status.UNKNOWN);
+    List<SpanData> exported = serviceHandler.waitForExport(1);
+    assertThat(exported).doesNotContain(span1.toSpanData());
+    assertThat(exported).containsExactly(span2.toSpanData());
+  }
+
+  @Test
+  public void exportTailSampledSpans_InBatchesOfBufferSize() {
+    final int bufferSize = 4;
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(bufferSize, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    spanExporter.setTailSampler(
+        TailSampler.create(
+            Collections.singletonList(TailSampler.errorStatus()),
+            /* maxTraces= */ 16,
+            /* maxSpansPerTrace= */ 16,
+            Duration.create(60, 0)));
+    BatchSizeRecordingHandler batchSizeRecordingHandler = new BatchSizeRecordingHandler();
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    spanExporter.registerHandler("test.batches", batchSizeRecordingHandler);
+
+    // The child spans are buffered until the local root span ends, then the whole trace is
+    // released at once.
+    final int numChildSpans = 3 * bufferSize;
+    RecordEventsSpanImpl root =
+        RecordEventsSpanImpl.startSpan(
+            SpanContext.create(
+                TraceId.generateRandomId(random),
+                SpanId.generateRandomId(random),
+                TraceOptions.builder().setIsSampled(true).build(),
+                Tracestate.builder().build()),
+            SPAN_NAME_1,
+            null,
+            null,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            null,
+            MillisClock.getInstance());
+    for (int i = 0; i < numChildSpans; i++) {
+      RecordEventsSpanImpl child =
+          RecordEventsSpanImpl.startSpan(
+              SpanContext.create(
+                  root.getContext().getTraceId(),
+                  SpanId.generateRandomId(random),
+                  TraceOptions.builder().setIsSampled(true).build(),
+                  Tracestate.builder().build()),
+              SPAN_NAME_2,
+              null,
+              root.getContext().getSpanId(),
+              false,
+              TraceParams.DEFAULT,
+              startEndHandler,
+              null,
+              MillisClock.getInstance());
+      child.end();
+    }
+    root.end(EndSpanOptions.builder().setStatus(Status.UNKNOWN).build());
+
+    assertThat(serviceHandler.waitForExport(numChildSpans + 1)).hasSize(numChildSpans + 1);
+    spanExporter.flush();
+    assertThat(batchSizeRecordingHandler.batchSizes).isNotEmpty();
+    for (int batchSize : batchSizeRecordingHandler.batchSizes) {
+      assertThat(batchSize).isAtMost(bufferSize);
+    }
+  }
+
   @Test
   public void interruptWorkerThreadStops() throws InterruptedException {
     SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
@@ -285,6 +770,41 @@ public class SpanExporterImplTest {
     assertThat(exported2).containsExactly(span1.toSpanData(), span2.toSpanData());
   }
 
+  @Test
+  public void exportReadableSpans() throws InterruptedException {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    final List<ReadableSpan> readableSpans =
+        Collections.synchronizedList(new ArrayList<ReadableSpan>());
+    final CountDownLatch exported = new CountDownLatch(2);
+    spanExporter.registerHandler(
+        "readable.service",
+        new Handler() {
+          @Override
+          public void export(Collection<SpanData> spanDataList) {
+            throw new AssertionError("The SpanData must not be created.");
+          }
+
+          @Override
+          public void exportSpans(Collection<ReadableSpan> spans) {
+            for (ReadableSpan span : spans) {
+              readableSpans.add(span);
+              exported.countDown();
+            }
+          }
+        });
+    RecordEventsSpanImpl span1 = createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    RecordEventsSpanImpl span2 = createSampledEndedSpan(startEndHandler, SPAN_NAME_2);
+    spanExporter.flush();
+    assertThat(exported.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(readableSpans.get(0).getName()).isEqualTo(SPAN_NAME_1);
+    assertThat(readableSpans.get(0).toSpanData()).isEqualTo(span1.toSpanData());
+    assertThat(readableSpans.get(1).getName()).isEqualTo(SPAN_NAME_2);
+    assertThat(readableSpans.get(1).toSpanData()).isEqualTo(span2.toSpanData());
+  }
+
   @Test
   public void exportNotSampledSpans() {
     SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
@@ -326,4 +846,164 @@ public class SpanExporterImplTest {
 
     assertThat(exported).containsExactly(span2.toSpanData());
   }
+
+  @Test(timeout = 10000L)
+  public void spanMetricsIncludeNotSampledSpans() {
+    StatsComponent statsComponent =
+        new StatsComponentImplBase(new SimpleEventQueue(), MillisClock.getInstance());
+    SpanMetrics.registerViews(statsComponent.getViewManager());
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    spanExporter.setSpanMetrics(
+        SpanMetrics.create(
+            statsComponent.getStatsRecorder(), new TagsComponentImplBase().getTagger()));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    createNotSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    RecordEventsSpanImpl span2 = createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    // The span that is not sampled is not exported.
+    assertThat(serviceHandler.waitForExport(1)).containsExactly(span2.toSpanData());
+    // Records the latencies added by the worker thread, if it did not yet.
+    spanExporter.flush();
+    assertThat(
+            statsComponent
+                .getViewManager()
+                .getView(SpanMetrics.SPAN_COUNT_VIEW.getName())
+                .getAggregationMap())
+        .containsExactly(
+            Arrays.asList(TagValue.create(SPAN_NAME_1), TagValue.create("OK")),
+            CountData.create(2));
+    assertThat(spanExporter.getReferencedSpans()).isEqualTo(0);
+  }
+
+  @Test
+  public void notSampledSpansDoNotTakeTheRoomOfSampledSpans() throws InterruptedException {
+    final int bufferSize = 4;
+    final int maxReferencedSpans = bufferSize * 4;
+    StatsComponent statsComponent =
+        new StatsComponentImplBase(new SimpleEventQueue(), MillisClock.getInstance());
+    SpanMetrics.registerViews(statsComponent.getViewManager());
+    SpanExporterImpl spanExporter =
+        SpanExporterImpl.create(
+            bufferSize,
+            Duration.create(1, 0),
+            SpanExporterImpl.OverflowPolicy.DROP_OLDEST,
+            Duration.create(0, 0));
+    spanExporter.setSpanMetrics(
+        SpanMetrics.create(
+            statsComponent.getStatsRecorder(), new TagsComponentImplBase().getTagger()));
+    StartEndHandler startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+    stopServiceExporterThread(spanExporter);
+
+    List<SpanData> spansToExport = new ArrayList<>(maxReferencedSpans);
+    for (int i = 0; i < maxReferencedSpans; i++) {
+      spansToExport.add(createSampledEndedSpan(startEndHandler, SPAN_NAME_1).toSpanData());
+    }
+    // The spans that are not sampled have their own queue, which drops the newest spans.
+    for (int i = 0; i < maxReferencedSpans + 3; i++) {
+      createNotSampledEndedSpan(startEndHandler, SPAN_NAME_2);
+    }
+    assertThat(spanExporter.getDroppedMetricsOnlySpans()).isEqualTo(3);
+    assertThat(spanExporter.getDroppedSpans()).isEqualTo(0);
+    assertThat(spanExporter.getTotalDroppedSpans()).isEqualTo(0);
+    assertThat(spanExporter.getReferencedSpans()).isEqualTo(maxReferencedSpans);
+
+    spanExporter.flush();
+    assertThat(serviceHandler.waitForExport(maxReferencedSpans))
+        .containsExactlyElementsIn(spansToExport)
+        .inOrder();
+    assertThat(spanExporter.getReferencedSpans()).isEqualTo(0);
+    assertThat(
+            statsComponent
+                .getViewManager()
+                .getView(SpanMetrics.SPAN_COUNT_VIEW.getName())
+                .getAggregationMap())
+        .containsExactly(
+            Arrays.asList(TagValue.create(SPAN_NAME_1), TagValue.create("OK")),
+            CountData.create(maxReferencedSpans),
+            Arrays.asList(TagValue.create(SPAN_NAME_2), TagValue.create("OK")),
+            CountData.create(maxReferencedSpans));
+  }
+
+  @Test
+  public void spanProcessorsDropAndTrimSpans() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandlerImpl startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    startEndHandler.addSpanProcessor(
+        new SpanProcessor() {
+          @Override
+          public void onStart(RecordEventsSpanImpl span) {
+            span.putAttribute("started", AttributeValue.booleanAttributeValue(true));
+          }
+
+          @Override
+          public boolean onEnd(RecordEventsSpanImpl span) {
+            span.removeAttribute("password");
+            return !span.getName().equals(SPAN_NAME_1);
+          }
+        });
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    RecordEventsSpanImpl span2 =
+        RecordEventsSpanImpl.startSpan(
+            sampledSpanContext,
+            SPAN_NAME_2,
+            null,
+            null,
+            false,
+            TraceParams.DEFAULT,
+            startEndHandler,
+            null,
+            MillisClock.getInstance());
+    span2.putAttribute("password", AttributeValue.stringAttributeValue("secret"));
+    span2.end();
+    // The first span is dropped by the processor, and the password is removed from the second.
+    List<SpanData> exported = serviceHandler.waitForExport(1);
+    assertThat(exported).hasSize(1);
+    assertThat(exported.get(0).getName()).isEqualTo(SPAN_NAME_2);
+    assertThat(exported.get(0).getAttributes().getAttributeMap())
+        .containsExactly("started", AttributeValue.booleanAttributeValue(true));
+    assertThat(exported.get(0).getAttributes().getDroppedAttributesCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void spanProcessorThrowsException() {
+    SpanExporterImpl spanExporter = SpanExporterImpl.create(4, Duration.create(1, 0));
+    StartEndHandlerImpl startEndHandler =
+        new StartEndHandlerImpl(
+            spanExporter, runningSpanStore, sampledSpanStore, new SimpleEventQueue());
+    SpanProcessor throwingProcessor =
+        new SpanProcessor() {
+          @Override
+          public void onStart(RecordEventsSpanImpl span) {
+            throw new IllegalStateException("No start for you.");
+          }
+
+          @Override
+          public boolean onEnd(RecordEventsSpanImpl span) {
+            throw new IllegalStateException("No end for you.");
+          }
+        };
+    startEndHandler.addSpanProcessor(throwingProcessor);
+
+    spanExporter.registerHandler("test.service", serviceHandler);
+
+    // The span is not dropped by the processor that throws.
+    RecordEventsSpanImpl span1 = createSampledEndedSpan(startEndHandler, SPAN_NAME_1);
+    assertThat(serviceHandler.waitForExport(1)).containsExactly(span1.toSpanData());
+    startEndHandler.removeSpanProcessor(throwingProcessor);
+    RecordEventsSpanImpl span2 = createSampledEndedSpan(startEndHandler, SPAN_NAME_2);
+    assertThat(serviceHandler.waitForExport(1)).containsExactly(span2.toSpanData());
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import io.opencensus.common.Duration;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.internal.SimpleEventQueue;
+import io.opencensus.implcore.stats.StatsComponentImplBase;
+import io.opencensus.implcore.tags.TagsComponentImplBase;
+import io.opencensus.stats.AggregationData;
+import io.opencensus.stats.AggregationData.CountData;
+import io.opencensus.stats.AggregationData.DistributionData;
+import io.opencensus.stats.StatsComponent;
+import io.opencensus.stats.ViewManager;
+import io.opencensus.tags.TagValue;
+import io.opencensus.testing.common.TestClock;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.export.ReadableSpan;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.Attributes;
+import io.opencensus.trace.export.SpanData.Links;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import io.opencensus.trace.export.SpanData.TimedEvents;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SpanMetrics}. */
+@RunWith(JUnit4.class)
+public class SpanMetricsTest {
+  private static final String SPAN_NAME_1 = "MySpanName/1";
+  private static final String SPAN_NAME_2 = "MySpanName/2";
+  private static final Timestamp START_TIMESTAMP = Timestamp.create(1000, 0);
+  private static final TagValue OK = TagValue.create("OK");
+  private static final TagValue NOT_FOUND = TagValue.create("NOT_FOUND");
+  private final Random random = new Random(1234);
+  private final StatsComponent statsComponent =
+      new StatsComponentImplBase(new SimpleEventQueue(), TestClock.create());
+  private final ViewManager viewManager = statsComponent.getViewManager();
+  private final SpanMetrics spanMetrics =
+      SpanMetrics.create(
+          statsComponent.getStatsRecorder(), new TagsComponentImplBase().getTagger());
+
+  @Before
+  public void setUp() {
+    SpanMetrics.registerViews(viewManager);
+  }
+
+  private ReadableSpan createSpan(String name, Duration latency, @Nullable Status status) {
+    return ReadableSpan.fromSpanData(
+        SpanData.create(
+            SpanContext.create(
+                TraceId.generateRandomId(random),
+                SpanId.generateRandomId(random),
+                TraceOptions.DEFAULT,
+                Tracestate.builder().build()),
+            null,
+            null,
+            name,
+            null,
+            START_TIMESTAMP,
+            Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0),
+            TimedEvents.create(Collections.<TimedEvent<Annotation>>emptyList(), 0),
+            TimedEvents.create(Collections.<TimedEvent<MessageEvent>>emptyList(), 0),
+            Links.create(Collections.<Link>emptyList(), 0),
+            null,
+            status,
+            START_TIMESTAMP.addDuration(latency)));
+  }
+
+  private Map<List<TagValue>, AggregationData> getCounts() {
+    return viewManager.getView(SpanMetrics.SPAN_COUNT_VIEW.getName()).getAggregationMap();
+  }
+
+  @Test
+  public void recordLatencyByNameAndStatus() {
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.fromMillis(10), Status.OK));
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.fromMillis(30), null));
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.create(0, 500000), Status.NOT_FOUND));
+    spanMetrics.add(createSpan(SPAN_NAME_2, Duration.fromMillis(20), Status.OK));
+    // Nothing is recorded before the end of the batch.
+    assertThat(getCounts()).isEmpty();
+    spanMetrics.record();
+
+    assertThat(getCounts())
+        .containsExactly(
+            Arrays.asList(TagValue.create(SPAN_NAME_1), OK),
+            CountData.create(2),
+            Arrays.asList(TagValue.create(SPAN_NAME_1), NOT_FOUND),
+            CountData.create(1),
+            Arrays.asList(TagValue.create(SPAN_NAME_2), OK),
+            CountData.create(1));
+    Map<List<TagValue>, AggregationData> latencies =
+        viewManager.getView(SpanMetrics.SPAN_LATENCY_VIEW.getName()).getAggregationMap();
+    DistributionData okLatency =
+        (DistributionData) latencies.get(Arrays.asList(TagValue.create(SPAN_NAME_1), OK));
+    assertThat(okLatency.getCount()).isEqualTo(2);
+    assertThat(okLatency.getMean()).isWithin(1e-6).of(20);
+    DistributionData notFoundLatency =
+        (DistributionData) latencies.get(Arrays.asList(TagValue.create(SPAN_NAME_1), NOT_FOUND));
+    assertThat(notFoundLatency.getMean()).isWithin(1e-6).of(0.5);
+  }
+
+  @Test
+  public void recordOnlyPendingLatencies() {
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.fromMillis(10), Status.OK));
+    spanMetrics.record();
+    spanMetrics.record();
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.fromMillis(10), Status.OK));
+    spanMetrics.record();
+    assertThat(getCounts())
+        .containsExactly(Arrays.asList(TagValue.create(SPAN_NAME_1), OK), CountData.create(2));
+  }
+
+  @Test
+  public void ignoreSpanNameThatIsNotValidTagValue() {
+    spanMetrics.add(
+        createSpan(Strings.repeat("a", TagValue.MAX_LENGTH + 1), Duration.fromMillis(10), null));
+    spanMetrics.add(createSpan(SPAN_NAME_1, Duration.fromMillis(10), null));
+    spanMetrics.record();
+    assertThat(getCounts())
+        .containsExactly(Arrays.asList(TagValue.create(SPAN_NAME_1), OK), CountData.create(1));
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Timestamp;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.Attributes;
+import io.opencensus.trace.export.SpanData.Links;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import io.opencensus.trace.export.SpanData.TimedEvents;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SpanSpillQueue}. */
+@RunWith(JUnit4.class)
+public class SpanSpillQueueTest {
+  private static final int SEGMENT_SIZE = 4096;
+  private static final long MAX_BYTES = 3 * SEGMENT_SIZE;
+  private final Random random = new Random(1234);
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private File directory;
+  private SpanSpillQueue spillQueue;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = temporaryFolder.getRoot();
+    spillQueue = SpanSpillQueue.open(directory, SEGMENT_SIZE, MAX_BYTES);
+  }
+
+  @After
+  public void tearDown() {
+    spillQueue.close();
+  }
+
+  private SpanData createSpanData(String name) {
+    return SpanData.create(
+        SpanContext.create(
+            TraceId.generateRandomId(random),
+            SpanId.generateRandomId(random),
+            TraceOptions.DEFAULT),
+        null,
+        null,
+        name,
+        null,
+        Timestamp.create(123, 456),
+        Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0),
+        TimedEvents.create(Collections.<TimedEvent<Annotation>>emptyList(), 0),
+        TimedEvents.create(Collections.<TimedEvent<MessageEvent>>emptyList(), 0),
+        Links.create(Collections.<Link>emptyList(), 0),
+        null,
+        null,
+        Timestamp.create(123, 460));
+  }
+
+  private List<SpanData> offerSpans(int count) {
+    List<SpanData> spans = new ArrayList<SpanData>();
+    for (int i = 0; i < count; i++) {
+      SpanData spanData = createSpanData("MySpanName/" + i);
+      assertThat(spillQueue.offer(spanData)).isTrue();
+      spans.add(spanData);
+    }
+    return spans;
+  }
+
+  // Simulates a crash: the spans read since the last commit are read again.
+  private void reopen() throws IOException {
+    spillQueue.close();
+    spillQueue = SpanSpillQueue.open(directory, SEGMENT_SIZE, MAX_BYTES);
+  }
+
+  @Test
+  public void offerAndRead() {
+    assertThat(spillQueue.isEmpty()).isTrue();
+    List<SpanData> spans = offerSpans(10);
+    assertThat(spillQueue.isEmpty()).isFalse();
+    assertThat(spillQueue.read(4)).containsExactlyElementsIn(spans.subList(0, 4)).inOrder();
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(spans.subList(4, 10)).inOrder();
+    assertThat(spillQueue.isEmpty()).isTrue();
+    assertThat(spillQueue.read(100)).isEmpty();
+    spillQueue.commit();
+    assertThat(spillQueue.getSpilledSpans()).isEqualTo(10);
+    assertThat(spillQueue.getReplayedSpans()).isEqualTo(10);
+    assertThat(spillQueue.getDiscardedSpans()).isEqualTo(0);
+  }
+
+  @Test
+  public void rotateSegmentsAndDiscardWhenFull() {
+    List<SpanData> spans = new ArrayList<SpanData>();
+    SpanData spanData = createSpanData("MySpanName");
+    while (spillQueue.offer(spanData)) {
+      spans.add(spanData);
+    }
+    // Three segments and the offsets file.
+    assertThat(directory.list()).hasLength(4);
+    assertThat(spillQueue.getDiscardedSpans()).isEqualTo(1);
+    assertThat(spillQueue.read(Integer.MAX_VALUE)).containsExactlyElementsIn(spans);
+    spillQueue.commit();
+    // Only the last segment is kept.
+    assertThat(directory.list()).hasLength(2);
+    assertThat(spillQueue.offer(spanData)).isTrue();
+  }
+
+  @Test
+  public void reopen_ResumesFromCommittedPosition() throws IOException {
+    List<SpanData> spans = offerSpans(10);
+    assertThat(spillQueue.read(3)).containsExactlyElementsIn(spans.subList(0, 3)).inOrder();
+    spillQueue.commit();
+    assertThat(spillQueue.read(3)).containsExactlyElementsIn(spans.subList(3, 6)).inOrder();
+    reopen();
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(spans.subList(3, 10)).inOrder();
+  }
+
+  @Test
+  public void rollback_ReadsAgainFromCommittedPosition() {
+    List<SpanData> spans = offerSpans(10);
+    assertThat(spillQueue.read(3)).containsExactlyElementsIn(spans.subList(0, 3)).inOrder();
+    spillQueue.commit();
+    assertThat(spillQueue.read(3)).containsExactlyElementsIn(spans.subList(3, 6)).inOrder();
+    spillQueue.rollback();
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(spans.subList(3, 10)).inOrder();
+    spillQueue.commit();
+    assertThat(spillQueue.getReplayedSpans()).isEqualTo(10);
+  }
+
+  @Test
+  public void rollback_AcrossSegments() {
+    List<SpanData> spans = new ArrayList<SpanData>();
+    SpanData spanData = createSpanData("MySpanName");
+    while (spillQueue.offer(spanData)) {
+      spans.add(spanData);
+    }
+    assertThat(spillQueue.read(Integer.MAX_VALUE)).hasSize(spans.size());
+    assertThat(spillQueue.isEmpty()).isTrue();
+    spillQueue.rollback();
+    assertThat(spillQueue.isEmpty()).isFalse();
+    assertThat(spillQueue.read(Integer.MAX_VALUE)).containsExactlyElementsIn(spans);
+    spillQueue.commit();
+    assertThat(spillQueue.getReplayedSpans()).isEqualTo(spans.size());
+  }
+
+  @Test
+  public void reopen_IgnoresCorruptedRecord() throws IOException {
+    List<SpanData> spans = offerSpans(3);
+    spillQueue.close();
+    // The records have the same size: the length, the CRC32 and the encoded span.
+    int recordSize = 8 + new SpanDataEncoding().encode(spans.get(0)).remaining();
+    // Flips a byte in the payload of the last record.
+    RandomAccessFile segment =
+        new RandomAccessFile(new File(directory, "segment-0000000000000000000"), "rw");
+    try {
+      segment.seek(2 * recordSize + 16);
+      int value = segment.read();
+      segment.seek(2 * recordSize + 16);
+      segment.write(value ^ 0xff);
+    } finally {
+      segment.close();
+    }
+    spillQueue = SpanSpillQueue.open(directory, SEGMENT_SIZE, MAX_BYTES);
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(spans.subList(0, 2)).inOrder();
+    // New spans replace the corrupted record.
+    List<SpanData> newSpans = offerSpans(2);
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(newSpans).inOrder();
+  }
+
+  @Test
+  public void reopen_CorruptedOffsetsReadsAllSegments() throws IOException {
+    List<SpanData> spans = offerSpans(5);
+    spillQueue.read(3);
+    spillQueue.commit();
+    spillQueue.close();
+    RandomAccessFile offsets = new RandomAccessFile(new File(directory, "offsets"), "rw");
+    try {
+      offsets.seek(12);
+      offsets.writeInt(42);
+    } finally {
+      offsets.close();
+    }
+    spillQueue = SpanSpillQueue.open(directory, SEGMENT_SIZE, MAX_BYTES);
+    assertThat(spillQueue.read(100)).containsExactlyElementsIn(spans).inOrder();
+  }
+
+  @Test(expected = IOException.class)
+  public void open_DirectoryInUse() throws IOException {
+    SpanSpillQueue.open(directory, SEGMENT_SIZE, MAX_BYTES);
+  }
+
+  @Test
+  public void offer_Closed() {
+    spillQueue.close();
+    assertThat(spillQueue.offer(createSpanData("MySpanName"))).isFalse();
+    assertThat(spillQueue.getDiscardedSpans()).isEqualTo(1);
+  }
+}
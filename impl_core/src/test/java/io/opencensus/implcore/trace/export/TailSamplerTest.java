@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.common.Duration;
+import io.opencensus.common.Timestamp;
+import io.opencensus.implcore.trace.export.TailSampler.Policy;
+import io.opencensus.testing.common.TestClock;
+import io.opencensus.trace.Annotation;
+import io.opencensus.trace.AttributeValue;
+import io.opencensus.trace.Link;
+import io.opencensus.trace.MessageEvent;
+import io.opencensus.trace.SpanContext;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.Status;
+import io.opencensus.trace.TraceId;
+import io.opencensus.trace.TraceOptions;
+import io.opencensus.trace.Tracestate;
+import io.opencensus.trace.export.SpanData;
+import io.opencensus.trace.export.SpanData.Attributes;
+import io.opencensus.trace.export.SpanData.Links;
+import io.opencensus.trace.export.SpanData.TimedEvent;
+import io.opencensus.trace.export.SpanData.TimedEvents;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TailSampler}. */
+@RunWith(JUnit4.class)
+public class TailSamplerTest {
+  private static final Timestamp START_TIMESTAMP = Timestamp.create(1000, 0);
+  private static final Duration DECISION_WAIT = Duration.create(10, 0);
+  private final Random random = new Random(1234);
+  private final TestClock testClock = TestClock.create(START_TIMESTAMP);
+  private final TailSampler tailSampler =
+      TailSampler.create(
+          Arrays.asList(
+              TailSampler.errorStatus(), TailSampler.latencyThreshold(Duration.create(1, 0))),
+          /* maxTraces= */ 2,
+          /* maxSpansPerTrace= */ 3,
+          DECISION_WAIT,
+          testClock);
+
+  private SpanData createSpanData(
+      TraceId traceId, @Nullable SpanId parentSpanId, Duration latency, Status status) {
+    return SpanData.create(
+        SpanContext.create(
+            traceId,
+            SpanId.generateRandomId(random),
+            TraceOptions.builder().setIsSampled(true).build(),
+            Tracestate.builder().build()),
+        parentSpanId,
+        /* hasRemoteParent= */ null,
+        "MySpanName",
+        null,
+        START_TIMESTAMP,
+        Attributes.create(Collections.<String, AttributeValue>emptyMap(), 0),
+        TimedEvents.create(Collections.<TimedEvent<Annotation>>emptyList(), 0),
+        TimedEvents.create(Collections.<TimedEvent<MessageEvent>>emptyList(), 0),
+        Links.create(Collections.<Link>emptyList(), 0),
+        null,
+        status,
+        START_TIMESTAMP.addDuration(latency));
+  }
+
+  private SpanData createRootSpanData(TraceId traceId, Duration latency, Status status) {
+    return createSpanData(traceId, null, latency, status);
+  }
+
+  private SpanData createChildSpanData(TraceId traceId, Duration latency, Status status) {
+    return createSpanData(traceId, SpanId.generateRandomId(random), latency, status);
+  }
+
+  @Test
+  public void traceDecidedWhenLocalRootEnds() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    SpanData child = createChildSpanData(traceId, Duration.create(0, 1000), Status.UNKNOWN);
+    SpanData root = createRootSpanData(traceId, Duration.create(0, 2000), Status.OK);
+    assertThat(tailSampler.add(Collections.singletonList(child))).isEmpty();
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(1);
+    assertThat(tailSampler.add(Collections.singletonList(root))).containsExactly(child, root);
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(0);
+    assertThat(tailSampler.getSampledTraces()).isEqualTo(1);
+  }
+
+  @Test
+  public void slowTraceIsSampled() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    SpanData root = createRootSpanData(traceId, Duration.create(2, 0), Status.OK);
+    assertThat(tailSampler.add(Collections.singletonList(root))).containsExactly(root);
+  }
+
+  @Test
+  public void fastSuccessfulTraceIsDropped() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    SpanData child = createChildSpanData(traceId, Duration.create(0, 1000), Status.OK);
+    SpanData root = createRootSpanData(traceId, Duration.create(0, 2000), Status.OK);
+    assertThat(tailSampler.add(Arrays.asList(child, root))).isEmpty();
+    assertThat(tailSampler.getDroppedTraces()).isEqualTo(1);
+    // Late spans follow the decision of their trace.
+    SpanData lateChild = createChildSpanData(traceId, Duration.create(5, 0), Status.UNKNOWN);
+    assertThat(tailSampler.add(Collections.singletonList(lateChild))).isEmpty();
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(0);
+  }
+
+  @Test
+  public void traceDecidedAfterDecisionWait() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    SpanData child = createChildSpanData(traceId, Duration.create(0, 1000), Status.UNKNOWN);
+    assertThat(tailSampler.add(Collections.singletonList(child))).isEmpty();
+    testClock.advanceTime(Duration.create(5, 0));
+    assertThat(tailSampler.expire()).isEmpty();
+    testClock.advanceTime(Duration.create(5, 0));
+    assertThat(tailSampler.expire()).containsExactly(child);
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(0);
+    assertThat(tailSampler.getEvictedTraces()).isEqualTo(0);
+  }
+
+  @Test
+  public void oldestTraceEvictedWhenMaxTracesReached() {
+    SpanData child1 =
+        createChildSpanData(
+            TraceId.generateRandomId(random), Duration.create(0, 1000), Status.UNKNOWN);
+    SpanData child2 =
+        createChildSpanData(TraceId.generateRandomId(random), Duration.create(0, 1000), Status.OK);
+    SpanData child3 =
+        createChildSpanData(TraceId.generateRandomId(random), Duration.create(0, 1000), Status.OK);
+    assertThat(tailSampler.add(Arrays.asList(child1, child2))).isEmpty();
+    assertThat(tailSampler.add(Collections.singletonList(child3))).containsExactly(child1);
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(2);
+    assertThat(tailSampler.getEvictedTraces()).isEqualTo(1);
+  }
+
+  @Test
+  public void traceEvictedWhenMaxSpansPerTraceReached() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    List<SpanData> spans =
+        Arrays.asList(
+            createChildSpanData(traceId, Duration.create(0, 1000), Status.OK),
+            createChildSpanData(traceId, Duration.create(0, 1000), Status.OK),
+            createChildSpanData(traceId, Duration.create(0, 1000), Status.OK));
+    assertThat(tailSampler.add(spans)).isEmpty();
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(0);
+    assertThat(tailSampler.getEvictedTraces()).isEqualTo(1);
+    assertThat(tailSampler.getDroppedTraces()).isEqualTo(1);
+  }
+
+  @Test
+  public void decideAll() {
+    TraceId traceId = TraceId.generateRandomId(random);
+    SpanData child = createChildSpanData(traceId, Duration.create(0, 1000), Status.UNKNOWN);
+    tailSampler.add(Collections.singletonList(child));
+    assertThat(tailSampler.decideAll()).containsExactly(child);
+    assertThat(tailSampler.getPendingTraces()).isEqualTo(0);
+  }
+
+  @Test
+  public void rateLimitingPolicy() {
+    Policy policy = TailSampler.rateLimiting(2, testClock);
+    List<SpanData> spans = Collections.emptyList();
+    assertThat(policy.shouldSample(spans)).isTrue();
+    assertThat(policy.shouldSample(spans)).isTrue();
+    assertThat(policy.shouldSample(spans)).isFalse();
+    testClock.advanceTime(Duration.create(1, 0));
+    assertThat(policy.shouldSample(spans)).isTrue();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ConcurrentRingBuffer}. */
+@RunWith(JUnit4.class)
+public class ConcurrentRingBufferTest {
+  private final ConcurrentRingBuffer<Integer> ringBuffer = new ConcurrentRingBuffer<Integer>(3);
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void capacityIsRoundedUpToPowerOfTwo() {
+    assertThat(ringBuffer.capacity()).isEqualTo(4);
+    assertThat(new ConcurrentRingBuffer<Integer>(4).capacity()).isEqualTo(4);
+  }
+
+  @Test
+  public void emptyRingBuffer() {
+    assertThat(ringBuffer.isEmpty()).isTrue();
+    assertThat(ringBuffer.size()).isEqualTo(0);
+    assertThat(ringBuffer.poll()).isNull();
+  }
+
+  @Test
+  public void offerAndPoll_FifoOrder() {
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(ringBuffer.offer(i)).isTrue();
+      }
+      assertThat(ringBuffer.offer(4)).isFalse();
+      assertThat(ringBuffer.size()).isEqualTo(4);
+      for (int i = 0; i < 4; i++) {
+        assertThat(ringBuffer.poll()).isEqualTo(i);
+      }
+      assertThat(ringBuffer.poll()).isNull();
+    }
+  }
+
+  @Test
+  public void drainTo() {
+    ringBuffer.offer(1);
+    ringBuffer.offer(2);
+    List<Integer> drained = new ArrayList<Integer>();
+    assertThat(ringBuffer.drainTo(drained)).isEqualTo(2);
+    assertThat(drained).containsExactly(1, 2).inOrder();
+    assertThat(ringBuffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void concurrentProducers() throws InterruptedException {
+    final int numThreads = 4;
+    final int numElementsPerThread = 10000;
+    final ConcurrentRingBuffer<Integer> ringBuffer =
+        new ConcurrentRingBuffer<Integer>(numThreads * numElementsPerThread);
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < numThreads; t++) {
+      final int threadIndex = t;
+      Thread thread =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    startLatch.await();
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                  }
+                  for (int i = 0; i < numElementsPerThread; i++) {
+                    ringBuffer.offer(threadIndex * numElementsPerThread + i);
+                  }
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    List<Integer> drained = new ArrayList<Integer>();
+    ringBuffer.drainTo(drained);
+    assertThat(drained).hasSize(numThreads * numElementsPerThread);
+    // Elements from the same producer keep their order.
+    int[] last = new int[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      last[i] = -1;
+    }
+    for (int element : drained) {
+      int threadIndex = element / numElementsPerThread;
+      assertThat(element).isGreaterThan(last[threadIndex]);
+      last[threadIndex] = element;
+    }
+  }
+
+  @Test
+  public void createWithInvalidCapacity() {
+    thrown.expect(IllegalArgumentException.class);
+    new ConcurrentRingBuffer<Integer>(0);
+  }
+}
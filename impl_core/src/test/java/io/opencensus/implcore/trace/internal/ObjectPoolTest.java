@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ObjectPool}. */
+@RunWith(JUnit4.class)
+public class ObjectPoolTest {
+  private static final int CAPACITY = 4;
+  private final ObjectPool<Object> objectPool = new ObjectPool<Object>(CAPACITY);
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void emptyPool() {
+    assertThat(objectPool.acquire()).isNull();
+  }
+
+  @Test
+  public void releaseAndAcquire() {
+    Object object = new Object();
+    assertThat(objectPool.release(object)).isTrue();
+    assertThat(objectPool.acquire()).isSameInstanceAs(object);
+    assertThat(objectPool.acquire()).isNull();
+  }
+
+  @Test
+  public void releaseWhenFull() {
+    List<Object> objects = new ArrayList<Object>();
+    for (int i = 0; i < CAPACITY; i++) {
+      Object object = new Object();
+      objects.add(object);
+      assertThat(objectPool.release(object)).isTrue();
+    }
+    assertThat(objectPool.release(new Object())).isFalse();
+    List<Object> acquired = new ArrayList<Object>();
+    for (int i = 0; i < CAPACITY; i++) {
+      acquired.add(objectPool.acquire());
+    }
+    assertThat(acquired).containsExactlyElementsIn(objects);
+    assertThat(objectPool.acquire()).isNull();
+  }
+
+  @Test
+  public void createWithInvalidCapacity() {
+    thrown.expect(IllegalArgumentException.class);
+    new ObjectPool<Object>(0);
+  }
+
+  @Test
+  public void releaseNull() {
+    thrown.expect(NullPointerException.class);
+    objectPool.release(null);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020, OpenCensus Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opencensus.implcore.trace.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.opencensus.implcore.trace.internal.RandomHandler.SplitMixRandomHandler;
+import io.opencensus.trace.SpanId;
+import io.opencensus.trace.TraceId;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RandomHandler}. */
+@RunWith(JUnit4.class)
+public class RandomHandlerTest {
+  private static final int NUM_IDS = 10000;
+  private final RandomHandler randomHandler = new SplitMixRandomHandler();
+
+  @Test
+  public void splitMix_SameRandomOnSameThread() {
+    assertThat(randomHandler.current()).isSameInstanceAs(randomHandler.current());
+  }
+
+  @Test
+  public void splitMix_DifferentRandomOnDifferentThreads() throws InterruptedException {
+    final AtomicReference<Random> otherThreadRandom = new AtomicReference<Random>();
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                otherThreadRandom.set(randomHandler.current());
+              }
+            });
+    thread.start();
+    thread.join();
+    assertThat(otherThreadRandom.get()).isNotNull();
+    assertThat(otherThreadRandom.get()).isNotSameInstanceAs(randomHandler.current());
+    assertThat(otherThreadRandom.get().nextLong()).isNotEqualTo(randomHandler.current().nextLong());
+  }
+
+  @Test
+  public void splitMix_GeneratesUniqueIds() {
+    Set<TraceId> traceIds = new HashSet<TraceId>();
+    Set<SpanId> spanIds = new HashSet<SpanId>();
+    for (int i = 0; i < NUM_IDS; i++) {
+      traceIds.add(TraceId.generateRandomId(randomHandler.current()));
+      spanIds.add(SpanId.generateRandomId(randomHandler.current()));
+    }
+    assertThat(traceIds).hasSize(NUM_IDS);
+    assertThat(spanIds).hasSize(NUM_IDS);
+  }
+
+  @Test
+  public void splitMix_LowerLongIsUniform() {
+    // The ProbabilitySampler uses the lower long of the trace id.
+    int sampled = 0;
+    for (int i = 0; i < NUM_IDS; i++) {
+      TraceId traceId = TraceId.generateRandomId(randomHandler.current());
+      if (Math.abs(traceId.getLowerLong()) < Long.MAX_VALUE / 4) {
+        sampled++;
+      }
+    }
+    assertThat((double) sampled / NUM_IDS).isWithin(0.02).of(0.25);
+  }
+}
@@ -17,6 +17,7 @@
 package io.opencensus.implcore.trace.propagation;
 
 import static com.google.common.truth.Truth.assertThat;
+import static io.opencensus.implcore.trace.propagation.B3Format.B3;
 import static io.opencensus.implcore.trace.propagation.B3Format.X_B3_FLAGS;
 import static io.opencensus.implcore.trace.propagation.B3Format.X_B3_PARENT_SPAN_ID;
 import static io.opencensus.implcore.trace.propagation.B3Format.X_B3_SAMPLED;
@@ -67,6 +68,7 @@ public class B3FormatTest {
         }
       };
   private final B3Format b3Format = new B3Format();
+  private final B3Format b3SingleHeaderFormat = new B3Format(/* injectSingleHeader= */ true);
   @Rule public ExpectedException thrown = ExpectedException.none();
 
   @Test
@@ -216,6 +218,107 @@ public class B3FormatTest {
   public void fields_list() {
     assertThat(b3Format.fields())
         .containsExactly(
-            X_B3_TRACE_ID, X_B3_SPAN_ID, X_B3_PARENT_SPAN_ID, X_B3_SAMPLED, X_B3_FLAGS);
+            X_B3_TRACE_ID, X_B3_SPAN_ID, X_B3_PARENT_SPAN_ID, X_B3_SAMPLED, X_B3_FLAGS, B3);
+  }
+
+  @Test
+  public void serializeSingleHeader_SampledContext() {
+    Map<String, String> carrier = new HashMap<String, String>();
+    b3SingleHeaderFormat.inject(
+        SpanContext.create(TRACE_ID, SPAN_ID, TRACE_OPTIONS), carrier, setter);
+    assertThat(carrier).containsExactly(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-1");
+  }
+
+  @Test
+  public void serializeSingleHeader_NotSampledContext() {
+    Map<String, String> carrier = new HashMap<String, String>();
+    b3SingleHeaderFormat.inject(
+        SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.DEFAULT), carrier, setter);
+    assertThat(carrier).containsExactly(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16);
+  }
+
+  @Test
+  public void parseSingleHeader_Sampled() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-1");
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TRACE_OPTIONS));
+  }
+
+  @Test
+  public void parseSingleHeader_Debug() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-d");
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TRACE_OPTIONS));
+  }
+
+  @Test
+  public void parseSingleHeader_NotSampled() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-0");
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.DEFAULT));
+  }
+
+  @Test
+  public void parseSingleHeader_MissingSamplingState() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16);
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.DEFAULT));
+  }
+
+  @Test
+  public void parseSingleHeader_WithParentSpanId() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-1-" + "ff00000000000042");
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TRACE_OPTIONS));
+  }
+
+  @Test
+  public void parseSingleHeader_EightBytesTraceId() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16_EIGHT_BYTES + "-" + SPAN_ID_BASE16 + "-1");
+    assertThat(b3Format.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID_EIGHT_BYTES, SPAN_ID, TRACE_OPTIONS));
+  }
+
+  @Test
+  public void parseSingleHeader_TakesPrecedence() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-1");
+    headers.put(X_B3_TRACE_ID, TRACE_ID_BASE16_EIGHT_BYTES);
+    headers.put(X_B3_SPAN_ID, "ff00000000000042");
+    assertThat(b3SingleHeaderFormat.extract(headers, getter))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TRACE_OPTIONS));
+  }
+
+  @Test
+  public void parseSingleHeader_OnlySamplingState() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, "1");
+    thrown.expect(SpanContextParseException.class);
+    thrown.expectMessage("Missing trace id in b3 header.");
+    b3Format.extract(headers, getter);
+  }
+
+  @Test
+  public void parseSingleHeader_InvalidSpanIdSize() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "00-1");
+    thrown.expect(SpanContextParseException.class);
+    thrown.expectMessage("Invalid b3 header: ");
+    b3Format.extract(headers, getter);
+  }
+
+  @Test
+  public void parseSingleHeader_InvalidSamplingState() throws SpanContextParseException {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(B3, TRACE_ID_BASE16 + "-" + SPAN_ID_BASE16 + "-10");
+    thrown.expect(SpanContextParseException.class);
+    thrown.expectMessage("Invalid b3 header: ");
+    b3Format.extract(headers, getter);
   }
 }
@@ -25,6 +25,8 @@ import io.opencensus.trace.TraceId;
 import io.opencensus.trace.TraceOptions;
 import io.opencensus.trace.propagation.BinaryFormat;
 import io.opencensus.trace.propagation.SpanContextParseException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -90,6 +92,59 @@ public class BinaryFormatImplTest {
     assertThat(binaryFormat.fromByteArray(EXAMPLE_BYTES)).isEqualTo(EXAMPLE_SPAN_CONTEXT);
   }
 
+  @Test
+  public void toByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(EXAMPLE_BYTES.length + 3);
+    buffer.position(1);
+    assertThat(binaryFormat.toByteBuffer(EXAMPLE_SPAN_CONTEXT, buffer, 3))
+        .isEqualTo(EXAMPLE_BYTES.length);
+    assertThat(buffer.position()).isEqualTo(1);
+    byte[] written = new byte[EXAMPLE_BYTES.length];
+    for (int i = 0; i < written.length; i++) {
+      written[i] = buffer.get(3 + i);
+    }
+    assertThat(written).isEqualTo(EXAMPLE_BYTES);
+  }
+
+  @Test
+  public void toByteBuffer_LittleEndian() {
+    ByteBuffer buffer = ByteBuffer.allocate(EXAMPLE_BYTES.length).order(ByteOrder.LITTLE_ENDIAN);
+    binaryFormat.toByteBuffer(EXAMPLE_SPAN_CONTEXT, buffer, 0);
+    assertThat(buffer.array()).isEqualTo(EXAMPLE_BYTES);
+  }
+
+  @Test
+  public void toByteBuffer_NotEnoughSpace() {
+    ByteBuffer buffer = ByteBuffer.allocate(EXAMPLE_BYTES.length);
+    expectedException.expect(IndexOutOfBoundsException.class);
+    binaryFormat.toByteBuffer(EXAMPLE_SPAN_CONTEXT, buffer, 1);
+  }
+
+  @Test
+  public void fromByteBuffer() throws SpanContextParseException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(EXAMPLE_BYTES.length + 2);
+    buffer.position(2);
+    buffer.put(EXAMPLE_BYTES);
+    assertThat(binaryFormat.fromByteBuffer(buffer, 2, EXAMPLE_BYTES.length))
+        .isEqualTo(EXAMPLE_SPAN_CONTEXT);
+    assertThat(buffer.position()).isEqualTo(EXAMPLE_BYTES.length + 2);
+  }
+
+  @Test
+  public void fromByteBuffer_MissingTraceOptions() throws SpanContextParseException {
+    ByteBuffer buffer = ByteBuffer.wrap(EXAMPLE_BYTES).asReadOnlyBuffer();
+    assertThat(binaryFormat.fromByteBuffer(buffer, 0, EXAMPLE_BYTES.length - 2))
+        .isEqualTo(SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.DEFAULT));
+  }
+
+  @Test
+  public void fromByteBuffer_Truncated() throws SpanContextParseException {
+    ByteBuffer buffer = ByteBuffer.wrap(EXAMPLE_BYTES);
+    expectedException.expect(SpanContextParseException.class);
+    expectedException.expectMessage("Invalid input: truncated");
+    binaryFormat.fromByteBuffer(buffer, 0, EXAMPLE_BYTES.length - 1);
+  }
+
   @Test(expected = NullPointerException.class)
   public void fromBinaryValue_NullInput() throws SpanContextParseException {
     binaryFormat.fromByteArray(null);
@@ -38,6 +38,11 @@ public class PropagationComponentImplTest {
     assertThat(propagationComponent.getB3Format()).isInstanceOf(B3Format.class);
   }
 
+  @Test
+  public void implementationOfB3SingleHeaderFormat() {
+    assertThat(propagationComponent.getB3SingleHeaderFormat()).isInstanceOf(B3Format.class);
+  }
+
   @Test
   public void implementationOfTraceContextFormat() {
     assertThat(propagationComponent.getTraceContextFormat()).isInstanceOf(TraceContextFormat.class);
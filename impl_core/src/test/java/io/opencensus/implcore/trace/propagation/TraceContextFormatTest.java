@@ -283,6 +283,73 @@ public class TraceContextFormatTest {
     traceContextFormat.extract(invalidHeaders, getter);
   }
 
+  @Test
+  public void extract_SameTraceStateReused() throws SpanContextParseException {
+    Map<String, String> carrier = new HashMap<String, String>();
+    carrier.put(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED);
+    carrier.put(TRACESTATE, TRACESTATE_NOT_DEFAULT_ENCODING);
+    Tracestate tracestate = traceContextFormat.extract(carrier, getter).getTracestate();
+    assertThat(tracestate).isEqualTo(TRACESTATE_NOT_DEFAULT);
+    // A byte-identical header, in a different string.
+    carrier.put(TRACESTATE, new String(TRACESTATE_NOT_DEFAULT_ENCODING.toCharArray()));
+    assertThat(traceContextFormat.extract(carrier, getter).getTracestate())
+        .isSameInstanceAs(tracestate);
+  }
+
+  @Test
+  public void injectExtract_TraceStateRoundTrip() throws SpanContextParseException {
+    Map<String, String> carrier = new HashMap<String, String>();
+    carrier.put(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED);
+    carrier.put(TRACESTATE, "foo=bar,bar=baz");
+    SpanContext spanContext = traceContextFormat.extract(carrier, getter);
+    for (int i = 0; i < 2; i++) {
+      Map<String, String> injected = new HashMap<String, String>();
+      traceContextFormat.inject(spanContext, injected, setter);
+      assertThat(injected)
+          .containsExactly(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED, TRACESTATE, "foo=bar,bar=baz");
+    }
+  }
+
+  @Test
+  public void extract_MaxTracestateMembers() throws SpanContextParseException {
+    Map<String, String> carrier = new HashMap<String, String>();
+    carrier.put(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED);
+    carrier.put(TRACESTATE, tracestateWithMembers(32));
+    assertThat(traceContextFormat.extract(carrier, getter).getTracestate().getEntries())
+        .hasSize(32);
+  }
+
+  @Test
+  public void extract_InvalidTracestate_TooManyMembers() throws SpanContextParseException {
+    Map<String, String> invalidHeaders = new HashMap<String, String>();
+    invalidHeaders.put(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED);
+    invalidHeaders.put(TRACESTATE, tracestateWithMembers(33));
+    thrown.expect(SpanContextParseException.class);
+    thrown.expectMessage("Invalid tracestate: ");
+    traceContextFormat.extract(invalidHeaders, getter);
+  }
+
+  @Test
+  public void extract_InvalidTracestate_EmptyMember() throws SpanContextParseException {
+    Map<String, String> invalidHeaders = new HashMap<String, String>();
+    invalidHeaders.put(TRACEPARENT, TRACEPARENT_HEADER_SAMPLED);
+    invalidHeaders.put(TRACESTATE, ",foo=bar");
+    thrown.expect(SpanContextParseException.class);
+    thrown.expectMessage("Invalid tracestate: " + ",foo=bar");
+    traceContextFormat.extract(invalidHeaders, getter);
+  }
+
+  private static String tracestateWithMembers(int numMembers) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (int i = 0; i < numMembers; i++) {
+      if (i > 0) {
+        stringBuilder.append(',');
+      }
+      stringBuilder.append("k").append(i).append("=v");
+    }
+    return stringBuilder.toString();
+  }
+
   @Test
   public void fieldsList() {
     assertThat(traceContextFormat.fields()).containsExactly(TRACEPARENT, TRACESTATE);